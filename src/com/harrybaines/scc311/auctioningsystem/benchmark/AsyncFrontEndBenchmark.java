@@ -0,0 +1,178 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.client.BinaryAuctionClient;
+import com.harrybaines.scc311.auctioningsystem.server.AuctionServerImpl;
+import com.harrybaines.scc311.auctioningsystem.server.BinaryEndpoint;
+import com.harrybaines.scc311.auctioningsystem.server.BrowseResponse;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code: Async Front-End Benchmark   AsyncFrontEndBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures how many requests a front-end can hold outstanding at the
+ * cluster, and what each costs, when it waits for the cluster on a thread
+ * per request and when it doesn't. Both modes serve browse requests through
+ * a BinaryEndpoint: in blocking mode the endpoint sees the front-end only as
+ * an IAuctionServer and is given one worker per outstanding request, as RMI
+ * gives every call its own thread; in async mode it uses the front-end's
+ * IAsyncAuctionServer methods with a handful of workers. Clients keep the
+ * given number of requests outstanding over a few pipelined connections.
+ *
+ * Each result reports the requests per second, the peak number of live
+ * threads and the resident size of the process, which unlike the heap
+ * counts thread stacks. Run it with a fixed heap (e.g. -Xmx128m) to compare
+ * the concurrency each mode reaches within it. Async mode is measured first,
+ * as the resident size rarely shrinks once grown. Admission control is
+ * disabled unless -Dauction.admit is set, as it would otherwise cap both
+ * modes alike.
+ *
+ * Configurable via system properties:
+ *   bench.members         - the number of cluster members (default 1)
+ *   bench.inFlight        - comma separated requests outstanding at once (default 256,1024,4096)
+ *   auction.binaryWorkers - the workers in async mode (default 8)
+*/
+public final class AsyncFrontEndBenchmark {
+
+  private static final int CONNECTIONS = 8;
+  private static final String[] MODES = {"async", "blocking"};
+  private static final long THREAD_EXIT_MILLIS = 10000;
+
+  /**
+   * Runs the comparison.
+   * @param harness the harness to run with.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness) throws Exception {
+    int members = Integer.getInteger("bench.members", 1);
+    List<Integer> inFlights = BenchmarkSuite.parseInts(System.getProperty("bench.inFlight", "256,1024,4096"));
+    int asyncWorkers = Integer.getInteger("auction.binaryWorkers", 8);
+    if (System.getProperty("auction.admit") == null) {
+      System.setProperty("auction.admit", "false");
+    }
+
+    final AuctionServerImpl[] frontEnd = new AuctionServerImpl[1];
+    final long[] version = new long[1];
+    BenchmarkHarness.quietly(() -> {
+      LocalCluster.startMembers(members);
+      frontEnd[0] = new AuctionServerImpl(true, null);
+      version[0] = frontEnd[0].getActiveAuctionsIfModified(-1).getVersion();
+    });
+
+    for (String mode : MODES) {
+      for (int inFlight : inFlights) {
+        String params = "mode=" + mode + ";inFlight=" + inFlight;
+        boolean async = mode.equals("async");
+        try {
+          measure(harness, params, async ? frontEnd[0] : blocking(frontEnd[0]), async ? asyncWorkers : inFlight, inFlight, version[0]);
+        } catch (Exception | OutOfMemoryError e) {
+          // A thread per request can run out of memory well before the heap does
+          System.out.println("[BENCH] " + params + " failed: " + e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Measures one mode at one number of outstanding requests.
+   * @param harness the harness to run with.
+   * @param params the benchmark parameters.
+   * @param server the front-end, as the endpoint should see it.
+   * @param workers the endpoint's worker threads.
+   * @param inFlight the requests to keep outstanding.
+   * @param version the current version of the active auctions, so responses stay small.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void measure(BenchmarkHarness harness, String params, IAuctionServer server, int workers, int inFlight, long version) throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    int threadsBefore = threads.getThreadCount();
+    final BinaryEndpoint endpoint = new BinaryEndpoint(server, 0, workers, inFlight).start();
+    final BinaryAuctionClient[] clients = new BinaryAuctionClient[CONNECTIONS];
+    final LongAdder failed = new LongAdder();
+    try {
+      for (int i = 0; i < clients.length; i++) {
+        clients[i] = new BinaryAuctionClient("localhost", endpoint.getPort());
+      }
+      threads.resetPeakThreadCount();
+      final BenchmarkHarness.Result[] result = new BenchmarkHarness.Result[1];
+      BenchmarkHarness.quietly(() -> result[0] = harness.measureTimed("frontEnd.inFlight", params, 1, (t) -> {
+        List<CompletableFuture<BrowseResponse>> window = new ArrayList<CompletableFuture<BrowseResponse>>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+          window.add(clients[i % clients.length].getActiveAuctionsIfModified(version));
+        }
+        CompletableFuture.allOf(window.toArray(new CompletableFuture<?>[0])).get(2L * Constants.TIMEOUT, TimeUnit.MILLISECONDS);
+        for (CompletableFuture<BrowseResponse> response : window) {
+          if (response.get() == null || response.get().isServerBusy()) {
+            failed.increment();
+          }
+        }
+      }));
+      harness.report(result[0]
+          .with("requests_per_sec", Math.round(result[0].getOpsPerSecond() * inFlight))
+          .with("workers", workers)
+          .with("peak_threads", threads.getPeakThreadCount())
+          .with("max_heap_mb", Runtime.getRuntime().maxMemory() >> 20)
+          .with("rss_mb", residentSize() >> 20)
+          .with("failed", failed.sum()));
+    } finally {
+      for (BinaryAuctionClient client : clients) {
+        if (client != null) {
+          client.close();
+        }
+      }
+      endpoint.close();
+      // Let the workers exit, so they aren't counted in the next measurement
+      long deadline = System.currentTimeMillis() + THREAD_EXIT_MILLIS;
+      while (threads.getThreadCount() > threadsBefore && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+    }
+  }
+
+  /**
+   * Hides a front-end's asynchronous methods, so an endpoint can only call it blocking.
+   * @param frontEnd the front-end.
+   * @return a view of it as just an IAuctionServer.
+  */
+  private static IAuctionServer blocking(IAuctionServer frontEnd) {
+    return (IAuctionServer) Proxy.newProxyInstance(IAuctionServer.class.getClassLoader(), new Class<?>[]{IAuctionServer.class},
+        (proxy, method, args) -> {
+          try {
+            return method.invoke(frontEnd, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+  /**
+   * Obtains the resident size of this process, which unlike the heap includes thread stacks.
+   * @return the resident size in bytes, or 0 if it can't be read (only Linux is supported).
+  */
+  private static long residentSize() {
+    try {
+      for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+        if (line.startsWith("VmRSS:")) {
+          return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      // Not Linux
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,347 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Code: Benchmark Harness   BenchmarkHarness.java
+ * Date: 19/10/26
+ *
+ * A small microbenchmark harness in the spirit of JMH. Each benchmark is run
+ * on a number of threads for a warmup period followed by a measurement period
+ * (or for a fixed number of operations), recording per-operation latency.
+ * Results are printed and appended as CSV rows to a results file so runs can
+ * be compared over time.
+ *
+ * Configurable via system properties:
+ *   bench.results  - the CSV file to append results to (default bench-results.csv)
+ *   bench.warmup   - warmup time per benchmark in milliseconds (default 2000)
+ *   bench.measure  - measurement time per benchmark in milliseconds (default 5000)
+*/
+public final class BenchmarkHarness {
+
+  public static final String CSV_HEADER = "timestamp,benchmark,params,threads,ops,ops_per_sec,mean_us,p50_us,p90_us,p99_us,p999_us,max_us,extra";
+
+  /**
+   * A single benchmarked operation, invoked repeatedly by each thread.
+  */
+  public interface Operation {
+    /**
+     * Performs one operation.
+     * @param threadIndex the index of the calling benchmark thread.
+     * @throws Exception if the operation fails (the benchmark is aborted).
+    */
+    void run(int threadIndex) throws Exception;
+  }
+
+  private static final PrintStream STDOUT = System.out;
+  private static final PrintStream NULL_OUT = new PrintStream(new OutputStream() {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  });
+
+  private final String resultsPath;
+  private final long warmupMillis;
+  private final long measureMillis;
+
+  /**
+   * Constructor to initialise a harness configured from system properties.
+  */
+  public BenchmarkHarness() {
+    this(System.getProperty("bench.results", "bench-results.csv"),
+        Long.getLong("bench.warmup", 2000),
+        Long.getLong("bench.measure", 5000));
+  }
+
+  /**
+   * Constructor to initialise a harness with explicit settings.
+   * @param resultsPath the CSV file to append results to (null to disable).
+   * @param warmupMillis the warmup time per timed benchmark.
+   * @param measureMillis the measurement time per timed benchmark.
+  */
+  public BenchmarkHarness(String resultsPath, long warmupMillis, long measureMillis) {
+    this.resultsPath = resultsPath;
+    this.warmupMillis = warmupMillis;
+    this.measureMillis = measureMillis;
+  }
+
+  /**
+   * Runs an operation repeatedly on the given number of threads, first for the
+   * warmup period (discarded) and then for the measurement period.
+   * @param name the benchmark name.
+   * @param params a short description of the benchmark parameters.
+   * @param threads the number of concurrent threads.
+   * @param op the operation to benchmark.
+   * @return the measured result.
+   * @throws Exception if any operation fails.
+  */
+  public Result runTimed(String name, String params, int threads, Operation op) throws Exception {
+    return this.report(this.measureTimed(name, params, threads, op));
+  }
+
+  /**
+   * Measures an operation as {@link #runTimed} does, but without reporting the
+   * result, so additional metrics can be attached before calling {@link #report}.
+   * @param name the benchmark name.
+   * @param params a short description of the benchmark parameters.
+   * @param threads the number of concurrent threads.
+   * @param op the operation to benchmark.
+   * @return the unreported result.
+   * @throws Exception if any operation fails.
+  */
+  public Result measureTimed(String name, String params, int threads, Operation op) throws Exception {
+    runPhase(threads, op, this.warmupMillis, Long.MAX_VALUE);
+    Phase phase = runPhase(threads, op, this.measureMillis, Long.MAX_VALUE);
+    return new Result(name, params, threads, phase.histogram, phase.elapsedNanos);
+  }
+
+  /**
+   * Runs an operation a fixed number of times per thread with no warmup, for
+   * operations that consume state (e.g. closing pre-created auctions).
+   * @param name the benchmark name.
+   * @param params a short description of the benchmark parameters.
+   * @param threads the number of concurrent threads.
+   * @param opsPerThread the number of operations each thread performs.
+   * @param op the operation to benchmark.
+   * @return the measured result.
+   * @throws Exception if any operation fails.
+  */
+  public Result runFixed(String name, String params, int threads, long opsPerThread, Operation op) throws Exception {
+    return this.report(this.measureFixed(name, params, threads, opsPerThread, op));
+  }
+
+  /**
+   * Measures an operation as {@link #runFixed} does, but without reporting the result.
+   * @param name the benchmark name.
+   * @param params a short description of the benchmark parameters.
+   * @param threads the number of concurrent threads.
+   * @param opsPerThread the number of operations each thread performs.
+   * @param op the operation to benchmark.
+   * @return the unreported result.
+   * @throws Exception if any operation fails.
+  */
+  public Result measureFixed(String name, String params, int threads, long opsPerThread, Operation op) throws Exception {
+    Phase phase = runPhase(threads, op, Long.MAX_VALUE, opsPerThread);
+    return new Result(name, params, threads, phase.histogram, phase.elapsedNanos);
+  }
+
+  /**
+   * Prints a result and appends it to the results file.
+   * @param result the result to report.
+   * @return the same result.
+   * @throws IOException if the results file can't be written.
+  */
+  public Result report(Result result) throws IOException {
+    STDOUT.println(result);
+    if (this.resultsPath != null) {
+      File file = new File(this.resultsPath);
+      boolean writeHeader = !file.exists() || file.length() == 0;
+      try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
+        if (writeHeader) {
+          out.println(CSV_HEADER);
+        }
+        out.println(result.toCsv());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs a block with System.out discarded, so the per-operation logging of
+   * the code under test doesn't dominate the measurement.
+   * @param block the code to run quietly.
+   * @throws Exception if the block fails.
+  */
+  public static void quietly(Callable block) throws Exception {
+    System.setOut(NULL_OUT);
+    try {
+      block.call();
+    } finally {
+      System.setOut(STDOUT);
+    }
+  }
+
+  /**
+   * A block of setup code run by {@link #quietly(Callable)}.
+  */
+  public interface Callable {
+    void call() throws Exception;
+  }
+
+  /**
+   * Runs a single phase of a benchmark until either the deadline passes or each thread has completed its operations.
+   * @param threads the number of threads.
+   * @param op the operation to run.
+   * @param durationMillis the phase duration in milliseconds.
+   * @param opsPerThread the maximum operations per thread.
+   * @return the merged histogram and elapsed time of the phase.
+   * @throws Exception if any operation fails.
+  */
+  private static Phase runPhase(int threads, Operation op, long durationMillis, long opsPerThread) throws Exception {
+    final List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>();
+    final Exception[] failure = new Exception[1];
+    final CyclicBarrier start = new CyclicBarrier(threads + 1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    final long[] deadline = new long[1];
+
+    for (int t = 0; t < threads; t++) {
+      final int threadIndex = t;
+      final LatencyHistogram histogram = new LatencyHistogram();
+      histograms.add(histogram);
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          long end = deadline[0];
+          for (long i = 0; i < opsPerThread; i++) {
+            long begin = System.nanoTime();
+            if (begin - end >= 0) {
+              break;
+            }
+            op.run(threadIndex);
+            histogram.record(System.nanoTime() - begin);
+          }
+        } catch (Exception e) {
+          synchronized (failure) {
+            failure[0] = e;
+          }
+        } finally {
+          done.countDown();
+        }
+      }, "bench-" + t);
+      worker.setDaemon(true);
+      worker.start();
+    }
+
+    System.setOut(NULL_OUT);
+    long begin;
+    try {
+      begin = System.nanoTime();
+      deadline[0] = durationMillis == Long.MAX_VALUE ? begin + Long.MAX_VALUE / 2 : begin + durationMillis * 1_000_000L;
+      start.await();
+      done.await();
+    } finally {
+      System.setOut(STDOUT);
+    }
+    long elapsed = System.nanoTime() - begin;
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+
+    LatencyHistogram merged = new LatencyHistogram();
+    for (LatencyHistogram histogram : histograms) {
+      merged.merge(histogram);
+    }
+    return new Phase(merged, elapsed);
+  }
+
+  /**
+   * The raw outcome of a benchmark phase.
+  */
+  private static final class Phase {
+    private final LatencyHistogram histogram;
+    private final long elapsedNanos;
+
+    private Phase(LatencyHistogram histogram, long elapsedNanos) {
+      this.histogram = histogram;
+      this.elapsedNanos = elapsedNanos;
+    }
+  }
+
+  /**
+   * The measured result of a single benchmark configuration.
+  */
+  public static final class Result {
+
+    private final String name;
+    private final String params;
+    private final int threads;
+    private final LatencyHistogram histogram;
+    private final long elapsedNanos;
+    private final Map<String, Object> extra = new LinkedHashMap<String, Object>();
+
+    /**
+     * Constructor to initialise a new benchmark result.
+     * @param name the benchmark name.
+     * @param params the benchmark parameters.
+     * @param threads the number of threads used.
+     * @param histogram the latency histogram of all measured operations.
+     * @param elapsedNanos the wall-clock time of the measurement.
+    */
+    public Result(String name, String params, int threads, LatencyHistogram histogram, long elapsedNanos) {
+      this.name = name;
+      this.params = params;
+      this.threads = threads;
+      this.histogram = histogram;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Attaches an additional named metric to this result (e.g. serialised size).
+     * @param key the metric name.
+     * @param value the metric value.
+     * @return this result.
+    */
+    public Result with(String key, Object value) {
+      this.extra.put(key, value);
+      return this;
+    }
+
+    /**
+     * Accessor to obtain the throughput of this result.
+     * @return the operations completed per second.
+    */
+    public double getOpsPerSecond() {
+      return this.elapsedNanos == 0 ? 0 : this.histogram.getCount() * 1e9 / this.elapsedNanos;
+    }
+
+    /**
+     * Accessor to obtain the latency histogram of this result.
+     * @return the latency histogram.
+    */
+    public LatencyHistogram getHistogram() {
+      return this.histogram;
+    }
+
+    /**
+     * Formats this result as a row matching {@link #CSV_HEADER}.
+     * @return the CSV row.
+    */
+    public String toCsv() {
+      StringBuilder extraStr = new StringBuilder();
+      for (Map.Entry<String, Object> entry : this.extra.entrySet()) {
+        if (extraStr.length() > 0) {
+          extraStr.append(';');
+        }
+        extraStr.append(entry.getKey()).append('=').append(entry.getValue());
+      }
+      return String.format("%d,%s,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%s",
+          System.currentTimeMillis(), this.name, this.params.replace(',', ';'), this.threads,
+          this.histogram.getCount(), this.getOpsPerSecond(), this.histogram.getMean() / 1000.0,
+          micros(this.histogram.getPercentile(50)), micros(this.histogram.getPercentile(90)),
+          micros(this.histogram.getPercentile(99)), micros(this.histogram.getPercentile(99.9)),
+          micros(this.histogram.getMax()), extraStr);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-28s %-28s threads=%-3d %12.1f ops/s  p50=%.2fus  p99=%.2fus  max=%.2fus %s",
+          this.name, this.params, this.threads, this.getOpsPerSecond(),
+          micros(this.histogram.getPercentile(50)), micros(this.histogram.getPercentile(99)),
+          micros(this.histogram.getMax()), this.extra.isEmpty() ? "" : this.extra.toString());
+    }
+
+    private static double micros(long nanos) {
+      return nanos / 1000.0;
+    }
+  }
+}
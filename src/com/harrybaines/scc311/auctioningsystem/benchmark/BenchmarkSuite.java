@@ -0,0 +1,101 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Code: Benchmark Suite   BenchmarkSuite.java
+ * Date: 19/10/26
+ *
+ * Entry point for the microbenchmark suite. Runs the selected benchmarks
+ * (all by default) and appends the results to the CSV results file.
+ *
+ * Usage: java -cp out:lib/jgroups-3.6.14.Final.jar \
+ *          com.harrybaines.scc311.auctioningsystem.benchmark.BenchmarkSuite [clusterMember|state|serialization|signature|login|memory|profiles|binary|compression|async ...]
+ *
+ * Configurable via system properties (see also BenchmarkHarness):
+ *   bench.threads  - the maximum number of threads (default: available processors)
+ *   bench.auctions - comma separated auction counts (default 100,10000,100000)
+ *   bench.memoryAuctions, bench.memoryBids - see MemoryBenchmark
+ *   bench.profiles, bench.legacyProfiles - see ProfileBenchmark
+ *   bench.concurrency - see BinaryProtocolBenchmark
+ *   bench.compressAuctions - see CompressionBenchmark
+ *   bench.inFlight - see AsyncFrontEndBenchmark
+*/
+public final class BenchmarkSuite {
+
+  /**
+   * Main method to run the benchmark suite.
+   * @param args the names of the benchmarks to run (all if empty).
+   * @throws Exception if a benchmark fails.
+  */
+  public static void main(String[] args) throws Exception {
+    List<String> selected = Arrays.asList(args);
+    boolean all = selected.isEmpty();
+    BenchmarkHarness harness = new BenchmarkHarness();
+    List<Integer> threadCounts = threadCounts(Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors()));
+    List<Integer> auctionCounts = parseInts(System.getProperty("bench.auctions", "100,10000,100000"));
+
+    if (all || selected.contains("clusterMember")) {
+      ClusterMemberBenchmark.run(harness, threadCounts, auctionCounts);
+    }
+    if (all || selected.contains("state")) {
+      StateTransferBenchmark.run(harness, auctionCounts);
+    }
+    if (all || selected.contains("serialization")) {
+      SerializationBenchmark.run(harness);
+    }
+    if (all || selected.contains("signature")) {
+      SignatureBenchmark.run(harness, threadCounts);
+    }
+    if (all || selected.contains("login")) {
+      LoginBenchmark.run(harness, threadCounts);
+    }
+    if (selected.contains("memory")) {
+      // Millions of auctions, so only run when asked for
+      MemoryBenchmark.run(harness);
+    }
+    if (selected.contains("profiles")) {
+      // Provisions a million profiles to disk, so only run when asked for
+      ProfileBenchmark.run(harness);
+    }
+    if (all || selected.contains("binary")) {
+      BinaryProtocolBenchmark.run(harness);
+    }
+    if (all || selected.contains("compression")) {
+      CompressionBenchmark.run(harness);
+    }
+    if (all || selected.contains("async")) {
+      AsyncFrontEndBenchmark.run(harness);
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Obtains the thread counts 1, 2, 4, ... up to and including a maximum.
+   * @param max the maximum number of threads.
+   * @return the list of thread counts.
+  */
+  static List<Integer> threadCounts(int max) {
+    List<Integer> counts = new ArrayList<Integer>();
+    for (int threads = 1; threads < max; threads *= 2) {
+      counts.add(threads);
+    }
+    counts.add(Math.max(1, max));
+    return counts;
+  }
+
+  /**
+   * Parses a comma separated list of integers.
+   * @param csv the comma separated values.
+   * @return the parsed integers.
+  */
+  static List<Integer> parseInts(String csv) {
+    List<Integer> values = new ArrayList<Integer>();
+    for (String value : csv.split(",")) {
+      values.add(Integer.parseInt(value.trim()));
+    }
+    return values;
+  }
+}
@@ -0,0 +1,129 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.client.BinaryAuctionClient;
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.AuctionServerImpl;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.BinaryEndpoint;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.server.ServerResponse;
+import com.harrybaines.scc311.auctioningsystem.server.SessionToken;
+
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Code: Binary Protocol Benchmark   BinaryProtocolBenchmark.java
+ * Date: 19/10/26
+ *
+ * Compares calling one front-end over RMI with calling it through its
+ * BinaryEndpoint. At each concurrency, RMI is called from that many threads,
+ * each with one blocking call outstanding, while the binary client pipelines
+ * the same number of requests on its one connection from a single thread and
+ * waits for the whole window. Throughput is reported in requests per second
+ * (requests_per_sec); the binary latencies are those of a whole window.
+ *
+ * Two requests are measured: resuming a session, which the front-end answers
+ * itself and so shows the cost of the transport, and bidding, which goes on
+ * to the cluster.
+ *
+ * Configurable via system properties:
+ *   bench.members     - the number of cluster members (default 1)
+ *   bench.concurrency - comma separated requests outstanding at once (default 1,8,64)
+*/
+public final class BinaryProtocolBenchmark {
+
+  private static final int AUCTIONS = 100;
+
+  /**
+   * Runs the transport comparison.
+   * @param harness the harness to run with.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness) throws Exception {
+    int members = Integer.getInteger("bench.members", 1);
+    List<Integer> concurrencies = BenchmarkSuite.parseInts(System.getProperty("bench.concurrency", "1,8,64"));
+    final List<LoadGenerator.VirtualUser> users = LoadGenerator.provisionUsers(2, "binary");
+
+    final IAuctionServer[] rmi = new IAuctionServer[1];
+    final BinaryAuctionClient[] binary = new BinaryAuctionClient[1];
+    final long[] auctionIds = new long[AUCTIONS];
+    BenchmarkHarness.quietly(() -> {
+      LocalCluster.startMembers(members);
+      AuctionServerImpl frontEnd = new AuctionServerImpl();
+      rmi[0] = (IAuctionServer) UnicastRemoteObject.toStub(frontEnd);
+      BinaryEndpoint endpoint = new BinaryEndpoint(frontEnd, 0, 64, 1024).start();
+      binary[0] = new BinaryAuctionClient("localhost", endpoint.getPort());
+      LoadGenerator generator = new LoadGenerator(rmi[0], 1, "browse=1", 1, 0);
+      for (LoadGenerator.VirtualUser user : users) {
+        if (!generator.authenticate(user)) {
+          throw new IllegalStateException("Login failed");
+        }
+      }
+      for (int i = 0; i < AUCTIONS; i++) {
+        SessionToken seller = users.get(0).session;
+        auctionIds[i] = rmi[0].createAuction(seller, new AuctionItem(10, 50, "Bench item " + i, seller.getUserId())).getAuctionItem().getId();
+      }
+    });
+    final SessionToken bidder = users.get(1).session;
+    final long startNanos = System.nanoTime();
+
+    for (int concurrency : concurrencies) {
+      final int depth = concurrency;
+      measure(harness, "frontEnd.resume", depth,
+          (t) -> rmi[0].resumeSession(bidder),
+          (t) -> {
+            CompletableFuture<?>[] window = new CompletableFuture<?>[depth];
+            for (int i = 0; i < depth; i++) {
+              window[i] = binary[0].resumeSession(bidder);
+            }
+            CompletableFuture.allOf(window).join();
+          });
+      measure(harness, "frontEnd.bid", depth,
+          (t) -> rmi[0].bid(bidder, nextBid(bidder, auctionIds, startNanos)),
+          (t) -> {
+            CompletableFuture<?>[] window = new CompletableFuture<?>[depth];
+            for (int i = 0; i < depth; i++) {
+              window[i] = binary[0].bid(bidder, nextBid(bidder, auctionIds, startNanos));
+            }
+            CompletableFuture.allOf(window).join();
+          });
+    }
+    binary[0].close();
+  }
+
+  /**
+   * Measures one request over both transports at one concurrency.
+   * @param harness the harness to run with.
+   * @param name the benchmark name.
+   * @param concurrency the requests outstanding at once.
+   * @param rmiCall makes one request over RMI.
+   * @param binaryWindow makes concurrency pipelined requests over the binary protocol.
+   * @throws Exception if a benchmark fails.
+  */
+  private static void measure(BenchmarkHarness harness, String name, int concurrency,
+      BenchmarkHarness.Operation rmiCall, BenchmarkHarness.Operation binaryWindow) throws Exception {
+    final BenchmarkHarness.Result[] results = new BenchmarkHarness.Result[2];
+    BenchmarkHarness.quietly(() -> {
+      results[0] = harness.measureTimed(name, "transport=rmi;concurrency=" + concurrency, concurrency, rmiCall);
+      results[1] = harness.measureTimed(name, "transport=binary;concurrency=" + concurrency, 1, binaryWindow);
+    });
+    harness.report(results[0].with("requests_per_sec", Math.round(results[0].getOpsPerSecond())));
+    harness.report(results[1].with("requests_per_sec", Math.round(results[1].getOpsPerSecond() * concurrency)));
+  }
+
+  /**
+   * Creates a bid on a random auction, higher than any placed earlier.
+   * @param bidder the session of the bidder.
+   * @param auctionIds the auctions to bid on.
+   * @param startNanos the time bidding started.
+   * @return the bid.
+  */
+  private static Bid nextBid(SessionToken bidder, long[] auctionIds, long startNanos) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    double amount = 10 + (System.nanoTime() - startNanos) / 1e7 + random.nextInt(500) / 100.0;
+    return new Bid(auctionIds[random.nextInt(auctionIds.length)], bidder.getUserId(), amount);
+  }
+}
@@ -0,0 +1,150 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.ClusterMember;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code: Cluster Member Benchmark   ClusterMemberBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures the throughput and latency of the create, bid and close operations
+ * on a single ClusterMember (invoked directly, without a JGroups channel) for
+ * a range of thread counts and numbers of live auctions, and of serialising a
+ * browse result while bids are being placed.
+*/
+public final class ClusterMemberBenchmark {
+
+  private static final int SELLER = 1;
+  private static final int BIDDER = 2;
+  private static final long CLOSE_OPS_PER_THREAD = 20000;
+
+  /**
+   * Runs the create, bid and close benchmarks.
+   * @param harness the harness to run with.
+   * @param threadCounts the thread counts to benchmark.
+   * @param auctionCounts the numbers of pre-populated auctions to benchmark.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness, List<Integer> threadCounts, List<Integer> auctionCounts) throws Exception {
+    for (int auctionCount : auctionCounts) {
+      for (int threads : threadCounts) {
+        String params = "auctions=" + auctionCount;
+        benchmarkBid(harness, params, threads, auctionCount);
+        benchmarkCreate(harness, params, threads, auctionCount);
+        benchmarkClose(harness, params, threads, auctionCount);
+        benchmarkBrowse(harness, params, threads, auctionCount);
+      }
+    }
+  }
+
+  /**
+   * Benchmarks bids on uniformly random auctions with ever increasing amounts.
+   * @param harness the harness to run with.
+   * @param params the benchmark parameters.
+   * @param threads the number of threads.
+   * @param auctionCount the number of pre-populated auctions.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkBid(BenchmarkHarness harness, String params, int threads, int auctionCount) throws Exception {
+    final ClusterMember member = populate(auctionCount);
+    final long base = System.nanoTime();
+    harness.runTimed("clusterMember.bid", params, threads, (t) -> {
+      long auctionId = ThreadLocalRandom.current().nextInt(auctionCount) + 1;
+      member.bid(new Bid(auctionId, BIDDER, 10 + (System.nanoTime() - base) / 1000.0));
+    });
+  }
+
+  /**
+   * Benchmarks creating new auctions on top of the pre-populated auctions.
+   * @param harness the harness to run with.
+   * @param params the benchmark parameters.
+   * @param threads the number of threads.
+   * @param auctionCount the number of pre-populated auctions.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkCreate(BenchmarkHarness harness, String params, int threads, int auctionCount) throws Exception {
+    final ClusterMember member = populate(auctionCount);
+    harness.runTimed("clusterMember.createAuction", params, threads, (t) ->
+        member.createAuction(new AuctionItem(10, 20, "Bench item", SELLER)));
+  }
+
+  /**
+   * Benchmarks closing auctions - each thread closes its own range of auctions
+   * created in addition to the pre-populated auctions.
+   * @param harness the harness to run with.
+   * @param params the benchmark parameters.
+   * @param threads the number of threads.
+   * @param auctionCount the number of pre-populated auctions.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkClose(BenchmarkHarness harness, String params, int threads, int auctionCount) throws Exception {
+    final ClusterMember member = populate(auctionCount + (int) (threads * CLOSE_OPS_PER_THREAD));
+    final long[] nextId = new long[threads];
+    for (int t = 0; t < threads; t++) {
+      nextId[t] = auctionCount + t * CLOSE_OPS_PER_THREAD + 1;
+    }
+    harness.runFixed("clusterMember.closeAuction", params, threads, CLOSE_OPS_PER_THREAD, (t) ->
+        member.closeAuction(nextId[t]++, SELLER));
+  }
+
+  /**
+   * Benchmarks serialising the active auctions, as JGroups does to return a browse,
+   * while a background thread keeps bidding. The background bid rate is reported too.
+   * @param harness the harness to run with.
+   * @param params the benchmark parameters.
+   * @param threads the number of browsing threads.
+   * @param auctionCount the number of pre-populated auctions.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkBrowse(BenchmarkHarness harness, String params, int threads, int auctionCount) throws Exception {
+    final ClusterMember member = populate(auctionCount);
+    final long base = System.nanoTime();
+    final LongAdder bids = new LongAdder();
+    Thread bidder = new Thread(() -> {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          long auctionId = ThreadLocalRandom.current().nextInt(auctionCount) + 1;
+          member.bid(new Bid(auctionId, BIDDER, 10 + (System.nanoTime() - base) / 1000.0));
+          bids.increment();
+        }
+      } catch (Exception e) {
+        // Stop bidding
+      }
+    }, "bench-bidder");
+    bidder.setDaemon(true);
+    bidder.start();
+    long start = System.nanoTime();
+    BenchmarkHarness.Result result = harness.measureTimed("clusterMember.browseUnderBids", params, threads, (t) -> {
+      ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+      out.writeObject(member.getActiveAuctions());
+      out.close();
+    });
+    double bidsPerSecond = bids.sum() / ((System.nanoTime() - start) / 1e9);
+    bidder.interrupt();
+    bidder.join();
+    harness.report(result.with("bids_per_sec", String.format("%.0f", bidsPerSecond)));
+  }
+
+  /**
+   * Creates a new cluster member holding a given number of auctions with ids 1..count.
+   * @param count the number of auctions to create.
+   * @return the populated cluster member.
+   * @throws Exception if an auction can't be created.
+  */
+  static ClusterMember populate(int count) throws Exception {
+    final ClusterMember member = new ClusterMember();
+    BenchmarkHarness.quietly(() -> {
+      for (int i = 0; i < count; i++) {
+        member.createAuction(new AuctionItem(10, 20, "Bench item " + i, SELLER));
+      }
+    });
+    return member;
+  }
+}
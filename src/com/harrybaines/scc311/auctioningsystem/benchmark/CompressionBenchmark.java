@@ -0,0 +1,122 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.AuctionServerImpl;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.server.SessionToken;
+import com.harrybaines.scc311.auctioningsystem.utils.CompressingSocketFactory;
+
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Code: Compression Benchmark   CompressionBenchmark.java
+ * Date: 19/10/26
+ *
+ * Compares a front-end exported with RMI's default sockets against one
+ * exported with a CompressingSocketFactory, both backed by the same cluster.
+ * For growing numbers of active auctions it measures getActiveAuctions over
+ * each, reporting the bytes per call before and after compression, and
+ * measures resumeSession to show calls below the threshold aren't slowed.
+ *
+ * Configurable via system properties:
+ *   bench.members                   - the number of cluster members (default 1)
+ *   bench.compressAuctions          - comma separated auction counts (default 1000,10000,50000)
+ *   auction.rmiCompressionThreshold - the smallest block to compress (default 8192)
+*/
+public final class CompressionBenchmark {
+
+  private static final int BYTES_CALLS = 5;
+  private static final String[] WORDS = {"Vintage", "lamp", "bicycle", "camera", "guitar", "oak", "table", "signed", "first", "edition",
+      "watch", "leather", "boots", "size", "barely", "used", "boxed", "collectable", "rare", "print"};
+
+  /**
+   * Runs the compression comparison.
+   * @param harness the harness to run with.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness) throws Exception {
+    int members = Integer.getInteger("bench.members", 1);
+    List<Integer> auctionCounts = BenchmarkSuite.parseInts(System.getProperty("bench.compressAuctions", "1000,10000,50000"));
+    final CompressingSocketFactory sockets = new CompressingSocketFactory(Integer.getInteger("auction.rmiCompressionThreshold", 8192));
+    final List<LoadGenerator.VirtualUser> users = LoadGenerator.provisionUsers(2, "compress");
+
+    final AuctionServerImpl[] frontEnds = new AuctionServerImpl[2];
+    final IAuctionServer[] stubs = new IAuctionServer[2];
+    BenchmarkHarness.quietly(() -> {
+      LocalCluster.startMembers(members);
+      frontEnds[0] = new AuctionServerImpl(true, null);
+      frontEnds[1] = new AuctionServerImpl(true, sockets);
+      for (int i = 0; i < stubs.length; i++) {
+        stubs[i] = (IAuctionServer) UnicastRemoteObject.toStub(frontEnds[i]);
+      }
+      LoadGenerator generator = new LoadGenerator(stubs[1], 1, "browse=1", 1, 0);
+      for (LoadGenerator.VirtualUser user : users) {
+        if (!generator.authenticate(user)) {
+          throw new IllegalStateException("Login failed");
+        }
+      }
+    });
+    final SessionToken seller = users.get(0).session;
+    final SessionToken bidder = users.get(1).session;
+    String[] modes = {"default", "compressed"};
+
+    int created = 0;
+    Random random = new Random(42);
+    for (int auctionCount : auctionCounts) {
+      final int from = created;
+      BenchmarkHarness.quietly(() -> {
+        for (int i = from; i < auctionCount; i++) {
+          StringBuilder desc = new StringBuilder();
+          for (int w = 0; w < 4; w++) {
+            desc.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+          }
+          AuctionItem item = frontEnds[0].createAuction(seller,
+              new AuctionItem(1 + random.nextInt(100), 100 + random.nextInt(100), desc.append(i).toString(), seller.getUserId())).getAuctionItem();
+          if (random.nextBoolean()) {
+            frontEnds[0].bid(bidder, new Bid(item.getId(), bidder.getUserId(), 100 + random.nextInt(10000) / 100.0));
+          }
+        }
+      });
+      created = Math.max(created, auctionCount);
+
+      for (int i = 0; i < stubs.length; i++) {
+        final IAuctionServer stub = stubs[i];
+        final String params = "sockets=" + modes[i] + ";auctions=" + auctionCount;
+        final BenchmarkHarness.Result[] result = new BenchmarkHarness.Result[1];
+        BenchmarkHarness.quietly(() -> result[0] = harness.measureTimed("rmi.getActiveAuctions", params, 1, (t) -> {
+          if (stub.getActiveAuctions().size() != auctionCount) {
+            throw new IllegalStateException("Unexpected number of auctions");
+          }
+        }));
+        if (stub == stubs[1]) {
+          // Counted over separate calls, as the harness also makes calls while warming up
+          long raw = sockets.getRawBytes();
+          long wire = sockets.getWireBytes();
+          BenchmarkHarness.quietly(() -> {
+            for (int call = 0; call < BYTES_CALLS; call++) {
+              stub.getActiveAuctions();
+            }
+          });
+          long rawPerCall = (sockets.getRawBytes() - raw) / BYTES_CALLS;
+          long wirePerCall = (sockets.getWireBytes() - wire) / BYTES_CALLS;
+          result[0].with("raw_bytes_per_call", rawPerCall)
+              .with("wire_bytes_per_call", wirePerCall)
+              .with("ratio", String.format("%.2f", (double) rawPerCall / wirePerCall));
+        }
+        harness.report(result[0]);
+      }
+    }
+
+    for (int i = 0; i < stubs.length; i++) {
+      final IAuctionServer stub = stubs[i];
+      final String params = "sockets=" + modes[i];
+      final BenchmarkHarness.Result[] result = new BenchmarkHarness.Result[1];
+      BenchmarkHarness.quietly(() -> result[0] = harness.measureTimed("rmi.resumeSession", params, 1,
+          (t) -> stub.resumeSession(bidder)));
+      harness.report(result[0]);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+/**
+ * Code: Latency Histogram   LatencyHistogram.java
+ * Date: 19/10/26
+ *
+ * A fixed-size, log-linear histogram of latencies recorded in nanoseconds.
+ * Each power of two is split into 16 linear sub-buckets, giving percentiles
+ * to within ~6% without storing individual samples. Instances are not
+ * thread-safe - record into one histogram per thread and merge afterwards.
+*/
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 2) * (SUB_BUCKETS / 2);
+
+  private final long[] counts = new long[BUCKETS];
+  private long total;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max;
+
+  /**
+   * Records a single latency sample.
+   * @param nanos the latency in nanoseconds (negative values are treated as zero).
+  */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    this.counts[indexFor(value)]++;
+    this.total++;
+    this.sum += value;
+    this.min = Math.min(this.min, value);
+    this.max = Math.max(this.max, value);
+  }
+
+  /**
+   * Adds every sample recorded in another histogram to this histogram.
+   * @param other the histogram to merge in.
+  */
+  public void merge(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.counts[i] += other.counts[i];
+    }
+    this.total += other.total;
+    this.sum += other.sum;
+    this.min = Math.min(this.min, other.min);
+    this.max = Math.max(this.max, other.max);
+  }
+
+  /**
+   * Accessor to obtain the number of recorded samples.
+   * @return the sample count.
+  */
+  public long getCount() {
+    return this.total;
+  }
+
+  /**
+   * Accessor to obtain the mean of the recorded samples.
+   * @return the mean latency in nanoseconds, or 0 if empty.
+  */
+  public double getMean() {
+    return this.total == 0 ? 0 : (double) this.sum / this.total;
+  }
+
+  /**
+   * Accessor to obtain the largest recorded sample.
+   * @return the maximum latency in nanoseconds, or 0 if empty.
+  */
+  public long getMax() {
+    return this.max;
+  }
+
+  /**
+   * Accessor to obtain the smallest recorded sample.
+   * @return the minimum latency in nanoseconds, or 0 if empty.
+  */
+  public long getMin() {
+    return this.total == 0 ? 0 : this.min;
+  }
+
+  /**
+   * Obtains the latency at a given percentile.
+   * @param percentile the percentile to obtain in the range 0-100.
+   * @return the (bucket upper bound) latency in nanoseconds at that percentile.
+  */
+  public long getPercentile(double percentile) {
+    if (this.total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile / 100.0 * this.total);
+    rank = Math.max(1, Math.min(rank, this.total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += this.counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), this.max);
+      }
+    }
+    return this.max;
+  }
+
+  /**
+   * Clears all recorded samples.
+  */
+  public void reset() {
+    java.util.Arrays.fill(this.counts, 0);
+    this.total = 0;
+    this.sum = 0;
+    this.min = Long.MAX_VALUE;
+    this.max = 0;
+  }
+
+  /**
+   * Maps a value to its bucket index.
+   * @param value the non-negative value.
+   * @return the bucket index.
+  */
+  private static int indexFor(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+    int subBucket = (int) (value >>> exponent) - SUB_BUCKETS / 2;
+    return Math.min(BUCKETS - 1, exponent * (SUB_BUCKETS / 2) + SUB_BUCKETS / 2 + subBucket);
+  }
+
+  /**
+   * Maps a bucket index to the largest value it can hold.
+   * @param index the bucket index.
+   * @return the inclusive upper bound of the bucket.
+  */
+  private static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = (index - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+    long subBucket = (index - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+    return ((subBucket + 1) << exponent) - 1;
+  }
+}
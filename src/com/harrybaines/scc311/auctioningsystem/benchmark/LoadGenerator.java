@@ -0,0 +1,479 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.client.RequestHedger;
+import com.harrybaines.scc311.auctioningsystem.client.User;
+import com.harrybaines.scc311.auctioningsystem.server.*;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.rmi.RemoteException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Code: Load Generator   LoadGenerator.java
+ * Date: 19/10/26
+ *
+ * A headless workload driver for end to end load testing. Starts a local
+ * cluster (see LocalCluster), provisions a population of users with freshly
+ * generated key pairs, authenticates every user with the same challenge
+ * response protocol as the interactive Client, then drives a configurable
+ * mix of create/browse/bid/close operations from many concurrent threads.
+ * Bids are skewed towards a pool of hot auctions using a Zipf distribution.
+ * Throughput and latency percentiles are reported per operation.
+ *
+ * Configurable via system properties:
+ *   loadgen.members     - the number of cluster members (default 3)
+ *   loadgen.users       - the number of simulated users (default 1000)
+ *   loadgen.threads     - the number of concurrent driver threads (default 64)
+ *   loadgen.duration    - the measured run time in seconds (default 30)
+ *   loadgen.warmup      - the warmup time in seconds (default 5)
+ *   loadgen.mix         - operation weights (default create=5,browse=15,bid=75,close=5)
+ *   loadgen.hotAuctions - the number of pre-created auctions bids target (default 100)
+ *   loadgen.skew        - the Zipf exponent for bid targets, 0 = uniform (default 1.1)
+ *   loadgen.hedge       - start a second front-end and hedge slow create/bid/close requests to it (default false)
+*/
+public final class LoadGenerator {
+
+  /**
+   * The operations performed by simulated users.
+  */
+  enum Op { AUTH, CREATE, BROWSE, BID, CLOSE }
+
+  private final IAuctionServer server;
+  private final int threads;
+  private final Op[] mixTable;
+  private final ZipfDistribution hotKeys;
+  private final List<Long> hotAuctionIds = new ArrayList<Long>();
+  private final long startNanos = System.nanoTime();
+  private final PublicKey serverPubKey;
+  private final AtomicLong authRetries = new AtomicLong();  /* verifySignature calls repeated after RETRY_LATER */
+  private final AtomicLong busy = new AtomicLong();  /* requests turned away with SERVER_BUSY */
+  private RequestHedger requests;  /* null unless hedging to a second front-end */
+
+  /**
+   * Constructor to initialise a new load generator against a front-end server.
+   * @param server the front-end server stub.
+   * @param threads the number of concurrent driver threads.
+   * @param mix the operation mix, e.g. create=5,browse=15,bid=75,close=5.
+   * @param hotAuctions the number of hot auctions bids are targeted at.
+   * @param skew the Zipf exponent over the hot auctions.
+  */
+  public LoadGenerator(IAuctionServer server, int threads, String mix, int hotAuctions, double skew) {
+    this.server = server;
+    this.threads = threads;
+    this.mixTable = parseMix(mix);
+    this.hotKeys = new ZipfDistribution(hotAuctions, skew);
+    this.serverPubKey = SecurityManager.getPublicKey(Constants.CLIENT_DIR + Constants.SERVER_PUBLIC_KEY_STR);
+  }
+
+  /**
+   * Hedges slow create, bid and close requests to a second front-end. Each request is sent once
+   * (no retries), with a request id so the cluster applies it only once.
+   * @param secondary the second front-end's stub.
+  */
+  public void hedgeTo(IAuctionServer secondary) {
+    this.requests = new RequestHedger(this.server, secondary, 1);
+  }
+
+  // ================================================== //
+  //                 USER PROVISIONING                  //
+  // ================================================== //
+
+  /**
+   * A simulated user with its own key pair and the auctions it has created.
+  */
+  static final class VirtualUser {
+    final User user;
+    final PrivateKey privKey;
+    final PublicKey pubKey;
+    final Deque<Long> ownAuctions = new ArrayDeque<Long>();
+    long browseVersion = -1;
+    SessionToken session;
+
+    VirtualUser(User user, PrivateKey privKey, PublicKey pubKey) {
+      this.user = user;
+      this.privKey = privKey;
+      this.pubKey = pubKey;
+    }
+  }
+
+  /**
+   * Provisions users, each with a key pair generated by the SecurityManager into a temporary directory,
+   * and registers their public keys with the server's key registry. Unless -Dauction.users is set the
+   * registry is a temporary file too, so it must be called before the front-end is started.
+   * @param count the number of users to provision.
+   * @param prefix the prefix of the users' names and emails.
+   * @return the provisioned users.
+   * @throws Exception if a key pair can't be generated or loaded.
+  */
+  static List<VirtualUser> provisionUsers(int count, String prefix) throws Exception {
+    File keysDir = Files.createTempDirectory("loadgen-keys").toFile();
+    if (System.getProperty("auction.users") == null) {
+      System.setProperty("auction.users", new File(keysDir, "users.db").getPath());
+    }
+    List<VirtualUser> users = new ArrayList<VirtualUser>(count);
+    for (int i = 0; i < count; i++) {
+      String email = prefix + i + "@loadgen";
+      File userDir = new File(keysDir, email);
+      String pubPath = new File(userDir, "public.key").getPath();
+      String privPath = new File(userDir, "private.key").getPath();
+      if (!SecurityManager.generateKeyPair(userDir.getPath(), pubPath, privPath)) {
+        throw new IllegalStateException("Couldn't generate a key pair for " + email);
+      }
+      users.add(new VirtualUser(new User(prefix + " " + i, email), SecurityManager.getPrivateKey(privPath), SecurityManager.getPublicKey(pubPath)));
+    }
+    UserKeyRegistry.open(System.getProperty("auction.users")).importDirectory(keysDir.getPath());
+    return users;
+  }
+
+  // ================================================== //
+  //                  USER OPERATIONS                   //
+  // ================================================== //
+
+  /**
+   * Authenticates a user using the same protocol as the interactive client:
+   * the server is verified first, then the user signs the server's challenge.
+   * @param vu the user to authenticate.
+   * @return true if both sides were verified, false otherwise.
+   * @throws Exception if an error occurs on the server.
+  */
+  boolean authenticate(VirtualUser vu) throws Exception {
+    AuthChallenge clientChallenge = SecurityManager.getChallenge();
+    ServerAuthResponse res = this.server.signChallenge(clientChallenge);
+    if (res == null || !SecurityManager.verifySignature(new AuthSig(res.getSigBytes(), clientChallenge, this.serverPubKey, null, res.getAlgorithm()))) {
+      return false;
+    }
+    AuthChallenge serverChallenge = this.server.attemptAuth();
+    byte[] userSigBytes = SecurityManager.signChallenge(serverChallenge, vu.privKey);
+    AuthSig userSig = new AuthSig(userSigBytes, serverChallenge, vu.pubKey, vu.user);
+    ServerAuthResponse verified = this.server.verifySignature(userSig);
+    // Back off while the server sheds load, as the interactive client does
+    for (int attempt = 1; verified != null && verified.isRetryLater() && attempt < Constants.AUTH_RETRY_ATTEMPTS; attempt++) {
+      this.authRetries.incrementAndGet();
+      Thread.sleep((Constants.AUTH_RETRY_DELAY << attempt) + ThreadLocalRandom.current().nextInt(Constants.AUTH_RETRY_DELAY));
+      verified = this.server.verifySignature(userSig);
+    }
+    if (verified == null || !verified.isSigVerified()) {
+      return false;
+    }
+    vu.session = verified.getSessionToken();
+    return true;
+  }
+
+  /**
+   * Performs a single operation on behalf of a user.
+   * @param op the operation to perform.
+   * @param vu the user performing the operation.
+   * @param random the random number generator of the calling thread.
+   * @return true if the server responded, false otherwise.
+   * @throws Exception if an error occurs on the server.
+  */
+  boolean perform(Op op, VirtualUser vu, Random random) throws Exception {
+    switch (op) {
+      case AUTH:
+        return this.authenticate(vu);
+      case CREATE: {
+        AuctionItem auctionItem = new AuctionItem(10, 50, "Load item", vu.session.getUserId(), this.requestId());
+        ServerResponse res = this.mutate((server, retry) -> server.createAuction(vu.session, auctionItem));
+        if (res != null && res.getStatusCode() == IAuctionServer.SERVER_BUSY) {
+          this.busy.incrementAndGet();
+          return true;
+        }
+        if (res == null || res.getAuctionItem() == null) {
+          return false;
+        }
+        vu.ownAuctions.addLast(res.getAuctionItem().getId());
+        return true;
+      }
+      case BROWSE: {
+        BrowseResponse res = this.server.getActiveAuctionsIfModified(vu.browseVersion);
+        if (res == null) {
+          return false;
+        }
+        if (res.isServerBusy()) {
+          this.busy.incrementAndGet();
+        }
+        vu.browseVersion = res.getVersion();
+        return true;
+      }
+      case BID: {
+        long auctionId = this.hotAuctionIds.get(this.hotKeys.sample(random));
+        double amount = 10 + (System.nanoTime() - this.startNanos) / 1e7 + random.nextInt(500) / 100.0;
+        Bid bid = new Bid(auctionId, vu.session.getUserId(), amount, this.requestId());
+        return this.responded(this.mutate((server, retry) -> server.bid(vu.session, retry ? bid.asRetry() : bid)));
+      }
+      case CLOSE: {
+        Long auctionId = vu.ownAuctions.pollFirst();
+        if (auctionId == null) {
+          return this.perform(Op.CREATE, vu, random);
+        }
+        String requestId = this.requestId();
+        return this.responded(this.mutate((server, retry) -> server.closeAuction(vu.session, auctionId, vu.session.getUserId(), requestId)));
+      }
+      default:
+        throw new IllegalArgumentException("Unknown operation " + op);
+    }
+  }
+
+  /**
+   * Sends a create, bid or close request, hedging it if a second front-end is configured.
+   * @param request the request to send.
+   * @return the server's response.
+   * @throws RemoteException if an error occurs on the server.
+  */
+  private ServerResponse mutate(RequestHedger.Request request) throws RemoteException {
+    return this.requests != null ? this.requests.send(request) : request.send(this.server, false);
+  }
+
+  /**
+   * Generates a request id for a create, bid or close request when hedging.
+   * @return a new request id, or null if requests aren't hedged.
+  */
+  private String requestId() {
+    return this.requests != null ? UUID.randomUUID().toString() : null;
+  }
+
+  /**
+   * Checks whether the server responded to a request, counting requests it was too busy for.
+   * @param res the server's response.
+   * @return true if the server responded, false otherwise.
+  */
+  private boolean responded(ServerResponse res) {
+    if (res != null && res.getStatusCode() == IAuctionServer.SERVER_BUSY) {
+      this.busy.incrementAndGet();
+    }
+    return res != null;
+  }
+
+  // ================================================== //
+  //                   RUNNING A LOAD                   //
+  // ================================================== //
+
+  /**
+   * Creates the pool of hot auctions owned by a dedicated seller.
+   * @param seller the seller, provisioned before the front-end was started.
+   * @param count the number of hot auctions.
+   * @throws Exception if an auction can't be created.
+  */
+  void createHotAuctions(VirtualUser seller, int count) throws Exception {
+    if (!this.authenticate(seller)) {
+      throw new IllegalStateException("Couldn't authenticate the hot auction seller");
+    }
+    for (int i = 0; i < count; i++) {
+      ServerResponse res = this.server.createAuction(seller.session, new AuctionItem(10, 1000, "Hot item " + i, seller.session.getUserId()));
+      if (res == null || res.getAuctionItem() == null) {
+        throw new IllegalStateException("Couldn't create hot auction " + i + (res != null ? " (status " + res.getStatusCode() + ")" : ""));
+      }
+      this.hotAuctionIds.add(res.getAuctionItem().getId());
+    }
+  }
+
+  /**
+   * Authenticates every user once, concurrently, timing each login.
+   * @param users the users to authenticate.
+   * @return the latency histograms of the logins.
+   * @throws Exception if a driver thread fails.
+  */
+  Run authenticateAll(List<VirtualUser> users) throws Exception {
+    Run run = new Run();
+    this.runPhase(users, 0, (w, vu, random) -> this.timed(Op.AUTH, vu, random, run, w));
+    return run.finish();
+  }
+
+  /**
+   * Drives the operation mix from every driver thread until the end time.
+   * @param users the users to simulate.
+   * @param durationMillis how long to drive the load for.
+   * @return the latency histograms of every operation performed.
+   * @throws Exception if a driver thread fails.
+  */
+  Run drive(List<VirtualUser> users, long durationMillis) throws Exception {
+    Run run = new Run();
+    long end = System.nanoTime() + durationMillis * 1_000_000L;
+    this.runPhase(users, end, (w, vu, random) ->
+        this.timed(this.mixTable[random.nextInt(this.mixTable.length)], vu, random, run, w));
+    return run.finish();
+  }
+
+  /**
+   * Performs and times an operation, recording into the calling thread's histogram for that operation.
+   * @param op the operation to perform.
+   * @param vu the user performing the operation.
+   * @param random the random number generator of the calling thread.
+   * @param run the run to record into.
+   * @param worker the index of the calling driver thread.
+  */
+  private void timed(Op op, VirtualUser vu, Random random, Run run, int worker) {
+    long begin = System.nanoTime();
+    try {
+      if (!this.perform(op, vu, random)) {
+        run.errors.incrementAndGet();
+      }
+    } catch (Exception e) {
+      run.errors.incrementAndGet();
+    }
+    run.histograms[worker][op.ordinal()].record(System.nanoTime() - begin);
+  }
+
+  /**
+   * The work of a driver thread for a single user turn.
+  */
+  interface Step {
+    void run(int worker, VirtualUser vu, Random random) throws Exception;
+  }
+
+  /**
+   * Runs a phase across the driver threads. Users are partitioned between
+   * threads so each user performs at most one operation at a time. With an
+   * end time of 0 every user takes exactly one turn.
+   * @param users the users to simulate.
+   * @param end the System.nanoTime at which to stop, or 0 for a single turn each.
+   * @param step the work performed for each user turn.
+   * @throws Exception if a driver thread fails.
+  */
+  private void runPhase(List<VirtualUser> users, long end, Step step) throws Exception {
+    final CountDownLatch done = new CountDownLatch(this.threads);
+    final Exception[] failure = new Exception[1];
+    for (int w = 0; w < this.threads; w++) {
+      final int worker = w;
+      Thread thread = new Thread(() -> {
+        Random random = ThreadLocalRandom.current();
+        try {
+          do {
+            for (int i = worker; i < users.size(); i += this.threads) {
+              step.run(worker, users.get(i), random);
+              if (end != 0 && System.nanoTime() - end >= 0) {
+                return;
+              }
+            }
+          } while (end != 0);
+        } catch (Exception e) {
+          failure[0] = e;
+        } finally {
+          done.countDown();
+        }
+      }, "loadgen-" + w);
+      thread.setDaemon(true);
+      thread.start();
+    }
+    done.await();
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+  }
+
+  /**
+   * The per-thread, per-operation latency histograms and error count of a phase.
+  */
+  final class Run {
+    final LatencyHistogram[][] histograms = new LatencyHistogram[threads][Op.values().length];
+    final AtomicLong errors = new AtomicLong();
+    final long startNanos = System.nanoTime();
+    long elapsedNanos;
+
+    Run() {
+      for (LatencyHistogram[] perThread : this.histograms) {
+        for (int op = 0; op < perThread.length; op++) {
+          perThread[op] = new LatencyHistogram();
+        }
+      }
+    }
+
+    Run finish() {
+      this.elapsedNanos = System.nanoTime() - this.startNanos;
+      return this;
+    }
+
+    LatencyHistogram merged(Op op) {
+      LatencyHistogram merged = new LatencyHistogram();
+      for (LatencyHistogram[] perThread : this.histograms) {
+        merged.merge(perThread[op.ordinal()]);
+      }
+      return merged;
+    }
+  }
+
+  /**
+   * Reports the results of a run, one row per operation plus a total row.
+   * @param harness the harness used to print and record the results.
+   * @param phase the name of the phase the run belongs to.
+   * @param run the completed run.
+   * @param params the description of the run parameters.
+   * @throws Exception if the results can't be written.
+  */
+  void report(BenchmarkHarness harness, String phase, Run run, String params) throws Exception {
+    LatencyHistogram total = new LatencyHistogram();
+    for (Op op : Op.values()) {
+      LatencyHistogram histogram = run.merged(op);
+      total.merge(histogram);
+      if (histogram.getCount() > 0) {
+        harness.report(new BenchmarkHarness.Result("loadgen." + phase + "." + op.name().toLowerCase(), params, this.threads, histogram, run.elapsedNanos));
+      }
+    }
+    harness.report(new BenchmarkHarness.Result("loadgen." + phase + ".total", params, this.threads, total, run.elapsedNanos)
+        .with("errors", run.errors.get())
+        .with("authRetries", this.authRetries.getAndSet(0))
+        .with("busy", this.busy.getAndSet(0))
+        .with("hedged", this.requests != null ? this.requests.getHedgedCount() : 0));
+  }
+
+  /**
+   * Parses an operation mix into a lookup table with one entry per unit of weight.
+   * @param mix the mix, e.g. create=5,browse=15,bid=75,close=5.
+   * @return the table to sample operations from.
+  */
+  static Op[] parseMix(String mix) {
+    List<Op> table = new ArrayList<Op>();
+    for (String part : mix.split(",")) {
+      String[] kv = part.trim().split("=");
+      Op op = Op.valueOf(kv[0].trim().toUpperCase());
+      for (int i = Integer.parseInt(kv[1].trim()); i > 0; i--) {
+        table.add(op);
+      }
+    }
+    if (table.isEmpty()) {
+      throw new IllegalArgumentException("Empty operation mix: " + mix);
+    }
+    return table.toArray(new Op[0]);
+  }
+
+  /**
+   * Main method to start a local cluster and run a load against it.
+   * @param args unused (see the class comment for the system properties).
+   * @throws Exception if the load can't be run.
+  */
+  public static void main(String[] args) throws Exception {
+    int members = Integer.getInteger("loadgen.members", 3);
+    int userCount = Integer.getInteger("loadgen.users", 1000);
+    int threads = Integer.getInteger("loadgen.threads", 64);
+    long duration = Long.getLong("loadgen.duration", 30);
+    long warmup = Long.getLong("loadgen.warmup", 5);
+    String mix = System.getProperty("loadgen.mix", "create=5,browse=15,bid=75,close=5");
+    int hotAuctions = Integer.getInteger("loadgen.hotAuctions", 100);
+    double skew = Double.parseDouble(System.getProperty("loadgen.skew", "1.1"));
+
+    System.out.println("Provisioning " + userCount + " users");
+    List<VirtualUser> users = provisionUsers(userCount, "user");
+    VirtualUser seller = provisionUsers(1, "seller").get(0);
+    IAuctionServer server = LocalCluster.start(members);
+    LoadGenerator generator = new LoadGenerator(server, threads, mix, hotAuctions, skew);
+    if (Boolean.getBoolean("loadgen.hedge")) {
+      generator.hedgeTo(LocalCluster.startFrontEnd(Constants.SERVICE + "Hedge"));
+    }
+    generator.createHotAuctions(seller, hotAuctions);
+
+    String params = String.format("members=%d;users=%d;mix=%s;skew=%.2f;hedge=%b", members, userCount, mix.replace(',', '/'), skew, Boolean.getBoolean("loadgen.hedge"));
+    BenchmarkHarness harness = new BenchmarkHarness();
+    generator.report(harness, "login", generator.authenticateAll(users), params);
+    generator.drive(users, warmup * 1000);
+    generator.report(harness, "mix", generator.drive(users, duration * 1000), params);
+    System.exit(0);
+  }
+}
@@ -0,0 +1,60 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionServer;
+import com.harrybaines.scc311.auctioningsystem.server.AuctionServerImpl;
+import com.harrybaines.scc311.auctioningsystem.server.ClusterMember;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import java.rmi.Naming;
+import java.rmi.registry.LocateRegistry;
+
+/**
+ * Code: Local Cluster   LocalCluster.java
+ * Date: 19/10/26
+ *
+ * Starts a complete auctioning system inside the current JVM - a number of
+ * ClusterMembers plus the AuctionServer front-end bound to the RMI registry -
+ * with JGroups restricted to the loopback interface.
+*/
+public final class LocalCluster {
+
+  /**
+   * Starts the given number of cluster members and the front-end server.
+   * @param members the number of cluster members to start.
+   * @return the RMI stub of the front-end server.
+   * @throws Exception if the cluster or server can't be started.
+  */
+  public static IAuctionServer start(int members) throws Exception {
+    startMembers(members);
+    new AuctionServer();
+    return (IAuctionServer) Naming.lookup(Constants.REGISTRY_URL);
+  }
+
+  /**
+   * Starts the given number of cluster members without a front-end, joining any already started.
+   * @param members the number of cluster members to start.
+   * @throws Exception if the cluster members can't be started.
+  */
+  public static void startMembers(int members) throws Exception {
+    if (System.getProperty("jgroups.bind_addr") == null) {
+      System.setProperty("jgroups.bind_addr", "127.0.0.1");
+    }
+    System.setProperty("java.net.preferIPv4Stack", "true");
+
+    for (int i = 0; i < members; i++) {
+      new ClusterMember().start();
+    }
+  }
+
+  /**
+   * Starts an additional front-end server, bound to the registry started by start under its own name.
+   * @param service the name to bind the front-end under.
+   * @return the RMI stub of the front-end server.
+   * @throws Exception if the server can't be started.
+  */
+  public static IAuctionServer startFrontEnd(String service) throws Exception {
+    LocateRegistry.getRegistry(Constants.REGISTRY_PORT).rebind(service, new AuctionServerImpl());
+    return (IAuctionServer) Naming.lookup(Constants.REGISTRY + service);
+  }
+}
@@ -0,0 +1,80 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionServerImpl;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import java.lang.management.ManagementFactory;
+import java.rmi.registry.LocateRegistry;
+import java.util.List;
+
+/**
+ * Code: Login Benchmark   LoginBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures complete logins (the three call challenge response protocol, as
+ * performed by LoadGenerator) through the RMI front-end, comparing
+ * authentication on the front-end with broadcasting it to every cluster
+ * member. Both front-ends share one local cluster and are called over RMI.
+ * Process CPU time per login is reported alongside throughput, since the
+ * cluster members run in the same JVM.
+ *
+ * Configurable via system properties:
+ *   bench.members - the number of cluster members (default 3)
+ *   bench.logins  - the number of logins per thread (default 200)
+*/
+public final class LoginBenchmark {
+
+  private static final String BROADCAST_SERVICE = Constants.SERVICE + "Broadcast";
+
+  /**
+   * Runs the login benchmarks for both authentication paths.
+   * @param harness the harness to run with.
+   * @param threadCounts the thread counts to benchmark.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness, List<Integer> threadCounts) throws Exception {
+    int members = Integer.getInteger("bench.members", 3);
+    long logins = Long.getLong("bench.logins", 200);
+    int maxThreads = threadCounts.get(threadCounts.size() - 1);
+    final List<LoadGenerator.VirtualUser> users = LoadGenerator.provisionUsers(maxThreads, "login");
+
+    final IAuctionServer[] servers = new IAuctionServer[2];
+    BenchmarkHarness.quietly(() -> {
+      servers[0] = LocalCluster.start(members);
+      LocateRegistry.getRegistry(Constants.REGISTRY_PORT).rebind(BROADCAST_SERVICE, new AuctionServerImpl(false));
+      servers[1] = (IAuctionServer) LocateRegistry.getRegistry(Constants.REGISTRY_PORT).lookup(BROADCAST_SERVICE);
+    });
+    String[] modes = {"local", "cluster"};
+
+    for (int threads : threadCounts) {
+      for (int i = 0; i < servers.length; i++) {
+        final String params = String.format("members=%d;auth=%s", members, modes[i]);
+        final LoadGenerator generator = new LoadGenerator(servers[i], threads, "browse=1", 1, 0);
+        BenchmarkHarness.Operation login = (t) -> {
+          if (!generator.authenticate(users.get(t))) {
+            throw new IllegalStateException("Login failed");
+          }
+        };
+        final BenchmarkHarness.Result[] result = new BenchmarkHarness.Result[1];
+        final long[] cpuNanos = new long[1];
+        BenchmarkHarness.quietly(() -> {
+          harness.measureFixed("frontEnd.login", "warmup", threads, Math.max(1, logins / 4), login);
+          long cpuBefore = processCpuNanos();
+          result[0] = harness.measureFixed("frontEnd.login", params, threads, logins, login);
+          cpuNanos[0] = processCpuNanos() - cpuBefore;
+        });
+        harness.report(result[0].with("cpu_us_per_login", cpuNanos[0] / 1000.0 / (threads * logins)));
+      }
+    }
+  }
+
+  /**
+   * Obtains the CPU time used by this JVM.
+   * @return the process CPU time in nanoseconds, or 0 if unsupported.
+  */
+  private static long processCpuNanos() {
+    java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    return os instanceof com.sun.management.OperatingSystemMXBean ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0;
+  }
+}
@@ -0,0 +1,169 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.ClusterMember;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Code: Memory Benchmark   MemoryBenchmark.java
+ * Date: 19/10/26
+ *
+ * Compares the heap and off-heap auction stores (-Dauction.store) with
+ * millions of live auctions. For each store and auction count a fresh
+ * ClusterMember is populated and then bid on, and the benchmark reports
+ * the memory retained per auction (heap plus direct buffers, measured after
+ * a full collection) and the number, total and longest of the GC pauses
+ * during each phase. Run with a heap large enough for the heap store, e.g.
+ * -Xmx4g for 10M auctions.
+ *
+ * Configurable via system properties:
+ *   bench.memoryAuctions - comma separated auction counts (default 1000000,10000000)
+ *   bench.memoryBids     - the number of bids to place (default 1000000)
+*/
+public final class MemoryBenchmark {
+
+  private static final String[] STORES = {"heap", "offheap"};
+  private static final int USERS = 1000;
+
+  /**
+   * Runs the memory benchmark for both stores.
+   * @param harness the harness to run with.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness) throws Exception {
+    List<Integer> auctionCounts = BenchmarkSuite.parseInts(System.getProperty("bench.memoryAuctions", "1000000,10000000"));
+    int bids = Integer.getInteger("bench.memoryBids", 1000000);
+    String previous = System.getProperty("auction.store");
+    try {
+      for (int auctionCount : auctionCounts) {
+        for (String store : STORES) {
+          System.setProperty("auction.store", store);
+          benchmarkStore(harness, "store=" + store + ";auctions=" + auctionCount, auctionCount, bids);
+        }
+      }
+    } finally {
+      if (previous == null) {
+        System.clearProperty("auction.store");
+      } else {
+        System.setProperty("auction.store", previous);
+      }
+    }
+  }
+
+  /**
+   * Populates a cluster member using the current store and bids on it, reporting memory and GC pauses.
+   * @param harness the harness to run with.
+   * @param params the benchmark parameters.
+   * @param auctionCount the number of auctions to create.
+   * @param bids the number of bids to place.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkStore(BenchmarkHarness harness, String params, int auctionCount, int bids) throws Exception {
+    long heapBefore = usedHeap();
+    long directBefore = usedDirect();
+    final ClusterMember member = new ClusterMember();
+
+    final int[] created = new int[1];
+    GcPauses pauses = new GcPauses();
+    BenchmarkHarness.Result create = harness.measureFixed("memory.create", params, 1, auctionCount, (t) -> {
+      int seller = ThreadLocalRandom.current().nextInt(USERS) + 1;
+      member.createAuction(new AuctionItem(10, 20, "Bench item " + created[0]++ + " for sale by seller " + seller, seller));
+    });
+    pauses.stop();
+    long heap = usedHeap() - heapBefore;
+    long direct = usedDirect() - directBefore;
+    harness.report(pauses.addTo(create)
+        .with("heap_mb", heap >> 20)
+        .with("direct_mb", direct >> 20)
+        .with("bytes_per_auction", (heap + direct) / auctionCount));
+
+    final long base = System.nanoTime();
+    pauses = new GcPauses();
+    BenchmarkHarness.Result bid = harness.measureFixed("memory.bid", params, 1, bids, (t) -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      long auctionId = random.nextInt(auctionCount) + 1;
+      member.bid(new Bid(auctionId, random.nextInt(USERS) + 1, 30 + (System.nanoTime() - base) / 1000.0));
+    });
+    pauses.stop();
+    harness.report(pauses.addTo(bid));
+  }
+
+  /**
+   * Obtains the heap in use after a full collection.
+   * @return the used heap in bytes.
+  */
+  private static long usedHeap() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Obtains the memory held by direct byte buffers.
+   * @return the direct memory in bytes.
+  */
+  private static long usedDirect() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct")) {
+        return pool.getMemoryUsed();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Records the GC pauses between its creation and {@link #stop}, from the collectors' notifications.
+  */
+  private static final class GcPauses implements NotificationListener {
+
+    private int count;
+    private long totalMillis;
+    private long maxMillis;
+
+    private GcPauses() {
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+      }
+    }
+
+    @Override
+    public synchronized void handleNotification(javax.management.Notification notification, Object handback) {
+      if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long millis = info.getGcInfo().getDuration();
+        this.count++;
+        this.totalMillis += millis;
+        this.maxMillis = Math.max(this.maxMillis, millis);
+      }
+    }
+
+    /**
+     * Stops recording pauses.
+     * @throws Exception if a listener can't be removed.
+    */
+    private void stop() throws Exception {
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        ((NotificationEmitter) gc).removeNotificationListener(this);
+      }
+    }
+
+    /**
+     * Attaches the recorded pauses to a result.
+     * @param result the result.
+     * @return the same result.
+    */
+    private synchronized BenchmarkHarness.Result addTo(BenchmarkHarness.Result result) {
+      return result.with("gc_pauses", this.count).with("gc_total_ms", this.totalMillis).with("gc_max_ms", this.maxMillis);
+    }
+  }
+}
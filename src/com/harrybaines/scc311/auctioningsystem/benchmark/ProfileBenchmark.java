@@ -0,0 +1,98 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.client.User;
+import com.harrybaines.scc311.auctioningsystem.utils.ProfileStore;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Code: Profile Benchmark   ProfileBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures provisioning, opening and looking up user profiles in a
+ * ProfileStore, against the one serialised User file per user that clients
+ * used to keep. The file-per-user layout is measured with a smaller
+ * population, as it is far slower to provision.
+ *
+ * Configurable via system properties:
+ *   bench.profiles       - the number of users to provision into the store (default 1000000)
+ *   bench.legacyProfiles - the number of users to provision as files (default 10000)
+*/
+public final class ProfileBenchmark {
+
+  /**
+   * Runs the profile benchmarks.
+   * @param harness the harness to run with.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness) throws Exception {
+    int profiles = Integer.getInteger("bench.profiles", 1000000);
+    int legacyProfiles = Integer.getInteger("bench.legacyProfiles", 10000);
+    benchmarkStore(harness, profiles);
+    benchmarkFiles(harness, legacyProfiles);
+  }
+
+  /**
+   * Provisions users into a new store, reopens it and looks up random users.
+   * @param harness the harness to run with.
+   * @param count the number of users.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkStore(BenchmarkHarness harness, int count) throws Exception {
+    String params = "layout=store;users=" + count;
+    Path file = Files.createTempFile("bench-profiles", ".db");
+    final ProfileStore[] store = {ProfileStore.open(file.toString())};
+    harness.report(harness.measureFixed("profiles.provision", params, 1, 1, (t) ->
+        store[0].putAll(ProfileStore.generate(count, "bench")))
+        .with("users", count)
+        .with("file_mb", Files.size(file) >> 20));
+    store[0].close();
+    harness.report(harness.measureFixed("profiles.open", params, 1, 1, (t) -> {
+      store[0] = ProfileStore.open(file.toString());
+    }));
+    harness.report(harness.measureTimed("profiles.get", params, 1, (t) -> {
+      int n = ThreadLocalRandom.current().nextInt(count);
+      if (store[0].get("bench" + n + "@test") == null) {
+        throw new IllegalStateException("Missing profile " + n);
+      }
+    }));
+    store[0].close();
+    Files.delete(file);
+  }
+
+  /**
+   * Provisions users as one serialised User file each and looks up random users.
+   * @param harness the harness to run with.
+   * @param count the number of users.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmarkFiles(BenchmarkHarness harness, int count) throws Exception {
+    String params = "layout=files;users=" + count;
+    File dir = Files.createTempDirectory("bench-profile-files").toFile();
+    harness.report(harness.measureFixed("profiles.provision", params, 1, 1, (t) -> {
+      for (User user : ProfileStore.generate(count, "bench")) {
+        File userDir = new File(dir, user.getEmail());
+        userDir.mkdir();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(userDir, user.getEmail())))) {
+          out.writeObject(user);
+        }
+      }
+    }).with("users", count));
+    harness.report(harness.measureTimed("profiles.get", params, 1, (t) -> {
+      String email = "bench" + ThreadLocalRandom.current().nextInt(count) + "@test";
+      try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(new File(new File(dir, email), email)))) {
+        in.readObject();
+      }
+    }));
+    for (File userDir : dir.listFiles()) {
+      for (File f : userDir.listFiles()) {
+        f.delete();
+      }
+      userDir.delete();
+    }
+    dir.delete();
+  }
+}
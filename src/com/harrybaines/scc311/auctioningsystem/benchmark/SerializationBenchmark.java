@@ -0,0 +1,75 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.server.ServerResponse;
+
+import java.io.*;
+
+/**
+ * Code: Serialization Benchmark   SerializationBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures Java serialization and deserialization of the objects sent over
+ * RMI and JGroups for every request - AuctionItem and ServerResponse - and
+ * records their serialised sizes.
+*/
+public final class SerializationBenchmark {
+
+  /**
+   * Runs the serialization benchmarks.
+   * @param harness the harness to run with.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness) throws Exception {
+    AuctionItem item = new AuctionItem(10, 20, "Bench item", 1);
+    item.setId(1);
+    item.setHighestBid(new Bid(1, 2, 15));
+    ServerResponse response = new ServerResponse(IAuctionServer.BID_SUCCESSFUL, item);
+
+    benchmark(harness, "AuctionItem", item);
+    benchmark(harness, "ServerResponse", response);
+  }
+
+  /**
+   * Benchmarks serializing and deserializing a single object.
+   * @param harness the harness to run with.
+   * @param name the name of the object type.
+   * @param obj the object to serialise.
+   * @throws Exception if the benchmark fails.
+  */
+  private static void benchmark(BenchmarkHarness harness, String name, final Serializable obj) throws Exception {
+    final byte[] bytes = serialize(obj);
+    harness.report(harness.measureTimed("serialization.write", "type=" + name, 1, (t) -> serialize(obj))
+        .with("bytes", bytes.length));
+    harness.report(harness.measureTimed("serialization.read", "type=" + name, 1, (t) -> deserialize(bytes))
+        .with("bytes", bytes.length));
+  }
+
+  /**
+   * Serialises an object with a fresh ObjectOutputStream, as RMI does per call.
+   * @param obj the object to serialise.
+   * @return the serialised bytes.
+   * @throws IOException if the object can't be serialised.
+  */
+  static byte[] serialize(Object obj) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(obj);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserialises an object from a byte array.
+   * @param bytes the serialised bytes.
+   * @return the deserialised object.
+   * @throws Exception if the object can't be deserialised.
+  */
+  static Object deserialize(byte[] bytes) throws Exception {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return in.readObject();
+    }
+  }
+}
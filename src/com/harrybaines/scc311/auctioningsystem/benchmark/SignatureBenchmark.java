@@ -0,0 +1,74 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuthChallenge;
+import com.harrybaines.scc311.auctioningsystem.server.AuthSig;
+import com.harrybaines.scc311.auctioningsystem.server.ServerAuthResponse;
+import com.harrybaines.scc311.auctioningsystem.server.VerificationPipeline;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.List;
+
+/**
+ * Code: Signature Benchmark   SignatureBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures signing and verifying authentication challenges through the
+ * SecurityManager for each SignatureAlgorithm, as performed on every login,
+ * and signing with the server
+ * key obtained from its key file as the cluster members do. Verification
+ * through the front-end's VerificationPipeline is measured with eight
+ * callers per thread, to show the behaviour of a login burst.
+*/
+public final class SignatureBenchmark {
+
+  /**
+   * Runs the sign and verify benchmarks for every supported signature algorithm.
+   * @param harness the harness to run with.
+   * @param threadCounts the thread counts to benchmark.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness, List<Integer> threadCounts) throws Exception {
+    final AuthChallenge challenge = SecurityManager.getChallenge();
+    final String serverKeyPath = Constants.SERVER_DIR + Constants.SERVER_PRIVATE_KEY_STR;
+    final PrivateKey serverKey = SecurityManager.getPrivateKey(serverKeyPath);
+    final VerificationPipeline pipeline = new VerificationPipeline(Runtime.getRuntime().availableProcessors(), 256, 32);
+
+    for (SignatureAlgorithm algorithm : SignatureAlgorithm.values()) {
+      final KeyPair pair = algorithm.generateKeyPair();
+      final AuthSig authSig = new AuthSig(SecurityManager.signChallenge(challenge, pair.getPrivate()), challenge, pair.getPublic());
+      String params = "alg=" + algorithm.getSignatureName();
+
+      for (int threads : threadCounts) {
+        harness.report(harness.measureTimed("security.signChallenge", params, threads, (t) -> {
+          if (SecurityManager.signChallenge(challenge, pair.getPrivate()) == null) {
+            throw new IllegalStateException("Signing failed");
+          }
+        }).with("sigBytes", authSig.getSigBytes().length).with("pubKeyBytes", pair.getPublic().getEncoded().length));
+        harness.runTimed("security.verifySignature", params, threads, (t) -> {
+          if (!SecurityManager.verifySignature(authSig)) {
+            throw new IllegalStateException("Verification failed");
+          }
+        });
+        long rejectedBefore = pipeline.getRejectedCount();
+        harness.report(harness.measureTimed("security.verifyPipeline", params + ";callers=" + threads * 8, threads * 8, (t) -> {
+          ServerAuthResponse res = pipeline.verify(authSig);
+          if (!res.isSigVerified() && !res.isRetryLater()) {
+            throw new IllegalStateException("Verification failed");
+          }
+        }).with("rejected", pipeline.getRejectedCount() - rejectedBefore).with("maxDepth", pipeline.getMaxQueueDepth()));
+      }
+    }
+
+    for (int threads : threadCounts) {
+      harness.runTimed("security.signWithServerKey", "alg=" + SignatureAlgorithm.of(serverKey).getSignatureName(), threads, (t) -> {
+        if (SecurityManager.signChallenge(challenge, SecurityManager.getPrivateKey(serverKeyPath)) == null) {
+          throw new IllegalStateException("Signing failed");
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.ClusterMember;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Code: State Transfer Benchmark   StateTransferBenchmark.java
+ * Date: 19/10/26
+ *
+ * Measures the cost of JGroups state transfer on a ClusterMember, i.e.
+ * getState (serialising the auction map) and setState (deserialising and
+ * installing it), for a range of auction map sizes.
+*/
+public final class StateTransferBenchmark {
+
+  /**
+   * Runs the getState and setState benchmarks.
+   * @param harness the harness to run with.
+   * @param auctionCounts the auction map sizes to benchmark.
+   * @throws Exception if a benchmark fails.
+  */
+  public static void run(BenchmarkHarness harness, List<Integer> auctionCounts) throws Exception {
+    for (int auctionCount : auctionCounts) {
+      final ClusterMember source = ClusterMemberBenchmark.populate(auctionCount);
+      final ClusterMember target = new ClusterMember();
+      final ByteArrayOutputStream state = new ByteArrayOutputStream();
+      BenchmarkHarness.quietly(() -> source.getState(state));
+      final byte[] stateBytes = state.toByteArray();
+      long iterations = Math.max(5, 200000 / Math.max(1, auctionCount));
+      String params = "auctions=" + auctionCount;
+
+      harness.report(harness.measureFixed("clusterMember.getState", params, 1, iterations, (t) ->
+          source.getState(new ByteArrayOutputStream(stateBytes.length)))
+          .with("stateBytes", stateBytes.length));
+      harness.report(harness.measureFixed("clusterMember.setState", params, 1, iterations, (t) ->
+          target.setState(new ByteArrayInputStream(stateBytes)))
+          .with("stateBytes", stateBytes.length));
+    }
+  }
+}
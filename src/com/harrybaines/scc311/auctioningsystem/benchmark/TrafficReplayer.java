@@ -0,0 +1,296 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import com.harrybaines.scc311.auctioningsystem.server.*;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Code: Traffic Replayer   TrafficReplayer.java
+ * Date: 19/10/26
+ *
+ * Replays a traffic capture written by TrafficCapture against a local cluster
+ * at real speed (1), a multiple of real speed (e.g. 10) or as fast as possible
+ * (max), reporting latency per operation and how far behind schedule requests
+ * were issued.
+ *
+ * Replay is deterministic per auction: every call on the same auction is
+ * routed to the same replay thread and issued in capture order. Auction ids
+ * assigned during the capture are mapped to the ids assigned by the replay
+ * cluster, and each captured user keeps their captured user id.
+ * Captures hold no signatures, so each captured verifySignature is replayed
+ * as a login by one of a pool of users provisioned for the replay, signing
+ * a challenge fetched just beforehand; only the verifySignature is timed.
+ *
+ * Usage: TrafficReplayer <capture file> [1|N|max]
+ * Configurable via system properties:
+ *   replay.members - the number of cluster members (default 3)
+ *   replay.threads - the number of replay threads (default 32)
+ *   replay.users   - the number of users provisioned to log in as (default 16)
+*/
+public final class TrafficReplayer {
+
+  private static final int OPS = TrafficCapture.GET_ACTIVE_AUCTIONS_IF_MODIFIED + 1;
+  private static final String[] OP_NAMES = {"session", "attemptAuth", "signChallenge", "verifySignature",
+      "createAuction", "closeAuction", "bid", "getActiveAuctions", "getActiveAuctionsIfModified"};
+  private static final Scheduled POISON = new Scheduled(null, 0);
+
+  private final IAuctionServer server;
+  private final int threads;
+  private final double speed;
+  private final ConcurrentLongMap<Long> auctionIds = new ConcurrentLongMap<Long>();
+  private final ConcurrentLongMap<SessionToken> sessionTokens = new ConcurrentLongMap<SessionToken>();
+  private final SessionManager sessions = new SessionManager();
+  private final List<LoadGenerator.VirtualUser> users;
+  private final AtomicInteger nextUser = new AtomicInteger();
+  private final LatencyHistogram[][] latencies;
+  private final LatencyHistogram[] lag;
+  private final AtomicLong errors = new AtomicLong();
+
+  /**
+   * Constructor to initialise a new replayer.
+   * @param server the front-end server to replay against.
+   * @param threads the number of replay threads.
+   * @param speed the replay speed multiplier, or 0 for maximum speed.
+   * @param users the users captured logins are replayed as, provisioned before the front-end was started.
+  */
+  TrafficReplayer(IAuctionServer server, int threads, double speed, List<LoadGenerator.VirtualUser> users) {
+    this.server = server;
+    this.threads = threads;
+    this.speed = speed;
+    this.users = users;
+    this.latencies = new LatencyHistogram[threads][OPS];
+    this.lag = new LatencyHistogram[threads];
+    for (int t = 0; t < threads; t++) {
+      this.lag[t] = new LatencyHistogram();
+      for (int op = 0; op < OPS; op++) {
+        this.latencies[t][op] = new LatencyHistogram();
+      }
+    }
+  }
+
+  /**
+   * Replays every record in a capture file.
+   * @param filepath the path to the capture file.
+   * @return the wall-clock time taken in nanoseconds.
+   * @throws Exception if the capture can't be read.
+  */
+  public long replay(String filepath) throws Exception {
+    final CountDownLatch done = new CountDownLatch(this.threads);
+    final List<BlockingQueue<Scheduled>> queues = new ArrayList<BlockingQueue<Scheduled>>(this.threads);
+    for (int t = 0; t < this.threads; t++) {
+      final BlockingQueue<Scheduled> queue = new ArrayBlockingQueue<Scheduled>(4096);
+      final int worker = t;
+      queues.add(queue);
+      Thread thread = new Thread(() -> {
+        try {
+          Scheduled scheduled;
+          while ((scheduled = queue.take()) != POISON) {
+            this.lag[worker].record(System.nanoTime() - scheduled.due);
+            this.issue(scheduled.entry, worker);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      }, "replay-" + t);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    long begin = System.nanoTime();
+    long sessionBase = begin;
+    int roundRobin = 0;
+    try (TrafficCapture.Reader reader = new TrafficCapture.Reader(filepath)) {
+      TrafficCapture.Entry entry;
+      while ((entry = reader.next()) != null) {
+        if (entry.op == TrafficCapture.SESSION) {
+          sessionBase = System.nanoTime();
+          continue;
+        }
+        long due = this.speed == 0 ? System.nanoTime() : sessionBase + (long) (entry.nanos / this.speed);
+        waitUntil(due);
+        int worker = entry.auctionId != 0 ? (int) Math.floorMod(entry.auctionId, (long) this.threads) : roundRobin++ % this.threads;
+        queues.get(worker).put(new Scheduled(entry, due));
+      }
+    }
+    for (BlockingQueue<Scheduled> queue : queues) {
+      queue.put(POISON);
+    }
+    done.await();
+    return System.nanoTime() - begin;
+  }
+
+  /**
+   * A captured call along with the System.nanoTime it was scheduled to be issued at.
+  */
+  private static final class Scheduled {
+    private final TrafficCapture.Entry entry;
+    private final long due;
+
+    private Scheduled(TrafficCapture.Entry entry, long due) {
+      this.entry = entry;
+      this.due = due;
+    }
+  }
+
+  /**
+   * Issues a single captured call against the replay cluster and records its latency.
+   * @param entry the captured call.
+   * @param worker the index of the calling replay thread.
+  */
+  private void issue(TrafficCapture.Entry entry, int worker) {
+    long begin = System.nanoTime();
+    try {
+      Object result;
+      switch (entry.op) {
+        case TrafficCapture.ATTEMPT_AUTH:
+          result = this.server.attemptAuth();
+          break;
+        case TrafficCapture.SIGN_CHALLENGE:
+          result = this.server.signChallenge(new AuthChallenge(entry.challenge));
+          break;
+        case TrafficCapture.VERIFY_SIGNATURE: {
+          AuthSig userSig = this.signFreshChallenge();
+          if (userSig == null) {
+            result = null;
+            break;
+          }
+          begin = System.nanoTime();
+          result = this.server.verifySignature(userSig);
+          break;
+        }
+        case TrafficCapture.CREATE_AUCTION: {
+          ServerResponse res = this.server.createAuction(this.sessionFor(entry), new AuctionItem(entry.startPrice, entry.reservePrice, entry.desc, entry.userId));
+          if (res != null && res.getAuctionItem() != null && entry.auctionId != 0) {
+            this.auctionIds.put(entry.auctionId, res.getAuctionItem().getId());
+          }
+          result = res;
+          break;
+        }
+        case TrafficCapture.CLOSE_AUCTION:
+          result = this.server.closeAuction(this.sessionFor(entry), this.mapAuctionId(entry.auctionId), entry.userId);
+          break;
+        case TrafficCapture.BID:
+          result = this.server.bid(this.sessionFor(entry), new Bid(this.mapAuctionId(entry.auctionId), entry.userId, entry.amount));
+          break;
+        case TrafficCapture.GET_ACTIVE_AUCTIONS:
+          result = this.server.getActiveAuctions();
+          break;
+        case TrafficCapture.GET_ACTIVE_AUCTIONS_IF_MODIFIED:
+          result = this.server.getActiveAuctionsIfModified(entry.version);
+          break;
+        default:
+          return;
+      }
+      if (result == null) {
+        this.errors.incrementAndGet();
+      }
+    } catch (Exception e) {
+      this.errors.incrementAndGet();
+    }
+    this.latencies[worker][entry.op].record(System.nanoTime() - begin);
+  }
+
+  /**
+   * Maps an auction id from the capture to the id assigned during replay.
+   * @param capturedId the auction id seen in the capture.
+   * @return the replay auction id, or the captured id if it was never created during the capture.
+  */
+  private long mapAuctionId(long capturedId) {
+    Long replayId = this.auctionIds.get(capturedId);
+    return replayId != null ? replayId : capturedId;
+  }
+
+  /**
+   * Fetches a challenge from the front-end and signs it as the next of the replay's own users.
+   * @return the signature to verify, or null if the front-end issued no challenge.
+   * @throws java.rmi.RemoteException if an error occurs on the server.
+  */
+  private AuthSig signFreshChallenge() throws java.rmi.RemoteException {
+    LoadGenerator.VirtualUser vu = this.users.get(Math.floorMod(this.nextUser.getAndIncrement(), this.users.size()));
+    AuthChallenge challenge = this.server.attemptAuth();
+    return challenge != null ? new AuthSig(SecurityManager.signChallenge(challenge, vu.privKey), challenge, vu.pubKey, vu.user) : null;
+  }
+
+  /**
+   * Obtains a session token for a captured user. Captures don't contain tokens (or the
+   * users' private keys), so tokens are minted locally with the same server key material
+   * the replay front-end uses, for the user id the user had during the capture.
+   * @param entry the captured call.
+   * @return a valid session token for the captured user.
+  */
+  private SessionToken sessionFor(TrafficCapture.Entry entry) {
+    return this.sessionTokens.computeIfAbsent(entry.userId, (id) -> this.sessions.issue(entry.userEmail, (int) id));
+  }
+
+  /**
+   * Reports latency per operation and the issue lag behind schedule.
+   * @param harness the harness to report with.
+   * @param params the description of the replay parameters.
+   * @param elapsedNanos the wall-clock replay time.
+   * @throws Exception if the results can't be written.
+  */
+  public void report(BenchmarkHarness harness, String params, long elapsedNanos) throws Exception {
+    LatencyHistogram total = new LatencyHistogram();
+    for (int op = 1; op < OPS; op++) {
+      LatencyHistogram merged = new LatencyHistogram();
+      for (int t = 0; t < this.threads; t++) {
+        merged.merge(this.latencies[t][op]);
+      }
+      total.merge(merged);
+      if (merged.getCount() > 0) {
+        harness.report(new BenchmarkHarness.Result("replay." + OP_NAMES[op], params, this.threads, merged, elapsedNanos));
+      }
+    }
+    LatencyHistogram lagMerged = new LatencyHistogram();
+    for (LatencyHistogram histogram : this.lag) {
+      lagMerged.merge(histogram);
+    }
+    harness.report(new BenchmarkHarness.Result("replay.total", params, this.threads, total, elapsedNanos)
+        .with("errors", this.errors.get())
+        .with("lag_p99_us", lagMerged.getPercentile(99) / 1000.0));
+  }
+
+  /**
+   * Waits until System.nanoTime reaches a given time.
+   * @param due the time to wait until.
+  */
+  private static void waitUntil(long due) {
+    long remaining;
+    while ((remaining = due - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+
+  /**
+   * Main method to start a local cluster and replay a capture against it.
+   * @param args the capture file and optionally the speed (1, N or max).
+   * @throws Exception if the replay fails.
+  */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.out.println("Usage: TrafficReplayer <capture file> [1|N|max]");
+      return;
+    }
+    String speedArg = args.length > 1 ? args[1] : "1";
+    double speed = speedArg.equalsIgnoreCase("max") ? 0 : Double.parseDouble(speedArg);
+    int members = Integer.getInteger("replay.members", 3);
+    int threads = Integer.getInteger("replay.threads", 32);
+
+    List<LoadGenerator.VirtualUser> users = LoadGenerator.provisionUsers(Integer.getInteger("replay.users", 16), "replay");
+    IAuctionServer server = LocalCluster.start(members);
+    TrafficReplayer replayer = new TrafficReplayer(server, threads, speed, users);
+    long elapsed = replayer.replay(args[0]);
+    replayer.report(new BenchmarkHarness(), String.format("members=%d;speed=%s", members, speedArg), elapsed);
+    System.exit(0);
+  }
+}
@@ -0,0 +1,45 @@
+package com.harrybaines.scc311.auctioningsystem.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Code: Zipf Distribution   ZipfDistribution.java
+ * Date: 19/10/26
+ *
+ * Samples ranks 0..n-1 from a Zipf distribution, where rank k is chosen
+ * with probability proportional to 1 / (k + 1)^s. An exponent of 0 gives a
+ * uniform distribution; larger exponents concentrate traffic on a few hot keys.
+*/
+public final class ZipfDistribution {
+
+  private final double[] cdf;
+
+  /**
+   * Constructor to precompute the cumulative distribution.
+   * @param n the number of ranks.
+   * @param exponent the skew exponent (0 for uniform).
+  */
+  public ZipfDistribution(int n, double exponent) {
+    this.cdf = new double[n];
+    double total = 0;
+    for (int k = 0; k < n; k++) {
+      total += 1.0 / Math.pow(k + 1, exponent);
+      this.cdf[k] = total;
+    }
+    for (int k = 0; k < n; k++) {
+      this.cdf[k] /= total;
+    }
+  }
+
+  /**
+   * Samples a rank from the distribution.
+   * @param random the random number generator to use.
+   * @return a rank in the range 0..n-1.
+  */
+  public int sample(Random random) {
+    int index = Arrays.binarySearch(this.cdf, random.nextDouble());
+    int rank = index >= 0 ? index : -index - 1;
+    return Math.min(rank, this.cdf.length - 1);
+  }
+}
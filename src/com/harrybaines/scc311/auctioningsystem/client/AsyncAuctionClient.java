@@ -0,0 +1,382 @@
+package com.harrybaines.scc311.auctioningsystem.client;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.AuthChallenge;
+import com.harrybaines.scc311.auctioningsystem.server.AuthSig;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.BrowseResponse;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionListener;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.server.ServerAuthResponse;
+import com.harrybaines.scc311.auctioningsystem.server.ServerResponse;
+import com.harrybaines.scc311.auctioningsystem.server.SessionToken;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+
+import java.io.Closeable;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Code: Async Auction Client   AsyncAuctionClient.java
+ * Date: 19/10/26
+ *
+ * A library client for programs that want to browse, bid on several
+ * auctions and watch results at once, separate from the interactive menu.
+ * Every IAuctionServer operation returns a CompletableFuture straight away
+ * and the call itself runs on a bounded pool, so at most the pool size of
+ * calls are outstanding and at most the queue size wait behind them; a call
+ * beyond that fails with a RejectedExecutionException rather than queueing
+ * without limit.
+ *
+ * Each call has a deadline (the client's default unless set with
+ * {@link #withDeadline}), after which its future fails with a
+ * TimeoutException. Cancelling a future, or its deadline passing, fails it
+ * at once and removes the call if it hasn't started. A call already running
+ * is interrupted, which ends a wait between login attempts, but an RMI call
+ * can't be interrupted: it holds its pool thread until the front-end answers
+ * or the read timeout the front-end gives its clients' sockets passes (see
+ * TimeoutSocketFactory). An RMI call already sent may still be applied by
+ * the server; create, bid and close requests made with request ids can be
+ * resent safely to find out.
+ * Only the futures returned here can be cancelled - cancelling a dependent
+ * stage doesn't cancel the call it depends on.
+ *
+ * Configurable via system properties:
+ *   auction.async.threads  - the calls run at once (default 16)
+ *   auction.async.queue    - the calls that may wait for a thread (default 1024)
+ *   auction.async.deadline - the default deadline in milliseconds (default Constants.TIMEOUT, 0 for none)
+*/
+public class AsyncAuctionClient implements Closeable {
+
+  /**
+   * A blocking call to a front-end.
+  */
+  public interface Call<T> {
+    /**
+     * Makes the call.
+     * @param server the front-end.
+     * @return the result.
+     * @throws Exception if the call fails.
+    */
+    T call(IAuctionServer server) throws Exception;
+  }
+
+  private final IAuctionServer server;
+  private final ThreadPoolExecutor executor;
+  private final ScheduledExecutorService timer;  /* Fails calls at their deadline */
+  private final long deadlineNanos;  /* 0 for no deadline */
+  private final boolean owner;  /* Shuts the pool and timer down on close */
+
+  /**
+   * Constructor to initialise a client configured by the auction.async.* system properties.
+   * @param server the front-end to call.
+  */
+  public AsyncAuctionClient(IAuctionServer server) {
+    this(server, Integer.getInteger("auction.async.threads", 16), Integer.getInteger("auction.async.queue", 1024),
+        Duration.ofMillis(Long.getLong("auction.async.deadline", Constants.TIMEOUT)));
+  }
+
+  /**
+   * Constructor to initialise a client.
+   * @param server the front-end to call.
+   * @param threads the number of calls run at once.
+   * @param queueSize the number of calls that may wait for a thread.
+   * @param deadline the default deadline of each call (zero for none).
+  */
+  public AsyncAuctionClient(IAuctionServer server, int threads, int queueSize, Duration deadline) {
+    this.server = server;
+    this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), (r) -> {
+      Thread thread = new Thread(r, "async-auction-client");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.allowCoreThreadTimeOut(true);
+    this.timer = Executors.newSingleThreadScheduledExecutor((r) -> {
+      Thread thread = new Thread(r, "async-auction-client-deadlines");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.deadlineNanos = deadline.toNanos();
+    this.owner = true;
+  }
+
+  /**
+   * Constructor to initialise a view of another client with a different deadline.
+   * @param client the client whose front-end, pool and timer are shared.
+   * @param deadline the deadline of each call (zero for none).
+  */
+  private AsyncAuctionClient(AsyncAuctionClient client, Duration deadline) {
+    this.server = client.server;
+    this.executor = client.executor;
+    this.timer = client.timer;
+    this.deadlineNanos = deadline.toNanos();
+    this.owner = false;
+  }
+
+  /**
+   * Obtains a client sharing this client's pool whose calls have a different deadline.
+   * @param deadline the deadline of each call (zero for none).
+   * @return the client.
+  */
+  public AsyncAuctionClient withDeadline(Duration deadline) {
+    return new AsyncAuctionClient(this, deadline);
+  }
+
+  /**
+   * Authenticates a user with the same protocol as the interactive client: the server is
+   * verified with its public key, then the user signs the server's challenge.
+   * @param user the user, with their email and name.
+   * @param privKey the user's private key.
+   * @param pubKey the user's registered public key.
+   * @param serverPubKey the server's public key.
+   * @return a future completed with the user's session token, or null if either side couldn't be verified.
+  */
+  public CompletableFuture<SessionToken> login(User user, PrivateKey privKey, PublicKey pubKey, PublicKey serverPubKey) {
+    return this.submit((server) -> {
+      AuthChallenge clientChallenge = SecurityManager.getChallenge();
+      ServerAuthResponse res = server.signChallenge(clientChallenge);
+      if (res == null || !SecurityManager.verifySignature(new AuthSig(res.getSigBytes(), clientChallenge, serverPubKey, null, res.getAlgorithm()))) {
+        return null;
+      }
+      AuthChallenge serverChallenge = server.attemptAuth();
+      AuthSig userSig = new AuthSig(SecurityManager.signChallenge(serverChallenge, privKey), serverChallenge, pubKey, user);
+      ServerAuthResponse verified = server.verifySignature(userSig);
+      for (int attempt = 1; verified != null && verified.isRetryLater() && attempt < Constants.AUTH_RETRY_ATTEMPTS; attempt++) {
+        Thread.sleep((Constants.AUTH_RETRY_DELAY << attempt) + SecurityManager.RAND.nextInt(Constants.AUTH_RETRY_DELAY));
+        verified = server.verifySignature(userSig);
+      }
+      return verified != null && verified.isSigVerified() ? verified.getSessionToken() : null;
+    });
+  }
+
+  /**
+   * Requests an authentication challenge to sign.
+   * @return a future completed with the challenge.
+  */
+  public CompletableFuture<AuthChallenge> attemptAuth() {
+    return this.submit((server) -> server.attemptAuth());
+  }
+
+  /**
+   * Asks the server to sign a challenge, so the client can verify the server.
+   * @param challenge the authentication challenge to sign.
+   * @return a future completed with the server auth response.
+  */
+  public CompletableFuture<ServerAuthResponse> signChallenge(AuthChallenge challenge) {
+    return this.submit((server) -> server.signChallenge(challenge));
+  }
+
+  /**
+   * Sends a signed challenge for the server to verify, issuing a session token if it is a user's.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with the server auth response.
+  */
+  public CompletableFuture<ServerAuthResponse> verifySignature(AuthSig authSig) {
+    return this.submit((server) -> server.verifySignature(authSig));
+  }
+
+  /**
+   * Checks a session token from an earlier login is still valid.
+   * @param sessionToken the session token to check.
+   * @return a future completed with true if the session is still valid.
+  */
+  public CompletableFuture<Boolean> resumeSession(SessionToken sessionToken) {
+    return this.submit((server) -> server.resumeSession(sessionToken));
+  }
+
+  /**
+   * Creates an auction for a given item for sale.
+   * @param sessionToken the session token of the seller.
+   * @param auctionItem the auction item offered for sale.
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> createAuction(SessionToken sessionToken, AuctionItem auctionItem) {
+    return this.submit((server) -> server.createAuction(sessionToken, auctionItem));
+  }
+
+  /**
+   * Closes an auction with a request that can be safely resent.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close the auction.
+   * @param requestId the client generated id of the request (may be null).
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> closeAuction(SessionToken sessionToken, long auctionId, int userId, String requestId) {
+    return this.submit((server) -> server.closeAuction(sessionToken, auctionId, userId, requestId));
+  }
+
+  /**
+   * Places a bid on an auction.
+   * @param sessionToken the session token of the bidder.
+   * @param bid the Bid object.
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> bid(SessionToken sessionToken, Bid bid) {
+    return this.submit((server) -> server.bid(sessionToken, bid));
+  }
+
+  /**
+   * Retrieves all active auctions on offer.
+   * @return a future completed with the active auctions by id (null if the server is too busy).
+  */
+  public CompletableFuture<Map<Long, AuctionItem>> getActiveAuctions() {
+    return this.submit((server) -> server.getActiveAuctions());
+  }
+
+  /**
+   * Retrieves all active auctions only if they have changed since the version already held.
+   * @param version the version of the active auctions held (-1 if none).
+   * @return a future completed with the browse response.
+  */
+  public CompletableFuture<BrowseResponse> getActiveAuctionsIfModified(long version) {
+    return this.submit((server) -> server.getActiveAuctionsIfModified(version));
+  }
+
+  /**
+   * Looks up the profiles of users by id.
+   * @param userIds the ids of the users.
+   * @return a future completed with the users, in the same order, with null for any unknown id.
+  */
+  public CompletableFuture<User[]> getUsers(int[] userIds) {
+    return this.submit((server) -> server.getUsers(userIds));
+  }
+
+  /**
+   * Subscribes a callback to be notified when an auction is outbid or closed.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to subscribe to.
+   * @param listener the exported callback.
+   * @return a future completed with true if subscribed, false if the session is invalid.
+  */
+  public CompletableFuture<Boolean> subscribe(SessionToken sessionToken, long auctionId, IAuctionListener listener) {
+    return this.submit((server) -> server.subscribe(sessionToken, auctionId, listener));
+  }
+
+  /**
+   * Unsubscribes a callback from notifications on an auction.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to unsubscribe from.
+   * @param listener the exported callback.
+   * @return a future completed with true if unsubscribed, false if the session is invalid.
+  */
+  public CompletableFuture<Boolean> unsubscribe(SessionToken sessionToken, long auctionId, IAuctionListener listener) {
+    return this.submit((server) -> server.unsubscribe(sessionToken, auctionId, listener));
+  }
+
+  /**
+   * Runs any other call, or sequence of calls, on the pool with this client's deadline.
+   * @param call the call to make.
+   * @return a future completed with the call's result.
+  */
+  public <T> CompletableFuture<T> submit(Call<T> call) {
+    Task<T> task = new Task<T>(call);
+    try {
+      this.executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.completeExceptionally(e);
+      return task;
+    }
+    if (this.deadlineNanos > 0) {
+      ScheduledFuture<?> expiry = this.timer.schedule(() -> task.expire(this.deadlineNanos), this.deadlineNanos, TimeUnit.NANOSECONDS);
+      task.whenComplete((result, failure) -> expiry.cancel(false));
+    }
+    return task;
+  }
+
+  /**
+   * Stops the pool and timer, failing calls that haven't started. Calls made through views
+   * from {@link #withDeadline} share them, so closing a view does nothing.
+  */
+  @Override
+  public void close() {
+    if (!this.owner) {
+      return;
+    }
+    for (Runnable waiting : this.executor.shutdownNow()) {
+      ((Task<?>) waiting).completeExceptionally(new RejectedExecutionException("Client closed"));
+    }
+    this.timer.shutdownNow();
+  }
+
+  /**
+   * A call and the future of its result. Completing the future early, by cancelling it or at its
+   * deadline, takes the call off the queue or interrupts the thread running it, which frees the
+   * thread only if it is waiting between calls rather than in one.
+  */
+  private final class Task<T> extends CompletableFuture<T> implements Runnable {
+
+    private final Call<T> call;
+    private Thread runner;  /* The thread running the call, guarded by this */
+
+    private Task(Call<T> call) {
+      this.call = call;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (this.isDone()) {
+          return;
+        }
+        this.runner = Thread.currentThread();
+      }
+      try {
+        this.complete(this.call.call(AsyncAuctionClient.this.server));
+      } catch (Exception e) {
+        this.completeExceptionally(e);
+      } finally {
+        synchronized (this) {
+          this.runner = null;
+          // Don't let an interrupt meant for this call reach the next one
+          Thread.interrupted();
+        }
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        this.stop();
+      }
+      return cancelled;
+    }
+
+    /**
+     * Fails the call as it has passed its deadline.
+     * @param deadlineNanos the deadline it was given.
+    */
+    private void expire(long deadlineNanos) {
+      if (this.completeExceptionally(new TimeoutException("No response within " + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms"))) {
+        this.stop();
+      }
+    }
+
+    /**
+     * Takes the call off the queue if it hasn't started, otherwise interrupts it. An RMI call
+     * in progress ignores the interrupt and returns at the socket's read timeout.
+    */
+    private void stop() {
+      if (!AsyncAuctionClient.this.executor.remove(this)) {
+        synchronized (this) {
+          if (this.runner != null) {
+            this.runner.interrupt();
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.harrybaines.scc311.auctioningsystem.client;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionEvent;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionListener;
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.TimeoutSocketFactory;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Code: Auction Listener   AuctionListener.java
+ * Date: 19/10/26
+ *
+ * A remote callback exported by the client so the server can push
+ * notifications when the user is outbid, when their own auction receives
+ * a new highest bid, or when an auction they bid on closes. It is exported
+ * with timeouts, so a server never waits on this client for longer than
+ * Constants.TIMEOUT to deliver a notification.
+*/
+public class AuctionListener extends UnicastRemoteObject implements IAuctionListener {
+
+  private final User user;
+  private final Set<Long> ownAuctions = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructor to export a new listener for the given user.
+   * @param user the logged in user.
+   * @throws RemoteException if the listener can't be exported.
+  */
+  public AuctionListener(User user) throws RemoteException {
+    super(0, new TimeoutSocketFactory(Constants.TIMEOUT), null);
+    this.user = user;
+  }
+
+  /**
+   * Marks an auction as owned by this user, so bids on it are reported as new bids rather than outbids.
+   * @param auctionId the ID of the auction the user created.
+  */
+  public void addOwnAuction(long auctionId) {
+    this.ownAuctions.add(auctionId);
+  }
+
+  /**
+   * Displays a notification for a subscribed auction.
+   * @param event the event describing the change.
+   * @throws RemoteException if an error occurs on the client.
+  */
+  @Override
+  public void auctionUpdated(AuctionEvent event) throws RemoteException {
+    long auctionId = event.getAuctionId();
+    boolean own = this.ownAuctions.contains(auctionId);
+    boolean leading = this.user.getId() == event.getHighestBidderId();
+    if (event.getType() == AuctionEvent.BID_PLACED) {
+      if (own) {
+        System.out.format(Constants.NEW_BID_NOTIFICATION, auctionId, event.getDesc(), event.getHighestBid());
+      } else if (!leading) {
+        System.out.format(Constants.OUTBID_NOTIFICATION, auctionId, event.getDesc(), event.getHighestBid());
+      }
+    } else if (event.getType() == AuctionEvent.AUCTION_CLOSED && !own) {
+      if (leading && event.getStatusCode() == IAuctionServer.AUCTION_WON) {
+        System.out.format(Constants.WON_NOTIFICATION, auctionId, event.getDesc(), event.getHighestBid());
+      } else {
+        System.out.format(Constants.CLOSED_NOTIFICATION, auctionId, event.getDesc());
+      }
+    }
+  }
+}
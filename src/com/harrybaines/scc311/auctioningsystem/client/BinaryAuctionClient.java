@@ -0,0 +1,365 @@
+package com.harrybaines.scc311.auctioningsystem.client;
+
+import com.harrybaines.scc311.auctioningsystem.server.AuctionItem;
+import com.harrybaines.scc311.auctioningsystem.server.AuthChallenge;
+import com.harrybaines.scc311.auctioningsystem.server.AuthSig;
+import com.harrybaines.scc311.auctioningsystem.server.Bid;
+import com.harrybaines.scc311.auctioningsystem.server.BinaryProtocol;
+import com.harrybaines.scc311.auctioningsystem.server.BinaryProtocol.Frame;
+import com.harrybaines.scc311.auctioningsystem.server.BrowseResponse;
+import com.harrybaines.scc311.auctioningsystem.server.ServerAuthResponse;
+import com.harrybaines.scc311.auctioningsystem.server.ServerResponse;
+import com.harrybaines.scc311.auctioningsystem.server.SessionToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.harrybaines.scc311.auctioningsystem.server.BinaryProtocol.*;
+
+/**
+ * Code: Binary Auction Client   BinaryAuctionClient.java
+ * Date: 19/10/26
+ *
+ * A client for the BinaryEndpoint. Every request is sent on the same
+ * connection as soon as it is made and returns a future, completed by a
+ * reader thread when the response with its request id arrives, so any number
+ * of requests can be outstanding at once and completed out of order. The
+ * operations mirror IAuctionServer, except for subscriptions.
+*/
+public class BinaryAuctionClient implements Closeable {
+
+  private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+  private final SocketChannel channel;
+  private final Map<Integer, Pending<?>> pending = new ConcurrentHashMap<Integer, Pending<?>>();
+  private final AtomicInteger nextRequestId = new AtomicInteger();
+  private final Object writeLock = new Object();
+  private volatile IOException failure;  /* Set once the connection is lost */
+
+  /**
+   * Constructor to connect to a binary endpoint.
+   * @param host the host the endpoint runs on.
+   * @param port the port it listens on.
+   * @throws IOException if the connection can't be made.
+  */
+  public BinaryAuctionClient(String host, int port) throws IOException {
+    this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+    this.channel.socket().setTcpNoDelay(true);
+    Thread reader = new Thread(this::readResponses, "binary-client-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Requests an authentication challenge to sign.
+   * @return a future completed with the challenge.
+  */
+  public CompletableFuture<AuthChallenge> attemptAuth() {
+    return this.call(this.request(ATTEMPT_AUTH), BinaryProtocol::readChallenge);
+  }
+
+  /**
+   * Asks the server to sign a challenge, so the client can verify the server.
+   * @param challenge the authentication challenge to sign.
+   * @return a future completed with the server auth response.
+  */
+  public CompletableFuture<ServerAuthResponse> signChallenge(AuthChallenge challenge) {
+    Request request = this.request(SIGN_CHALLENGE);
+    try {
+      writeChallenge(request.frame, challenge);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readAuthResponse);
+  }
+
+  /**
+   * Sends a signed challenge for the server to verify, issuing a session token if it is a user's.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with the server auth response.
+  */
+  public CompletableFuture<ServerAuthResponse> verifySignature(AuthSig authSig) {
+    Request request = this.request(VERIFY_SIGNATURE);
+    try {
+      writeAuthSig(request.frame, authSig);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readAuthResponse);
+  }
+
+  /**
+   * Checks a session token from an earlier login is still valid.
+   * @param sessionToken the session token to check.
+   * @return a future completed with true if the session is still valid.
+  */
+  public CompletableFuture<Boolean> resumeSession(SessionToken sessionToken) {
+    Request request = this.request(RESUME_SESSION);
+    try {
+      writeSessionToken(request.frame, sessionToken);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, (in) -> in.get() != 0);
+  }
+
+  /**
+   * Creates an auction for a given item for sale.
+   * @param sessionToken the session token of the seller.
+   * @param auctionItem the auction item offered for sale.
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> createAuction(SessionToken sessionToken, AuctionItem auctionItem) {
+    Request request = this.request(CREATE_AUCTION);
+    try {
+      writeSessionToken(request.frame, sessionToken);
+      writeAuctionItem(request.frame, auctionItem);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readServerResponse);
+  }
+
+  /**
+   * Closes an auction with a request that can be safely resent.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close the auction.
+   * @param requestId the client generated id of the request (may be null).
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> closeAuction(SessionToken sessionToken, long auctionId, int userId, String requestId) {
+    Request request = this.request(CLOSE_AUCTION);
+    try {
+      writeSessionToken(request.frame, sessionToken);
+      request.frame.writeLong(auctionId);
+      request.frame.writeInt(userId);
+      writeString(request.frame, requestId);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readServerResponse);
+  }
+
+  /**
+   * Places a bid on an auction.
+   * @param sessionToken the session token of the bidder.
+   * @param bid the Bid object.
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> bid(SessionToken sessionToken, Bid bid) {
+    Request request = this.request(BID);
+    try {
+      writeSessionToken(request.frame, sessionToken);
+      writeBid(request.frame, bid);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readServerResponse);
+  }
+
+  /**
+   * Retrieves all active auctions on offer.
+   * @return a future completed with the active auctions by id (null if the server is too busy).
+  */
+  public CompletableFuture<Map<Long, AuctionItem>> getActiveAuctions() {
+    return this.call(this.request(GET_ACTIVE_AUCTIONS), BinaryProtocol::readAuctions);
+  }
+
+  /**
+   * Retrieves all active auctions only if they have changed since the version already held.
+   * @param version the version of the active auctions held (-1 if none).
+   * @return a future completed with the browse response.
+  */
+  public CompletableFuture<BrowseResponse> getActiveAuctionsIfModified(long version) {
+    Request request = this.request(GET_ACTIVE_AUCTIONS_IF_MODIFIED);
+    try {
+      request.frame.writeLong(version);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readBrowseResponse);
+  }
+
+  /**
+   * Looks up the profiles of users by id.
+   * @param userIds the ids of the users.
+   * @return a future completed with the users, in the same order, with null for any unknown id.
+  */
+  public CompletableFuture<User[]> getUsers(int[] userIds) {
+    Request request = this.request(GET_USERS);
+    try {
+      writeUserIds(request.frame, userIds);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return this.call(request, BinaryProtocol::readUsers);
+  }
+
+  /**
+   * Closes the connection, failing every request still awaiting a response.
+  */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Starts a new request.
+   * @param code the request code.
+   * @return the request, with its frame ready for the arguments.
+  */
+  private Request request(byte code) {
+    int requestId = this.nextRequestId.incrementAndGet();
+    return new Request(requestId, new Frame(requestId, code));
+  }
+
+  /**
+   * Sends a request without waiting for earlier requests to be answered.
+   * @param request the request, with its arguments written.
+   * @param decoder reads the result from the body of a successful response.
+   * @return a future completed with the result, or exceptionally if the request fails or the connection is lost.
+  */
+  private <T> CompletableFuture<T> call(Request request, Function<ByteBuffer, T> decoder) {
+    Pending<T> call = new Pending<T>(decoder);
+    this.pending.put(request.requestId, call);
+    try {
+      ByteBuffer frame = request.frame.finish();
+      synchronized (this.writeLock) {
+        while (frame.hasRemaining()) {
+          this.channel.write(frame);
+        }
+      }
+    } catch (IOException e) {
+      this.pending.remove(request.requestId);
+      call.future.completeExceptionally(this.failure != null ? this.failure : e);
+    }
+    // The connection may have been lost before the request was added
+    if (this.failure != null && this.pending.remove(request.requestId) != null) {
+      call.future.completeExceptionally(this.failure);
+    }
+    return call.future;
+  }
+
+  /**
+   * Reads responses until the connection is lost, completing the request each one answers.
+  */
+  private void readResponses() {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    try {
+      while (this.channel.read(buffer) >= 0) {
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+          int length = buffer.getInt(buffer.position());
+          if (length < HEADER_BYTES - 4 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid response frame of " + length + " bytes");
+          }
+          if (buffer.remaining() < 4 + length) {
+            if (buffer.capacity() < 4 + length) {
+              buffer = ByteBuffer.allocate(4 + length).put(buffer);
+              buffer.flip();
+            }
+            break;
+          }
+          int end = buffer.position() + 4 + length;
+          buffer.getInt();
+          int requestId = buffer.getInt();
+          byte code = buffer.get();
+          ByteBuffer body = buffer.slice();
+          body.limit(end - buffer.position());
+          buffer.position(end);
+          Pending<?> call = this.pending.remove(requestId);
+          if (call != null) {
+            call.complete(code, body);
+          }
+        }
+        buffer.compact();
+      }
+      this.fail(new IOException("Connection closed by the server"));
+    } catch (IOException e) {
+      this.fail(e);
+    }
+  }
+
+  /**
+   * Marks the connection as lost and fails every request awaiting a response.
+   * @param cause the reason the connection was lost.
+  */
+  private void fail(IOException cause) {
+    this.failure = cause;
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      // Already closed
+    }
+    for (Integer requestId : this.pending.keySet()) {
+      Pending<?> call = this.pending.remove(requestId);
+      if (call != null) {
+        call.future.completeExceptionally(cause);
+      }
+    }
+  }
+
+  /**
+   * Creates a future that has already failed.
+   * @param cause the failure.
+   * @return the failed future.
+  */
+  private static <T> CompletableFuture<T> failed(IOException cause) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    future.completeExceptionally(cause);
+    return future;
+  }
+
+  /**
+   * A request being built.
+  */
+  private static final class Request {
+
+    private final int requestId;
+    private final Frame frame;
+
+    private Request(int requestId, Frame frame) {
+      this.requestId = requestId;
+      this.frame = frame;
+    }
+  }
+
+  /**
+   * A request awaiting its response.
+  */
+  private static final class Pending<T> {
+
+    private final CompletableFuture<T> future = new CompletableFuture<T>();
+    private final Function<ByteBuffer, T> decoder;
+
+    private Pending(Function<ByteBuffer, T> decoder) {
+      this.decoder = decoder;
+    }
+
+    /**
+     * Completes the request from its response.
+     * @param code the response code.
+     * @param body the body of the response.
+    */
+    private void complete(byte code, ByteBuffer body) {
+      try {
+        if (code == OK) {
+          this.future.complete(this.decoder.apply(body));
+        } else {
+          this.future.completeExceptionally(new IOException("Request failed on the server: " + readString(body)));
+        }
+      } catch (RuntimeException e) {
+        this.future.completeExceptionally(e);
+      }
+    }
+  }
+}
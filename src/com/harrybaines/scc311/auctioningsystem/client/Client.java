@@ -2,13 +2,14 @@ package com.harrybaines.scc311.auctioningsystem.client;
 
 import com.harrybaines.scc311.auctioningsystem.utils.Constants;
 import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
-import com.harrybaines.scc311.auctioningsystem.utils.StateManager;
+import com.harrybaines.scc311.auctioningsystem.utils.ProfileStore;
 import com.harrybaines.scc311.auctioningsystem.server.*;
 import java.rmi.*;
 import java.io.*;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.security.*;
-import java.security.spec.*;
 
 /**
  * Code: Client Bidder/Seller   Client.java
@@ -22,40 +23,61 @@ import java.security.spec.*;
  *
  * Generate a new key pair:
  * SecurityManager.generateKeyPair(Constants.USERS_DIR_CLIENT + email, String.format(Constants.CLIENT_PUBLIC_KEY_PATH, email), String.format(Constants.CLIENT_PRIVATE_KEY_PATH, email));
+ * then register the public key with the server (copy it to Constants.USERS_DIR_SERVER + email first):
+ * UserKeyRegistry <Constants.USER_REGISTRY> <Constants.USERS_DIR_SERVER>
  * @author Harry Baines
  */
 public class Client {
 
-  private IAuctionServer auctionServer;  /* Server stub */
+  private FrontEndBalancer frontEnds;  /* Every front-end, balanced with failover */
+  private IAuctionServer auctionServer;  /* Balanced view of the front-ends */
+  private RequestHedger requests;  /* Sends create, bid and close requests with retries (and hedging if -Dauction.hedgeUrl is set) */
   private User clientUser;
+  private final ProfileStore profiles = ProfileStore.fromSystemProperty();  /* Saved user profiles, by email (null if unavailable) */
   private BufferedReader reader;
+  private Map<Long, AuctionItem> cachedAuctions = new java.util.HashMap<Long, AuctionItem>();  /* Last active auctions received */
+  private long cachedVersion = -1;  /* Version of the cached auctions (-1 if none) */
+  private AuctionListener listener;  /* Callback for pushed notifications (null if unavailable) */
+  private SessionToken session;  /* Session token issued by the server on authentication */
+  private Map<Integer, User> knownUsers = new java.util.HashMap<Integer, User>();  /* Profiles of sellers and bidders looked up so far, by user id */
 
   /**
    * Constructor to connect to the service on the rmiregistry.
+   * Requests are balanced across every front-end bound in the registry (or listed
+   * with -Dauction.frontEnds), failing over to another if one can't be reached.
    * The user can enter their email and using their private key they can authenticate with the auctioning server.
    * A menu of options is then displayed to the user.
    */
   public Client() {
     try {
-      // Get reference to remote object via the service in the rmiregistry
-      this.auctionServer = (IAuctionServer) Naming.lookup(Constants.REGISTRY_URL);
-      System.out.format(Constants.SERVER_CONNECTED_STR, Constants.REGISTRY_URL);
+      // Find every front-end via the service names in the rmiregistry
+      this.frontEnds = FrontEndBalancer.fromSystemProperty();
+      this.auctionServer = this.frontEnds.asServer();
+      System.out.format(Constants.SERVER_CONNECTED_STR, this.frontEnds);
+      String hedgeUrl = System.getProperty("auction.hedgeUrl");
+      IAuctionServer secondary = hedgeUrl != null ? (IAuctionServer) Naming.lookup(hedgeUrl) : null;
+      this.requests = new RequestHedger(this.auctionServer, secondary, Constants.REQUEST_RETRY_ATTEMPTS);
       // Create new input reader and get user details
       this.reader = new BufferedReader(new InputStreamReader(System.in));
       String email = null;
       while (true) {
         email = this.getStrInput("Email");
-        if (this.authenticate(email)) {
-          System.out.println(Constants.AUTH_SUCCESS);
-          break;
-        } else {
-          System.out.println(Constants.AUTH_FAILED);
+        // Load user state, so the server can show other users this user's name
+        this.clientUser = this.profiles != null ? this.profiles.get(email) : null;
+        try {
+          if (this.authenticate(email)) {
+            System.out.println(Constants.AUTH_SUCCESS);
+            break;
+          } else {
+            System.out.println(Constants.AUTH_FAILED);
+          }
+        } catch (RemoteException e) {
+          System.out.format(Constants.FRONT_ENDS_UNAVAILABLE + "\n", e.getMessage());
         }
       }
 
-      // Load user state
-      this.clientUser = (User) StateManager.loadObject(Constants.USERS_DIR_CLIENT + email + "/" + email);
       if (this.clientUser != null) {
+        this.exportListener();
         while (true) {
           this.displayMenu();
         }
@@ -76,14 +98,26 @@ public class Client {
   /**
    * Attempts to authenticate with the server (once verified)
    * by solving the server's challenge on the client.
+   * The whole protocol runs on one front-end, and is started again on another if that one fails.
    * @param email the email of the user to authenticate.
    * @return true if authenticating was successful, false otherwise.
-   * @throws RemoteException if an error occurs on the server.
+   * @throws RemoteException if no front-end could be reached.
    */
   private boolean authenticate(String email) throws RemoteException {
+    return this.frontEnds.call((server) -> this.authenticate(server, email));
+  }
+
+  /**
+   * Runs the authentication protocol with one front-end.
+   * @param server the front-end to authenticate with.
+   * @param email the email of the user to authenticate.
+   * @return true if authenticating was successful, false otherwise.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  private boolean authenticate(IAuctionServer server, String email) throws RemoteException {
     // First verify server
-    if (this.verifyServer()) {
-      AuthChallenge receivedChallenge = this.auctionServer.attemptAuth();
+    if (this.verifyServer(server)) {
+      AuthChallenge receivedChallenge = server.attemptAuth();
       // Sign received challenge with user's private key
       PrivateKey privKey = this.getPrivateKey(String.format(Constants.CLIENT_PRIVATE_KEY_PATH, email));
       if (privKey != null) {
@@ -91,8 +125,15 @@ public class Client {
         // Ensure server can verify this signature using user's public key + verify server response
         PublicKey userPubKey = SecurityManager.getPublicKey(String.format(Constants.CLIENT_PUBLIC_KEY_PATH, email));
         if (userPubKey != null) {
-          AuthSig clientSig = new AuthSig(userSigBytes, receivedChallenge, userPubKey);
-          ServerAuthResponse verifiedRes = this.auctionServer.verifySignature(clientSig);
+          AuthSig clientSig = this.clientUser != null
+              ? new AuthSig(userSigBytes, receivedChallenge, userPubKey, this.clientUser)
+              : new AuthSig(userSigBytes, receivedChallenge, userPubKey, email);
+          ServerAuthResponse verifiedRes = this.sendSignature(server, clientSig);
+          this.session = verifiedRes.getSessionToken();
+          // Auctions and bids refer to the user by the id the server assigned
+          if (this.session != null && this.clientUser != null) {
+            this.clientUser = new User(this.session.getUserId(), this.clientUser.getName(), this.clientUser.getEmail());
+          }
           return verifiedRes.isSigVerified();
         }
       }
@@ -101,21 +142,58 @@ public class Client {
     return false;
   }
 
+  /**
+   * Sends the user's signature to the server to verify, backing off and resending it
+   * while the server reports it is too busy.
+   * @param server the front-end that issued the challenge.
+   * @param clientSig the user's signature of the server's challenge.
+   * @return the server's final response.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  private ServerAuthResponse sendSignature(IAuctionServer server, AuthSig clientSig) throws RemoteException {
+    ServerAuthResponse verifiedRes = server.verifySignature(clientSig);
+    for (int attempt = 1; verifiedRes.isRetryLater() && attempt < Constants.AUTH_RETRY_ATTEMPTS; attempt++) {
+      System.out.println(Constants.AUTH_RETRY_LATER);
+      try {
+        Thread.sleep((Constants.AUTH_RETRY_DELAY << attempt) + SecurityManager.RAND.nextInt(Constants.AUTH_RETRY_DELAY));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      verifiedRes = server.verifySignature(clientSig);
+    }
+    return verifiedRes;
+  }
+
+  /**
+   * Renews the user's session after the server has rejected it. A token that is
+   * still valid is kept, otherwise the user is authenticated again.
+   * @return true if the user has a valid session, false otherwise.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  private boolean renewSession() throws RemoteException {
+    if (this.auctionServer.resumeSession(this.session)) {
+      return true;
+    }
+    return this.authenticate(this.clientUser.getEmail());
+  }
+
   /**
    * Verifies the server is genuine by challenging the server with a challenge
    * and verifies the returned signature using the server's public key.
+   * @param server the front-end to verify.
    * @return true if the server can be verified, false otherwise.
    * @throws RemoteException if an error occurs on the server.
    */
-  private boolean verifyServer() throws RemoteException {
+  private boolean verifyServer(IAuctionServer server) throws RemoteException {
     AuthChallenge clientChallenge = SecurityManager.getChallenge();
-    ServerAuthResponse res = this.auctionServer.signChallenge(clientChallenge);
+    ServerAuthResponse res = server.signChallenge(clientChallenge);
     byte[] servSigBytes = res.getSigBytes();
 
     // Verify signature using the server's public key
     PublicKey serverPubKey = SecurityManager.getPublicKey(Constants.CLIENT_DIR + Constants.SERVER_PUBLIC_KEY_STR);
     if (serverPubKey != null) {
-      boolean verifies = SecurityManager.verifySignature(new AuthSig(servSigBytes, clientChallenge, serverPubKey));
+      boolean verifies = SecurityManager.verifySignature(new AuthSig(servSigBytes, clientChallenge, serverPubKey, null, res.getAlgorithm()));
       if (verifies) {
         return true;
       }
@@ -130,15 +208,64 @@ public class Client {
    * @return the private key object.
    */
   private PrivateKey getPrivateKey(String filepath) {
-    try (FileInputStream keyfis = new FileInputStream(filepath)) {
-      byte[] encKey = new byte[keyfis.available()];
-      keyfis.read(encKey);
-      PKCS8EncodedKeySpec privKeySpec = new PKCS8EncodedKeySpec(encKey);
-      return KeyFactory.getInstance("DSA", "SUN").generatePrivate(privKeySpec);
-    } catch (Exception e) {
+    PrivateKey privKey = SecurityManager.getPrivateKey(filepath);
+    if (privKey == null) {
       System.out.println("Couldn't get user's private key");
     }
-    return null;
+    return privKey;
+  }
+
+  /**
+   * Exports a callback so the server can push outbid and auction closed notifications.
+   * If the callback can't be exported the client still works, without notifications.
+   */
+  private void exportListener() {
+    try {
+      this.listener = new AuctionListener(this.clientUser);
+    } catch (RemoteException e) {
+      System.out.println("Notifications unavailable: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Subscribes to notifications for an auction, if notifications are available.
+   * Each front-end only notifies of the bids and closes it handles, so the
+   * subscription is made on every front-end that can be reached.
+   * @param auctionId the ID of the auction to subscribe to.
+   */
+  private void subscribe(long auctionId) {
+    if (this.listener != null && this.frontEnds.callEach((server) -> server.subscribe(this.session, auctionId, this.listener)) == 0) {
+      System.out.println("Couldn't subscribe to auction " + auctionId + ": no front-end could be reached");
+    }
+  }
+
+  /**
+   * Looks up the profiles of any of the given users the client doesn't already know,
+   * since auctions and bids only carry user ids.
+   * @param userIds the ids of the users about to be shown.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  private void lookupUsers(Set<Integer> userIds) throws RemoteException {
+    int[] unknown = userIds.stream().filter((id) -> !this.knownUsers.containsKey(id)).mapToInt(Integer::intValue).toArray();
+    if (unknown.length == 0) {
+      return;
+    }
+    User[] users = this.auctionServer.getUsers(unknown);
+    for (int i = 0; users != null && i < users.length; i++) {
+      if (users[i] != null) {
+        this.knownUsers.put(unknown[i], users[i]);
+      }
+    }
+  }
+
+  /**
+   * Obtains the profile of a user looked up earlier.
+   * @param userId the id of the user.
+   * @return the user, or a placeholder naming the id if the profile couldn't be looked up.
+   */
+  private User getKnownUser(int userId) {
+    User user = this.knownUsers.get(userId);
+    return user != null ? user : new User(userId, "User " + userId, "user #" + userId);
   }
 
   // ================================================== //
@@ -148,30 +275,47 @@ public class Client {
   /**
    * Allows the user to browse the current list of autions
    * once the relevant server method has been invoked.
+   * Auctions are only downloaded if they have changed since the last browse,
+   * otherwise the locally cached auctions are displayed.
    */
   private void browseAuctions() {
     try {
-      Map<String, AuctionItem> activeAuctions = auctionServer.getActiveAuctions();
+      BrowseResponse res = auctionServer.getActiveAuctionsIfModified(this.cachedVersion);
+      if (res.isServerBusy()) {
+        // Show the auctions from the last browse, if there was one
+        System.out.println(Constants.SERVER_BUSY);
+        if (this.cachedVersion == -1) {
+          return;
+        }
+      } else if (res.isModified()) {
+        this.cachedAuctions = res.getAuctions();
+        this.cachedVersion = res.getVersion();
+      }
+      Map<Long, AuctionItem> activeAuctions = this.cachedAuctions;
       // Browse auctions validation
       if (activeAuctions.size() == 0) {
         System.out.println("\n  No Active Auctions");
       } else {
+        Set<Integer> sellerIds = new java.util.HashSet<Integer>();
+        for (AuctionItem auctionItem : activeAuctions.values()) {
+          sellerIds.add(auctionItem.getSellerId());
+        }
+        this.lookupUsers(sellerIds);
         // Display each auction in table format
         System.out.print(Constants.AUCTION_MENU_HEAD);
-        for (Map.Entry<String, AuctionItem> auction : activeAuctions.entrySet()) {
+        for (Map.Entry<Long, AuctionItem> auction : activeAuctions.entrySet()) {
           AuctionItem auctionItem = auction.getValue();
-          String auctionId = auction.getKey();
+          long auctionId = auction.getKey();
           Bid highestBid = auctionItem.getHighestBid();
           // Format bid output
-          String sellerEmail = auctionItem.getSeller().getEmail();
+          String sellerEmail = this.getKnownUser(auctionItem.getSellerId()).getEmail();
           String highestBidStr = highestBid != null ? "£" + String.format("%.2f", highestBid.getBidValue()) : "No Bids";
           System.out.format(" | %-36s | %-15s | £%-14.2f | %-15s | %-20s |\n", auctionId, auctionItem.getDesc(), auctionItem.getStartPrice(), highestBidStr, sellerEmail);
         }
         System.out.println(Constants.LINE);
       }
     } catch (RemoteException e) {
-      System.out.println("RemoteException browsing auctions in Client: " + e);
-      System.exit(0);
+      System.out.format(Constants.FRONT_ENDS_UNAVAILABLE + "\n", e.getMessage());
     }
   }
 
@@ -190,11 +334,26 @@ public class Client {
         return;
       }
       // Create the auction for this user
-      ServerResponse res = auctionServer.createAuction(new AuctionItem(startPrice, reservePrice, description, this.clientUser));
+      AuctionItem auctionItem = new AuctionItem(startPrice, reservePrice, description, this.clientUser.getId(), UUID.randomUUID().toString());
+      ServerResponse res = this.requests.send((server, retry) -> server.createAuction(this.session, auctionItem));
+      if (res != null && res.getStatusCode() == IAuctionServer.INVALID_SESSION && this.renewSession()) {
+        res = this.requests.send((server, retry) -> server.createAuction(this.session, auctionItem));
+      }
+      if (res == null) {
+        System.out.println(Constants.REQUEST_FAILED);
+        return;
+      }
+      if (res.getAuctionItem() == null) {
+        System.out.println(this.getResultString(res.getStatusCode()));
+        return;
+      }
       System.out.format(Constants.AUCTION_CREATED, res.getAuctionItem().getId());
+      if (this.listener != null) {
+        this.listener.addOwnAuction(res.getAuctionItem().getId());
+      }
+      this.subscribe(res.getAuctionItem().getId());
     } catch (RemoteException e) {
-      System.out.println("RemoteException creating auction in Client: " + e);
-      System.exit(0);
+      System.out.format(Constants.FRONT_ENDS_UNAVAILABLE + "\n", e.getMessage());
     }
   }
 
@@ -203,8 +362,16 @@ public class Client {
    */
   private void closeAuction() {
     try {
-      String auctionToClose = this.getStrInput("Auction ID");
-      ServerResponse res = auctionServer.closeAuction(auctionToClose, this.clientUser);
+      long auctionToClose = this.getLongInput("Auction ID");
+      String requestId = UUID.randomUUID().toString();
+      ServerResponse res = this.requests.send((server, retry) -> server.closeAuction(this.session, auctionToClose, this.clientUser.getId(), requestId));
+      if (res != null && res.getStatusCode() == IAuctionServer.INVALID_SESSION && this.renewSession()) {
+        res = this.requests.send((server, retry) -> server.closeAuction(this.session, auctionToClose, this.clientUser.getId(), requestId));
+      }
+      if (res == null) {
+        System.out.println(Constants.REQUEST_FAILED);
+        return;
+      }
       AuctionItem itemClosed = res.getAuctionItem();
       int statusCode = res.getStatusCode();
       // Couldn't close the auction
@@ -216,13 +383,13 @@ public class Client {
         if (highestBid == null) {
           System.out.println(String.format(this.getResultString(statusCode), auctionToClose));
         } else {
-          User bidder = highestBid.getBidder();
+          this.lookupUsers(java.util.Collections.singleton(highestBid.getBidderId()));
+          User bidder = this.getKnownUser(highestBid.getBidderId());
           System.out.println(String.format(this.getResultString(statusCode), bidder.getName(), bidder.getEmail(), itemClosed.getDesc(), itemClosed.getHighestBid().getBidValue()));
         }
       }
     } catch (RemoteException e) {
-      System.out.println("RemoteException closing auction in Client: " + e);
-      System.exit(0);
+      System.out.format(Constants.FRONT_ENDS_UNAVAILABLE + "\n", e.getMessage());
     }
   }
 
@@ -231,13 +398,23 @@ public class Client {
    */
   private void makeBid() {
     try {
-      String auctionId = this.getStrInput("Auction ID");
+      long auctionId = this.getLongInput("Auction ID");
       double bidAmount = this.getDoubleInput("Bid");
-      ServerResponse res = auctionServer.bid(new Bid(auctionId, this.clientUser, bidAmount));
+      Bid bid = new Bid(auctionId, this.clientUser.getId(), bidAmount, UUID.randomUUID().toString());
+      ServerResponse res = this.requests.send((server, retry) -> server.bid(this.session, retry ? bid.asRetry() : bid));
+      if (res != null && res.getStatusCode() == IAuctionServer.INVALID_SESSION && this.renewSession()) {
+        res = this.requests.send((server, retry) -> server.bid(this.session, retry ? bid.asRetry() : bid));
+      }
+      if (res == null) {
+        System.out.println(Constants.REQUEST_FAILED);
+        return;
+      }
       System.out.println(String.format(this.getResultString(res.getStatusCode()), auctionId));
+      if (res.getStatusCode() == IAuctionServer.BID_SUCCESSFUL) {
+        this.subscribe(auctionId);
+      }
     } catch (RemoteException e) {
-      System.out.println("RemoteException making bid in Client: " + e);
-      System.exit(0);
+      System.out.format(Constants.FRONT_ENDS_UNAVAILABLE + "\n", e.getMessage());
     }
   }
 
@@ -297,6 +474,32 @@ public class Client {
     return input;
   }
 
+  /**
+   * Obtains a whole number input, such as an auction id, from a BufferedReader reading from the command line.
+   * @param field the name of the field to input.
+   * @return a long input variable.
+   */
+  public long getLongInput(String field) {
+    long input = 0;
+    while (true) {
+      try {
+        System.out.print("Enter " + field + ": ");
+        input = Long.parseLong(this.reader.readLine().trim());
+        if (input <= 0) {
+          System.out.println("Please enter a value greater than 0");
+        } else {
+          break;
+        }
+      } catch (NumberFormatException e) {
+        System.out.println("Invalid input - please enter a whole number");
+      } catch (IOException e) {
+        System.out.println("IOException in Client: " + e);
+        System.exit(0);
+      }
+    }
+    return input;
+  }
+
   /**
    * Obtains a double input from a BufferedReader reading from the command line.
    * @param field the name of the field to input.
@@ -348,6 +551,10 @@ public class Client {
         return Constants.BID_SUCCESSFUL;
       case IAuctionServer.AUCTION_CLOSED:
         return Constants.AUCTION_CLOSED;
+      case IAuctionServer.INVALID_SESSION:
+        return Constants.INVALID_SESSION;
+      case IAuctionServer.SERVER_BUSY:
+        return Constants.SERVER_BUSY;
       default:
         return Constants.INVALID_CODE;
     }
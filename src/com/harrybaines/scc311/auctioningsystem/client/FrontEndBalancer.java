@@ -0,0 +1,417 @@
+package com.harrybaines.scc311.auctioningsystem.client;
+
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.UnknownHostException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Code: Front-End Balancer   FrontEndBalancer.java
+ * Date: 19/10/26
+ *
+ * Spreads a client's requests over every front-end it knows of and fails
+ * over between them. Front-ends are either listed with -Dauction.frontEnds
+ * (comma separated RMI URLs) or discovered in the registry, where the first
+ * is bound as AuctionServer and the others as AuctionServer-1, AuctionServer-2
+ * and so on. Sessions are signed with the server key, so a session from one
+ * front-end is accepted by all of them. Every front-end sends its creates,
+ * bids and closes to the cluster over the same totally ordered channel
+ * (see Constants.CLUSTER_CONFIG), so every member applies them in one order
+ * and duplicates are caught whichever front-end each copy went through. A
+ * login handshake is the exception: it must run on one front-end, as only
+ * that front-end knows the challenge it issued.
+ *
+ * Each request goes to the better of two front-ends picked at random, scored
+ * by their average recent latency times their requests in flight (power of
+ * two choices), which steers load away from a slow front-end without every
+ * client piling onto the same one. A front-end that fails is skipped for a
+ * backoff that doubles with each consecutive failure, and the request is
+ * sent to another, until every front-end has been tried.
+ *
+ * The registry lives in one front-end's process, so a front-end's stub is
+ * kept once looked up: after a failure it is looked up again if the
+ * registry can be reached, but otherwise the stub already held is used, so
+ * the surviving front-ends stay reachable while another re-creates the
+ * registry (see AuctionServer). Only a stub the front-end no longer exports
+ * (NoSuchObjectException) is dropped.
+*/
+public class FrontEndBalancer {
+
+  private static final Pattern SERVICE_NAME = Pattern.compile(Pattern.quote(Constants.SERVICE) + "(-\\d+)?");
+  private static final double LATENCY_WEIGHT = 0.2;  /* Weight of each new sample in the latency average */
+  private static final long MIN_BACKOFF = 1000;
+  private static final long MAX_BACKOFF = 30000;
+  private static final Set<String> MUTATING = new HashSet<String>(Arrays.asList("createAuction", "closeAuction", "bid"));
+
+  /**
+   * A call to make on one front-end.
+  */
+  public interface Call<T> {
+    /**
+     * Makes the call.
+     * @param server the front-end to call.
+     * @return the result.
+     * @throws RemoteException if an error occurs on the server.
+    */
+    T call(IAuctionServer server) throws RemoteException;
+  }
+
+  private final List<FrontEnd> frontEnds = new CopyOnWriteArrayList<FrontEnd>();
+  private final boolean discovered;  /* True if the front-ends were listed from the registry, so can be listed again */
+
+  /**
+   * Constructor to initialise a balancer over the given front-ends.
+   * @param urls the RMI URLs of the front-ends.
+   * @param discovered true if the URLs were listed from the registry.
+  */
+  public FrontEndBalancer(List<String> urls, boolean discovered) {
+    for (String url : urls) {
+      this.frontEnds.add(new FrontEnd(url));
+    }
+    this.discovered = discovered;
+  }
+
+  /**
+   * Creates a balancer over the front-ends named by -Dauction.frontEnds, or else those bound in the registry.
+   * @return the balancer.
+   * @throws RemoteException if the registry can't be listed or has no front-ends bound.
+  */
+  public static FrontEndBalancer fromSystemProperty() throws RemoteException {
+    String frontEnds = System.getProperty("auction.frontEnds");
+    if (frontEnds != null) {
+      List<String> urls = new ArrayList<String>();
+      for (String url : frontEnds.split(",")) {
+        if (!url.trim().isEmpty()) {
+          urls.add(url.trim());
+        }
+      }
+      return new FrontEndBalancer(urls, false);
+    }
+    List<String> urls = discover();
+    if (urls.isEmpty()) {
+      throw new RemoteException("No front-ends are bound in the registry at " + Constants.REGISTRY);
+    }
+    return new FrontEndBalancer(urls, true);
+  }
+
+  /**
+   * Lists the front-ends bound in the registry.
+   * @return their RMI URLs, in name order.
+   * @throws RemoteException if the registry can't be listed.
+  */
+  private static List<String> discover() throws RemoteException {
+    List<String> urls = new ArrayList<String>();
+    for (String name : LocateRegistry.getRegistry(Constants.REGISTRY_PORT).list()) {
+      if (SERVICE_NAME.matcher(name).matches()) {
+        urls.add(Constants.REGISTRY + name);
+      }
+    }
+    Collections.sort(urls);
+    return urls;
+  }
+
+  /**
+   * Obtains a view of the balanced front-ends as one server. Each call goes to the least
+   * loaded front-end and fails over to another if it can't be made. A create, bid or close
+   * is only resent elsewhere if it never reached the front-end, otherwise the failure is
+   * returned so the caller can retry it as a retry.
+   * @return the server.
+  */
+  public IAuctionServer asServer() {
+    InvocationHandler handler = (proxy, method, args) -> {
+      if (method.getDeclaringClass() == Object.class) {
+        switch (method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            return "Front-ends [" + this + "]";
+        }
+      }
+      return this.call((server) -> {
+        try {
+          return method.invoke(server, args);
+        } catch (InvocationTargetException e) {
+          if (e.getCause() instanceof RemoteException) {
+            throw (RemoteException) e.getCause();
+          }
+          throw new RemoteException("Call to " + method.getName() + " failed", e.getCause());
+        } catch (IllegalAccessException e) {
+          throw new RemoteException("Call to " + method.getName() + " failed", e);
+        }
+      }, !MUTATING.contains(method.getName()));
+    };
+    return (IAuctionServer) Proxy.newProxyInstance(IAuctionServer.class.getClassLoader(), new Class<?>[]{IAuctionServer.class}, handler);
+  }
+
+  /**
+   * Makes a call on the least loaded front-end, making it again on another if it fails.
+   * The call may make several requests, which all go to the same front-end.
+   * @param call the call to make, which must be safe to repeat.
+   * @return the result.
+   * @throws RemoteException if the call failed on every front-end.
+  */
+  public <T> T call(Call<T> call) throws RemoteException {
+    return this.call(call, true);
+  }
+
+  /**
+   * Makes a call on every reachable front-end, such as a subscription each of them needs.
+   * @param call the call to make.
+   * @return the number of front-ends the call was made on.
+  */
+  public int callEach(Call<?> call) {
+    int called = 0;
+    for (FrontEnd frontEnd : this.frontEnds) {
+      try {
+        frontEnd.call(call);
+        called++;
+      } catch (RemoteException e) {
+        // Marked as down, the others may still be reachable
+      }
+    }
+    return called;
+  }
+
+  /**
+   * Makes a call, failing over between front-ends.
+   * @param call the call to make.
+   * @param repeatable true if the call may be made again after a failure that could have reached the front-end.
+   * @return the result.
+   * @throws RemoteException if the call failed on every front-end tried.
+  */
+  private <T> T call(Call<T> call, boolean repeatable) throws RemoteException {
+    Set<FrontEnd> tried = new HashSet<FrontEnd>();
+    RemoteException failure = null;
+    for (int pass = 0; pass < 2; pass++) {
+      FrontEnd frontEnd;
+      while ((frontEnd = this.pick(tried)) != null) {
+        tried.add(frontEnd);
+        try {
+          return frontEnd.call(call);
+        } catch (RemoteException e) {
+          failure = e;
+          if (!repeatable && !isUndelivered(e)) {
+            throw e;
+          }
+        }
+      }
+      // Every front-end known has failed, so look for any bound since
+      if (!this.discovered || !this.refresh()) {
+        break;
+      }
+    }
+    throw failure != null ? failure : new RemoteException("No front-ends to call");
+  }
+
+  /**
+   * Picks a front-end by power of two choices among those not backing off,
+   * or the one whose backoff ends soonest if they all are.
+   * @param tried the front-ends already tried for this call.
+   * @return the front-end, or null if every one has been tried.
+  */
+  private FrontEnd pick(Set<FrontEnd> tried) {
+    long now = System.currentTimeMillis();
+    List<FrontEnd> up = new ArrayList<FrontEnd>();
+    FrontEnd soonest = null;
+    for (FrontEnd frontEnd : this.frontEnds) {
+      if (tried.contains(frontEnd)) {
+        continue;
+      }
+      if (frontEnd.downUntil <= now) {
+        up.add(frontEnd);
+      } else if (soonest == null || frontEnd.downUntil < soonest.downUntil) {
+        soonest = frontEnd;
+      }
+    }
+    if (up.isEmpty()) {
+      return soonest;
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    FrontEnd first = up.get(random.nextInt(up.size()));
+    if (up.size() == 1) {
+      return first;
+    }
+    FrontEnd second = up.get(random.nextInt(up.size() - 1));
+    if (second == first) {
+      second = up.get(up.size() - 1);
+    }
+    return first.score() <= second.score() ? first : second;
+  }
+
+  /**
+   * Adds any front-ends bound in the registry since it was last listed.
+   * @return true if a front-end was added.
+  */
+  private synchronized boolean refresh() {
+    Set<String> known = new HashSet<String>();
+    for (FrontEnd frontEnd : this.frontEnds) {
+      known.add(frontEnd.url);
+    }
+    boolean added = false;
+    try {
+      for (String url : discover()) {
+        if (known.add(url)) {
+          this.frontEnds.add(new FrontEnd(url));
+          added = true;
+        }
+      }
+    } catch (RemoteException e) {
+      // The registry went down with the front-end that hosted it
+    }
+    return added;
+  }
+
+  /**
+   * Checks if a failed call certainly never reached the front-end, so can be made elsewhere.
+   * @param e the failure.
+   * @return true if the call wasn't delivered.
+  */
+  private static boolean isUndelivered(RemoteException e) {
+    return e instanceof ConnectException || e instanceof ConnectIOException
+        || e instanceof NoSuchObjectException || e instanceof UnknownHostException;
+  }
+
+  /**
+   * Obtains the number of front-ends known.
+   * @return the number of front-ends.
+  */
+  public int size() {
+    return this.frontEnds.size();
+  }
+
+  /**
+   * Obtains the URLs of the front-ends known.
+   * @return the URLs, comma separated.
+  */
+  @Override
+  public String toString() {
+    StringBuilder urls = new StringBuilder();
+    for (FrontEnd frontEnd : this.frontEnds) {
+      urls.append(urls.length() > 0 ? ", " : "").append(frontEnd.url);
+    }
+    return urls.toString();
+  }
+
+  /**
+   * A front-end and what has been observed of it.
+  */
+  private static final class FrontEnd {
+
+    private final String url;
+    private volatile IAuctionServer stub;  /* Looked up on first use, dropped only once no longer exported */
+    private volatile boolean recheck;  /* True after a failure, to look the stub up again if the registry can be reached */
+    private volatile double latency;  /* Average recent latency in nanoseconds (0 until measured) */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long downUntil;  /* Time the backoff after a failure ends */
+    private int failures;  /* Consecutive failures */
+
+    private FrontEnd(String url) {
+      this.url = url;
+    }
+
+    /**
+     * Makes a call on this front-end, recording its latency or failure.
+     * @param call the call to make.
+     * @return the result.
+     * @throws RemoteException if the front-end can't be looked up or the call fails.
+    */
+    private <T> T call(Call<T> call) throws RemoteException {
+      this.inFlight.incrementAndGet();
+      long start = System.nanoTime();
+      try {
+        T result = call.call(this.lookup());
+        this.succeeded(System.nanoTime() - start);
+        return result;
+      } catch (RemoteException e) {
+        this.failed(e);
+        throw e;
+      } finally {
+        this.inFlight.decrementAndGet();
+      }
+    }
+
+    /**
+     * Obtains the stub of this front-end, looking it up if there is none or it has failed since last looked up.
+     * @return the stub.
+     * @throws RemoteException if there is no stub and the front-end isn't bound or the registry can't be reached.
+    */
+    private IAuctionServer lookup() throws RemoteException {
+      IAuctionServer stub = this.stub;
+      if (stub != null && !this.recheck) {
+        return stub;
+      }
+      this.recheck = false;
+      try {
+        IAuctionServer found = (IAuctionServer) Naming.lookup(this.url);
+        this.stub = found;
+        return found;
+      } catch (NotBoundException | RemoteException e) {
+        // The registry may have gone down with another front-end, or not yet have it bound again
+        if (stub != null) {
+          return stub;
+        }
+        if (e instanceof RemoteException) {
+          throw (RemoteException) e;
+        }
+        throw new NoSuchObjectException("No front-end bound at " + this.url);
+      } catch (MalformedURLException e) {
+        throw new UnknownHostException("Malformed front-end URL " + this.url, e);
+      }
+    }
+
+    /**
+     * Scores the load on this front-end, lower being better.
+     * @return the score.
+    */
+    private double score() {
+      return this.latency * (this.inFlight.get() + 1);
+    }
+
+    /**
+     * Records a successful call, adding its latency to the average.
+     * @param nanos the latency in nanoseconds.
+    */
+    private synchronized void succeeded(long nanos) {
+      this.latency = this.latency == 0 ? nanos : this.latency + LATENCY_WEIGHT * (nanos - this.latency);
+      this.failures = 0;
+      this.downUntil = 0;
+    }
+
+    /**
+     * Records a failed call, backing off from this front-end and checking its stub afterwards.
+     * @param e the failure.
+    */
+    private synchronized void failed(RemoteException e) {
+      if (e instanceof NoSuchObjectException) {
+        this.stub = null;
+      } else {
+        this.recheck = true;
+      }
+      this.failures++;
+      this.downUntil = System.currentTimeMillis() + Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(this.failures - 1, 5));
+    }
+  }
+}
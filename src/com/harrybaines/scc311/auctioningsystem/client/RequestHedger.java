@@ -0,0 +1,270 @@
+package com.harrybaines.scc311.auctioningsystem.client;
+
+import com.harrybaines.scc311.auctioningsystem.server.IAuctionServer;
+import com.harrybaines.scc311.auctioningsystem.server.ServerResponse;
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Code: Request Hedger   RequestHedger.java
+ * Date: 19/10/26
+ *
+ * Sends mutating requests (create, bid, close) with retries and, if a
+ * second front-end is configured, hedging. Every such request carries a
+ * client generated request id, and the cluster answers a repeated id with
+ * the original response. The cluster's channel is totally ordered, so every
+ * member sees the copies of a request in the same order, applies the first
+ * and answers the others from it, even when they went through different
+ * front-ends. Resending is therefore always safe.
+ *
+ * A request that fails, gets no response or finds the server busy is
+ * resent after an exponential backoff, up to the configured number of
+ * attempts. If a request to the primary front-end takes longer than the
+ * auction.hedge.percentile (default 95th) percentile of recent requests,
+ * the same request is also sent to the secondary front-end and whichever
+ * answers first is used, which cuts the latency tail caused by a single
+ * slow front-end or a lost reply. A copy that fails, or finds its
+ * front-end busy, leaves the other to answer, so the request only fails if
+ * both copies do.
+*/
+public class RequestHedger {
+
+  private static final int SAMPLES = 256;
+  private static final int MIN_SAMPLES = 20;  /* Don't hedge until the percentile means something */
+
+  /**
+   * A request to send to a front-end.
+  */
+  public interface Request {
+    /**
+     * Sends the request.
+     * @param server the front-end to send it to.
+     * @param retry true if the request may already have been applied.
+     * @return the front-end's response.
+     * @throws RemoteException if an error occurs on the server.
+    */
+    ServerResponse send(IAuctionServer server, boolean retry) throws RemoteException;
+  }
+
+  private final IAuctionServer primary;
+  private final IAuctionServer secondary;
+  private final int attempts;
+  private final double percentile = Double.parseDouble(System.getProperty("auction.hedge.percentile", "95"));
+  private final long[] latencies = new long[SAMPLES];  /* Recent primary latencies in nanoseconds, a ring buffer */
+  private int samples;
+  private final LongAdder hedged = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final ExecutorService executor = Executors.newCachedThreadPool((r) -> {
+    Thread thread = new Thread(r, "request-hedger");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Constructor to initialise a hedger.
+   * @param primary the front-end to send requests to.
+   * @param secondary the front-end to hedge slow requests to, or null to only retry.
+   * @param attempts the maximum number of times to send each request.
+  */
+  public RequestHedger(IAuctionServer primary, IAuctionServer secondary, int attempts) {
+    this.primary = primary;
+    this.secondary = secondary;
+    this.attempts = attempts;
+  }
+
+  /**
+   * Sends a request, retrying and hedging as needed.
+   * @param request the request to send.
+   * @return the response, or the last busy or null response if every attempt failed.
+   * @throws RemoteException if the last attempt failed with an error.
+  */
+  public ServerResponse send(Request request) throws RemoteException {
+    ServerResponse res = null;
+    RemoteException failure = null;
+    for (int attempt = 0; attempt < this.attempts; attempt++) {
+      if (attempt > 0) {
+        this.retried.increment();
+        try {
+          Thread.sleep((Constants.REQUEST_RETRY_DELAY << attempt) + SecurityManager.RAND.nextInt(Constants.REQUEST_RETRY_DELAY));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      try {
+        res = this.sendHedged(request, attempt > 0);
+        failure = null;
+        if (res != null && res.getStatusCode() != IAuctionServer.SERVER_BUSY) {
+          return res;
+        }
+      } catch (RemoteException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return res;
+  }
+
+  /**
+   * Sends a request to the primary front-end, hedging it to the secondary if it is slow.
+   * @param request the request to send.
+   * @param retry true if the request may already have been applied.
+   * @return the first response received.
+   * @throws RemoteException if the request failed.
+  */
+  private ServerResponse sendHedged(Request request, boolean retry) throws RemoteException {
+    long threshold = this.secondary != null ? this.hedgeThreshold() : -1;
+    if (threshold < 0) {
+      long start = System.nanoTime();
+      ServerResponse res = request.send(this.primary, retry);
+      this.record(System.nanoTime() - start);
+      return res;
+    }
+    long start = System.nanoTime();
+    CompletableFuture<ServerResponse> first = this.call(this.primary, request, retry);
+    try {
+      ServerResponse res = first.get(threshold, TimeUnit.NANOSECONDS);
+      this.record(System.nanoTime() - start);
+      return res;
+    } catch (TimeoutException e) {
+      this.hedged.increment();
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    // The primary may still apply the request, so the hedge is sent as a retry
+    CompletableFuture<ServerResponse> second = this.call(this.secondary, request, true);
+    first.thenRun(() -> this.record(System.nanoTime() - start));
+    try {
+      return firstAnswer(first, second).get(2L * Constants.TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } catch (TimeoutException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Combines a request and its hedge into the first answer either gives: a response that isn't
+   * busy. Failing, busy or null responses wait for the other copy.
+   * @param first the future response of the primary front-end.
+   * @param second the future response of the secondary front-end.
+   * @return a future completed with the first answer, else a busy or null response if either
+   *         responded, and failed only if both requests failed.
+  */
+  private static CompletableFuture<ServerResponse> firstAnswer(CompletableFuture<ServerResponse> first, CompletableFuture<ServerResponse> second) {
+    CompletableFuture<ServerResponse> result = new CompletableFuture<ServerResponse>();
+    AtomicInteger outstanding = new AtomicInteger(2);
+    AtomicBoolean responded = new AtomicBoolean();
+    AtomicReference<ServerResponse> busy = new AtomicReference<ServerResponse>();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    BiConsumer<ServerResponse, Throwable> settle = (res, e) -> {
+      if (e == null && res != null && res.getStatusCode() != IAuctionServer.SERVER_BUSY) {
+        result.complete(res);
+        return;
+      }
+      if (e != null) {
+        failure.compareAndSet(null, e);
+      } else {
+        responded.set(true);
+        busy.compareAndSet(null, res);
+      }
+      if (outstanding.decrementAndGet() == 0) {
+        if (responded.get()) {
+          result.complete(busy.get());
+        } else {
+          result.completeExceptionally(failure.get());
+        }
+      }
+    };
+    first.whenComplete(settle);
+    second.whenComplete(settle);
+    return result;
+  }
+
+  /**
+   * Sends a request on the hedger's executor.
+   * @param server the front-end to send it to.
+   * @param request the request to send.
+   * @param retry true if the request may already have been applied.
+   * @return the future response.
+  */
+  private CompletableFuture<ServerResponse> call(IAuctionServer server, Request request, boolean retry) {
+    CompletableFuture<ServerResponse> future = new CompletableFuture<ServerResponse>();
+    this.executor.execute(() -> {
+      try {
+        future.complete(request.send(server, retry));
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Converts the failure of an asynchronous request back into the exception the request threw.
+   * @param e the wrapped failure.
+   * @return the remote exception to rethrow.
+  */
+  private static RemoteException unwrap(ExecutionException e) {
+    Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+    if (cause instanceof RemoteException) {
+      return (RemoteException) cause;
+    }
+    return new RemoteException("Request failed", cause);
+  }
+
+  /**
+   * Records the latency of a request to the primary front-end.
+   * @param nanos the latency in nanoseconds.
+  */
+  private synchronized void record(long nanos) {
+    this.latencies[this.samples++ % SAMPLES] = nanos;
+  }
+
+  /**
+   * Obtains the latency beyond which a request is hedged.
+   * @return the threshold in nanoseconds, or -1 if there aren't enough samples yet.
+  */
+  private synchronized long hedgeThreshold() {
+    int count = Math.min(this.samples, SAMPLES);
+    if (count < MIN_SAMPLES) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(this.latencies, count);
+    Arrays.sort(sorted);
+    return sorted[Math.min(count - 1, (int) (count * this.percentile / 100))];
+  }
+
+  /**
+   * Obtains the number of requests hedged to the secondary front-end.
+   * @return the number of hedged requests.
+  */
+  public long getHedgedCount() {
+    return this.hedged.sum();
+  }
+
+  /**
+   * Obtains the number of requests resent after a failure.
+   * @return the number of retries.
+  */
+  public long getRetriedCount() {
+    return this.retried.sum();
+  }
+}
@@ -10,15 +10,13 @@ package com.harrybaines.scc311.auctioningsystem.client;
  * @author Harry Baines
 */
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
 public class User implements java.io.Serializable {
-  
+
+  private static final long serialVersionUID = 723445362902190517L;  /* Unchanged so saved profiles still load */
+
   private String name;
   private String email;
-  private String id;
+  private int userId;  /* 0 until the server assigns one at authentication */
 
   /**
    * Constructor to initialise a new user object.
@@ -26,17 +24,27 @@ public class User implements java.io.Serializable {
    * @param email the email of the user.
   */
   public User(String name, String email) {
-    this.id = UUID.randomUUID().toString();
+    this(0, name, email);
+  }
+
+  /**
+   * Constructor to initialise a user known to the server.
+   * @param userId the numeric id assigned to the user by the server.
+   * @param name the name of the user.
+   * @param email the email of the user.
+  */
+  public User(int userId, String name, String email) {
+    this.userId = userId;
     this.name = name;
     this.email = email;
   }
 
   /**
    * Accessor to obtain the id of this user.
-   * @return the id of this user.
+   * @return the numeric id assigned by the server, or 0 if the user hasn't authenticated.
   */
-  public String getId() {
-    return this.id;
+  public int getId() {
+    return this.userId;
   }
 
   /**
@@ -54,4 +62,4 @@ public class User implements java.io.Serializable {
   public String getEmail() {
     return this.email;
   }
-}
\ No newline at end of file
+}
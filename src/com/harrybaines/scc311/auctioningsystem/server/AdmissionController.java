@@ -0,0 +1,165 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code: Admission Controller   AdmissionController.java
+ * Date: 19/10/26
+ *
+ * Limits the number of requests of each class a front-end sends to the
+ * cluster at once. A request waits for a slot up to its class's queueing
+ * deadline and is then turned away with SERVER_BUSY, so when the cluster
+ * slows down RMI threads stop piling up behind five second cluster calls
+ * and the front-end degrades by shedding load instead of running out of
+ * threads and memory. Bids have the most slots and the longest deadline,
+ * and browse requests are turned away immediately while any bid is
+ * waiting for a slot, so bid latency stays bounded under overload.
+ *
+ * A request waits as a future rather than a thread: it is queued, in
+ * arrival order, until a released slot is handed to it or a timer turns it
+ * away at its deadline, so callers such as the BinaryEndpoint's workers are
+ * never held while the front-end is overloaded.
+ *
+ * Each class is configured with -Dauction.admit.<class>.limit and
+ * -Dauction.admit.<class>.waitMillis, e.g. auction.admit.browse.limit;
+ * -Dauction.admit=false disables admission control.
+*/
+public class AdmissionController {
+
+  /**
+   * The classes of request, with their default limit and queueing deadline.
+  */
+  public enum Operation {
+    AUTH(32, 200),
+    BROWSE(16, 50),
+    BID(64, 1000),
+    MUTATE(16, 500);  /* create and close auction */
+
+    private final int defaultLimit;
+    private final long defaultWaitMillis;
+
+    Operation(int defaultLimit, long defaultWaitMillis) {
+      this.defaultLimit = defaultLimit;
+      this.defaultWaitMillis = defaultWaitMillis;
+    }
+  }
+
+  private static final CompletableFuture<Boolean> ADMITTED = CompletableFuture.completedFuture(true);
+  private static final CompletableFuture<Boolean> REJECTED = CompletableFuture.completedFuture(false);
+  private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor((r) -> {
+    Thread thread = new Thread(r, "admission-deadlines");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Slots[] slots = new Slots[Operation.values().length];
+
+  /**
+   * Constructor to initialise a controller with each class's limits read from system properties.
+  */
+  public AdmissionController() {
+    for (Operation op : Operation.values()) {
+      String prefix = "auction.admit." + op.name().toLowerCase();
+      this.slots[op.ordinal()] = new Slots(Integer.getInteger(prefix + ".limit", op.defaultLimit), Long.getLong(prefix + ".waitMillis", op.defaultWaitMillis));
+    }
+  }
+
+  /**
+   * Creates a controller unless admission control is disabled by -Dauction.admit=false.
+   * @return the controller, or null if disabled.
+  */
+  public static AdmissionController fromSystemProperty() {
+    return Boolean.parseBoolean(System.getProperty("auction.admit", "true")) ? new AdmissionController() : null;
+  }
+
+  /**
+   * Asks for a slot for a request, without waiting for one.
+   * Every request admitted must be matched by a call to release.
+   * @param op the class of the request.
+   * @return a future completed with true once admitted, or with false at the class's queueing
+   *         deadline if the request should be answered with SERVER_BUSY.
+  */
+  public CompletableFuture<Boolean> admit(Operation op) {
+    Slots slots = this.slots[op.ordinal()];
+    // Browsing yields to bids: don't queue a browse while bids are waiting for the cluster
+    if (op == Operation.BROWSE && this.slots[Operation.BID.ordinal()].hasWaiting()) {
+      slots.rejected.increment();
+      return REJECTED;
+    }
+    CompletableFuture<Boolean> waiter = new CompletableFuture<Boolean>();
+    synchronized (slots) {
+      if (slots.used < slots.limit && slots.waiting.isEmpty()) {
+        slots.used++;
+        return ADMITTED;
+      }
+      if (slots.waitMillis <= 0) {
+        slots.rejected.increment();
+        return REJECTED;
+      }
+      slots.waiting.add(waiter);
+    }
+    DEADLINES.schedule(() -> {
+      boolean expired;
+      synchronized (slots) {
+        expired = slots.waiting.remove(waiter);
+      }
+      if (expired) {
+        slots.rejected.increment();
+        waiter.complete(false);
+      }
+    }, slots.waitMillis, TimeUnit.MILLISECONDS);
+    return waiter;
+  }
+
+  /**
+   * Releases the slot held by an admitted request, handing it to the longest waiting request if any.
+   * @param op the class of the request.
+  */
+  public void release(Operation op) {
+    Slots slots = this.slots[op.ordinal()];
+    CompletableFuture<Boolean> next;
+    synchronized (slots) {
+      next = slots.waiting.poll();
+      if (next == null) {
+        slots.used--;
+      }
+    }
+    if (next != null) {
+      next.complete(true);
+    }
+  }
+
+  /**
+   * Obtains the number of requests of a class turned away as busy.
+   * @param op the class of request.
+   * @return the number of rejected requests.
+  */
+  public long getRejectedCount(Operation op) {
+    return this.slots[op.ordinal()].rejected.sum();
+  }
+
+  /**
+   * The slots of one class of request and the requests waiting for them.
+  */
+  private static final class Slots {
+    private final int limit;
+    private final long waitMillis;
+    private final ArrayDeque<CompletableFuture<Boolean>> waiting = new ArrayDeque<CompletableFuture<Boolean>>();  /* Guarded by this */
+    private final LongAdder rejected = new LongAdder();
+    private int used;  /* Guarded by this */
+
+    private Slots(int limit, long waitMillis) {
+      this.limit = limit;
+      this.waitMillis = waitMillis;
+    }
+
+    private synchronized boolean hasWaiting() {
+      return !this.waiting.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code: Auction Cache   AuctionCache.java
+ * Date: 19/10/26
+ *
+ * The front-end's view of each auction, used to reject bids that are
+ * certain to lose without a cluster round trip. Only facts that can never
+ * become false are used: an auction's start price and seller never change,
+ * a closed auction never reopens, and the highest bid only ever rises, so
+ * the cache keeps a lower bound ("floor") on it. The floor is raised from
+ * every response the front-end sees - successful bids, bids rejected as too
+ * small (the highest bid is at least that amount) and browse results - so
+ * a stale cache only lets through bids the cluster then rejects, and the
+ * cluster stays authoritative for every bid that could win.
+*/
+public class AuctionCache {
+
+  private static final int MAX_CLOSED = 100000;
+
+  private final ConcurrentLongMap<Entry> auctions = new ConcurrentLongMap<Entry>();  /* Lock-free reads on every bid */
+  private final ConcurrentLinkedQueue<Long> closedOrder = new ConcurrentLinkedQueue<Long>();
+  private final AtomicInteger closedCount = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Checks whether a bid is certain to lose, in the same order of checks as ClusterMember.bid.
+   * @param bid the bid to check.
+   * @return the response the cluster would give if the bid is certain to lose, or null if it might win.
+  */
+  public ServerResponse reject(Bid bid) {
+    Entry entry = this.auctions.get(bid.getAuctionId());
+    if (entry == null) {
+      return null;
+    }
+    int statusCode;
+    if (entry.closed) {
+      statusCode = IAuctionServer.NO_AUCTION;
+    } else if (entry.sellerId == bid.getBidderId()) {
+      statusCode = IAuctionServer.CANT_BID_OWN;
+    } else if (bid.getBidValue() < entry.startPrice) {
+      statusCode = IAuctionServer.BID_SMALLER_THAN_START;
+    } else if (bid.getBidValue() <= entry.floor()) {
+      statusCode = IAuctionServer.BID_SMALLER_THAN_HIGH;
+    } else {
+      return null;
+    }
+    this.rejected.increment();
+    return (new ServerResponse(statusCode, null));
+  }
+
+  /**
+   * Updates the cache with the cluster's response to a bid.
+   * @param bid the bid sent to the cluster.
+   * @param response the cluster's response.
+  */
+  public void bidResult(Bid bid, ServerResponse response) {
+    switch (response.getStatusCode()) {
+      case IAuctionServer.BID_SUCCESSFUL:
+        this.observe(response.getAuctionItem());
+        break;
+      case IAuctionServer.BID_SMALLER_THAN_HIGH:
+        // The highest bid is at least this amount
+        Entry entry = this.auctions.get(bid.getAuctionId());
+        if (entry != null) {
+          entry.raise(bid.getBidValue());
+        }
+        break;
+      case IAuctionServer.NO_AUCTION:
+        this.closed(bid.getAuctionId());
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Adds or refreshes an auction seen in a response from the cluster.
+   * @param auctionItem the auction as returned by the cluster.
+  */
+  public void observe(AuctionItem auctionItem) {
+    if (auctionItem == null || auctionItem.getId() == 0) {
+      return;
+    }
+    Entry entry = this.auctions.computeIfAbsent(auctionItem.getId(), (id) -> new Entry(auctionItem));
+    Bid highestBid = auctionItem.getHighestBid();
+    if (highestBid != null) {
+      entry.raise(highestBid.getBidValue());
+    }
+  }
+
+  /**
+   * Adds or refreshes every auction in a browse result. Auctions missing from the
+   * result aren't marked closed, since the result may predate their creation.
+   * @param auctions the active auctions returned by the cluster.
+  */
+  public void observeAll(Map<Long, AuctionItem> auctions) {
+    if (auctions != null) {
+      for (AuctionItem auctionItem : auctions.values()) {
+        this.observe(auctionItem);
+      }
+    }
+  }
+
+  /**
+   * Records that an auction has been closed (or doesn't exist), keeping a bounded number of closed auctions.
+   * @param auctionId the ID of the auction.
+  */
+  public void closed(long auctionId) {
+    Entry entry = this.auctions.get(auctionId);
+    if (entry == null || entry.closed) {
+      return;
+    }
+    entry.closed = true;
+    this.closedOrder.add(auctionId);
+    if (this.closedCount.incrementAndGet() > MAX_CLOSED) {
+      Long oldest = this.closedOrder.poll();
+      if (oldest != null) {
+        this.auctions.remove(oldest);
+        this.closedCount.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Obtains the number of bids rejected by the cache.
+   * @return the number of bids rejected without a cluster round trip.
+  */
+  public long getRejectedCount() {
+    return this.rejected.sum();
+  }
+
+  /**
+   * The immutable facts about an auction, its highest bid floor, and whether it is closed.
+  */
+  private static final class Entry {
+    private final double startPrice;
+    private final int sellerId;
+    private final AtomicLong floorBits = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+    private volatile boolean closed;
+
+    private Entry(AuctionItem auctionItem) {
+      this.startPrice = auctionItem.getStartPrice();
+      this.sellerId = auctionItem.getSellerId();
+    }
+
+    private double floor() {
+      return Double.longBitsToDouble(this.floorBits.get());
+    }
+
+    /**
+     * Raises the floor to an amount the highest bid is known to have reached.
+     * @param amount the amount.
+    */
+    private void raise(double amount) {
+      long bits;
+      while (amount > Double.longBitsToDouble(bits = this.floorBits.get())) {
+        if (this.floorBits.compareAndSet(bits, Double.doubleToLongBits(amount))) {
+          return;
+        }
+      }
+    }
+  }
+}
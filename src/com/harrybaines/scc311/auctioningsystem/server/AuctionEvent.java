@@ -0,0 +1,86 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+/**
+ * Code: Auction Event   AuctionEvent.java
+ * Date: 19/10/26
+ *
+ * An event pushed to subscribed clients when an auction changes - either a
+ * new highest bid has been placed or the auction has been closed.
+*/
+public class AuctionEvent implements java.io.Serializable {
+
+  // Event type constants
+  public static final int BID_PLACED = 0;
+  public static final int AUCTION_CLOSED = 1;
+
+  private int type;
+  private long auctionId;
+  private String desc;
+  private double highestBid;
+  private int highestBidderId;
+  private int statusCode;
+
+  /**
+   * Constructor to initialise a new auction event.
+   * @param type the type of event (BID_PLACED or AUCTION_CLOSED).
+   * @param auctionItem the auction item after the change.
+   * @param statusCode the result code of the operation that caused the event.
+  */
+  public AuctionEvent(int type, AuctionItem auctionItem, int statusCode) {
+    Bid bid = auctionItem.getHighestBid();
+    this.type = type;
+    this.auctionId = auctionItem.getId();
+    this.desc = auctionItem.getDesc();
+    this.highestBid = bid != null ? bid.getBidValue() : -1;
+    this.highestBidderId = bid != null ? bid.getBidderId() : 0;
+    this.statusCode = statusCode;
+  }
+
+  /**
+   * Accessor to obtain the type of this event.
+   * @return BID_PLACED or AUCTION_CLOSED.
+  */
+  public int getType() {
+    return this.type;
+  }
+
+  /**
+   * Accessor to obtain the id of the auction that changed.
+   * @return the auction id.
+  */
+  public long getAuctionId() {
+    return this.auctionId;
+  }
+
+  /**
+   * Accessor to obtain the description of the auction that changed.
+   * @return the auction description.
+  */
+  public String getDesc() {
+    return this.desc;
+  }
+
+  /**
+   * Accessor to obtain the highest bid at the time of the event.
+   * @return the highest bid value, or -1 if there are no bids.
+  */
+  public double getHighestBid() {
+    return this.highestBid;
+  }
+
+  /**
+   * Accessor to obtain the id of the highest bidder at the time of the event.
+   * @return the highest bidder's user id, or 0 if there are no bids.
+  */
+  public int getHighestBidderId() {
+    return this.highestBidderId;
+  }
+
+  /**
+   * Accessor to obtain the result code of the operation that caused this event.
+   * @return the status code (e.g. BID_SUCCESSFUL, AUCTION_WON, RESERVE_NOT_MET).
+  */
+  public int getStatusCode() {
+    return this.statusCode;
+  }
+}
@@ -1,43 +1,56 @@
 package com.harrybaines.scc311.auctioningsystem.server;
 
-import com.harrybaines.scc311.auctioningsystem.client.User;
-
 /**
  * Code: Auction Item   AuctionItem.java
  * Date: 26/11/18
  *
  * A Class to represent an item offered for sale in an auction.
+ * The seller is held by user id; their profile is in the UserDirectory.
  * @author Harry Baines
 */
 public class AuctionItem implements java.io.Serializable {
   
-  private String id;
+  private long id;  /* 0 until the cluster assigns one */
   private double startPrice;
   private double reservePrice;
   private String desc;
-  private User seller;
+  private int sellerId;
   private Bid highestBid;
+  private String requestId;
 
   /**
    * Constructor to initialise a new auction item offered for sale.
    * @param startPrice the starting price for this item.
    * @param reservePrice the minimum acceptable price for this item.
    * @param desc the description for this item.
-   * @param seller the user who is selling this auction item.
+   * @param sellerId the id of the user who is selling this auction item.
   */
-  public AuctionItem(double startPrice, double reservePrice, String desc, User seller) {
+  public AuctionItem(double startPrice, double reservePrice, String desc, int sellerId) {
+    this(startPrice, reservePrice, desc, sellerId, null);
+  }
+
+  /**
+   * Constructor to initialise a new auction item whose create request can be safely resent.
+   * @param startPrice the starting price for this item.
+   * @param reservePrice the minimum acceptable price for this item.
+   * @param desc the description for this item.
+   * @param sellerId the id of the user who is selling this auction item.
+   * @param requestId the client generated id of the create request, or null if it won't be resent.
+  */
+  public AuctionItem(double startPrice, double reservePrice, String desc, int sellerId, String requestId) {
+    this.requestId = requestId;
     this.desc = desc;
     this.startPrice = startPrice;
     this.reservePrice = reservePrice;
-    this.seller = seller;
+    this.sellerId = sellerId;
     this.highestBid = null;
   }
 
   /**
    * Accessor to obtain the id of this auction item.
-   * @return the id of this auction item.
+   * @return the id of this auction item, or 0 if it hasn't been created yet.
   */ 
-  public String getId() {
+  public long getId() {
     return this.id;
   }
 
@@ -45,10 +58,18 @@ public class AuctionItem implements java.io.Serializable {
    * Mutator to set the id of this auction item.
    * @param id the id of the auction item to set.
   */
-  public void setId(String id) {
+  public void setId(long id) {
     this.id = id;
   }
 
+  /**
+   * Accessor to obtain the client generated id of the request that created this auction.
+   * @return the request id, or null if none was given.
+  */
+  public String getRequestId() {
+    return this.requestId;
+  }
+
   /**
    * Obtains the description of this auction item for sale.
    * @return the textual description of the auction item.
@@ -90,12 +111,25 @@ public class AuctionItem implements java.io.Serializable {
     this.highestBid = newHighestBid;
   }
 
+  /**
+   * Creates a copy of this auction item with a new highest bid, leaving this item unchanged
+   * so it can still be read from earlier snapshots of the active auctions.
+   * @param newHighestBid the new highest bid.
+   * @return the copy.
+  */
+  public AuctionItem withHighestBid(Bid newHighestBid) {
+    AuctionItem copy = new AuctionItem(this.startPrice, this.reservePrice, this.desc, this.sellerId, this.requestId);
+    copy.id = this.id;
+    copy.highestBid = newHighestBid;
+    return copy;
+  }
+
   /** 
    * Accessor to obtain the owner/seller of this auction item.
-   * @return the seller of this auction item.
+   * @return the user id of the seller of this auction item.
   */
-  public User getSeller() {
-    return this.seller;
+  public int getSellerId() {
+    return this.sellerId;
   }
 
   /**
@@ -108,7 +142,7 @@ public class AuctionItem implements java.io.Serializable {
     } else {
       double highestBid = this.highestBid.getBidValue();
       return "Start Price: £" + String.format("%.2f", this.startPrice) + ", Description: " + this.desc + ", Highest Bid: £" +
-          String.format("%.2f", highestBid) + ", Seller: " + this.seller.getEmail();
+          String.format("%.2f", highestBid) + ", Seller ID: " + this.sellerId;
     }
   }
 }
@@ -9,13 +9,18 @@ import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.util.RspList;
 
 import java.rmi.Naming;
+import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Code: Auctioning Server   AuctionServer.java
@@ -24,6 +29,14 @@ import java.util.concurrent.ConcurrentHashMap;
  * A Class to represent an auctioning server.
  * This class instantiates the auction server implementation class
  * and binds the object to the RMI registry.
+ * Several front-ends can share one registry: the first is bound as
+ * AuctionServer and front-end i as AuctionServer-i, which is how
+ * clients find every front-end to balance requests across.
+ * The registry runs in whichever front-end started first, so each
+ * front-end checks every auction.registry.checkMillis (default 2000) that
+ * it is still bound; if the registry has gone down with its front-end,
+ * the first survivor to notice starts a new one and every survivor binds
+ * itself again, so new clients can still find them.
  *
  * @author Harry Baines
  */
@@ -31,39 +44,103 @@ import java.util.concurrent.ConcurrentHashMap;
 public class AuctionServer {
 
     private ConcurrentHashMap<String, AuctionItem> auctions;  /* ConcurrentHashMap of all active auctions */
+    private final int index;  /* Index of this front-end, 0 for the first */
+    private IAuctionServer auctionServer;  /* The front-end bound in the registry */
 
     /**
      * Constructor to initialise a new auctioning server.
      * Binds to naming service (URL of remote service + object reference)
      */
     public AuctionServer() throws RemoteException {
+        this(0);
+    }
+
+    /**
+     * Constructor to initialise one of several front-ends sharing a registry.
+     * @param index the index of this front-end, 0 for the first.
+     */
+    public AuctionServer(int index) throws RemoteException {
         super();
         this.auctions = new ConcurrentHashMap<String, AuctionItem>();
+        this.index = index;
         setupRMI();
     }
 
     /**
-     * Sets up the RMI registry and binds to a specific port.
+     * Obtains the name a front-end is bound under in the registry.
+     *
+     * @param index the index of the front-end.
+     * @return the service name.
+     */
+    public static String serviceName(int index) {
+        return index == 0 ? Constants.SERVICE : Constants.SERVICE + "-" + index;
+    }
+
+    /**
+     * Sets up the RMI registry and binds to a specific port,
+     * using the registry already running on the port if another front-end started it.
      */
     private void setupRMI() {
         try {
-            Registry registry = LocateRegistry.createRegistry(Constants.REGISTRY_PORT);
-            IAuctionServer auctionServer = new AuctionServerImpl();
-            registry.rebind(Constants.SERVICE, auctionServer);
-            System.out.println(Constants.SERVER_RUNNING_STR);
+            this.auctionServer = new AuctionServerImpl();
+            this.bind();
+            System.out.format(Constants.SERVER_RUNNING_STR, serviceName(this.index));
+            BinaryEndpoint.fromSystemProperty(this.auctionServer);
+            this.keepBound(Long.getLong("auction.registry.checkMillis", 2000));
         } catch (Exception e) {
             System.out.println("[SERVER] Failed to bind" + e.getMessage());
         }
     }
 
+    /**
+     * Binds this front-end in the registry, starting the registry in this process if none is running.
+     *
+     * @throws RemoteException if the registry can't be started or reached.
+     */
+    private void bind() throws RemoteException {
+        Registry registry;
+        try {
+            registry = LocateRegistry.createRegistry(Constants.REGISTRY_PORT);
+        } catch (ExportException e) {
+            registry = LocateRegistry.getRegistry(Constants.REGISTRY_PORT);
+        }
+        registry.rebind(serviceName(this.index), this.auctionServer);
+    }
+
+    /**
+     * Checks at a fixed interval that this front-end is still bound, binding it again
+     * (in a new registry if the old one went down with its front-end) if not.
+     *
+     * @param intervalMillis the interval between checks.
+     */
+    private void keepBound(long intervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "registry-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                LocateRegistry.getRegistry(Constants.REGISTRY_PORT).lookup(serviceName(this.index));
+            } catch (NotBoundException | RemoteException lost) {
+                try {
+                    this.bind();
+                    System.out.println("[SERVER] Bound " + serviceName(this.index) + " again after the registry was lost");
+                } catch (RemoteException e) {
+                    // Tried again at the next check
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Main method to instantiate a new auctioning server.
      *
-     * @param args unused.
+     * @param args optionally the index of this front-end, when running several.
      */
     public static void main(String[] args) {
         try {
-            new AuctionServer();
+            new AuctionServer(args.length > 0 ? Integer.parseInt(args[0]) : 0);
         } catch (Exception e) {
             System.out.println("[SERVER] Failed to init server");
         }
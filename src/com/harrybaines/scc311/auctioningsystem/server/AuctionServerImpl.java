@@ -1,18 +1,29 @@
 package com.harrybaines.scc311.auctioningsystem.server;
 
 import com.harrybaines.scc311.auctioningsystem.client.User;
+import com.harrybaines.scc311.auctioningsystem.server.AdmissionController.Operation;
+import com.harrybaines.scc311.auctioningsystem.utils.CompressingSocketFactory;
 import com.harrybaines.scc311.auctioningsystem.utils.Constants;
 import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+import com.harrybaines.scc311.auctioningsystem.utils.TimeoutSocketFactory;
 
 import com.sun.security.ntlm.Server;
 import org.jgroups.JChannel;
+import org.jgroups.blocks.MethodCall;
 import org.jgroups.blocks.RequestOptions;
 import org.jgroups.blocks.ResponseMode;
 import org.jgroups.blocks.RpcDispatcher;
+import org.jgroups.util.NotifyingFuture;
 import org.jgroups.util.RspList;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.rmi.*;
 import java.rmi.server.*;
 import java.io.*;
@@ -27,31 +38,90 @@ import java.security.spec.*;
  * This is the front-end server for the Java RMI-JGroups communication system.
  * The implementation of all the methods is provided
  * by the methods in the IAcutionServer interface.
+ *
+ * Requests answered by the cluster are sent without waiting for the
+ * response, and completed on a small pool of callback threads
+ * (-Dauction.cluster.callbackThreads, default 2) when it arrives. Bids and
+ * closes still reach the cluster one at a time, queued as futures rather
+ * than as threads waiting on a lock. RMI calls wait for their future, while
+ * the BinaryEndpoint uses the IAsyncAuctionServer methods and holds no
+ * thread at all while a request is at the cluster.
  * @author Harry Baines
 */
 
-public class AuctionServerImpl extends UnicastRemoteObject implements IAuctionServer {
+public class AuctionServerImpl extends UnicastRemoteObject implements IAuctionServer, IAsyncAuctionServer {
 
   private JChannel channel;
   private RpcDispatcher dispatcher;
   private RequestOptions requestOptions;
+  private RequestOptions asyncOptions;  /* For updates no caller waits on */
+  private final TrafficCapture capture = TrafficCapture.fromSystemProperty();  /* null unless -Dauction.capture is set */
+  private final NotificationDispatcher notifications = new NotificationDispatcher();
+  private final SessionManager sessions = new SessionManager();
+  private final ChallengeLedger challenges = new ChallengeLedger();  /* Challenges issued by attemptAuth and not yet answered */
+  private final AuctionCache auctionCache = Boolean.parseBoolean(System.getProperty("auction.bidCache", "true")) ? new AuctionCache() : null;
+  private final BidCoalescer bidCoalescer = BidCoalescer.fromSystemProperty();  /* null unless -Dauction.bid.coalesceMicros is set */
+  private final AdmissionController admission = AdmissionController.fromSystemProperty();  /* null if -Dauction.admit=false */
+  private final UserKeyRegistry users = UserKeyRegistry.fromSystemProperty();
+  private final UserDirectory userDirectory = new UserDirectory();  /* Profiles registered or looked up through this front-end */
+  private final AuthService authService;  /* null when authentication is broadcast to the cluster */
+  private final ExecutorService callbacks = Executors.newFixedThreadPool(Integer.getInteger("auction.cluster.callbackThreads", 2), (r) -> {
+    Thread thread = new Thread(r, "cluster-callback");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private CompletableFuture<?> ordered = CompletableFuture.completedFuture(null);  /* The last bid or close queued for the cluster */
 
   /**
    * Constructor to perform RMI linking and remote object initialisation.
+   * Authentication is handled on this front-end unless -Dauction.auth=cluster is set.
    * @throws RemoteException if an error occurs on the server.
   */
   public AuctionServerImpl() throws RemoteException {
-    super();
+    this(!"cluster".equals(System.getProperty("auction.auth")));
+  }
+
+  /**
+   * Constructor to perform RMI linking and remote object initialisation.
+   * @param localAuth true to authenticate on this front-end, false to broadcast authentication to every cluster member.
+   * @throws RemoteException if an error occurs on the server.
+  */
+  public AuctionServerImpl(boolean localAuth) throws RemoteException {
+    this(localAuth, CompressingSocketFactory.fromSystemProperty());
+  }
+
+  /**
+   * Constructor to perform RMI linking and remote object initialisation, exporting with compressing sockets.
+   * Clients receive the socket factory in the stub, so they need no configuration of their own;
+   * without compression they receive a TimeoutSocketFactory, so their calls are still bounded.
+   * @param localAuth true to authenticate on this front-end, false to broadcast authentication to every cluster member.
+   * @param sockets the socket factory to export with, or null for RMI's default sockets.
+   * @throws RemoteException if an error occurs on the server.
+  */
+  public AuctionServerImpl(boolean localAuth, CompressingSocketFactory sockets) throws RemoteException {
+    super(0, sockets != null ? sockets : clientSockets(), sockets);
+    this.authService = localAuth ? new AuthService() : null;
     setupCluster();
   }
 
+  /**
+   * Creates the socket factory clients connect with when not compressing, so a call to a hung
+   * front-end gives up after the read timeout rather than holding the client's thread.
+   * @return the factory, or null for RMI's default sockets if -Dauction.rmiReadTimeout is 0.
+   */
+  private static RMIClientSocketFactory clientSockets() {
+    int timeout = TimeoutSocketFactory.clientReadTimeout();
+    return timeout > 0 ? new TimeoutSocketFactory(timeout) : null;
+  }
+
   /**
    * Sets up a new JGroups cluster and connects.
    */
   private void setupCluster() {
     try {
-      this.channel = new JChannel();
+      this.channel = new JChannel(Constants.CLUSTER_CONFIG);
       this.requestOptions = new RequestOptions(ResponseMode.GET_ALL, Constants.TIMEOUT);
+      this.asyncOptions = new RequestOptions(ResponseMode.GET_NONE, Constants.TIMEOUT);
       this.dispatcher = new RpcDispatcher(this.channel, null);
       this.channel.connect(Constants.CLUSTER_NAME);
     } catch(Exception e) {
@@ -61,68 +131,321 @@ public class AuctionServerImpl extends UnicastRemoteObject implements IAuctionSe
 
   /**
    * Allows a user to create an auction for a given item for sale.
+   * @param sessionToken the session token of the seller.
    * @param auctionItem the auction item offered for sale.
    * @return a server response containing the result of the create auction method.
    * @throws RemoteException if an error occurs on the server.
    */
-  public ServerResponse createAuction(AuctionItem auctionItem) throws RemoteException {
-    try {
-      System.out.println("[SERVER] CREATING AUCTION");
-      RspList<ServerResponse> responses = this.dispatcher.callRemoteMethods(  null,
-              "createAuction",
-              new Object[]{auctionItem},
-              new Class[]{auctionItem.getClass()},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [CREATE AUCTION] Failed to get responses");
+  public ServerResponse createAuction(SessionToken sessionToken, AuctionItem auctionItem) throws RemoteException {
+    return this.createAuctionAsync(sessionToken, auctionItem).join();
+  }
+
+  /**
+   * Allows a user to create an auction, without waiting for the cluster.
+   * @param sessionToken the session token of the seller.
+   * @param auctionItem the auction item offered for sale.
+   * @return a future completed with the result of the create auction method.
+   */
+  @Override
+  public CompletableFuture<ServerResponse> createAuctionAsync(SessionToken sessionToken, AuctionItem auctionItem) {
+    if (!this.sessions.isValidFor(sessionToken, auctionItem.getSellerId())) {
+      return CompletableFuture.completedFuture(new ServerResponse(INVALID_SESSION, null));
     }
-    return null;
+    long arrivalNanos = System.nanoTime();
+    return this.whenAdmitted(Operation.MUTATE, () -> {
+      if (this.capture != null) {
+        this.capture.recordCreateAuction(arrivalNanos, sessionToken, auctionItem, 0);
+      }
+      return new ServerResponse(SERVER_BUSY, null);
+    }, () -> this.createAuctionOnCluster(arrivalNanos, sessionToken, auctionItem));
+  }
+
+  /**
+   * Creates an auction on the cluster once the session has been validated.
+   * @param arrivalNanos when the request arrived, for the traffic capture.
+   * @param sessionToken the session token of the seller.
+   * @param auctionItem the auction item offered for sale.
+   * @return a future completed with the result of the create auction method.
+   */
+  private CompletableFuture<ServerResponse> createAuctionOnCluster(long arrivalNanos, SessionToken sessionToken, AuctionItem auctionItem) {
+    System.out.println("[SERVER] CREATING AUCTION");
+    CompletableFuture<ServerResponse> responses = this.callCluster("createAuction",
+            new Object[]{auctionItem},
+            new Class[]{auctionItem.getClass()},
+            "CREATE AUCTION");
+    return responses.thenApply((response) -> {
+      if (this.auctionCache != null && response != null && response.getStatusCode() == AUCTION_CREATED) {
+        this.auctionCache.observe(response.getAuctionItem());
+      }
+      if (this.capture != null) {
+        AuctionItem created = response != null ? response.getAuctionItem() : null;
+        this.capture.recordCreateAuction(arrivalNanos, sessionToken, auctionItem, created != null ? created.getId() : 0);
+      }
+      return response;
+    });
   }
 
   /**
    * Allows a user to close an auction for a given item for sale.
+   * @param sessionToken the session token of the user.
    * @param auctionId the ID of the auction to close.
-   * @param user the user who wishes to close this particular auction.
+   * @param userId the id of the user who wishes to close this particular auction.
    * @return a server response containing the result of the close auction method.
    * @throws RemoteException if an error occurs on the server.
    */
   @Override
-  public synchronized ServerResponse closeAuction(String auctionId, User user) throws RemoteException {
-    try {
-      System.out.println("[SERVER] CLOSING AUCTION");
-      RspList<ServerResponse> responses = this.dispatcher.callRemoteMethods(  null,
-              "closeAuction",
-              new Object[]{auctionId, user},
-              new Class[]{String.class, User.class},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [CLOSE AUCTION] Failed to get responses");
+  public ServerResponse closeAuction(SessionToken sessionToken, long auctionId, int userId) throws RemoteException {
+    return this.closeAuction(sessionToken, auctionId, userId, null);
+  }
+
+  /**
+   * Allows a user to close an auction with a request that can be safely resent.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close this particular auction.
+   * @param requestId the client generated id of the request (may be null).
+   * @return a server response containing the result of the close auction method.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  @Override
+  public ServerResponse closeAuction(SessionToken sessionToken, long auctionId, int userId, String requestId) throws RemoteException {
+    return this.closeAuctionAsync(sessionToken, auctionId, userId, requestId).join();
+  }
+
+  /**
+   * Allows a user to close an auction, without waiting for the cluster.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close this particular auction.
+   * @param requestId the client generated id of the request (may be null).
+   * @return a future completed with the result of the close auction method.
+   */
+  @Override
+  public CompletableFuture<ServerResponse> closeAuctionAsync(SessionToken sessionToken, long auctionId, int userId, String requestId) {
+    if (!this.sessions.isValidFor(sessionToken, userId)) {
+      return CompletableFuture.completedFuture(new ServerResponse(INVALID_SESSION, null));
     }
-    return null;
+    if (this.capture != null) {
+      this.capture.recordCloseAuction(sessionToken, auctionId);
+    }
+    return this.whenAdmitted(Operation.MUTATE, () -> new ServerResponse(SERVER_BUSY, null),
+        () -> this.inOrder(() -> this.closeAuctionOnCluster(auctionId, userId, requestId)));
+  }
+
+  /**
+   * Closes an auction on the cluster once the session has been validated.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close this particular auction.
+   * @param requestId the client generated id of the request (may be null).
+   * @return a future completed with the result of the close auction method.
+   */
+  private CompletableFuture<ServerResponse> closeAuctionOnCluster(long auctionId, int userId, String requestId) {
+    System.out.println("[SERVER] CLOSING AUCTION");
+    CompletableFuture<ServerResponse> responses = this.callCluster("closeAuction",
+            new Object[]{auctionId, userId, requestId},
+            new Class[]{long.class, int.class, String.class},
+            "CLOSE AUCTION");
+    return responses.thenApply((response) -> {
+      if (this.auctionCache != null && response != null && response.getStatusCode() != CANT_CLOSE_OWN) {
+        this.auctionCache.closed(auctionId);
+      }
+      if (response != null && (response.getStatusCode() == AUCTION_WON || response.getStatusCode() == RESERVE_NOT_MET)) {
+        this.notifications.publish(new AuctionEvent(AuctionEvent.AUCTION_CLOSED, response.getAuctionItem(), response.getStatusCode()));
+      } else if (response != null && response.getStatusCode() == NO_AUCTION) {
+        this.notifications.closed(auctionId);
+      }
+      return response;
+    });
   }
 
   /**
    * Allows a user to close an auction for a given item for sale.
+   * @param sessionToken the session token of the bidder.
    * @param bid the Bid object.
    * @return a server response containing the result of the bid method.
    * @throws RemoteException if an error occurs on the server.
    */
   @Override
-  public synchronized ServerResponse bid(Bid bid) throws RemoteException {
+  public ServerResponse bid(SessionToken sessionToken, Bid bid) throws RemoteException {
+    return this.bidAsync(sessionToken, bid).join();
+  }
+
+  /**
+   * Allows a user to place a bid, without waiting for the cluster.
+   * @param sessionToken the session token of the bidder.
+   * @param bid the Bid object.
+   * @return a future completed with the result of the bid method.
+   */
+  @Override
+  public CompletableFuture<ServerResponse> bidAsync(SessionToken sessionToken, Bid bid) {
+    if (!this.sessions.isValidFor(sessionToken, bid.getBidderId())) {
+      return CompletableFuture.completedFuture(new ServerResponse(INVALID_SESSION, null));
+    }
+    if (this.capture != null) {
+      this.capture.recordBid(sessionToken, bid);
+    }
+    // Auction ids are assigned from 1, so such a bid can't be on an auction
+    if (bid.getAuctionId() <= 0) {
+      return CompletableFuture.completedFuture(new ServerResponse(NO_AUCTION, null));
+    }
+    // Bids certain to lose are answered here; the check is repeated once the lock is held
+    // in case a bid placed while this one waited has raised the highest bid past it.
+    // A resent bid may already have been placed, so only the cluster can answer it
+    ServerResponse rejection = this.auctionCache != null && !bid.isRetry() ? this.auctionCache.reject(bid) : null;
+    if (rejection != null) {
+      return CompletableFuture.completedFuture(rejection);
+    }
+    return this.whenAdmitted(Operation.BID, () -> new ServerResponse(SERVER_BUSY, null), () -> {
+      if (bid.isRetry()) {
+        return this.inOrder(() -> this.bidOnCluster(bid));
+      }
+      return this.bidCoalescer != null ? this.bidCoalescer.submit(bid, this::placeBid) : this.placeBid(bid);
+    });
+  }
+
+  /**
+   * Places a single bid on the cluster, one at a time, unless the cache shows it can no longer win.
+   * @param bid the Bid object.
+   * @return a future completed with the result of the bid method.
+   */
+  private CompletableFuture<ServerResponse> placeBid(Bid bid) {
+    return this.inOrder(() -> {
+      ServerResponse rejection = this.auctionCache != null ? this.auctionCache.reject(bid) : null;
+      return rejection != null ? CompletableFuture.completedFuture(rejection) : this.bidOnCluster(bid);
+    });
+  }
+
+  /**
+   * Places a bid on the cluster once the session has been validated.
+   * @param bid the Bid object.
+   * @return a future completed with the result of the bid method.
+   */
+  private CompletableFuture<ServerResponse> bidOnCluster(Bid bid) {
+    System.out.println("[SERVER] BIDDING");
+    CompletableFuture<ServerResponse> responses = this.callCluster("bid",
+            new Object[]{bid},
+            new Class[]{Bid.class},
+            "BIDDING");
+    return responses.thenApply((response) -> {
+      if (this.auctionCache != null && response != null) {
+        this.auctionCache.bidResult(bid, response);
+      }
+      if (response != null && response.getStatusCode() == BID_SUCCESSFUL) {
+        this.notifications.publish(new AuctionEvent(AuctionEvent.BID_PLACED, response.getAuctionItem(), response.getStatusCode()));
+      } else if (response != null && response.getStatusCode() == NO_AUCTION) {
+        this.notifications.closed(bid.getAuctionId());
+      }
+      return response;
+    });
+  }
+
+  /**
+   * Queues a bid or close to be sent to the cluster once every one queued before it has been
+   * answered, so they are applied in the order they arrive, as when each held this front-end's
+   * lock for its round trip, but without a thread waiting for its turn.
+   * @param call sends the request to the cluster.
+   * @return a future completed with the response.
+   */
+  private synchronized <T> CompletableFuture<T> inOrder(Supplier<CompletableFuture<T>> call) {
+    CompletableFuture<T> next = this.ordered.handle((response, e) -> null).thenCompose((previous) -> call.get());
+    this.ordered = next;
+    return next;
+  }
+
+  /**
+   * Sends a method call to every cluster member without waiting for the responses.
+   * @param method the name of the ClusterMember method.
+   * @param args the arguments of the call.
+   * @param types the types of the arguments.
+   * @param operation the name of the operation, for the log if it fails.
+   * @return a future completed on a callback thread with the first response, or null if the call failed or timed out.
+   */
+  private <T> CompletableFuture<T> callCluster(String method, Object[] args, Class[] types, String operation) {
+    CompletableFuture<T> result = new CompletableFuture<T>();
     try {
-      System.out.println("[SERVER] BIDDING");
-      RspList<ServerResponse> responses = this.dispatcher.callRemoteMethods(  null,
-              "bid",
-              new Object[]{bid},
-              new Class[]{Bid.class},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [BIDDING] Failed to get responses");
+      NotifyingFuture<RspList<T>> responses = this.dispatcher.callRemoteMethodsWithFuture(  null,
+              new MethodCall(method, args, types),
+              this.requestOptions,
+              (done) -> this.callbacks.execute(() -> {
+                try {
+                  result.complete(done.get().getFirst());
+                } catch (Exception e) {
+                  result.completeExceptionally(e);
+                }
+              }) );
+      // The dispatcher doesn't time out a call it isn't waiting on, so it is cancelled here
+      result.orTimeout(Constants.TIMEOUT, TimeUnit.MILLISECONDS).whenComplete((response, e) -> {
+        if (e instanceof TimeoutException) {
+          responses.cancel(true);
+        }
+      });
+    } catch (Exception e) {
+      result.completeExceptionally(e);
     }
-    return null;
+    return result.exceptionally((e) -> {
+      System.out.println("[SERVER] [" + operation + "] Failed to get responses");
+      return null;
+    });
+  }
+
+  /**
+   * Subscribes a client callback to be notified when an auction is outbid or closed.
+   * Notifications are sent from this front-end after the cluster has applied the change,
+   * so each subscriber is notified once rather than once per cluster member.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to subscribe to.
+   * @param listener the client's remote callback.
+   * @return true if subscribed, false if the session is invalid, the auction isn't active or the client has too many subscriptions.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  @Override
+  public boolean subscribe(SessionToken sessionToken, long auctionId, IAuctionListener listener) throws RemoteException {
+    if (!this.sessions.isValid(sessionToken) || auctionId <= 0) {
+      return false;
+    }
+    // Only active auctions are ever published, so subscribing to any other would be held forever
+    Boolean active = this.<Boolean>callCluster("isActive",
+            new Object[]{auctionId},
+            new Class[]{long.class},
+            "IS ACTIVE").join();
+    return active != null && active && this.notifications.subscribe(auctionId, listener);
+  }
+
+  /**
+   * Unsubscribes a client callback from notifications on an auction.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to unsubscribe from.
+   * @param listener the client's remote callback.
+   * @return true if unsubscribed, false if the session is invalid.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  @Override
+  public boolean unsubscribe(SessionToken sessionToken, long auctionId, IAuctionListener listener) throws RemoteException {
+    if (!this.sessions.isValid(sessionToken)) {
+      return false;
+    }
+    this.notifications.unsubscribe(auctionId, listener);
+    return true;
+  }
+
+  /**
+   * Sends a request of a given class to the cluster once it is admitted, without a thread
+   * waiting for a slot, and releases the slot when the response arrives.
+   * @param op the class of the request.
+   * @param busy obtains the response to a request turned away because the front-end is too busy.
+   * @param call sends the request.
+   * @return a future completed with the response.
+   */
+  private <T> CompletableFuture<T> whenAdmitted(Operation op, Supplier<T> busy, Supplier<CompletableFuture<T>> call) {
+    if (this.admission == null) {
+      return call.get();
+    }
+    return this.admission.admit(op).thenCompose((admitted) -> {
+      if (!admitted) {
+        return CompletableFuture.completedFuture(busy.get());
+      }
+      return call.get().whenComplete((response, e) -> this.admission.release(op));
+    });
   }
 
   // ================================================================== //
@@ -132,23 +455,38 @@ public class AuctionServerImpl extends UnicastRemoteObject implements IAuctionSe
   /**
    * Method called by the client once this server has been verified.
    * This method will return a challenge for the client to solve.
+   * The challenge is recorded, so only a signature of it can earn a session, and only once.
    * @return an authentication challenge object.
    * @throws RemoteException if an error occurs on the server.
    */
   @Override
   public AuthChallenge attemptAuth() throws RemoteException {
-    try {
-      System.out.println("[SERVER] ATTEMPTING AUTH");
-      RspList<AuthChallenge> responses = this.dispatcher.callRemoteMethods(  null,
-              "attemptAuth",
-              new Object[]{},
-              new Class[]{},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [ATTEMPTING AUTH] Failed to get responses");
+    return this.attemptAuthAsync().join();
+  }
+
+  /**
+   * Obtains a challenge for the client to solve, without waiting for the cluster.
+   * @return a future completed with an authentication challenge object, or null if none could be issued.
+   */
+  @Override
+  public CompletableFuture<AuthChallenge> attemptAuthAsync() {
+    System.out.println("[SERVER] ATTEMPTING AUTH");
+    if (this.capture != null) {
+      this.capture.recordAttemptAuth();
     }
-    return null;
+    CompletableFuture<AuthChallenge> challenge = this.authService != null ? CompletableFuture.completedFuture(this.authService.attemptAuth()) : this.attemptAuthOnCluster();
+    return challenge.thenApply((issued) -> issued != null && this.challenges.issue(issued) ? issued : null);
+  }
+
+  /**
+   * Obtains a challenge from a cluster member.
+   * @return a future completed with an authentication challenge object, or null if the front-end is busy or no member responded.
+   */
+  private CompletableFuture<AuthChallenge> attemptAuthOnCluster() {
+    return this.whenAdmitted(Operation.AUTH, () -> null, () -> this.callCluster("attemptAuth",
+            new Object[]{},
+            new Class[]{},
+            "ATTEMPTING AUTH"));
   }
 
   /**
@@ -160,18 +498,27 @@ public class AuctionServerImpl extends UnicastRemoteObject implements IAuctionSe
    */
   @Override
   public ServerAuthResponse signChallenge(AuthChallenge challenge) throws RemoteException {
-    try {
-      System.out.println("[SERVER] SIGNING AUTH");
-      RspList<ServerAuthResponse> responses = this.dispatcher.callRemoteMethods(  null,
-              "signChallenge",
-              new Object[]{challenge},
-              new Class[]{AuthChallenge.class},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [SIGNING AUTH] Failed to get responses");
+    return this.signChallengeAsync(challenge).join();
+  }
+
+  /**
+   * Signs a particular challenge object, without waiting for the cluster.
+   * @param challenge the authentication challenge to sign.
+   * @return a future completed with a server auth response object.
+   */
+  @Override
+  public CompletableFuture<ServerAuthResponse> signChallengeAsync(AuthChallenge challenge) {
+    System.out.println("[SERVER] SIGNING AUTH");
+    if (this.capture != null) {
+      this.capture.recordSignChallenge(challenge);
+    }
+    if (this.authService != null) {
+      return CompletableFuture.completedFuture(this.authService.signChallenge(challenge));
     }
-    return null;
+    return this.whenAdmitted(Operation.AUTH, () -> null, () -> this.callCluster("signChallenge",
+            new Object[]{challenge},
+            new Class[]{AuthChallenge.class},
+            "SIGNING AUTH"));
   }
 
   /**
@@ -183,55 +530,236 @@ public class AuctionServerImpl extends UnicastRemoteObject implements IAuctionSe
    */
   @Override
   public ServerAuthResponse verifySignature(AuthSig authSig) throws RemoteException {
-    try {
-      System.out.println("[SERVER] VERIFYING SIGNATURE");
-      RspList<ServerAuthResponse> responses = this.dispatcher.callRemoteMethods(  null,
-              "verifySignature",
-              new Object[]{authSig},
-              new Class[]{AuthSig.class},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [VERIFYING SIGNATURE] Failed to get responses");
+    return this.verifySignatureAsync(authSig).join();
+  }
+
+  /**
+   * Verifies a particular signature object, without waiting for the verification pipeline or the cluster.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with a server auth response object.
+   */
+  @Override
+  public CompletableFuture<ServerAuthResponse> verifySignatureAsync(AuthSig authSig) {
+    System.out.println("[SERVER] VERIFYING SIGNATURE");
+    if (this.capture != null) {
+      this.capture.recordVerifySignature();
+    }
+    // A signature for a named user only counts if made with that user's registered key
+    if (authSig.getEmail() != null && (this.users == null || !this.users.isRegistered(authSig.getEmail(), authSig.getPubKey()))) {
+      System.out.println("[SERVER] Rejecting unregistered key for " + authSig.getEmail());
+      return CompletableFuture.completedFuture(new ServerAuthResponse(authSig.getSigBytes(), authSig.getChallenge(), false));
     }
-    return null;
+    // ... and only of a challenge this front-end issued, that hasn't expired or already been answered
+    if (authSig.getEmail() != null && !this.challenges.isOutstanding(authSig.getChallenge())) {
+      System.out.println("[SERVER] Rejecting an unknown, expired or used challenge for " + authSig.getEmail());
+      return CompletableFuture.completedFuture(new ServerAuthResponse(authSig.getSigBytes(), authSig.getChallenge(), false));
+    }
+    CompletableFuture<ServerAuthResponse> verified = this.authService != null ? this.authService.verifySignatureAsync(authSig) : this.verifySignatureOnCluster(authSig);
+    return verified.thenApply((response) -> {
+      // Issue a session token so later requests don't need to repeat the protocol
+      if (response != null && response.isSigVerified() && authSig.getEmail() != null) {
+        int userId = this.users.getUserId(authSig.getEmail());
+        // Redeemed only now, so a signature the server was too busy to verify can be resent
+        if (userId == 0 || !this.challenges.redeem(authSig.getChallenge())) {
+          return (new ServerAuthResponse(authSig.getSigBytes(), authSig.getChallenge(), false));
+        }
+        this.registerUser(new User(userId, authSig.getName(), authSig.getEmail()));
+        return (new ServerAuthResponse(response.getSigBytes(), response.getChallenge(), true, this.sessions.issue(authSig.getEmail(), userId)));
+      }
+      return response;
+    });
   }
 
   /**
-   * Method to obtain the server's private key based on a given file path.
-   * @return the private key object.
+   * Sends the profile of a user who has just authenticated to the cluster, unless this front-end
+   * already has. Nothing waits on the update, so it doesn't add to the login round trip.
+   * @param user the user, with the id assigned by the key registry.
    */
-  private PrivateKey getPrivateKey() {
+  private void registerUser(User user) {
+    if (!this.userDirectory.register(user)) {
+      return;
+    }
     try {
-      System.out.println("[SERVER] GET PRIVATE KEY");
-      RspList<PrivateKey> responses = this.dispatcher.callRemoteMethods(  null,
-              "getPrivateKey",
-              new Object[]{},
-              new Class[]{},
-              this.requestOptions );
-      return responses.getFirst();
+      this.dispatcher.callRemoteMethods(  null,
+              "registerUser",
+              new Object[]{user},
+              new Class[]{User.class},
+              this.asyncOptions );
     } catch(Exception e) {
-      System.out.println("[SERVER] [GET PRIVATE KEY] Failed to get responses");
+      // Not sent, so let the user's next login send it again
+      this.userDirectory.unregister(user);
+      System.out.println("[SERVER] [REGISTER USER] Failed to send profile");
     }
-    return null;
+  }
+
+  /**
+   * Verifies a signature by broadcasting it to every cluster member.
+   * Local verification is bounded by its own pipeline, so only this path is subject to admission control.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with a server auth response object, telling the client to retry later if the front-end is busy.
+   */
+  private CompletableFuture<ServerAuthResponse> verifySignatureOnCluster(AuthSig authSig) {
+    return this.whenAdmitted(Operation.AUTH, () -> ServerAuthResponse.retryLater(authSig), () -> this.callCluster("verifySignature",
+            new Object[]{authSig},
+            new Class[]{AuthSig.class},
+            "VERIFYING SIGNATURE"));
+  }
+
+  /**
+   * Method called by the client to check a session token from an earlier login is still valid.
+   * Validation is local to this front-end and doesn't involve the cluster.
+   * @param sessionToken the session token to check.
+   * @return true if the session is still valid, false otherwise.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  @Override
+  public boolean resumeSession(SessionToken sessionToken) throws RemoteException {
+    return this.sessions.isValid(sessionToken);
   }
 
   /**
    * Accessor to obtain the list of currently active auctions.
-   * @return the list of currently active auctions.
+   * @return the list of currently active auctions, or null if the front-end is too busy.
    */
-  public ConcurrentHashMap<String, AuctionItem> getActiveAuctions() throws RemoteException {
-    try {
-      System.out.println("[SERVER] GET ACTIVE AUCTIONS");
-      RspList<ConcurrentHashMap<String, AuctionItem>> responses = this.dispatcher.callRemoteMethods(  null,
-              "getActiveAuctions",
-              new Object[]{},
-              new Class[]{},
-              this.requestOptions );
-      return responses.getFirst();
-    } catch(Exception e) {
-      System.out.println("[SERVER] [GET ACTIVE AUCTIONS] Failed to get responses");
+  public Map<Long, AuctionItem> getActiveAuctions() throws RemoteException {
+    return this.getActiveAuctionsAsync().join();
+  }
+
+  /**
+   * Obtains the list of currently active auctions, without waiting for the cluster.
+   * @return a future completed with the active auctions, or null if the front-end is too busy.
+   */
+  @Override
+  public CompletableFuture<Map<Long, AuctionItem>> getActiveAuctionsAsync() {
+    return this.whenAdmitted(Operation.BROWSE, () -> null, this::getActiveAuctionsOnCluster);
+  }
+
+  /**
+   * Obtains the list of currently active auctions from the cluster once admitted.
+   * @return a future completed with the active auctions, or null if no member responded.
+   */
+  private CompletableFuture<Map<Long, AuctionItem>> getActiveAuctionsOnCluster() {
+    System.out.println("[SERVER] GET ACTIVE AUCTIONS");
+    if (this.capture != null) {
+      this.capture.recordGetActiveAuctions();
+    }
+    long readNanos = System.nanoTime();
+    CompletableFuture<Map<Long, AuctionItem>> responses = this.callCluster("getActiveAuctions",
+            new Object[]{},
+            new Class[]{},
+            "GET ACTIVE AUCTIONS");
+    return responses.thenApply((auctions) -> {
+      if (this.auctionCache != null && auctions != null) {
+        this.auctionCache.observeAll(auctions);
+      }
+      if (auctions != null) {
+        this.notifications.retainActive(auctions.keySet(), readNanos);
+      }
+      return auctions;
+    });
+  }
+
+  /**
+   * Looks up the profiles of users by id, asking the cluster only for those this front-end doesn't hold.
+   * @param userIds the ids of the users.
+   * @return the users, in the same order, with null for any unknown id (or null if the front-end is too busy).
+   * @throws RemoteException if an error occurs on the server.
+   */
+  @Override
+  public User[] getUsers(int[] userIds) throws RemoteException {
+    return this.getUsersAsync(userIds).join();
+  }
+
+  /**
+   * Looks up the profiles of users by id, without waiting for the cluster.
+   * @param userIds the ids of the users.
+   * @return a future completed with the users, in the same order, with null for any unknown id (or null if the front-end is too busy).
+   */
+  @Override
+  public CompletableFuture<User[]> getUsersAsync(int[] userIds) {
+    User[] found = this.userDirectory.getAll(userIds);
+    int missing = 0;
+    for (User user : found) {
+      missing += user == null ? 1 : 0;
+    }
+    if (missing == 0) {
+      return CompletableFuture.completedFuture(found);
+    }
+    int[] missingIds = new int[missing];
+    for (int i = 0, j = 0; i < found.length; i++) {
+      if (found[i] == null) {
+        missingIds[j++] = userIds[i];
+      }
+    }
+    return this.whenAdmitted(Operation.BROWSE, () -> null, () -> this.getUsersOnCluster(found, missingIds));
+  }
+
+  /**
+   * Looks up the profiles of users this front-end doesn't hold on the cluster once admitted.
+   * @param found the users this front-end holds, with null for each it doesn't, filled in by the lookup.
+   * @param missingIds the ids of the users this front-end doesn't hold, in order.
+   * @return a future completed with the found users.
+   */
+  private CompletableFuture<User[]> getUsersOnCluster(User[] found, int[] missingIds) {
+    System.out.println("[SERVER] GET USERS");
+    CompletableFuture<User[]> responses = this.callCluster("getUsers",
+            new Object[]{missingIds},
+            new Class[]{int[].class},
+            "GET USERS");
+    return responses.thenApply((looked) -> {
+      for (int i = 0, j = 0; i < found.length && looked != null; i++) {
+        if (found[i] == null) {
+          found[i] = looked[j++];
+          this.userDirectory.register(found[i]);
+        }
+      }
+      return found;
+    });
+  }
+
+  /**
+   * Accessor to obtain the list of currently active auctions only if they have changed since a given version.
+   * @param version the version of the active auctions held by the client.
+   * @return a browse response with the current version, and the active auctions if modified (or a busy response).
+   */
+  @Override
+  public BrowseResponse getActiveAuctionsIfModified(long version) throws RemoteException {
+    return this.getActiveAuctionsIfModifiedAsync(version).join();
+  }
+
+  /**
+   * Obtains the list of currently active auctions only if they have changed, without waiting for the cluster.
+   * @param version the version of the active auctions held by the client.
+   * @return a future completed with the browse response (or a busy response).
+   */
+  @Override
+  public CompletableFuture<BrowseResponse> getActiveAuctionsIfModifiedAsync(long version) {
+    return this.whenAdmitted(Operation.BROWSE, () -> BrowseResponse.serverBusy(version), () -> this.getActiveAuctionsIfModifiedOnCluster(version));
+  }
+
+  /**
+   * Obtains the list of currently active auctions, if changed, from the cluster once admitted.
+   * @param version the version of the active auctions held by the client.
+   * @return a future completed with the browse response, or null if no member responded.
+   */
+  private CompletableFuture<BrowseResponse> getActiveAuctionsIfModifiedOnCluster(long version) {
+    System.out.println("[SERVER] GET ACTIVE AUCTIONS IF MODIFIED");
+    if (this.capture != null) {
+      this.capture.recordGetActiveAuctionsIfModified(version);
     }
-    return null;
+    long readNanos = System.nanoTime();
+    CompletableFuture<BrowseResponse> responses = this.callCluster("getActiveAuctionsIfModified",
+            new Object[]{version},
+            new Class[]{long.class},
+            "GET ACTIVE AUCTIONS IF MODIFIED");
+    return responses.thenApply((response) -> {
+      if (this.auctionCache != null && response != null && response.isModified()) {
+        this.auctionCache.observeAll(response.getAuctions());
+      }
+      if (response != null && response.isModified()) {
+        this.notifications.retainActive(response.getAuctions().keySet(), readNanos);
+      }
+      return response;
+    });
   }
 }
\ No newline at end of file
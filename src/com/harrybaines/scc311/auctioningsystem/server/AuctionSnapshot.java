@@ -0,0 +1,442 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Code: Auction Snapshot   AuctionSnapshot.java
+ * Date: 19/10/26
+ *
+ * An immutable, versioned view of the active auctions. Changes produce a
+ * new snapshot that shares all but one path of its hash trie with the old
+ * one (a persistent hash array mapped trie, 32 ways per level), so creating,
+ * bidding on or closing an auction copies O(log32 n) small arrays rather
+ * than the whole map. A cluster member publishes each new snapshot through
+ * a volatile field: browsing and state transfer read it in O(1), without a
+ * lock, and always see a consistent set of auctions, while writers never
+ * wait for readers. The auction items in a snapshot must not be modified;
+ * bids replace an item with a copy instead.
+ *
+ * A snapshot is read-only as a Map, and is serialised as its version, next
+ * auction id and items rather than as its trie.
+*/
+public final class AuctionSnapshot extends AbstractMap<Long, AuctionItem> implements java.io.Serializable {
+
+  /** The snapshot of a cluster member with no auctions */
+  public static final AuctionSnapshot EMPTY = new AuctionSnapshot(null, 0, 0, 1);
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private final transient Node root;
+  private final transient int size;
+  private final transient long version;
+  private final transient long nextId;
+
+  /**
+   * Constructor to initialise a snapshot.
+   * @param root the root of the trie, or null if empty.
+   * @param size the number of auctions.
+   * @param version the version of the active auctions.
+   * @param nextId the id to give the next auction created.
+  */
+  private AuctionSnapshot(Node root, int size, long version, long nextId) {
+    this.root = root;
+    this.size = size;
+    this.version = version;
+    this.nextId = nextId;
+  }
+
+  /**
+   * Accessor to obtain the version of the active auctions, incremented on every change.
+   * @return the version.
+  */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Accessor to obtain the id to give the next auction created.
+   * @return the next auction id.
+  */
+  public long getNextId() {
+    return this.nextId;
+  }
+
+  /**
+   * Builds a snapshot from a set of auctions.
+   * @param items the auctions, with their ids set.
+   * @param version the version of the active auctions.
+   * @param nextId the id to give the next auction created.
+   * @return the snapshot.
+  */
+  public static AuctionSnapshot of(AuctionItem[] items, long version, long nextId) {
+    Node root = null;
+    for (AuctionItem item : items) {
+      root = put(root, item, hash(item.getId()), 0);
+    }
+    return new AuctionSnapshot(root, items.length, version, nextId);
+  }
+
+  /**
+   * Creates a snapshot with an auction added or replaced.
+   * @param auctionItem the auction, with its id set.
+   * @return the new snapshot, one version later.
+  */
+  public AuctionSnapshot with(AuctionItem auctionItem) {
+    return this.with(auctionItem, this.nextId);
+  }
+
+  /**
+   * Creates a snapshot with a newly created auction added and the next auction id advanced.
+   * @param auctionItem the auction, with its id set to getNextId().
+   * @return the new snapshot, one version later.
+  */
+  public AuctionSnapshot withCreated(AuctionItem auctionItem) {
+    return this.with(auctionItem, this.nextId + 1);
+  }
+
+  /**
+   * Creates a snapshot with an auction added or replaced.
+   * @param auctionItem the auction, with its id set.
+   * @param nextId the id to give the next auction created.
+   * @return the new snapshot, one version later.
+  */
+  private AuctionSnapshot with(AuctionItem auctionItem, long nextId) {
+    long id = auctionItem.getId();
+    int added = this.get(id) == null ? 1 : 0;
+    Node root = put(this.root, auctionItem, hash(id), 0);
+    return new AuctionSnapshot(root, this.size + added, this.version + 1, nextId);
+  }
+
+  /**
+   * Creates a snapshot with an auction removed.
+   * @param auctionId the id of the auction.
+   * @return the new snapshot one version later, or this snapshot if there is no such auction.
+  */
+  public AuctionSnapshot without(long auctionId) {
+    if (this.get(auctionId) == null) {
+      return this;
+    }
+    Node root = remove(this.root, auctionId, hash(auctionId), 0);
+    return new AuctionSnapshot(root, this.size - 1, this.version + 1, this.nextId);
+  }
+
+  /**
+   * Obtains an auction by id.
+   * @param key the id of the auction.
+   * @return the auction, or null if there is no such auction.
+  */
+  @Override
+  public AuctionItem get(Object key) {
+    return key instanceof Long ? this.get(((Long) key).longValue()) : null;
+  }
+
+  /**
+   * Obtains an auction by id, without boxing the id.
+   * @param id the id of the auction.
+   * @return the auction, or null if there is no such auction.
+  */
+  public AuctionItem get(long id) {
+    int hash = hash(id);
+    Node node = this.root;
+    int shift = 0;
+    while (node != null) {
+      if (node.collision) {
+        for (Object slot : node.slots) {
+          if (((AuctionItem) slot).getId() == id) {
+            return (AuctionItem) slot;
+          }
+        }
+        return null;
+      }
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+      if (!(slot instanceof Node)) {
+        return ((AuctionItem) slot).getId() == id ? (AuctionItem) slot : null;
+      }
+      node = (Node) slot;
+      shift += BITS;
+    }
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return this.get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public Set<Map.Entry<Long, AuctionItem>> entrySet() {
+    return new AbstractSet<Map.Entry<Long, AuctionItem>>() {
+      @Override
+      public Iterator<Map.Entry<Long, AuctionItem>> iterator() {
+        Iterator<AuctionItem> items = AuctionSnapshot.this.items();
+        return new Iterator<Map.Entry<Long, AuctionItem>>() {
+          @Override
+          public boolean hasNext() {
+            return items.hasNext();
+          }
+
+          @Override
+          public Map.Entry<Long, AuctionItem> next() {
+            AuctionItem item = items.next();
+            return new AbstractMap.SimpleImmutableEntry<Long, AuctionItem>(item.getId(), item);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return AuctionSnapshot.this.size;
+      }
+    };
+  }
+
+  /**
+   * Iterates over the auctions in trie order.
+   * @return an iterator over the auctions.
+  */
+  public Iterator<AuctionItem> items() {
+    final Deque<Object> pending = new ArrayDeque<Object>();
+    if (this.root != null) {
+      pending.push(this.root);
+    }
+    return new Iterator<AuctionItem>() {
+      @Override
+      public boolean hasNext() {
+        while (pending.peek() instanceof Node) {
+          Object[] slots = ((Node) pending.pop()).slots;
+          for (int i = slots.length - 1; i >= 0; i--) {
+            pending.push(slots[i]);
+          }
+        }
+        return !pending.isEmpty();
+      }
+
+      @Override
+      public AuctionItem next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return (AuctionItem) pending.pop();
+      }
+    };
+  }
+
+  // ================================================== //
+  //                    TRIE NODES                      //
+  // ================================================== //
+
+  /**
+   * A trie node: a bitmap of the occupied 5-bit hash chunks and a compact array holding an
+   * auction or child node for each, or - once the hash is exhausted - a list of colliding auctions.
+  */
+  private static final class Node {
+    private final int bitmap;
+    private final Object[] slots;
+    private final boolean collision;
+
+    private Node(int bitmap, Object[] slots, boolean collision) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+      this.collision = collision;
+    }
+  }
+
+  /**
+   * Obtains the hash of an auction id. Ids are sequential, so their low bits
+   * are already evenly spread and the trie stays balanced without mixing.
+   * @param id the auction id.
+   * @return the hash.
+  */
+  private static int hash(long id) {
+    return (int) (id ^ (id >>> 32));
+  }
+
+  /**
+   * Adds or replaces an auction below a node, copying the path to it.
+   * @param node the node, or null if empty.
+   * @param item the auction.
+   * @param hash the hash of the auction's id.
+   * @param shift the number of hash bits consumed above this node.
+   * @return the new node.
+  */
+  private static Node put(Node node, AuctionItem item, int hash, int shift) {
+    if (node == null) {
+      return new Node(1 << ((hash >>> shift) & MASK), new Object[]{item}, false);
+    }
+    if (node.collision) {
+      for (int i = 0; i < node.slots.length; i++) {
+        if (item.getId() == ((AuctionItem) node.slots[i]).getId()) {
+          return new Node(0, replaced(node.slots, i, item), true);
+        }
+      }
+      Object[] slots = new Object[node.slots.length + 1];
+      System.arraycopy(node.slots, 0, slots, 0, node.slots.length);
+      slots[node.slots.length] = item;
+      return new Node(0, slots, true);
+    }
+    int bit = 1 << ((hash >>> shift) & MASK);
+    int index = Integer.bitCount(node.bitmap & (bit - 1));
+    if ((node.bitmap & bit) == 0) {
+      Object[] slots = new Object[node.slots.length + 1];
+      System.arraycopy(node.slots, 0, slots, 0, index);
+      slots[index] = item;
+      System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+      return new Node(node.bitmap | bit, slots, false);
+    }
+    Object slot = node.slots[index];
+    if (slot instanceof Node) {
+      return new Node(node.bitmap, replaced(node.slots, index, put((Node) slot, item, hash, shift + BITS)), false);
+    }
+    AuctionItem existing = (AuctionItem) slot;
+    if (existing.getId() == item.getId()) {
+      return new Node(node.bitmap, replaced(node.slots, index, item), false);
+    }
+    return new Node(node.bitmap, replaced(node.slots, index, pair(existing, hash(existing.getId()), item, hash, shift + BITS)), false);
+  }
+
+  /**
+   * Creates the node holding two auctions whose hashes agree above it.
+   * @param a the first auction.
+   * @param hashA the hash of the first auction's id.
+   * @param b the second auction.
+   * @param hashB the hash of the second auction's id.
+   * @param shift the number of hash bits consumed above the node.
+   * @return the new node.
+  */
+  private static Node pair(AuctionItem a, int hashA, AuctionItem b, int hashB, int shift) {
+    if (shift >= 32) {
+      return new Node(0, new Object[]{a, b}, true);
+    }
+    int chunkA = (hashA >>> shift) & MASK;
+    int chunkB = (hashB >>> shift) & MASK;
+    if (chunkA == chunkB) {
+      return new Node(1 << chunkA, new Object[]{pair(a, hashA, b, hashB, shift + BITS)}, false);
+    }
+    Object[] slots = chunkA < chunkB ? new Object[]{a, b} : new Object[]{b, a};
+    return new Node((1 << chunkA) | (1 << chunkB), slots, false);
+  }
+
+  /**
+   * Removes an auction below a node, copying the path to it.
+   * @param node the node.
+   * @param id the id of the auction, which must be present.
+   * @param hash the hash of the auction's id.
+   * @param shift the number of hash bits consumed above this node.
+   * @return the new node, or null if it is now empty.
+  */
+  private static Node remove(Node node, long id, int hash, int shift) {
+    if (node.collision) {
+      if (node.slots.length == 1) {
+        return null;
+      }
+      Object[] slots = new Object[node.slots.length - 1];
+      for (int i = 0, j = 0; i < node.slots.length; i++) {
+        if (((AuctionItem) node.slots[i]).getId() != id) {
+          slots[j++] = node.slots[i];
+        }
+      }
+      return new Node(0, slots, true);
+    }
+    int bit = 1 << ((hash >>> shift) & MASK);
+    int index = Integer.bitCount(node.bitmap & (bit - 1));
+    Object slot = node.slots[index];
+    if (slot instanceof Node) {
+      Node child = remove((Node) slot, id, hash, shift + BITS);
+      if (child != null) {
+        // Pull a lone auction up so the trie stays as shallow as possible
+        Object replacement = !child.collision && child.slots.length == 1 && !(child.slots[0] instanceof Node) ? child.slots[0] : child;
+        return new Node(node.bitmap, replaced(node.slots, index, replacement), false);
+      }
+    }
+    if (node.slots.length == 1) {
+      return null;
+    }
+    Object[] slots = new Object[node.slots.length - 1];
+    System.arraycopy(node.slots, 0, slots, 0, index);
+    System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+    return new Node(node.bitmap & ~bit, slots, false);
+  }
+
+  /**
+   * Copies an array with one element replaced.
+   * @param slots the array.
+   * @param index the index of the element.
+   * @param value the new element.
+   * @return the copy.
+  */
+  private static Object[] replaced(Object[] slots, int index, Object value) {
+    Object[] copy = slots.clone();
+    copy[index] = value;
+    return copy;
+  }
+
+  // ================================================== //
+  //                  SERIALISATION                     //
+  // ================================================== //
+
+  /**
+   * Replaces the snapshot with its serialised form when it is written.
+   * @return the serialised form.
+  */
+  private Object writeReplace() {
+    AuctionItem[] items = new AuctionItem[this.size];
+    Iterator<AuctionItem> it = this.items();
+    for (int i = 0; i < items.length; i++) {
+      items[i] = it.next();
+    }
+    return new SerializedForm(this.version, this.nextId, items);
+  }
+
+  /**
+   * Prevents a snapshot being read other than through its serialised form.
+   * @param in the stream.
+   * @throws InvalidObjectException always.
+  */
+  private void readObject(ObjectInputStream in) throws InvalidObjectException {
+    throw new InvalidObjectException("Snapshots are read through their serialised form");
+  }
+
+  /**
+   * The serialised form of a snapshot: its version, next auction id and auctions.
+  */
+  private static final class SerializedForm implements java.io.Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final long version;
+    private final long nextId;
+    private final AuctionItem[] items;
+
+    private SerializedForm(long version, long nextId, AuctionItem[] items) {
+      this.version = version;
+      this.nextId = nextId;
+      this.items = items;
+    }
+
+    /**
+     * Rebuilds the snapshot when it is read.
+     * @return the snapshot.
+    */
+    private Object readResolve() {
+      return of(this.items, this.version, this.nextId);
+    }
+  }
+}
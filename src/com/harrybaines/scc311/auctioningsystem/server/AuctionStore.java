@@ -0,0 +1,85 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+/**
+ * Code: Auction Store   AuctionStore.java
+ * Date: 19/10/26
+ *
+ * The storage engine behind a ClusterMember. Mutations are made one at a
+ * time by the member; reads of the version and snapshot may come from any
+ * thread. The engine is chosen with -Dauction.store: "heap" (the default)
+ * keeps an AuctionSnapshot and publishes every change in O(1), "offheap"
+ * keeps fixed-width records outside the Java heap for millions of live
+ * auctions with little GC pressure, at the cost of building snapshots on
+ * demand.
+*/
+public interface AuctionStore {
+
+  /**
+   * Obtains an auction by id.
+   * @param auctionId the id of the auction.
+   * @return the auction, or null if there is no such auction.
+  */
+  AuctionItem get(long auctionId);
+
+  /**
+   * Stores a new auction under the next auction id.
+   * @param auctionItem the auction, whose id is set by this method.
+   * @return the stored auction.
+  */
+  AuctionItem create(AuctionItem auctionItem);
+
+  /**
+   * Makes a bid the highest bid on an auction.
+   * @param auctionId the id of the auction, which must exist.
+   * @param bid the new highest bid.
+   * @return the auction with its new highest bid.
+  */
+  AuctionItem bid(long auctionId, Bid bid);
+
+  /**
+   * Removes an auction.
+   * @param auctionId the id of the auction.
+   * @return the removed auction, or null if there was no such auction.
+  */
+  AuctionItem remove(long auctionId);
+
+  /**
+   * Obtains the version of the active auctions, incremented on every change.
+   * @return the version.
+  */
+  long getVersion();
+
+  /**
+   * Obtains the number of active auctions.
+   * @return the number of auctions.
+  */
+  int size();
+
+  /**
+   * Obtains an immutable snapshot of the active auctions, for browsing and state transfer.
+   * @return the snapshot.
+  */
+  AuctionSnapshot snapshot();
+
+  /**
+   * Replaces the contents of the store with a snapshot received by state transfer.
+   * @param snapshot the snapshot.
+  */
+  void load(AuctionSnapshot snapshot);
+
+  /**
+   * Creates the store selected by -Dauction.store (heap or offheap).
+   * @return the store.
+  */
+  static AuctionStore fromSystemProperty() {
+    String store = System.getProperty("auction.store", "heap");
+    switch (store) {
+      case "heap":
+        return new HeapAuctionStore();
+      case "offheap":
+        return new OffHeapAuctionStore();
+      default:
+        throw new IllegalArgumentException("Unknown auction store: " + store);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
+
+import java.security.PrivateKey;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Code: Authentication Service   AuthService.java
+ * Date: 19/10/26
+ *
+ * Performs the server side of the challenge response protocol on the
+ * front-end. None of the three steps touch auction state, so there is no
+ * need to multicast them and have every cluster member repeat the same
+ * signature; authentication cost now scales with the number of front-ends
+ * rather than the number of replicas.
+ *
+ * The server private key is read from the same key file the cluster members
+ * use and is only ever held in memory on this front-end - it is never sent
+ * over the cluster. The CryptoService caches the decoded key and picks up a
+ * replaced key file, so keys can be rotated without a restart. Signatures
+ * are verified on a bounded VerificationPipeline rather than the RMI thread.
+*/
+public class AuthService {
+
+  private final String privKeyPath;
+  private final VerificationPipeline verifier;
+
+  /**
+   * Constructor to initialise the service with the server's private key file.
+  */
+  public AuthService() {
+    this(Constants.SERVER_DIR + Constants.SERVER_PRIVATE_KEY_STR);
+  }
+
+  /**
+   * Constructor to initialise the service with an explicit private key file.
+   * @param privKeyPath the path to the server's private key file.
+  */
+  public AuthService(String privKeyPath) {
+    this(privKeyPath, new VerificationPipeline());
+  }
+
+  /**
+   * Constructor to initialise the service with an explicit private key file and verification pipeline.
+   * @param privKeyPath the path to the server's private key file.
+   * @param verifier the pipeline signatures are verified on.
+  */
+  public AuthService(String privKeyPath, VerificationPipeline verifier) {
+    this.privKeyPath = privKeyPath;
+    this.verifier = verifier;
+  }
+
+  /**
+   * Creates a new challenge for a client to sign.
+   * @return an authentication challenge object.
+  */
+  public AuthChallenge attemptAuth() {
+    return SecurityManager.getChallenge();
+  }
+
+  /**
+   * Signs a client's challenge with the server's private key.
+   * @param challenge the authentication challenge to sign.
+   * @return a server auth response object, or null if the challenge couldn't be signed.
+  */
+  public ServerAuthResponse signChallenge(AuthChallenge challenge) {
+    PrivateKey privKey = SecurityManager.getPrivateKey(this.privKeyPath);
+    if (privKey == null) {
+      System.out.println("[SERVER] No server private key available to sign with");
+      return null;
+    }
+    byte[] sigBytes = SecurityManager.signChallenge(challenge, privKey);
+    return sigBytes != null ? new ServerAuthResponse(sigBytes, challenge, SignatureAlgorithm.of(privKey)) : null;
+  }
+
+  /**
+   * Verifies a client's signature of a challenge against the public key it presented.
+   * @param authSig the authentication signature to verify.
+   * @return a server auth response object, telling the client to retry later if the server is saturated.
+  */
+  public ServerAuthResponse verifySignature(AuthSig authSig) {
+    return this.verifier.verify(authSig);
+  }
+
+  /**
+   * Verifies a client's signature of a challenge, without waiting for the pipeline.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with a server auth response object, telling the client to retry later if the server is saturated.
+  */
+  public CompletableFuture<ServerAuthResponse> verifySignatureAsync(AuthSig authSig) {
+    return this.verifier.verifyAsync(authSig);
+  }
+}
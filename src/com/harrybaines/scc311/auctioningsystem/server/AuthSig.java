@@ -1,5 +1,8 @@
 package com.harrybaines.scc311.auctioningsystem.server;
 
+import com.harrybaines.scc311.auctioningsystem.client.User;
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
+
 import java.security.PublicKey;
 
 /**
@@ -16,6 +19,9 @@ public class AuthSig implements java.io.Serializable {
   private byte[] sigBytes;
   private AuthChallenge challenge;
   private PublicKey pubKey;
+  private String email;
+  private String name;
+  private SignatureAlgorithm algorithm;
 
   /**
    * Constructor to initialise a new authentication signature object with the signature bytes,
@@ -25,9 +31,48 @@ public class AuthSig implements java.io.Serializable {
    * @param pubKey the public key used in the signing process.
   */
   public AuthSig(byte[] sigBytes, AuthChallenge challenge, PublicKey pubKey) {
+    this(sigBytes, challenge, pubKey, (String) null);
+  }
+
+  /**
+   * Constructor to initialise a new authentication signature object on behalf of a user,
+   * so the server can issue a session token for that user once the signature is verified.
+   * @param sigBytes the serialised signature object.
+   * @param challenge the authentication challenge object.
+   * @param pubKey the public key used in the signing process.
+   * @param email the email of the user being authenticated.
+  */
+  public AuthSig(byte[] sigBytes, AuthChallenge challenge, PublicKey pubKey, String email) {
+    this(sigBytes, challenge, pubKey, email, pubKey != null ? SignatureAlgorithm.of(pubKey) : null);
+  }
+
+  /**
+   * Constructor to initialise a new authentication signature object on behalf of a user,
+   * also giving the server the user's name to show other users once it has been verified.
+   * @param sigBytes the serialised signature object.
+   * @param challenge the authentication challenge object.
+   * @param pubKey the public key used in the signing process.
+   * @param user the user being authenticated.
+  */
+  public AuthSig(byte[] sigBytes, AuthChallenge challenge, PublicKey pubKey, User user) {
+    this(sigBytes, challenge, pubKey, user.getEmail());
+    this.name = user.getName();
+  }
+
+  /**
+   * Constructor to initialise a new authentication signature object made with a given algorithm.
+   * @param sigBytes the serialised signature object.
+   * @param challenge the authentication challenge object.
+   * @param pubKey the public key used in the signing process.
+   * @param email the email of the user being authenticated, or null.
+   * @param algorithm the signature algorithm used.
+  */
+  public AuthSig(byte[] sigBytes, AuthChallenge challenge, PublicKey pubKey, String email, SignatureAlgorithm algorithm) {
     this.sigBytes = sigBytes;
     this.challenge = challenge;
     this.pubKey = pubKey;
+    this.email = email;
+    this.algorithm = algorithm;
   }
 
   /** 
@@ -53,4 +98,28 @@ public class AuthSig implements java.io.Serializable {
   public PublicKey getPubKey() {
     return this.pubKey;
   }
+
+  /**
+   * Accessor to obtain the email of the user being authenticated.
+   * @return the user's email, or null if not authenticating a user.
+  */
+  public String getEmail() {
+    return this.email;
+  }
+
+  /**
+   * Accessor to obtain the name of the user being authenticated.
+   * @return the user's name, or null if not given.
+  */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Accessor to obtain the algorithm this signature was made with.
+   * @return the signature algorithm.
+  */
+  public SignatureAlgorithm getAlgorithm() {
+    return this.algorithm;
+  }
 }
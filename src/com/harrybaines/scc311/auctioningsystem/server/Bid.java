@@ -1,40 +1,62 @@
 package com.harrybaines.scc311.auctioningsystem.server;
 
-import com.harrybaines.scc311.auctioningsystem.client.User;
-
 /**
  * Code: Bid   Bid.java
  * Date: 14/11/18
  *
  * A Class to represent an individual bid on an auction
  * item. Each bid contains an auctionId, a bid value
- * and a reference to the person who placed a bid on this
+ * and the user id of the person who placed a bid on this
  * auction.
  * @author Harry Baines
  */
 public class Bid implements java.io.Serializable {
 
-  private String auctionId;
-  private User bidder;
+  private long auctionId;
+  private int bidderId;
   private double bidValue;
+  private String requestId;
+  private boolean retry;
 
   /**
    * Constructor to initialise a new bid.
    * @param auctionId the id of the auction this bid has been placed on.
-   * @param bidder the bidder reference who placed this bid.
+   * @param bidderId the id of the user who placed this bid.
+   * @param bidValue the value of the bid that has been placed.
+   */
+  public Bid(long auctionId, int bidderId, double bidValue) {
+    this(auctionId, bidderId, bidValue, null);
+  }
+
+  /**
+   * Constructor to initialise a new bid that can be safely resent.
+   * @param auctionId the id of the auction this bid has been placed on.
+   * @param bidderId the id of the user who placed this bid.
    * @param bidValue the value of the bid that has been placed.
+   * @param requestId the client generated id of this request, or null if it won't be resent.
    */
-  public Bid(String auctionId, User bidder, double bidValue) {
+  public Bid(long auctionId, int bidderId, double bidValue, String requestId) {
     this.auctionId = auctionId;
-    this.bidder = bidder;
+    this.bidderId = bidderId;
     this.bidValue = bidValue;
+    this.requestId = requestId;
+  }
+
+  /**
+   * Creates a copy of this bid to resend after a timeout or to hedge with.
+   * @return the copy, with the same request id, marked as a retry.
+   */
+  public Bid asRetry() {
+    Bid bid = new Bid(this.auctionId, this.bidderId, this.bidValue, this.requestId);
+    bid.retry = true;
+    return bid;
   }
 
   /**
    * Accessor to obtain the id of the auction this bid was placed on.
    * @return the auction id.
    */
-  public String getAuctionId() {
+  public long getAuctionId() {
     return this.auctionId;
   }
 
@@ -47,10 +69,26 @@ public class Bid implements java.io.Serializable {
   }
 
   /**
-   * Accessor to obtain the reference to the bidder who owns this bid.
-   * @return the bidder reference.
+   * Accessor to obtain the id of the bidder who owns this bid.
+   * @return the bidder's user id.
+   */
+  public int getBidderId() {
+    return this.bidderId;
+  }
+
+  /**
+   * Accessor to obtain the client generated id of the request that placed this bid.
+   * @return the request id, or null if none was given.
+   */
+  public String getRequestId() {
+    return this.requestId;
+  }
+
+  /**
+   * Accessor to determine if this bid is a resend of an earlier request.
+   * @return true if the bid may already have been placed.
    */
-  public User getBidder() {
-    return this.bidder;
+  public boolean isRetry() {
+    return this.retry;
   }
 }
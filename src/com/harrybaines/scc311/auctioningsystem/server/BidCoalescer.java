@@ -0,0 +1,225 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Code: Bid Coalescer   BidCoalescer.java
+ * Date: 19/10/26
+ *
+ * Collects the bids on each auction over a short window and sends only the
+ * highest to the cluster. The first bid on an auction opens a window, and
+ * once it has passed a timer closes it and places the highest bid (the
+ * earliest of equal bids, matching the order they would have been applied
+ * in), answering everyone else from the result. No caller's thread waits:
+ * each is given a future, and the window's work continues from the
+ * cluster's responses. If that bid succeeds the others are rejected exactly as the
+ * cluster would reject them after it - bidding on their own auction, below
+ * the start price, or not above the new highest bid. If it fails, the
+ * remaining bids are placed one by one in arrival order, as if there had
+ * been no window.
+ *
+ * A bid must be sent to the cluster within twice Constants.TIMEOUT, or it
+ * is abandoned and answered with null. A bid is only placed if it is
+ * claimed before then, so a caller answered with null at that deadline
+ * knows its bid was never sent, and a bid already being placed is answered
+ * by the cluster instead.
+ *
+ * The window is set with -Dauction.bid.coalesceMicros; 0 (the default)
+ * disables coalescing.
+*/
+public class BidCoalescer {
+
+  private static final Comparator<Pending> BEST_FIRST = Comparator
+      .comparingDouble((Pending p) -> -p.bid.getBidValue())
+      .thenComparingLong((Pending p) -> p.sequence);
+
+  private final long windowNanos;
+  private final ScheduledThreadPoolExecutor timer;  /* Closes windows and abandons late bids, never blocking */
+  private final ConcurrentLongMap<Window> windows = new ConcurrentLongMap<Window>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Constructor to initialise a coalescer with a given window.
+   * @param windowMicros the coalescing window in microseconds.
+  */
+  public BidCoalescer(long windowMicros) {
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    this.timer = new ScheduledThreadPoolExecutor(1, (r) -> {
+      Thread thread = new Thread(r, "bid-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.timer.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Creates a coalescer configured by -Dauction.bid.coalesceMicros.
+   * @return the coalescer, or null if coalescing is disabled.
+  */
+  public static BidCoalescer fromSystemProperty() {
+    long windowMicros = Long.getLong("auction.bid.coalesceMicros", 0);
+    return windowMicros > 0 ? new BidCoalescer(windowMicros) : null;
+  }
+
+  /**
+   * Submits a bid to the window for its auction without waiting for its result.
+   * @param bid the bid to place.
+   * @param placer places a single bid on the cluster, returning a future completed with the cluster's response.
+   * @return a future completed with the response to the bid, or with null if it wasn't placed
+   *         in time (and now never will be) or the cluster didn't answer.
+  */
+  public CompletableFuture<ServerResponse> submit(Bid bid, Function<Bid, CompletableFuture<ServerResponse>> placer) {
+    Pending pending = new Pending(bid, this.sequence.getAndIncrement());
+    while (true) {
+      Window created = new Window();
+      Window window = this.windows.putIfAbsent(bid.getAuctionId(), created);
+      boolean leader = window == null;
+      if (leader) {
+        window = created;
+      }
+      synchronized (window) {
+        if (window.closed) {
+          continue;  // It has just been closed - open or join the next window
+        }
+        window.bids.add(pending);
+      }
+      if (leader) {
+        final Window opened = window;
+        this.timer.schedule(() -> this.close(bid.getAuctionId(), opened, placer), this.windowNanos, TimeUnit.NANOSECONDS);
+      }
+      break;
+    }
+    ScheduledFuture<?> deadline = this.timer.schedule(() -> {
+      if (pending.decided.compareAndSet(false, true)) {
+        System.out.println("[SERVER] [BIDDING] Coalesced bid wasn't placed in time - abandoned");
+        pending.result.complete(null);
+      }
+    }, 2L * Constants.TIMEOUT, TimeUnit.MILLISECONDS);
+    pending.result.whenComplete((response, e) -> deadline.cancel(false));
+    return pending.result;
+  }
+
+  /**
+   * Closes a window that has passed and places its highest bid, then answers the
+   * others from the result once the cluster responds.
+   * @param auctionId the ID of the auction.
+   * @param window the window.
+   * @param placer places a single bid on the cluster.
+  */
+  private void close(long auctionId, Window window, Function<Bid, CompletableFuture<ServerResponse>> placer) {
+    List<Pending> bids;
+    synchronized (window) {
+      window.closed = true;
+      this.windows.remove(auctionId, window);
+      bids = window.bids;
+    }
+    bids.sort(BEST_FIRST);
+    this.place(bids.get(0), placer).whenComplete((response, e) -> {
+      if (e == null && response != null && response.getStatusCode() == IAuctionServer.BID_SUCCESSFUL) {
+        AuctionItem auctionItem = response.getAuctionItem();
+        for (int i = 1; i < bids.size(); i++) {
+          bids.get(i).result.complete(new ServerResponse(rejection(bids.get(i).bid, auctionItem), null));
+        }
+        this.coalesced.add(bids.size() - 1);
+      } else {
+        List<Pending> rest = new ArrayList<Pending>(bids.subList(1, bids.size()));
+        rest.sort(Comparator.comparingLong((Pending p) -> p.sequence));
+        this.placeInOrder(rest, 0, placer);
+      }
+    });
+  }
+
+  /**
+   * Places bids one by one, each once the cluster has answered the one before it.
+   * @param bids the bids, in arrival order.
+   * @param next the index of the next bid to place.
+   * @param placer places a single bid on the cluster.
+  */
+  private void placeInOrder(List<Pending> bids, int next, Function<Bid, CompletableFuture<ServerResponse>> placer) {
+    if (next < bids.size()) {
+      this.place(bids.get(next), placer).whenComplete((response, e) -> this.placeInOrder(bids, next + 1, placer));
+    }
+  }
+
+  /**
+   * Places a bid on the cluster and answers its caller, unless its caller has already been answered with null.
+   * @param pending the bid.
+   * @param placer places a single bid on the cluster.
+   * @return a future completed with the cluster's response, or with null if the bid was abandoned.
+  */
+  private CompletableFuture<ServerResponse> place(Pending pending, Function<Bid, CompletableFuture<ServerResponse>> placer) {
+    if (!pending.decided.compareAndSet(false, true)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<ServerResponse> placed;
+    try {
+      placed = placer.apply(pending.bid);
+    } catch (RuntimeException e) {
+      placed = CompletableFuture.failedFuture(e);
+    }
+    return placed.whenComplete((response, e) -> {
+      if (e != null) {
+        pending.result.completeExceptionally(e);
+      } else {
+        pending.result.complete(response);
+      }
+    });
+  }
+
+  /**
+   * Obtains the rejection the cluster would give a bid placed straight after a successful one.
+   * @param bid the losing bid.
+   * @param auctionItem the auction after the successful bid.
+   * @return the status code, as ClusterMember.bid would return it.
+  */
+  private static int rejection(Bid bid, AuctionItem auctionItem) {
+    if (auctionItem.getSellerId() == bid.getBidderId()) {
+      return IAuctionServer.CANT_BID_OWN;
+    } else if (bid.getBidValue() < auctionItem.getStartPrice()) {
+      return IAuctionServer.BID_SMALLER_THAN_START;
+    }
+    return IAuctionServer.BID_SMALLER_THAN_HIGH;
+  }
+
+  /**
+   * Obtains the number of bids answered without being sent to the cluster.
+   * @return the number of coalesced bids.
+  */
+  public long getCoalescedCount() {
+    return this.coalesced.sum();
+  }
+
+  /**
+   * The bids received on an auction during one window.
+  */
+  private static final class Window {
+    private final List<Pending> bids = new ArrayList<Pending>();
+    private boolean closed;
+  }
+
+  /**
+   * A bid waiting in a window, with its arrival order and the future its caller is given.
+   * Whichever of placing it and abandoning it at its deadline sets decided first wins.
+  */
+  private static final class Pending {
+    private final Bid bid;
+    private final long sequence;
+    private final CompletableFuture<ServerResponse> result = new CompletableFuture<ServerResponse>();
+    private final AtomicBoolean decided = new AtomicBoolean();
+
+    private Pending(Bid bid, long sequence) {
+      this.bid = bid;
+      this.sequence = sequence;
+    }
+  }
+}
@@ -0,0 +1,494 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.harrybaines.scc311.auctioningsystem.server.BinaryProtocol.*;
+
+/**
+ * Code: Binary Endpoint   BinaryEndpoint.java
+ * Date: 19/10/26
+ *
+ * An optional second front-end, alongside RMI, speaking the BinaryProtocol
+ * over plain TCP. A single selector thread accepts connections and reads
+ * frames without blocking; each request is then run on a worker, against the
+ * same AuctionServerImpl the RMI registry exposes, and its response queued
+ * back to the selector as soon as it completes. A client can therefore
+ * pipeline many requests on one connection and have them answered out of
+ * order, instead of holding one connection per outstanding RMI call.
+ *
+ * If the front-end is an IAsyncAuctionServer, a request only holds a worker
+ * while it is decoded and sent - not while it waits for admission, the
+ * signature verification pipeline or the cluster: its response is encoded
+ * and queued by whichever thread completes it. Thousands of requests can
+ * then be outstanding at the cluster at a cost of a future each, rather than
+ * a blocked thread each, so a handful of workers is enough.
+ *
+ * Subscriptions need a remote callback object, so they remain RMI only.
+ *
+ * Configurable via system properties:
+ *   auction.binaryPort        - the port to listen on (disabled unless set; 0 for any free port)
+ *   auction.binaryWorkers     - the number of worker threads (default 8)
+ *   auction.binaryMaxInFlight - the requests a connection may have outstanding
+ *                               before it is no longer read from (default 256)
+*/
+public class BinaryEndpoint implements Closeable {
+
+  private static final int READ_BUFFER_BYTES = 64 * 1024;
+  private static final int MAX_GATHER = 64;
+
+  private final IAuctionServer server;
+  private final IAsyncAuctionServer async;  /* The same front-end, or null if it can only be called blocking */
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+  private final ExecutorService workers;
+  private final int maxInFlight;
+  private final Queue<Connection> ready = new ConcurrentLinkedQueue<Connection>();  /* Connections with responses to send */
+  private volatile boolean running = true;
+
+  /**
+   * Constructor to listen for binary protocol connections.
+   * @param server the front-end to run requests against.
+   * @param port the port to listen on (0 for any free port).
+   * @param workers the number of worker threads to run requests on.
+   * @param maxInFlight the requests a connection may have outstanding before it is no longer read from.
+   * @throws IOException if the port can't be bound.
+  */
+  public BinaryEndpoint(IAuctionServer server, int port, int workers, int maxInFlight) throws IOException {
+    this.server = server;
+    this.async = server instanceof IAsyncAuctionServer ? (IAsyncAuctionServer) server : null;
+    this.maxInFlight = maxInFlight;
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    this.serverChannel.bind(new InetSocketAddress(port));
+    this.serverChannel.configureBlocking(false);
+    this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+    this.workers = Executors.newFixedThreadPool(workers, (r) -> {
+      Thread thread = new Thread(r, "binary-endpoint-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Creates and starts an endpoint configured by the auction.binary* system properties.
+   * @param server the front-end to run requests against.
+   * @return the running endpoint, or null if -Dauction.binaryPort isn't set or the port can't be bound.
+  */
+  public static BinaryEndpoint fromSystemProperty(IAuctionServer server) {
+    Integer port = Integer.getInteger("auction.binaryPort");
+    if (port == null) {
+      return null;
+    }
+    try {
+      BinaryEndpoint endpoint = new BinaryEndpoint(server, port,
+          Integer.getInteger("auction.binaryWorkers", 8),
+          Integer.getInteger("auction.binaryMaxInFlight", 256));
+      endpoint.start();
+      System.out.println("[SERVER] Binary endpoint listening on port " + endpoint.getPort());
+      return endpoint;
+    } catch (IOException e) {
+      System.out.println("[SERVER] Failed to start binary endpoint: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Starts the selector thread.
+   * @return this endpoint.
+  */
+  public BinaryEndpoint start() {
+    Thread thread = new Thread(this::run, "binary-endpoint");
+    thread.setDaemon(true);
+    thread.start();
+    return this;
+  }
+
+  /**
+   * Accessor to obtain the port this endpoint is listening on.
+   * @return the port.
+  */
+  public int getPort() {
+    return this.serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Stops accepting connections and closes every open connection.
+  */
+  @Override
+  public void close() throws IOException {
+    this.running = false;
+    this.selector.wakeup();
+  }
+
+  /**
+   * Runs the selector loop until closed.
+  */
+  private void run() {
+    try {
+      while (this.running) {
+        this.selector.select();
+        Connection connection;
+        while ((connection = this.ready.poll()) != null) {
+          connection.flush();
+        }
+        for (SelectionKey key : this.selector.selectedKeys()) {
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            this.accept();
+            continue;
+          }
+          connection = (Connection) key.attachment();
+          if (key.isWritable()) {
+            connection.flush();
+          }
+          if (key.isValid() && key.isReadable()) {
+            connection.read();
+          }
+        }
+        this.selector.selectedKeys().clear();
+      }
+    } catch (IOException e) {
+      System.out.println("[SERVER] [BINARY ENDPOINT] Selector failed: " + e.getMessage());
+    } finally {
+      for (SelectionKey key : this.selector.keys()) {
+        closeQuietly(key.channel());
+      }
+      closeQuietly(this.selector);
+      this.workers.shutdownNow();
+    }
+  }
+
+  /**
+   * Accepts a pending connection.
+  */
+  private void accept() {
+    try {
+      SocketChannel channel = this.serverChannel.accept();
+      if (channel == null) {
+        return;
+      }
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Connection connection = new Connection(channel);
+      connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+    } catch (IOException e) {
+      System.out.println("[SERVER] [BINARY ENDPOINT] Failed to accept connection: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Runs a single request against the front-end, without waiting for the cluster if the front-end allows it.
+   * @param requestId the id of the request.
+   * @param code the request code.
+   * @param in the body of the request.
+   * @return a future completed with the response frame, never exceptionally.
+  */
+  private CompletableFuture<ByteBuffer> dispatchAsync(int requestId, byte code, ByteBuffer in) {
+    if (this.async == null) {
+      return CompletableFuture.completedFuture(this.dispatch(requestId, code, in));
+    }
+    try {
+      switch (code) {
+        case ATTEMPT_AUTH:
+          return respond(requestId, this.async.attemptAuthAsync(), BinaryProtocol::writeChallenge);
+        case SIGN_CHALLENGE:
+          return respond(requestId, this.async.signChallengeAsync(readChallenge(in)), BinaryProtocol::writeAuthResponse);
+        case VERIFY_SIGNATURE:
+          return respond(requestId, this.async.verifySignatureAsync(readAuthSig(in)), BinaryProtocol::writeAuthResponse);
+        case CREATE_AUCTION:
+          return respond(requestId, this.async.createAuctionAsync(readSessionToken(in), readAuctionItem(in)), BinaryProtocol::writeServerResponse);
+        case CLOSE_AUCTION:
+          return respond(requestId, this.async.closeAuctionAsync(readSessionToken(in), in.getLong(), in.getInt(), readString(in)), BinaryProtocol::writeServerResponse);
+        case BID:
+          return respond(requestId, this.async.bidAsync(readSessionToken(in), readBid(in)), BinaryProtocol::writeServerResponse);
+        case GET_ACTIVE_AUCTIONS:
+          return respond(requestId, this.async.getActiveAuctionsAsync(), BinaryProtocol::writeAuctions);
+        case GET_ACTIVE_AUCTIONS_IF_MODIFIED:
+          return respond(requestId, this.async.getActiveAuctionsIfModifiedAsync(in.getLong()), BinaryProtocol::writeBrowseResponse);
+        case GET_USERS:
+          return respond(requestId, this.async.getUsersAsync(readUserIds(in)), BinaryProtocol::writeUsers);
+        default:
+          return CompletableFuture.completedFuture(this.dispatch(requestId, code, in));
+      }
+    } catch (GeneralSecurityException | RuntimeException e) {
+      return CompletableFuture.completedFuture(error(requestId, e.toString()));
+    }
+  }
+
+  /**
+   * Encodes the result of a request once the front-end completes it.
+   * @param requestId the id of the request.
+   * @param result the future result.
+   * @param writer writes the result to the response.
+   * @return a future completed with the response frame, never exceptionally.
+  */
+  private static <T> CompletableFuture<ByteBuffer> respond(int requestId, CompletableFuture<T> result, Writer<T> writer) {
+    return result.handle((value, e) -> {
+      if (e != null) {
+        return error(requestId, e.toString());
+      }
+      try {
+        Frame out = new Frame(requestId, OK);
+        writer.write(out, value);
+        return out.finish();
+      } catch (IOException | RuntimeException encoding) {
+        return error(requestId, encoding.toString());
+      }
+    });
+  }
+
+  /**
+   * Runs a single request against the front-end, waiting for it to complete.
+   * @param requestId the id of the request.
+   * @param code the request code.
+   * @param in the body of the request.
+   * @return the response frame.
+  */
+  private ByteBuffer dispatch(int requestId, byte code, ByteBuffer in) {
+    try {
+      Frame out = new Frame(requestId, OK);
+      switch (code) {
+        case ATTEMPT_AUTH:
+          writeChallenge(out, this.server.attemptAuth());
+          break;
+        case SIGN_CHALLENGE:
+          writeAuthResponse(out, this.server.signChallenge(readChallenge(in)));
+          break;
+        case VERIFY_SIGNATURE:
+          writeAuthResponse(out, this.server.verifySignature(readAuthSig(in)));
+          break;
+        case RESUME_SESSION:
+          out.writeBoolean(this.server.resumeSession(readSessionToken(in)));
+          break;
+        case CREATE_AUCTION:
+          writeServerResponse(out, this.server.createAuction(readSessionToken(in), readAuctionItem(in)));
+          break;
+        case CLOSE_AUCTION:
+          writeServerResponse(out, this.server.closeAuction(readSessionToken(in), in.getLong(), in.getInt(), readString(in)));
+          break;
+        case BID:
+          writeServerResponse(out, this.server.bid(readSessionToken(in), readBid(in)));
+          break;
+        case GET_ACTIVE_AUCTIONS:
+          writeAuctions(out, this.server.getActiveAuctions());
+          break;
+        case GET_ACTIVE_AUCTIONS_IF_MODIFIED:
+          writeBrowseResponse(out, this.server.getActiveAuctionsIfModified(in.getLong()));
+          break;
+        case GET_USERS:
+          writeUsers(out, this.server.getUsers(readUserIds(in)));
+          break;
+        default:
+          return error(requestId, "Unknown request code " + code);
+      }
+      return out.finish();
+    } catch (Exception e) {
+      return error(requestId, e.toString());
+    }
+  }
+
+  /**
+   * Creates an error response.
+   * @param requestId the id of the failed request.
+   * @param message the reason it failed.
+   * @return the response frame.
+  */
+  private static ByteBuffer error(int requestId, String message) {
+    try {
+      Frame out = new Frame(requestId, ERROR);
+      writeString(out, message);
+      return out.finish();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Closes a channel or selector, ignoring any failure.
+   * @param closeable the channel or selector.
+  */
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // Already closed or broken
+    }
+  }
+
+  /**
+   * Writes the result of a request to its response.
+  */
+  private interface Writer<T> {
+    /**
+     * Writes the result.
+     * @param out the response frame.
+     * @param value the result.
+     * @throws IOException if the result can't be written.
+    */
+    void write(Frame out, T value) throws IOException;
+  }
+
+  /**
+   * A client connection. Reads happen on the selector thread; responses are queued by
+   * workers and written on the selector thread, several at a time where possible.
+  */
+  private final class Connection {
+
+    private final SocketChannel channel;
+    private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    private SelectionKey key;
+
+    private Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Reads what is available and hands every complete request to a worker.
+    */
+    private void read() {
+      try {
+        if (this.channel.read(this.readBuffer) < 0) {
+          this.close();
+          return;
+        }
+        this.readBuffer.flip();
+        while (this.readBuffer.remaining() >= 4) {
+          int length = this.readBuffer.getInt(this.readBuffer.position());
+          if (length < HEADER_BYTES - 4 || length > MAX_FRAME_BYTES) {
+            System.out.println("[SERVER] [BINARY ENDPOINT] Closing connection sending a frame of " + length + " bytes");
+            this.close();
+            return;
+          }
+          if (this.readBuffer.remaining() < 4 + length) {
+            if (this.readBuffer.capacity() < 4 + length) {
+              this.readBuffer = ByteBuffer.allocate(4 + length).put(this.readBuffer);
+              this.readBuffer.flip();
+            }
+            break;
+          }
+          this.readBuffer.getInt();
+          int requestId = this.readBuffer.getInt();
+          byte code = this.readBuffer.get();
+          byte[] body = new byte[length - (HEADER_BYTES - 4)];
+          this.readBuffer.get(body);
+          this.submit(requestId, code, ByteBuffer.wrap(body));
+        }
+        if (this.readBuffer.capacity() > READ_BUFFER_BYTES && this.readBuffer.remaining() < READ_BUFFER_BYTES) {
+          // Don't hold on to the space a large request needed
+          this.readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES).put(this.readBuffer);
+        } else {
+          this.readBuffer.compact();
+        }
+        if (this.inFlight.get() >= BinaryEndpoint.this.maxInFlight) {
+          this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+      } catch (IOException e) {
+        this.close();
+      }
+    }
+
+    /**
+     * Runs a request on a worker and queues its response for the selector thread once it completes.
+     * @param requestId the id of the request.
+     * @param code the request code.
+     * @param body the body of the request.
+    */
+    private void submit(int requestId, byte code, ByteBuffer body) {
+      this.inFlight.incrementAndGet();
+      try {
+        BinaryEndpoint.this.workers.execute(() -> {
+          CompletableFuture<ByteBuffer> response;
+          try {
+            response = dispatchAsync(requestId, code, body);
+          } catch (Error e) {
+            // Still answer, so the request doesn't stay counted against the connection
+            this.respond(error(requestId, e.toString()));
+            throw e;
+          }
+          response.thenAccept(this::respond);
+        });
+      } catch (RejectedExecutionException e) {
+        this.close();
+      }
+    }
+
+    /**
+     * Queues a response for the selector thread to write.
+     * @param response the response frame.
+    */
+    private void respond(ByteBuffer response) {
+      this.responses.add(response);
+      BinaryEndpoint.this.ready.add(this);
+      BinaryEndpoint.this.selector.wakeup();
+    }
+
+    /**
+     * Writes as many queued responses as the socket will take, in a single gathering write,
+     * and resumes reading once the connection is below its limit of outstanding requests.
+    */
+    private void flush() {
+      if (!this.key.isValid()) {
+        return;
+      }
+      try {
+        ByteBuffer[] batch = new ByteBuffer[MAX_GATHER];
+        while (!this.responses.isEmpty()) {
+          int count = 0;
+          for (ByteBuffer response : this.responses) {
+            if (count == MAX_GATHER) {
+              break;
+            }
+            batch[count++] = response;
+          }
+          this.channel.write(batch, 0, count);
+          int written = 0;
+          while (written < count && !batch[written].hasRemaining()) {
+            this.responses.poll();
+            written++;
+          }
+          this.inFlight.addAndGet(-written);
+          if (written < count) {
+            break;
+          }
+        }
+        int ops = SelectionKey.OP_READ;
+        if (!this.responses.isEmpty()) {
+          ops |= SelectionKey.OP_WRITE;
+        }
+        if (this.inFlight.get() >= BinaryEndpoint.this.maxInFlight) {
+          ops &= ~SelectionKey.OP_READ;
+        }
+        this.key.interestOps(ops);
+      } catch (IOException e) {
+        this.close();
+      }
+    }
+
+    /**
+     * Closes the connection. Responses to requests still running are discarded.
+    */
+    private void close() {
+      this.key.cancel();
+      closeQuietly(this.channel);
+    }
+  }
+}
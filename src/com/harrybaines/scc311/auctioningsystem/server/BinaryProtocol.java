@@ -0,0 +1,550 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.client.User;
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.spec.InvalidKeySpecException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Code: Binary Protocol   BinaryProtocol.java
+ * Date: 19/10/26
+ *
+ * The length-prefixed binary protocol spoken by the BinaryEndpoint. Every
+ * frame is [int length][int request id][byte code][body], where the length
+ * counts the bytes after itself. A request's code is the operation and its
+ * body the arguments; a response echoes the request id, so responses can be
+ * sent as soon as each request completes rather than in order, and its code
+ * is OK (body is the result) or ERROR (body is a message).
+ *
+ * Fields are written big-endian. Strings are an int byte count (-1 for null)
+ * followed by UTF-8, and optional objects are preceded by a presence byte.
+*/
+public final class BinaryProtocol {
+
+  public static final int MAX_FRAME_BYTES = 16 << 20;
+  public static final int HEADER_BYTES = 9;
+
+  // Request codes, one per IAuctionServer operation
+  public static final byte ATTEMPT_AUTH = 1;
+  public static final byte SIGN_CHALLENGE = 2;
+  public static final byte VERIFY_SIGNATURE = 3;
+  public static final byte RESUME_SESSION = 4;
+  public static final byte CREATE_AUCTION = 5;
+  public static final byte CLOSE_AUCTION = 6;
+  public static final byte BID = 7;
+  public static final byte GET_ACTIVE_AUCTIONS = 8;
+  public static final byte GET_ACTIVE_AUCTIONS_IF_MODIFIED = 9;
+  public static final byte GET_USERS = 10;
+
+  // Response codes
+  public static final byte OK = 0;
+  public static final byte ERROR = 1;
+
+  private BinaryProtocol() {
+  }
+
+  /**
+   * A frame being encoded. The header is written on construction and the
+   * length filled in by {@link #finish}.
+  */
+  public static final class Frame extends DataOutputStream {
+
+    /**
+     * Constructor to start a new frame.
+     * @param requestId the id of the request.
+     * @param code the request or response code.
+    */
+    public Frame(int requestId, byte code) {
+      super(new Buffer());
+      try {
+        this.writeInt(0);
+        this.writeInt(requestId);
+        this.writeByte(code);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /**
+     * Completes the frame.
+     * @return the frame, ready to be written to a channel.
+     * @throws IOException if the frame is larger than MAX_FRAME_BYTES.
+    */
+    public ByteBuffer finish() throws IOException {
+      return ((Buffer) this.out).finish();
+    }
+  }
+
+  /**
+   * The buffer a frame is encoded into, which is wrapped rather than copied once complete.
+  */
+  private static final class Buffer extends ByteArrayOutputStream {
+
+    private Buffer() {
+      super(64);
+    }
+
+    private ByteBuffer finish() throws IOException {
+      int length = this.count - 4;
+      if (length > MAX_FRAME_BYTES) {
+        throw new IOException("Frame of " + length + " bytes is too large");
+      }
+      ByteBuffer frame = ByteBuffer.wrap(this.buf, 0, this.count);
+      frame.putInt(0, length);
+      return frame;
+    }
+  }
+
+  // ================================================================== //
+  //  ENCODING                                                          //
+  // ================================================================== //
+
+  /**
+   * Writes a string, which may be null.
+   * @param out the frame to write to.
+   * @param value the string.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Writes a byte array, which may be null.
+   * @param out the frame to write to.
+   * @param value the bytes.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(value.length);
+    out.write(value);
+  }
+
+  /**
+   * Writes an authentication challenge, which may be null.
+   * @param out the frame to write to.
+   * @param challenge the challenge.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeChallenge(DataOutputStream out, AuthChallenge challenge) throws IOException {
+    out.writeBoolean(challenge != null);
+    if (challenge != null) {
+      out.writeLong(challenge.getValue());
+    }
+  }
+
+  /**
+   * Writes a signature algorithm, which may be null.
+   * @param out the frame to write to.
+   * @param algorithm the algorithm.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeAlgorithm(DataOutputStream out, SignatureAlgorithm algorithm) throws IOException {
+    out.writeByte(algorithm != null ? algorithm.ordinal() : -1);
+  }
+
+  /**
+   * Writes a session token, which may be null.
+   * @param out the frame to write to.
+   * @param token the session token.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeSessionToken(DataOutputStream out, SessionToken token) throws IOException {
+    out.writeBoolean(token != null);
+    if (token != null) {
+      writeString(out, token.getEmail());
+      out.writeInt(token.getUserId());
+      out.writeLong(token.getExpiresAt());
+      writeBytes(out, token.getMac());
+    }
+  }
+
+  /**
+   * Writes an authentication signature, sending its public key X.509 encoded.
+   * @param out the frame to write to.
+   * @param authSig the signature.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeAuthSig(DataOutputStream out, AuthSig authSig) throws IOException {
+    writeBytes(out, authSig.getSigBytes());
+    writeChallenge(out, authSig.getChallenge());
+    writeBytes(out, authSig.getPubKey() != null ? authSig.getPubKey().getEncoded() : null);
+    writeString(out, authSig.getEmail());
+    writeString(out, authSig.getName());
+    writeAlgorithm(out, authSig.getAlgorithm());
+  }
+
+  /**
+   * Writes a server auth response, which may be null.
+   * @param out the frame to write to.
+   * @param response the response.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeAuthResponse(DataOutputStream out, ServerAuthResponse response) throws IOException {
+    out.writeBoolean(response != null);
+    if (response != null) {
+      writeBytes(out, response.getSigBytes());
+      writeChallenge(out, response.getChallenge());
+      out.writeBoolean(response.isSigVerified());
+      out.writeBoolean(response.isRetryLater());
+      writeSessionToken(out, response.getSessionToken());
+      writeAlgorithm(out, response.getAlgorithm());
+    }
+  }
+
+  /**
+   * Writes a bid, which may be null.
+   * @param out the frame to write to.
+   * @param bid the bid.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeBid(DataOutputStream out, Bid bid) throws IOException {
+    out.writeBoolean(bid != null);
+    if (bid != null) {
+      out.writeLong(bid.getAuctionId());
+      out.writeInt(bid.getBidderId());
+      out.writeDouble(bid.getBidValue());
+      writeString(out, bid.getRequestId());
+      out.writeBoolean(bid.isRetry());
+    }
+  }
+
+  /**
+   * Writes an auction item, which may be null.
+   * @param out the frame to write to.
+   * @param item the auction item.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeAuctionItem(DataOutputStream out, AuctionItem item) throws IOException {
+    out.writeBoolean(item != null);
+    if (item != null) {
+      out.writeLong(item.getId());
+      out.writeDouble(item.getStartPrice());
+      out.writeDouble(item.getReservePrice());
+      writeString(out, item.getDesc());
+      out.writeInt(item.getSellerId());
+      writeString(out, item.getRequestId());
+      writeBid(out, item.getHighestBid());
+    }
+  }
+
+  /**
+   * Writes a server response, which may be null.
+   * @param out the frame to write to.
+   * @param response the response.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeServerResponse(DataOutputStream out, ServerResponse response) throws IOException {
+    out.writeBoolean(response != null);
+    if (response != null) {
+      out.writeInt(response.getStatusCode());
+      writeAuctionItem(out, response.getAuctionItem());
+    }
+  }
+
+  /**
+   * Writes a map of auctions by id, which may be null, as a count and its items.
+   * @param out the frame to write to.
+   * @param auctions the auctions.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeAuctions(DataOutputStream out, Map<Long, AuctionItem> auctions) throws IOException {
+    out.writeInt(auctions != null ? auctions.size() : -1);
+    if (auctions != null) {
+      for (AuctionItem item : auctions.values()) {
+        writeAuctionItem(out, item);
+      }
+    }
+  }
+
+  /**
+   * Writes a browse response, which may be null.
+   * @param out the frame to write to.
+   * @param response the response.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeBrowseResponse(DataOutputStream out, BrowseResponse response) throws IOException {
+    out.writeBoolean(response != null);
+    if (response != null) {
+      out.writeLong(response.getVersion());
+      out.writeBoolean(response.isServerBusy());
+      writeAuctions(out, response.getAuctions());
+    }
+  }
+
+  /**
+   * Writes an array of user ids.
+   * @param out the frame to write to.
+   * @param userIds the user ids.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeUserIds(DataOutputStream out, int[] userIds) throws IOException {
+    out.writeInt(userIds.length);
+    for (int userId : userIds) {
+      out.writeInt(userId);
+    }
+  }
+
+  /**
+   * Writes an array of users, which may be null or hold nulls.
+   * @param out the frame to write to.
+   * @param users the users.
+   * @throws IOException if the frame can't be written.
+  */
+  public static void writeUsers(DataOutputStream out, User[] users) throws IOException {
+    out.writeInt(users != null ? users.length : -1);
+    for (int i = 0; users != null && i < users.length; i++) {
+      out.writeBoolean(users[i] != null);
+      if (users[i] != null) {
+        out.writeInt(users[i].getId());
+        writeString(out, users[i].getName());
+        writeString(out, users[i].getEmail());
+      }
+    }
+  }
+
+  // ================================================================== //
+  //  DECODING                                                          //
+  // ================================================================== //
+
+  /**
+   * Reads a string written by {@link #writeString}.
+   * @param in the frame to read from.
+   * @return the string, or null.
+  */
+  public static String readString(ByteBuffer in) {
+    byte[] bytes = readBytes(in);
+    return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+  }
+
+  /**
+   * Reads a byte array written by {@link #writeBytes}.
+   * @param in the frame to read from.
+   * @return the bytes, or null.
+  */
+  public static byte[] readBytes(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    checkRemaining(in, length);
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Reads an authentication challenge written by {@link #writeChallenge}.
+   * @param in the frame to read from.
+   * @return the challenge, or null.
+  */
+  public static AuthChallenge readChallenge(ByteBuffer in) {
+    return in.get() != 0 ? new AuthChallenge(in.getLong()) : null;
+  }
+
+  /**
+   * Reads a signature algorithm written by {@link #writeAlgorithm}.
+   * @param in the frame to read from.
+   * @return the algorithm, or null.
+  */
+  public static SignatureAlgorithm readAlgorithm(ByteBuffer in) {
+    byte ordinal = in.get();
+    return ordinal >= 0 ? SignatureAlgorithm.values()[ordinal] : null;
+  }
+
+  /**
+   * Reads a session token written by {@link #writeSessionToken}.
+   * @param in the frame to read from.
+   * @return the session token, or null.
+  */
+  public static SessionToken readSessionToken(ByteBuffer in) {
+    if (in.get() == 0) {
+      return null;
+    }
+    return new SessionToken(readString(in), in.getInt(), in.getLong(), readBytes(in));
+  }
+
+  /**
+   * Reads an authentication signature written by {@link #writeAuthSig}.
+   * @param in the frame to read from.
+   * @return the signature.
+   * @throws InvalidKeySpecException if the public key isn't a supported key.
+  */
+  public static AuthSig readAuthSig(ByteBuffer in) throws InvalidKeySpecException {
+    byte[] sigBytes = readBytes(in);
+    AuthChallenge challenge = readChallenge(in);
+    byte[] encodedKey = readBytes(in);
+    String email = readString(in);
+    String name = readString(in);
+    SignatureAlgorithm algorithm = readAlgorithm(in);
+    java.security.PublicKey pubKey = encodedKey != null ? SignatureAlgorithm.decodePublicKey(encodedKey) : null;
+    // A name is only sent by users, whose signatures are always made with their key's algorithm
+    return name != null && pubKey != null
+        ? new AuthSig(sigBytes, challenge, pubKey, new User(name, email))
+        : new AuthSig(sigBytes, challenge, pubKey, email, algorithm);
+  }
+
+  /**
+   * Reads a server auth response written by {@link #writeAuthResponse}.
+   * @param in the frame to read from.
+   * @return the response, or null.
+  */
+  public static ServerAuthResponse readAuthResponse(ByteBuffer in) {
+    if (in.get() == 0) {
+      return null;
+    }
+    byte[] sigBytes = readBytes(in);
+    AuthChallenge challenge = readChallenge(in);
+    boolean sigVerified = in.get() != 0;
+    boolean retryLater = in.get() != 0;
+    SessionToken token = readSessionToken(in);
+    SignatureAlgorithm algorithm = readAlgorithm(in);
+    if (retryLater) {
+      return ServerAuthResponse.retryLater(new AuthSig(sigBytes, challenge, null));
+    }
+    return algorithm != null
+        ? new ServerAuthResponse(sigBytes, challenge, algorithm)
+        : new ServerAuthResponse(sigBytes, challenge, sigVerified, token);
+  }
+
+  /**
+   * Reads a bid written by {@link #writeBid}.
+   * @param in the frame to read from.
+   * @return the bid, or null.
+  */
+  public static Bid readBid(ByteBuffer in) {
+    if (in.get() == 0) {
+      return null;
+    }
+    Bid bid = new Bid(in.getLong(), in.getInt(), in.getDouble(), readString(in));
+    return in.get() != 0 ? bid.asRetry() : bid;
+  }
+
+  /**
+   * Reads an auction item written by {@link #writeAuctionItem}.
+   * @param in the frame to read from.
+   * @return the auction item, or null.
+  */
+  public static AuctionItem readAuctionItem(ByteBuffer in) {
+    if (in.get() == 0) {
+      return null;
+    }
+    long id = in.getLong();
+    AuctionItem item = new AuctionItem(in.getDouble(), in.getDouble(), readString(in), in.getInt(), readString(in));
+    item.setId(id);
+    item.setHighestBid(readBid(in));
+    return item;
+  }
+
+  /**
+   * Reads a server response written by {@link #writeServerResponse}.
+   * @param in the frame to read from.
+   * @return the response, or null.
+  */
+  public static ServerResponse readServerResponse(ByteBuffer in) {
+    return in.get() != 0 ? new ServerResponse(in.getInt(), readAuctionItem(in)) : null;
+  }
+
+  /**
+   * Reads a map of auctions by id written by {@link #writeAuctions}.
+   * @param in the frame to read from.
+   * @return the auctions, or null.
+  */
+  public static Map<Long, AuctionItem> readAuctions(ByteBuffer in) {
+    int count = in.getInt();
+    if (count < 0) {
+      return null;
+    }
+    checkRemaining(in, count);
+    Map<Long, AuctionItem> auctions = new HashMap<Long, AuctionItem>(count * 4 / 3 + 1);
+    for (int i = 0; i < count; i++) {
+      AuctionItem item = readAuctionItem(in);
+      auctions.put(item.getId(), item);
+    }
+    return auctions;
+  }
+
+  /**
+   * Reads a browse response written by {@link #writeBrowseResponse}.
+   * @param in the frame to read from.
+   * @return the response, or null.
+  */
+  public static BrowseResponse readBrowseResponse(ByteBuffer in) {
+    if (in.get() == 0) {
+      return null;
+    }
+    long version = in.getLong();
+    boolean serverBusy = in.get() != 0;
+    Map<Long, AuctionItem> auctions = readAuctions(in);
+    return serverBusy ? BrowseResponse.serverBusy(version) : new BrowseResponse(version, auctions);
+  }
+
+  /**
+   * Reads an array of user ids written by {@link #writeUserIds}.
+   * @param in the frame to read from.
+   * @return the user ids.
+  */
+  public static int[] readUserIds(ByteBuffer in) {
+    int count = in.getInt();
+    if (count < 0) {
+      throw new IllegalArgumentException("Negative user id count " + count);
+    }
+    checkRemaining(in, 4L * count);
+    int[] userIds = new int[count];
+    for (int i = 0; i < userIds.length; i++) {
+      userIds[i] = in.getInt();
+    }
+    return userIds;
+  }
+
+  /**
+   * Reads an array of users written by {@link #writeUsers}.
+   * @param in the frame to read from.
+   * @return the users, or null.
+  */
+  public static User[] readUsers(ByteBuffer in) {
+    int count = in.getInt();
+    if (count < 0) {
+      return null;
+    }
+    checkRemaining(in, count);
+    User[] users = new User[count];
+    for (int i = 0; i < count; i++) {
+      if (in.get() != 0) {
+        users[i] = new User(in.getInt(), readString(in), readString(in));
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Checks a frame holds at least as many bytes as a length or count read from it implies, before
+   * anything is allocated for them, so a corrupt or hostile frame can't make a reader allocate
+   * more than the frame's size.
+   * @param in the frame being read.
+   * @param needed the fewest bytes the rest of the value takes.
+   * @throws IllegalArgumentException if the frame is too short.
+  */
+  private static void checkRemaining(ByteBuffer in, long needed) {
+    if (needed > in.remaining()) {
+      throw new IllegalArgumentException("Value of " + needed + " bytes overruns the " + in.remaining() + " left in the frame");
+    }
+  }
+}
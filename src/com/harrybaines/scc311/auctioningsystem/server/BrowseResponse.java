@@ -0,0 +1,73 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.util.Map;
+
+/**
+ * Code: Browse Response   BrowseResponse.java
+ * Date: 19/10/26
+ *
+ * A server response to a conditional browse. The response carries the current
+ * version of the active auctions and, only if that differs from the version the
+ * client already holds, the active auctions themselves. An unmodified response
+ * is therefore only a few bytes.
+*/
+public class BrowseResponse implements java.io.Serializable {
+
+  private long version;
+  private Map<Long, AuctionItem> auctions;
+  private boolean serverBusy;
+
+  /**
+   * Constructor to initialise a new browse response.
+   * @param version the version of the active auctions.
+   * @param auctions the active auctions, or null if the client's copy is up to date.
+  */
+  public BrowseResponse(long version, Map<Long, AuctionItem> auctions) {
+    this.version = version;
+    this.auctions = auctions;
+  }
+
+  /**
+   * Accessor to determine if the active auctions have changed since the client's version.
+   * @return true if the response contains the active auctions, false if not modified.
+  */
+  public boolean isModified() {
+    return this.auctions != null;
+  }
+
+  /**
+   * Accessor to obtain the version of the active auctions.
+   * @return the version.
+  */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Accessor to obtain the active auctions.
+   * @return a Map of auction ids to auction items, or null if not modified.
+  */
+  public Map<Long, AuctionItem> getAuctions() {
+    return this.auctions;
+  }
+
+  /**
+   * Accessor to determine if the server was too busy to answer the browse.
+   * @return true if the client should keep its copy and browse again later.
+  */
+  public boolean isServerBusy() {
+    return this.serverBusy;
+  }
+
+  /**
+   * Creates a response telling the client the server is too busy to browse now.
+   * The client's version is echoed back, so its copy is treated as not modified.
+   * @param version the version of the active auctions held by the client.
+   * @return a browse response.
+  */
+  public static BrowseResponse serverBusy(long version) {
+    BrowseResponse response = new BrowseResponse(version, null);
+    response.serverBusy = true;
+    return response;
+  }
+}
@@ -0,0 +1,77 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code: Challenge Ledger   ChallengeLedger.java
+ * Date: 19/10/26
+ *
+ * The authentication challenges a front-end has issued and not yet seen
+ * answered. A signed challenge only earns a session if this front-end
+ * issued it, less than Constants.CHALLENGE_TTL ago, and it hasn't earned
+ * one before, so a recorded signature can't be replayed to log in again.
+ * Challenges are only known to the front-end that issued them, so a client
+ * completes its handshake on one front-end.
+*/
+public class ChallengeLedger {
+
+  private static final int MAX_OUTSTANDING = 100000;
+
+  private final ConcurrentHashMap<Long, Long> issued = new ConcurrentHashMap<Long, Long>();  /* Challenge value to the System.nanoTime it expires */
+  private final long ttlNanos;
+
+  /**
+   * Constructor to initialise an empty ledger whose challenges expire after Constants.CHALLENGE_TTL.
+  */
+  public ChallengeLedger() {
+    this(Constants.CHALLENGE_TTL);
+  }
+
+  /**
+   * Constructor to initialise an empty ledger.
+   * @param ttlMillis how long a challenge may be answered for, in milliseconds.
+  */
+  public ChallengeLedger(long ttlMillis) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * Records a challenge as issued.
+   * @param challenge the challenge about to be sent to a client.
+   * @return true if recorded, false if the value is already outstanding or too many are.
+  */
+  public boolean issue(AuthChallenge challenge) {
+    long now = System.nanoTime();
+    if (this.issued.size() >= MAX_OUTSTANDING) {
+      this.issued.values().removeIf((expires) -> expires - now <= 0);
+      if (this.issued.size() >= MAX_OUTSTANDING) {
+        return false;
+      }
+    }
+    return this.issued.putIfAbsent(challenge.getValue(), now + this.ttlNanos) == null;
+  }
+
+  /**
+   * Checks whether a challenge was issued here and may still be answered, without using it up,
+   * so a signature the server was too busy to verify can be sent again.
+   * @param challenge the challenge a client has signed.
+   * @return true if the challenge is outstanding and unexpired.
+  */
+  public boolean isOutstanding(AuthChallenge challenge) {
+    Long expires = this.issued.get(challenge.getValue());
+    return expires != null && expires - System.nanoTime() > 0;
+  }
+
+  /**
+   * Uses up a challenge once its signature has been verified.
+   * @param challenge the challenge a client has signed.
+   * @return true if the challenge was outstanding and unexpired, false if it has expired or was already used.
+  */
+  public boolean redeem(AuthChallenge challenge) {
+    Long expires = this.issued.remove(challenge.getValue());
+    return expires != null && expires - System.nanoTime() > 0;
+  }
+}
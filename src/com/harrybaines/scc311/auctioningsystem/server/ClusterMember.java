@@ -3,21 +3,18 @@ package com.harrybaines.scc311.auctioningsystem.server;
 import com.harrybaines.scc311.auctioningsystem.client.User;
 import com.harrybaines.scc311.auctioningsystem.utils.Constants;
 import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
 import org.jgroups.*;
 import org.jgroups.blocks.*;
 import org.jgroups.util.*;
 
 import java.io.*;
 import java.rmi.RemoteException;
-import java.security.KeyFactory;
 import java.security.PrivateKey;
-import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Code: Cluster Member   ClusterMember.java
@@ -30,42 +27,68 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class ClusterMember extends ReceiverAdapter {
 
-    private final ConcurrentHashMap<String, AuctionItem> auctions = new ConcurrentHashMap<String, AuctionItem>();  /* ConcurrentHashMap of all active auctions */
-    private AtomicInteger nextID = new AtomicInteger(1); /* Provides unique identification of auctions */
+    private final AuctionStore auctions = AuctionStore.fromSystemProperty();  /* All active auctions, on or off the heap (-Dauction.store) */
+    private final DedupCache dedup = new DedupCache(); /* Responses to recent mutating requests, by user, operation and request id */
+    private final UserDirectory users = new UserDirectory(); /* Profiles of authenticated users, by user id */
 
     private JChannel channel;
     private RpcDispatcher dispatcher;
 
     /**
      * Allows a user to create an auction for a given item for sale.
+     * A create resent with the same request id gets the original response.
      * @param auctionItem the auction item offered for sale.
      * @return a server response containing the result of the create auction method.
      * @throws RemoteException if an error occurs on the server.
      */
     public synchronized ServerResponse createAuction(AuctionItem auctionItem) throws RemoteException {
-        String auctionId = nextID.getAndIncrement() + "";
-        auctionItem.setId(auctionId);
-        this.auctions.put(auctionId, auctionItem);
+        ServerResponse earlier = this.dedup.get(DedupCache.CREATE_AUCTION, auctionItem.getSellerId(), auctionItem.getRequestId());
+        if (earlier != null) {
+            return earlier;
+        }
+        auctionItem = this.auctions.create(auctionItem);
+        long auctionId = auctionItem.getId();
         System.out.println(String.format(Constants.AUCTION_CREATED, auctionId) + String.format(Constants.AUCTION_SUMMARY, auctionItem.toSummaryString()));
-        return (new ServerResponse(IAuctionServer.AUCTION_CREATED, auctionItem));
+        ServerResponse response = new ServerResponse(IAuctionServer.AUCTION_CREATED, auctionItem);
+        this.dedup.put(DedupCache.CREATE_AUCTION, auctionItem.getSellerId(), auctionItem.getRequestId(), response);
+        return response;
+    }
+
+    /**
+     * Allows a user to close an auction, returning the original response if the request is a duplicate.
+     * @param auctionId the ID of the auction to close.
+     * @param userId the id of the user who wishes to close this particular auction.
+     * @param requestId the client generated id of the request (may be null).
+     * @return a server response containing the result of the close auction method.
+     * @throws RemoteException if an error occurs on the server.
+     */
+    public synchronized ServerResponse closeAuction(long auctionId, int userId, String requestId) throws RemoteException {
+        ServerResponse earlier = this.dedup.get(DedupCache.CLOSE_AUCTION, userId, requestId);
+        if (earlier != null) {
+            return earlier;
+        }
+        ServerResponse response = this.closeAuction(auctionId, userId);
+        this.dedup.put(DedupCache.CLOSE_AUCTION, userId, requestId, response);
+        return response;
     }
 
     /**
      * Allows a user to close an auction for a given item for sale.
      * @param auctionId the ID of the auction to close.
-     * @param user the user who wishes to close this particular auction.
+     * @param userId the id of the user who wishes to close this particular auction.
      * @return a server response containing the result of the close auction method.
      * @throws RemoteException if an error occurs on the server.
      */
-    public synchronized ServerResponse closeAuction(String auctionId, User user) throws RemoteException {
+    public synchronized ServerResponse closeAuction(long auctionId, int userId) throws RemoteException {
         AuctionItem auction = auctions.get(auctionId);
         // Check if auction exists and only allow seller to close
         if (auction == null) {
             return (new ServerResponse(IAuctionServer.NO_AUCTION, auction));
-        } else if (!this.ownsAuction(auction, user.getId())) {
+        } else if (!this.ownsAuction(auction, userId)) {
             return (new ServerResponse(IAuctionServer.CANT_CLOSE_OWN, auction));
         }
-        AuctionItem auctionItem = auctions.remove(auctionId);
+        AuctionItem auctionItem = auction;
+        this.auctions.remove(auctionId);
         Bid highestBid = auctionItem.getHighestBid();
         System.out.println(String.format(Constants.AUCTION_CLOSED, auctionId) + String.format(Constants.AUCTION_SUMMARY, auctionItem.toSummaryString()));
 
@@ -79,20 +102,35 @@ public class ClusterMember extends ReceiverAdapter {
 
     /**
      * Allows a user to bid on an auction for a given item for sale.
+     * A bid resent with the same request id gets the original response.
      * @param bid the Bid object.
      * @return a server response containing the result of the bid method.
      * @throws RemoteException if an error occurs on the server.
      */
     public synchronized ServerResponse bid(Bid bid) throws RemoteException {
+        ServerResponse earlier = this.dedup.get(DedupCache.BID, bid.getBidderId(), bid.getRequestId());
+        if (earlier != null) {
+            return earlier;
+        }
+        ServerResponse response = this.placeBid(bid);
+        this.dedup.put(DedupCache.BID, bid.getBidderId(), bid.getRequestId(), response);
+        return response;
+    }
+
+    /**
+     * Validates a bid against the auction and places it if it is the highest.
+     * @param bid the Bid object.
+     * @return a server response containing the result of the bid method.
+     */
+    private ServerResponse placeBid(Bid bid) {
         double bidAmount = bid.getBidValue();
-        User bidder = bid.getBidder();
-        String auctionId = bid.getAuctionId();
+        long auctionId = bid.getAuctionId();
 
         // Check if auction exists and bidder isnt the seller
         AuctionItem auctionItem = auctions.get(auctionId);
         if (auctionItem == null) {
             return (new ServerResponse(IAuctionServer.NO_AUCTION, null));
-        } else if (this.ownsAuction(auctionItem, bidder.getId())) {
+        } else if (this.ownsAuction(auctionItem, bid.getBidderId())) {
             return (new ServerResponse(IAuctionServer.CANT_BID_OWN, null));
         }
 
@@ -107,17 +145,41 @@ public class ClusterMember extends ReceiverAdapter {
         }
 
         // Create new bid
-        auctionItem.setHighestBid(bid);
+        auctionItem = this.auctions.bid(auctionId, bid);
         System.out.println(String.format(Constants.BID_SUCCESSFUL, auctionId) + String.format(Constants.AUCTION_SUMMARY, auctionItem.toSummaryString()));
         return (new ServerResponse(IAuctionServer.BID_SUCCESSFUL, auctionItem));
     }
 
     /**
      * Accessor to obtain the list of currently active auctions.
+     * The snapshot returned is immutable, so it can be serialised while bids continue.
      * @return the list of currently active auctions.
      */
-    public ConcurrentHashMap<String, AuctionItem> getActiveAuctions() throws RemoteException {
-        return auctions;
+    public Map<Long, AuctionItem> getActiveAuctions() throws RemoteException {
+        return this.auctions.snapshot();
+    }
+
+    /**
+     * Accessor to obtain the list of currently active auctions only if they have changed since a given version.
+     * A snapshot is only taken if the version has changed, and the version returned is the snapshot's own.
+     * @param version the version of the active auctions held by the caller.
+     * @return a browse response with the current version, and the active auctions if modified.
+     */
+    public BrowseResponse getActiveAuctionsIfModified(long version) throws RemoteException {
+        if (this.auctions.getVersion() == version) {
+            return new BrowseResponse(version, null);
+        }
+        AuctionSnapshot snapshot = this.auctions.snapshot();
+        return new BrowseResponse(snapshot.getVersion(), snapshot);
+    }
+
+    /**
+     * Method to determine if an auction is active, before a front-end subscribes a client to it.
+     * @param auctionId the ID of the auction.
+     * @return true if the auction exists and hasn't been closed, false otherwise.
+     */
+    public boolean isActive(long auctionId) {
+        return this.auctions.get(auctionId) != null;
     }
 
     /**
@@ -126,8 +188,25 @@ public class ClusterMember extends ReceiverAdapter {
      * @param userId the id of the user to check.
      * @return true if this user owns the provided auction, false otherwise.
      */
-    private boolean ownsAuction(AuctionItem auctionItem, String userId) {
-        return auctionItem.getSeller().getId().equals(userId) ? true : false;
+    private boolean ownsAuction(AuctionItem auctionItem, int userId) {
+        return auctionItem.getSellerId() == userId;
+    }
+
+    /**
+     * Records the profile of a user who has authenticated, so other users can be shown their name.
+     * @param user the user, with the id assigned at authentication.
+     */
+    public void registerUser(User user) {
+        this.users.register(user);
+    }
+
+    /**
+     * Obtains the profiles of users by id, for showing sellers and bidders.
+     * @param userIds the ids of the users.
+     * @return the users, in the same order, with null for any user never registered.
+     */
+    public User[] getUsers(int[] userIds) {
+        return this.users.getAll(userIds);
     }
 
     // ================================================================== //
@@ -156,7 +235,7 @@ public class ClusterMember extends ReceiverAdapter {
         PrivateKey privKey = this.getPrivateKey();
         try {
             byte[] sigBytes = SecurityManager.signChallenge(challenge, privKey);
-            return (new ServerAuthResponse(sigBytes, challenge, false));
+            return (new ServerAuthResponse(sigBytes, challenge, SignatureAlgorithm.of(privKey)));
         } catch (Exception e) {
             System.out.println("Couldn't sign the authentication challenge");
         }
@@ -180,15 +259,7 @@ public class ClusterMember extends ReceiverAdapter {
      * @return the private key object.
      */
     private PrivateKey getPrivateKey() {
-        try (FileInputStream keyfis = new FileInputStream(Constants.SERVER_DIR + Constants.SERVER_PRIVATE_KEY_STR)) {
-            byte[] encKey = new byte[keyfis.available()];
-            keyfis.read(encKey);
-            PKCS8EncodedKeySpec privKeySpec = new PKCS8EncodedKeySpec(encKey);
-            return KeyFactory.getInstance("DSA", "SUN").generatePrivate(privKeySpec);
-        } catch (Exception e) {
-            System.out.println("Couldn't get server private key");
-        }
-        return null;
+        return SecurityManager.getPrivateKey(Constants.SERVER_DIR + Constants.SERVER_PRIVATE_KEY_STR);
     }
 
     /**
@@ -196,8 +267,8 @@ public class ClusterMember extends ReceiverAdapter {
      * @throws Exception if an error occurs connecting to the channel.
      */
     public void start() throws Exception {
-        // Setup and connect to the channel
-        this.channel = new JChannel();
+        // Setup and connect to the channel, with the totally ordered stack every front-end uses
+        this.channel = new JChannel(Constants.CLUSTER_CONFIG);
         this.dispatcher = new RpcDispatcher(this.channel, this, this, this);
         this.channel.connect(Constants.CLUSTER_NAME);
         System.out.println("connected to channel");
@@ -214,11 +285,19 @@ public class ClusterMember extends ReceiverAdapter {
     @Override
     public void getState(OutputStream output) throws Exception {
         System.out.println("getting state");
-        ObjectOutputStream out = new ObjectOutputStream(output);
-        synchronized (auctions) {
-            out.writeObject(auctions);
-            out.writeObject(nextID);
+        // Take the auctions and the responses to the requests applied to them at the same point,
+        // then write them without holding up requests
+        AuctionSnapshot snapshot;
+        DedupCache dedupCopy;
+        synchronized (this) {
+            snapshot = this.auctions.snapshot();
+            dedupCopy = this.dedup.copy();
         }
+        ObjectOutputStream out = new ObjectOutputStream(output);
+        out.writeObject(snapshot);
+        dedupCopy.writeTo(out);
+        users.writeTo(out);
+        out.flush();
     }
 
     /**
@@ -231,12 +310,11 @@ public class ClusterMember extends ReceiverAdapter {
         System.out.println("setting state");
         ObjectInputStream in = new ObjectInputStream(input);
 
-        Map<String, AuctionItem> newState = (Map<String, AuctionItem>) in.readObject();
-        AtomicInteger newIDstart = (AtomicInteger) in.readObject();
-        synchronized (auctions) {
-            nextID.set(newIDstart.get());
-            auctions.clear();
-            auctions.putAll(newState);
+        AuctionSnapshot newState = (AuctionSnapshot) in.readObject();
+        dedup.readFrom(in);
+        users.readFrom(in);
+        synchronized (this) {
+            this.auctions.load(newState);
         }
     }
 
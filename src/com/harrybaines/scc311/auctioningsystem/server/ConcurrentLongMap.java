@@ -0,0 +1,273 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Code: Concurrent Long Map   ConcurrentLongMap.java
+ * Date: 19/10/26
+ *
+ * A concurrent hash map from non-zero long keys (auction ids) to values,
+ * using open addressing over a pair of arrays: no boxed keys, no string
+ * hashing and no node allocated per entry. Reads never lock; writes lock
+ * the map, which suits the front-end's caches where every bid reads and
+ * only creates, closes and new windows write.
+ *
+ * A key is claimed by writing its value and then its key, so a reader that
+ * finds the key also finds a value or null. Removing an entry only clears
+ * its value, leaving the key as a tombstone that a later put of the same
+ * key reuses; entries never move while readers may be probing for them.
+ * Tombstones are dropped when the table is rebuilt, which happens once
+ * 70% of the slots have been claimed.
+*/
+public class ConcurrentLongMap<V> {
+
+  private static final double LOAD_FACTOR = 0.7;
+
+  private volatile Table<V> table;
+  private int size;
+
+  /**
+   * Constructor to initialise an empty map.
+  */
+  public ConcurrentLongMap() {
+    this.table = new Table<V>(16);
+  }
+
+  /**
+   * Obtains the value for a key.
+   * @param key the key (non-zero).
+   * @return the value, or null if the key isn't present.
+  */
+  public V get(long key) {
+    Table<V> table = this.table;
+    for (int i = table.slot(key); ; i = (i + 1) & table.mask) {
+      long k = table.keys.get(i);
+      if (k == key) {
+        return table.values.get(i);
+      } else if (k == 0) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Adds or replaces the value for a key.
+   * @param key the key (non-zero).
+   * @param value the value (not null).
+   * @return the previous value, or null if the key wasn't present.
+  */
+  public synchronized V put(long key, V value) {
+    return this.insert(key, value, false);
+  }
+
+  /**
+   * Adds a value for a key if the key isn't present.
+   * @param key the key (non-zero).
+   * @param value the value (not null).
+   * @return the existing value, or null if the value was added.
+  */
+  public V putIfAbsent(long key, V value) {
+    V existing = this.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    synchronized (this) {
+      return this.insert(key, value, true);
+    }
+  }
+
+  /**
+   * Obtains the value for a key, adding one created by a function if the key isn't present.
+   * @param key the key (non-zero).
+   * @param create creates the value from the key.
+   * @return the existing or added value.
+  */
+  public V computeIfAbsent(long key, LongFunction<? extends V> create) {
+    V existing = this.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    synchronized (this) {
+      existing = this.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      V value = create.apply(key);
+      this.insert(key, value, true);
+      return value;
+    }
+  }
+
+  /**
+   * Removes a key.
+   * @param key the key (non-zero).
+   * @return the removed value, or null if the key wasn't present.
+  */
+  public synchronized V remove(long key) {
+    Table<V> table = this.table;
+    int i = table.find(key);
+    if (i < 0) {
+      return null;
+    }
+    V removed = table.values.getAndSet(i, null);
+    if (removed != null) {
+      this.size--;
+    }
+    return removed;
+  }
+
+  /**
+   * Removes a key only if it maps to a given value.
+   * @param key the key (non-zero).
+   * @param value the value expected.
+   * @return true if the key was removed.
+  */
+  public synchronized boolean remove(long key, V value) {
+    Table<V> table = this.table;
+    int i = table.find(key);
+    if (i < 0 || !table.values.compareAndSet(i, value, null)) {
+      return false;
+    }
+    this.size--;
+    return true;
+  }
+
+  /**
+   * Performs an action on every value, without locking. Values added or removed
+   * during the call may or may not be seen.
+   * @param action the action.
+  */
+  public void forEachValue(Consumer<? super V> action) {
+    Table<V> table = this.table;
+    for (int i = 0; i < table.length(); i++) {
+      V value = table.values.get(i);
+      if (value != null) {
+        action.accept(value);
+      }
+    }
+  }
+
+  /**
+   * Obtains the number of entries.
+   * @return the number of entries.
+  */
+  public synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Adds or replaces a value, rebuilding the table first if it is too full. Called with the lock held.
+   * @param key the key (non-zero).
+   * @param value the value (not null).
+   * @param onlyIfAbsent true to leave an existing value in place.
+   * @return the previous value, or null if the key wasn't present.
+  */
+  private V insert(long key, V value, boolean onlyIfAbsent) {
+    if (key == 0) {
+      throw new IllegalArgumentException("Key 0 is reserved");
+    }
+    Table<V> table = this.table;
+    int i = table.find(key);
+    if (i >= 0) {
+      V previous = table.values.get(i);
+      if (previous == null || !onlyIfAbsent) {
+        table.values.set(i, value);
+      }
+      if (previous == null) {
+        this.size++;
+      }
+      return previous;
+    }
+    if (table.claimed + 1 > table.length() * LOAD_FACTOR) {
+      table = this.rebuild(table);
+    }
+    table.claim(key, value);
+    this.size++;
+    return null;
+  }
+
+  /**
+   * Copies the live entries into a new table sized for twice their number and publishes it.
+   * @param old the current table.
+   * @return the new table.
+  */
+  private Table<V> rebuild(Table<V> old) {
+    int capacity = 16;
+    while (capacity * LOAD_FACTOR < 2 * (this.size + 1)) {
+      capacity <<= 1;
+    }
+    Table<V> table = new Table<V>(capacity);
+    for (int i = 0; i < old.length(); i++) {
+      V value = old.values.get(i);
+      if (value != null) {
+        table.claim(old.keys.get(i), value);
+      }
+    }
+    this.table = table;
+    return table;
+  }
+
+  /**
+   * The slots of the map. Only the writer holding the map's lock changes them.
+  */
+  private static final class Table<V> {
+    private final AtomicLongArray keys;  /* 0 marks an unclaimed slot */
+    private final AtomicReferenceArray<V> values;  /* null marks a removed entry */
+    private final int mask;
+    private int claimed;
+
+    private Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.values = new AtomicReferenceArray<V>(capacity);
+      this.mask = capacity - 1;
+    }
+
+    private int length() {
+      return this.mask + 1;
+    }
+
+    /**
+     * Obtains the home slot of a key, mixing its bits so sequential ids spread out.
+     * @param key the key.
+     * @return the slot.
+    */
+    private int slot(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & this.mask;
+    }
+
+    /**
+     * Finds the slot claimed by a key.
+     * @param key the key.
+     * @return the slot, or -1 if the key has no slot.
+    */
+    private int find(long key) {
+      for (int i = this.slot(key); ; i = (i + 1) & this.mask) {
+        long k = this.keys.get(i);
+        if (k == key) {
+          return i;
+        } else if (k == 0) {
+          return -1;
+        }
+      }
+    }
+
+    /**
+     * Claims an unclaimed slot for a key, publishing the value before the key.
+     * @param key the key, which has no slot.
+     * @param value the value.
+    */
+    private void claim(long key, V value) {
+      int i = this.slot(key);
+      while (this.keys.get(i) != 0) {
+        i = (i + 1) & this.mask;
+      }
+      this.values.set(i, value);
+      this.keys.set(i, key);
+      this.claimed++;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code: Dedup Cache   DedupCache.java
+ * Date: 19/10/26
+ *
+ * Remembers the response to each mutating request by the user who made it,
+ * the kind of request and its client generated request id, so a request
+ * resent after a timeout - or hedged to a second front-end - gets the
+ * original response instead of being applied twice, while a different
+ * request that happens to reuse an id doesn't. Requests without an id are
+ * never recorded.
+ *
+ * Every replica must make the same decision about every request, so what is
+ * remembered depends only on the requests applied, never on a member's
+ * clock: the last auction.dedup.size (default 100000) responses are kept,
+ * the oldest being dropped first - far more than are made within any
+ * client's retry window.
+*/
+public class DedupCache {
+
+  public static final String CREATE_AUCTION = "createAuction";
+  public static final String CLOSE_AUCTION = "closeAuction";
+  public static final String BID = "bid";
+
+  private final int maxEntries;
+  private final LinkedHashMap<String, ServerResponse> entries = new LinkedHashMap<String, ServerResponse>();  /* In the order recorded */
+  private final LongAdder duplicates = new LongAdder();
+
+  /**
+   * Constructor to initialise a cache configured by system properties.
+  */
+  public DedupCache() {
+    this(Integer.getInteger("auction.dedup.size", 100000));
+  }
+
+  /**
+   * Constructor to initialise a cache with an explicit bound.
+   * @param maxEntries the maximum number of responses to remember.
+  */
+  public DedupCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Obtains the response already given to a request.
+   * @param operation the kind of request, e.g. DedupCache.BID.
+   * @param userId the id of the user who made the request.
+   * @param requestId the client generated id of the request (may be null).
+   * @return the original response, or null if the request hasn't been seen (or has no id).
+  */
+  public synchronized ServerResponse get(String operation, int userId, String requestId) {
+    if (requestId == null) {
+      return null;
+    }
+    ServerResponse response = this.entries.get(key(operation, userId, requestId));
+    if (response == null) {
+      return null;
+    }
+    this.duplicates.increment();
+    return response;
+  }
+
+  /**
+   * Records the response given to a request.
+   * @param operation the kind of request, e.g. DedupCache.BID.
+   * @param userId the id of the user who made the request.
+   * @param requestId the client generated id of the request (may be null).
+   * @param response the response given.
+  */
+  public synchronized void put(String operation, int userId, String requestId, ServerResponse response) {
+    if (requestId == null) {
+      return;
+    }
+    this.entries.put(key(operation, userId, requestId), response);
+    if (this.entries.size() > this.maxEntries) {
+      Iterator<ServerResponse> it = this.entries.values().iterator();
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * Creates the key a request's response is remembered by.
+   * @param operation the kind of request.
+   * @param userId the id of the user who made the request.
+   * @param requestId the client generated id of the request.
+   * @return the key.
+  */
+  private static String key(String operation, int userId, String requestId) {
+    return operation + ':' + userId + ':' + requestId;
+  }
+
+  /**
+   * Obtains the number of duplicate requests answered from the cache.
+   * @return the number of duplicates.
+  */
+  public long getDuplicateCount() {
+    return this.duplicates.sum();
+  }
+
+  /**
+   * Copies the cache, so it can be written while requests continue to be recorded here.
+   * @return a copy of the entries, with the same bound.
+  */
+  public synchronized DedupCache copy() {
+    DedupCache copy = new DedupCache(this.maxEntries);
+    copy.entries.putAll(this.entries);
+    return copy;
+  }
+
+  /**
+   * Writes the cache as part of a cluster member's state.
+   * @param out the stream to write to.
+   * @throws IOException if the cache can't be written.
+  */
+  public synchronized void writeTo(ObjectOutputStream out) throws IOException {
+    out.writeObject(new LinkedHashMap<String, ServerResponse>(this.entries));
+  }
+
+  /**
+   * Replaces the cache with one read from a cluster member's state.
+   * @param in the stream to read from.
+   * @throws IOException if the cache can't be read.
+   * @throws ClassNotFoundException if the stream doesn't contain a cache.
+  */
+  @SuppressWarnings("unchecked")
+  public synchronized void readFrom(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    Map<String, ServerResponse> read = (Map<String, ServerResponse>) in.readObject();
+    this.entries.clear();
+    this.entries.putAll(read);
+  }
+}
@@ -0,0 +1,60 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+/**
+ * Code: Heap Auction Store   HeapAuctionStore.java
+ * Date: 19/10/26
+ *
+ * The default auction store: an AuctionSnapshot replaced on every change
+ * and published through a volatile field, so snapshots are free.
+*/
+public class HeapAuctionStore implements AuctionStore {
+
+  private volatile AuctionSnapshot auctions = AuctionSnapshot.EMPTY;
+
+  @Override
+  public AuctionItem get(long auctionId) {
+    return this.auctions.get(auctionId);
+  }
+
+  @Override
+  public synchronized AuctionItem create(AuctionItem auctionItem) {
+    auctionItem.setId(this.auctions.getNextId());
+    this.auctions = this.auctions.withCreated(auctionItem);
+    return auctionItem;
+  }
+
+  @Override
+  public synchronized AuctionItem bid(long auctionId, Bid bid) {
+    // Replace the item so earlier snapshots are unchanged
+    AuctionItem auctionItem = this.auctions.get(auctionId).withHighestBid(bid);
+    this.auctions = this.auctions.with(auctionItem);
+    return auctionItem;
+  }
+
+  @Override
+  public synchronized AuctionItem remove(long auctionId) {
+    AuctionItem auctionItem = this.auctions.get(auctionId);
+    this.auctions = this.auctions.without(auctionId);
+    return auctionItem;
+  }
+
+  @Override
+  public long getVersion() {
+    return this.auctions.getVersion();
+  }
+
+  @Override
+  public int size() {
+    return this.auctions.size();
+  }
+
+  @Override
+  public AuctionSnapshot snapshot() {
+    return this.auctions;
+  }
+
+  @Override
+  public synchronized void load(AuctionSnapshot snapshot) {
+    this.auctions = snapshot;
+  }
+}
@@ -0,0 +1,85 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.client.User;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Code: Asynchronous Server Interface   IAsyncAuctionServer.java
+ * Date: 19/10/26
+ *
+ * The requests a front-end answers from the cluster, made without waiting
+ * for the cluster's response. Each returns as soon as the request has been
+ * sent, with a future completed when the response arrives, so a caller such
+ * as the BinaryEndpoint needs no thread per outstanding request. The futures
+ * complete with exactly what the matching IAuctionServer method returns.
+*/
+public interface IAsyncAuctionServer {
+
+  /**
+   * Obtains a challenge for the client to sign.
+   * @return a future completed with the authentication challenge, or null if none could be issued.
+  */
+  public CompletableFuture<AuthChallenge> attemptAuthAsync();
+
+  /**
+   * Signs a client's challenge with the server's private key.
+   * @param challenge the authentication challenge to sign.
+   * @return a future completed with the server auth response.
+  */
+  public CompletableFuture<ServerAuthResponse> signChallengeAsync(AuthChallenge challenge);
+
+  /**
+   * Verifies a client's signature of a challenge, issuing a session token if it verifies.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with the server auth response.
+  */
+  public CompletableFuture<ServerAuthResponse> verifySignatureAsync(AuthSig authSig);
+
+  /**
+   * Creates an auction for a given item for sale.
+   * @param sessionToken the session token of the seller.
+   * @param auctionItem the auction item offered for sale.
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> createAuctionAsync(SessionToken sessionToken, AuctionItem auctionItem);
+
+  /**
+   * Closes an auction with a request that can be safely resent.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close the auction.
+   * @param requestId the client generated id of the request (may be null).
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> closeAuctionAsync(SessionToken sessionToken, long auctionId, int userId, String requestId);
+
+  /**
+   * Places a bid on an auction.
+   * @param sessionToken the session token of the bidder.
+   * @param bid the Bid object.
+   * @return a future completed with the server response.
+  */
+  public CompletableFuture<ServerResponse> bidAsync(SessionToken sessionToken, Bid bid);
+
+  /**
+   * Retrieves all active auctions on offer.
+   * @return a future completed with the active auctions by id, or null if the front-end is too busy.
+  */
+  public CompletableFuture<Map<Long, AuctionItem>> getActiveAuctionsAsync();
+
+  /**
+   * Retrieves all active auctions only if they have changed since a given version.
+   * @param version the version of the active auctions held (-1 if none).
+   * @return a future completed with the browse response.
+  */
+  public CompletableFuture<BrowseResponse> getActiveAuctionsIfModifiedAsync(long version);
+
+  /**
+   * Looks up the profiles of users by id.
+   * @param userIds the ids of the users.
+   * @return a future completed with the users, in the same order, with null for any unknown id.
+  */
+  public CompletableFuture<User[]> getUsersAsync(int[] userIds);
+}
@@ -0,0 +1,22 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Code: Remote Listener Interface   IAuctionListener.java
+ * Date: 19/10/26
+ *
+ * Callback interface implemented by clients to be notified of changes
+ * to the auctions they have subscribed to, instead of polling.
+ */
+public interface IAuctionListener extends Remote {
+
+  /**
+   * Called by the server when a subscribed auction receives a new highest bid or is closed.
+   * Several changes to the same auction may be coalesced into a single (latest) event.
+   * @param event the event describing the change.
+   * @throws RemoteException if an error occurs on the client.
+   */
+  public void auctionUpdated(AuctionEvent event) throws RemoteException;
+}
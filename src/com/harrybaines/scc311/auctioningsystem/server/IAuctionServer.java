@@ -25,6 +25,8 @@ public interface IAuctionServer extends Remote {
   public static final int BID_SUCCESSFUL = 7;
   public static final int AUCTION_CLOSED = 8;
   public static final int AUCTION_CREATED = 9;
+  public static final int INVALID_SESSION = 10;
+  public static final int SERVER_BUSY = 11;
 
   /**
    * Method called by the client once this server has been verified.
@@ -52,35 +54,95 @@ public interface IAuctionServer extends Remote {
    */
   public ServerAuthResponse verifySignature(AuthSig authSig) throws RemoteException;
 
+  /**
+   * Method called by the client to check a session token from an earlier login is still valid,
+   * so reconnecting doesn't require the full challenge response protocol.
+   * @param sessionToken the session token to check.
+   * @return true if the session is still valid, false otherwise.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  public boolean resumeSession(SessionToken sessionToken) throws RemoteException;
+
   /**
    * Allows a user to create an auction for a given item for sale.
+   * @param sessionToken the session token of the seller.
    * @param auctionItem the auction item offered for sale.
    * @return a server response containing the result of the create auction method.
    * @throws RemoteException if an error occurs on the server.
    */
-  public ServerResponse createAuction(AuctionItem auctionItem) throws RemoteException;
+  public ServerResponse createAuction(SessionToken sessionToken, AuctionItem auctionItem) throws RemoteException;
 
   /**
    * Allows a user to close an auction for a given item for sale.
+   * @param sessionToken the session token of the user.
    * @param auctionId the ID of the auction to close.
-   * @param user the user who wishes to close this particular auction.
+   * @param userId the id of the user who wishes to close this particular auction.
    * @return a server response containing the result of the close auction method.
    * @throws RemoteException if an error occurs on the server.
    */
-  public ServerResponse closeAuction(String auctionId, User user) throws RemoteException;
+  public ServerResponse closeAuction(SessionToken sessionToken, long auctionId, int userId) throws RemoteException;
+
+  /**
+   * Allows a user to close an auction with a request that can be safely resent.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to close.
+   * @param userId the id of the user who wishes to close this particular auction.
+   * @param requestId the client generated id of the request, so a resend gets the original response.
+   * @return a server response containing the result of the close auction method.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  public ServerResponse closeAuction(SessionToken sessionToken, long auctionId, int userId, String requestId) throws RemoteException;
 
   /**
    * Allows a user to close an auction for a given item for sale.
+   * @param sessionToken the session token of the bidder.
    * @param bid the Bid object.
    * @return a server response containing the result of the bid method.
    * @throws RemoteException if an error occurs on the server.
    */
-  public ServerResponse bid(Bid bid) throws RemoteException;
+  public ServerResponse bid(SessionToken sessionToken, Bid bid) throws RemoteException;
 
   /**
    * Allows a user to retrieve all active auctions on offer.
    * @return a Map of auctionId's to auction items in the active auction.
    * @throws RemoteException if an error occurs on the server.
    */
-  public Map<String, AuctionItem> getActiveAuctions() throws RemoteException;
+  public Map<Long, AuctionItem> getActiveAuctions() throws RemoteException;
+
+  /**
+   * Allows a user to retrieve all active auctions on offer only if they have
+   * changed since the version the user already holds.
+   * @param version the version of the active auctions held by the user (-1 if none).
+   * @return a browse response containing the current version, and the active auctions if modified.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  public BrowseResponse getActiveAuctionsIfModified(long version) throws RemoteException;
+
+  /**
+   * Allows a user to look up the profiles of the sellers and bidders named by id in auctions and bids.
+   * @param userIds the ids of the users.
+   * @return the users, in the same order, with null for any unknown id (or null if the server is too busy).
+   * @throws RemoteException if an error occurs on the server.
+   */
+  public User[] getUsers(int[] userIds) throws RemoteException;
+
+  /**
+   * Subscribes a client callback to be notified when an auction is outbid or closed.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to subscribe to.
+   * @param listener the client's remote callback.
+   * @return true if subscribed, false if the session is invalid, the auction isn't active or the client has too many subscriptions.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  public boolean subscribe(SessionToken sessionToken, long auctionId, IAuctionListener listener) throws RemoteException;
+
+  /**
+   * Unsubscribes a client callback from notifications on an auction.
+   * @param sessionToken the session token of the user.
+   * @param auctionId the ID of the auction to unsubscribe from.
+   * @param listener the client's remote callback.
+   * @return true if unsubscribed, false if the session is invalid.
+   * @throws RemoteException if an error occurs on the server.
+   */
+  public boolean unsubscribe(SessionToken sessionToken, long auctionId, IAuctionListener listener) throws RemoteException;
 }
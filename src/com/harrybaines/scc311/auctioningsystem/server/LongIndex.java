@@ -0,0 +1,154 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+/**
+ * Code: Long Index   LongIndex.java
+ * Date: 19/10/26
+ *
+ * A primitive open addressing hash map from non-zero long keys to long
+ * values, with no boxing and two array slots per entry. Linear probing with
+ * backward shift deletion keeps lookups short without tombstones. The table
+ * doubles at 70% load. Not thread safe.
+*/
+public final class LongIndex {
+
+  private static final double LOAD_FACTOR = 0.7;
+
+  private long[] keys;  /* 0 marks an empty slot */
+  private long[] values;
+  private int mask;
+  private int size;
+
+  /**
+   * Constructor to initialise an index.
+   * @param expected the number of entries expected, to size the table.
+  */
+  public LongIndex(int expected) {
+    int capacity = Integer.highestOneBit(Math.max(16, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+    this.keys = new long[capacity];
+    this.values = new long[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Obtains the value for a key.
+   * @param key the key (non-zero).
+   * @return the value, or -1 if the key isn't present.
+  */
+  public long get(long key) {
+    if (key == 0) {
+      return -1;
+    }
+    for (int i = slot(key, this.mask); ; i = (i + 1) & this.mask) {
+      long k = this.keys[i];
+      if (k == key) {
+        return this.values[i];
+      } else if (k == 0) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Adds or replaces the value for a key.
+   * @param key the key (non-zero).
+   * @param value the value.
+  */
+  public void put(long key, long value) {
+    if (key == 0) {
+      throw new IllegalArgumentException("Key 0 is reserved");
+    }
+    if (this.size + 1 > this.keys.length * LOAD_FACTOR) {
+      this.resize(this.keys.length << 1);
+    }
+    int i = slot(key, this.mask);
+    while (this.keys[i] != 0 && this.keys[i] != key) {
+      i = (i + 1) & this.mask;
+    }
+    if (this.keys[i] == 0) {
+      this.keys[i] = key;
+      this.size++;
+    }
+    this.values[i] = value;
+  }
+
+  /**
+   * Removes a key, shifting later entries of its probe sequence back into the gap.
+   * @param key the key (non-zero).
+   * @return the value that was removed, or -1 if the key wasn't present.
+  */
+  public long remove(long key) {
+    if (key == 0) {
+      return -1;
+    }
+    int i = slot(key, this.mask);
+    while (this.keys[i] != key) {
+      if (this.keys[i] == 0) {
+        return -1;
+      }
+      i = (i + 1) & this.mask;
+    }
+    long removed = this.values[i];
+    int gap = i;
+    for (int j = (gap + 1) & this.mask; this.keys[j] != 0; j = (j + 1) & this.mask) {
+      int home = slot(this.keys[j], this.mask);
+      // Move the entry back if the gap lies between its home slot and its current slot
+      if (((j - home) & this.mask) >= ((j - gap) & this.mask)) {
+        this.keys[gap] = this.keys[j];
+        this.values[gap] = this.values[j];
+        gap = j;
+      }
+    }
+    this.keys[gap] = 0;
+    this.size--;
+    return removed;
+  }
+
+  /**
+   * Obtains the number of entries.
+   * @return the number of entries.
+  */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Obtains the memory used by the table.
+   * @return the size of the arrays in bytes.
+  */
+  public long sizeInBytes() {
+    return 16L * this.keys.length;
+  }
+
+  /**
+   * Rehashes every entry into a table of a new capacity.
+   * @param capacity the new capacity (a power of two).
+  */
+  private void resize(int capacity) {
+    long[] oldKeys = this.keys;
+    long[] oldValues = this.values;
+    this.keys = new long[capacity];
+    this.values = new long[capacity];
+    this.mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int j = slot(oldKeys[i], this.mask);
+        while (this.keys[j] != 0) {
+          j = (j + 1) & this.mask;
+        }
+        this.keys[j] = oldKeys[i];
+        this.values[j] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Obtains the home slot of a key, mixing its bits so sequential keys spread out.
+   * @param key the key.
+   * @param mask the table mask.
+   * @return the slot.
+  */
+  private static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,250 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Code: Notification Dispatcher   NotificationDispatcher.java
+ * Date: 19/10/26
+ *
+ * Fans auction events out to subscribed client callbacks. Publishing never
+ * blocks: each event is stored in the subscriber's pending map (replacing
+ * any undelivered event for the same auction, so bursts are coalesced to the
+ * latest state) and a delivery task is scheduled on a small bounded pool.
+ * Each subscriber has at most one delivery task in flight, so a slow client
+ * only delays its own notifications and never the bidding path. If the pool
+ * is saturated, delivery is retried shortly from a timer rather than waiting
+ * for another event, which a closed auction never has. Subscribers whose
+ * callbacks fail are dropped.
+ *
+ * Each listener may hold a bounded number of subscriptions. Subscriptions
+ * to an auction are removed when it closes, and on a periodic sweep against
+ * the active auctions for those closed through another front-end.
+*/
+public class NotificationDispatcher {
+
+  private static final int DELIVERY_THREADS = 4;
+  private static final int MAX_QUEUED_DELIVERIES = 10000;
+  private static final int MAX_SUBSCRIPTIONS = 1000;  /* Per listener */
+  private static final long RETRY_MILLIS = 100;
+  private static final long SWEEP_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final ConcurrentLongMap<Set<Subscriber>> subscriptions = new ConcurrentLongMap<Set<Subscriber>>();  /* Read lock-free on publish */
+  private final ConcurrentHashMap<IAuctionListener, Subscriber> subscribers = new ConcurrentHashMap<IAuctionListener, Subscriber>();
+  private final ThreadPoolExecutor executor;
+  private final ScheduledExecutorService retries;
+  private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+  /**
+   * Constructor to initialise a new dispatcher and its delivery pool.
+  */
+  public NotificationDispatcher() {
+    this.executor = new ThreadPoolExecutor(DELIVERY_THREADS, DELIVERY_THREADS, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_QUEUED_DELIVERIES), (r) -> {
+          Thread thread = new Thread(r, "notification-dispatcher");
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    this.retries = Executors.newSingleThreadScheduledExecutor((r) -> {
+      Thread thread = new Thread(r, "notification-retry");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Subscribes a listener to events on an auction.
+   * @param auctionId the ID of the auction, which the caller has checked is active.
+   * @param listener the client callback.
+   * @return true if subscribed, false if the listener already has the most subscriptions allowed.
+  */
+  public synchronized boolean subscribe(long auctionId, IAuctionListener listener) {
+    if (auctionId <= 0) {
+      return false;  // No auction has this id
+    }
+    Subscriber subscriber = this.subscribers.computeIfAbsent(listener, Subscriber::new);
+    if (subscriber.auctions.size() >= MAX_SUBSCRIPTIONS && !subscriber.auctions.containsKey(auctionId)) {
+      return false;
+    }
+    subscriber.auctions.put(auctionId, System.nanoTime());
+    this.subscriptions.computeIfAbsent(auctionId, (id) -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    return true;
+  }
+
+  /**
+   * Unsubscribes a listener from events on an auction.
+   * @param auctionId the ID of the auction.
+   * @param listener the client callback.
+  */
+  public synchronized void unsubscribe(long auctionId, IAuctionListener listener) {
+    Subscriber subscriber = this.subscribers.get(listener);
+    if (subscriber != null) {
+      this.remove(auctionId, subscriber);
+    }
+  }
+
+  /**
+   * Publishes an event to every subscriber of its auction without blocking.
+   * Closing an auction also removes all of its subscriptions.
+   * @param event the event to publish.
+  */
+  public void publish(AuctionEvent event) {
+    Set<Subscriber> auctionSubscribers = event.getType() == AuctionEvent.AUCTION_CLOSED
+        ? this.removeAll(event.getAuctionId())
+        : this.subscriptions.get(event.getAuctionId());
+    if (auctionSubscribers == null) {
+      return;
+    }
+    for (Subscriber subscriber : auctionSubscribers) {
+      subscriber.offer(event);
+    }
+  }
+
+  /**
+   * Removes every subscription to an auction that has closed, or is found not to exist.
+   * @param auctionId the ID of the auction.
+  */
+  public void closed(long auctionId) {
+    this.removeAll(auctionId);
+  }
+
+  /**
+   * Removes every subscription to an auction.
+   * @param auctionId the ID of the auction.
+   * @return the auction's subscribers, or null if it had none.
+  */
+  private synchronized Set<Subscriber> removeAll(long auctionId) {
+    Set<Subscriber> auctionSubscribers = this.subscriptions.remove(auctionId);
+    if (auctionSubscribers != null) {
+      for (Subscriber subscriber : auctionSubscribers) {
+        this.remove(auctionId, subscriber);
+      }
+    }
+    return auctionSubscribers;
+  }
+
+  /**
+   * Removes subscriptions to auctions that are no longer active, at most once every SWEEP_NANOS.
+   * Only subscriptions made before the active auctions were read are removed, as the auctions
+   * of later ones may be missing only because they were created afterwards.
+   * @param activeIds the ids of the active auctions.
+   * @param readNanos the System.nanoTime before the active auctions were read.
+  */
+  public void retainActive(Set<Long> activeIds, long readNanos) {
+    long last = this.lastSweepNanos.get();
+    if (readNanos - last < SWEEP_NANOS || !this.lastSweepNanos.compareAndSet(last, readNanos)) {
+      return;
+    }
+    synchronized (this) {
+      for (Subscriber subscriber : new ArrayList<Subscriber>(this.subscribers.values())) {
+        for (Map.Entry<Long, Long> subscription : new ArrayList<Map.Entry<Long, Long>>(subscriber.auctions.entrySet())) {
+          if (subscription.getValue() - readNanos < 0 && !activeIds.contains(subscription.getKey())) {
+            this.removeAll(subscription.getKey());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes one subscription, and the subscriber once it has none. Called with the lock held.
+   * @param auctionId the ID of the auction.
+   * @param subscriber the subscriber.
+  */
+  private void remove(long auctionId, Subscriber subscriber) {
+    subscriber.auctions.remove(auctionId);
+    Set<Subscriber> auctionSubscribers = this.subscriptions.get(auctionId);
+    if (auctionSubscribers != null && auctionSubscribers.remove(subscriber) && auctionSubscribers.isEmpty()) {
+      this.subscriptions.remove(auctionId, auctionSubscribers);
+    }
+    if (subscriber.auctions.isEmpty()) {
+      // Events already pending are still delivered by the subscriber's own task
+      this.subscribers.remove(subscriber.listener, subscriber);
+    }
+  }
+
+  /**
+   * Removes a subscriber whose callback has failed from every auction.
+   * @param subscriber the subscriber to remove.
+  */
+  private synchronized void drop(Subscriber subscriber) {
+    this.subscribers.remove(subscriber.listener, subscriber);
+    for (Long auctionId : new ArrayList<Long>(subscriber.auctions.keySet())) {
+      this.remove(auctionId, subscriber);
+    }
+  }
+
+  /**
+   * A subscribed client with its subscriptions and undelivered events, both keyed by auction id.
+  */
+  private final class Subscriber implements Runnable {
+
+    private final IAuctionListener listener;
+    private final Map<Long, Long> auctions = new HashMap<Long, Long>();  /* Subscribed auction to System.nanoTime of subscribing, guarded by the dispatcher */
+    private final ConcurrentHashMap<Long, AuctionEvent> pending = new ConcurrentHashMap<Long, AuctionEvent>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean retrying = new AtomicBoolean();
+
+    private Subscriber(IAuctionListener listener) {
+      this.listener = listener;
+    }
+
+    /**
+     * Stores an event for delivery, coalescing with any undelivered event on the
+     * same auction, and schedules delivery if none is in flight.
+     * @param event the event to deliver.
+    */
+    private void offer(AuctionEvent event) {
+      this.pending.merge(event.getAuctionId(), event, (older, newer) ->
+          older.getType() == AuctionEvent.AUCTION_CLOSED ? older : newer);
+      this.schedule();
+    }
+
+    private void schedule() {
+      if (!this.pending.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          // Pool saturated - retry shortly, as no further event may arrive to trigger delivery
+          this.scheduled.set(false);
+          if (this.retrying.compareAndSet(false, true)) {
+            retries.schedule(() -> {
+              this.retrying.set(false);
+              this.schedule();
+            }, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+          }
+        }
+      }
+    }
+
+    /**
+     * Delivers all pending events, then reschedules if more arrived meanwhile.
+    */
+    @Override
+    public void run() {
+      try {
+        Iterator<Map.Entry<Long, AuctionEvent>> it = this.pending.entrySet().iterator();
+        while (it.hasNext()) {
+          Map.Entry<Long, AuctionEvent> entry = it.next();
+          if (this.pending.remove(entry.getKey(), entry.getValue())) {
+            this.listener.auctionUpdated(entry.getValue());
+          }
+        }
+      } catch (RemoteException e) {
+        System.out.println("[SERVER] Dropping unreachable subscriber: " + e.getMessage());
+        drop(this);
+        this.pending.clear();
+      } finally {
+        this.scheduled.set(false);
+      }
+      this.schedule();
+    }
+  }
+}
@@ -0,0 +1,352 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Code: Off Heap Auction Store   OffHeapAuctionStore.java
+ * Date: 19/10/26
+ *
+ * An auction store for millions of live auctions that keeps almost nothing
+ * on the Java heap, so the collector has little to trace or copy however
+ * many auctions there are. Each auction is a fixed-width 48 byte record in
+ * a direct ByteBuffer segment:
+ *
+ *   0  auction id (long, 0 marks a free record)
+ *   8  start price (double)
+ *  16  reserve price (double)
+ *  24  highest bid (double, NaN if there are no bids)
+ *  32  description (long, segment and position in the string arena)
+ *  40  seller (int, user id)
+ *  44  highest bidder (int, user id, unused if there are no bids)
+ *
+ * Descriptions are length prefixed UTF-8 in a separate arena of direct
+ * segments, compacted once more than half of it belongs to closed auctions.
+ * A primitive long to record index finds an auction by id, and the records
+ * of closed auctions are reused.
+ *
+ * Items are decoded on every read, so callers get a fresh AuctionItem each
+ * time. Snapshots are built on demand, which is O(n), and cached until the
+ * next change. Create request ids are not stored; duplicate creates are
+ * answered from the cluster member's dedup cache.
+*/
+public class OffHeapAuctionStore implements AuctionStore {
+
+  private static final int RECORD_BYTES = 48;
+  private static final int ID = 0;
+  private static final int START_PRICE = 8;
+  private static final int RESERVE_PRICE = 16;
+  private static final int HIGHEST_BID = 24;
+  private static final int DESC = 32;
+  private static final int SELLER = 40;
+  private static final int BIDDER = 44;
+
+  private static final int RECORD_SEGMENT_SHIFT = 16;  /* 65536 records, 3MB per segment */
+  private static final int RECORD_SEGMENT_MASK = (1 << RECORD_SEGMENT_SHIFT) - 1;
+  private static final int ARENA_SEGMENT_BYTES = 1 << 20;
+
+  private final List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+  private int recordCount;  /* Records ever used, including free ones */
+  private int[] freeRecords = new int[16];
+  private int freeCount;
+  private LongIndex index = new LongIndex(1 << 16);  /* Auction id to record number */
+
+  private StringArena arena = new StringArena();
+
+  private volatile long version;
+  private long nextId = 1;
+  private AuctionSnapshot snapshot = AuctionSnapshot.EMPTY;  /* Cached for the version it was built at */
+
+  @Override
+  public synchronized AuctionItem get(long auctionId) {
+    long record = this.index.get(auctionId);
+    return record < 0 ? null : this.read((int) record);
+  }
+
+  @Override
+  public synchronized AuctionItem create(AuctionItem auctionItem) {
+    auctionItem.setId(this.nextId++);
+    this.insert(auctionItem);
+    this.version++;
+    return auctionItem;
+  }
+
+  @Override
+  public synchronized AuctionItem bid(long auctionId, Bid bid) {
+    int record = (int) this.index.get(auctionId);
+    ByteBuffer segment = this.segment(record);
+    int base = offset(record);
+    segment.putDouble(base + HIGHEST_BID, bid.getBidValue());
+    segment.putInt(base + BIDDER, bid.getBidderId());
+    this.version++;
+    return this.read(record);
+  }
+
+  @Override
+  public synchronized AuctionItem remove(long auctionId) {
+    long record = this.index.get(auctionId);
+    if (record < 0) {
+      return null;
+    }
+    AuctionItem auctionItem = this.read((int) record);
+    this.index.remove(auctionId);
+    this.free((int) record);
+    this.version++;
+    return auctionItem;
+  }
+
+  @Override
+  public long getVersion() {
+    return this.version;
+  }
+
+  @Override
+  public synchronized int size() {
+    return this.index.size();
+  }
+
+  @Override
+  public synchronized AuctionSnapshot snapshot() {
+    if (this.snapshot.getVersion() != this.version) {
+      AuctionItem[] items = new AuctionItem[this.index.size()];
+      int count = 0;
+      for (int record = 0; record < this.recordCount; record++) {
+        if (this.segment(record).getLong(offset(record) + ID) != 0) {
+          items[count++] = this.read(record);
+        }
+      }
+      this.snapshot = AuctionSnapshot.of(items, this.version, this.nextId);
+    }
+    return this.snapshot;
+  }
+
+  @Override
+  public synchronized void load(AuctionSnapshot snapshot) {
+    // Drop every segment rather than freeing records one by one
+    this.records.clear();
+    this.recordCount = 0;
+    this.freeCount = 0;
+    this.index = new LongIndex(snapshot.size());
+    this.arena = new StringArena();
+    for (AuctionItem auctionItem : snapshot.values()) {
+      this.insert(auctionItem);
+    }
+    this.nextId = snapshot.getNextId();
+    this.version = snapshot.getVersion();
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Obtains the off-heap memory held by the store, for monitoring.
+   * @return the size of the record and string segments in bytes.
+  */
+  public synchronized long offHeapBytes() {
+    return (long) this.records.size() * (RECORD_BYTES << RECORD_SEGMENT_SHIFT) + this.arena.capacity();
+  }
+
+  /**
+   * Writes an auction into a free record and indexes it.
+   * @param auctionItem the auction, with its id set.
+  */
+  private void insert(AuctionItem auctionItem) {
+    int record = this.allocate();
+    ByteBuffer segment = this.segment(record);
+    int base = offset(record);
+    long id = auctionItem.getId();
+    Bid highestBid = auctionItem.getHighestBid();
+    segment.putLong(base + ID, id);
+    segment.putDouble(base + START_PRICE, auctionItem.getStartPrice());
+    segment.putDouble(base + RESERVE_PRICE, auctionItem.getReservePrice());
+    segment.putDouble(base + HIGHEST_BID, highestBid != null ? highestBid.getBidValue() : Double.NaN);
+    segment.putLong(base + DESC, this.arena.add(auctionItem.getDesc()));
+    segment.putInt(base + SELLER, auctionItem.getSellerId());
+    segment.putInt(base + BIDDER, highestBid != null ? highestBid.getBidderId() : 0);
+    this.index.put(id, record);
+  }
+
+  /**
+   * Decodes an auction from its record.
+   * @param record the record number.
+   * @return a new auction item.
+  */
+  private AuctionItem read(int record) {
+    ByteBuffer segment = this.segment(record);
+    int base = offset(record);
+    long id = segment.getLong(base + ID);
+    AuctionItem auctionItem = new AuctionItem(segment.getDouble(base + START_PRICE), segment.getDouble(base + RESERVE_PRICE),
+        this.arena.get(segment.getLong(base + DESC)), segment.getInt(base + SELLER));
+    auctionItem.setId(id);
+    double highestBid = segment.getDouble(base + HIGHEST_BID);
+    if (!Double.isNaN(highestBid)) {
+      auctionItem.setHighestBid(new Bid(id, segment.getInt(base + BIDDER), highestBid));
+    }
+    return auctionItem;
+  }
+
+  /**
+   * Obtains a free record, reusing one from a closed auction if possible.
+   * @return the record number.
+  */
+  private int allocate() {
+    if (this.freeCount > 0) {
+      return this.freeRecords[--this.freeCount];
+    }
+    if ((this.recordCount >>> RECORD_SEGMENT_SHIFT) == this.records.size()) {
+      this.records.add(ByteBuffer.allocateDirect(RECORD_BYTES << RECORD_SEGMENT_SHIFT));
+    }
+    return this.recordCount++;
+  }
+
+  /**
+   * Frees a record and its description.
+   * @param record the record number.
+  */
+  private void free(int record) {
+    ByteBuffer segment = this.segment(record);
+    int base = offset(record);
+    this.arena.release(segment.getLong(base + DESC));
+    segment.putLong(base + ID, 0);
+    if (this.freeCount == this.freeRecords.length) {
+      this.freeRecords = Arrays.copyOf(this.freeRecords, this.freeCount << 1);
+    }
+    this.freeRecords[this.freeCount++] = record;
+    if (this.arena.shouldCompact()) {
+      this.compact();
+    }
+  }
+
+  /**
+   * Copies the descriptions of open auctions into a new arena, dropping those of closed auctions.
+  */
+  private void compact() {
+    StringArena compacted = new StringArena();
+    for (int record = 0; record < this.recordCount; record++) {
+      ByteBuffer segment = this.segment(record);
+      int base = offset(record);
+      if (segment.getLong(base + ID) != 0) {
+        segment.putLong(base + DESC, compacted.copy(this.arena, segment.getLong(base + DESC)));
+      }
+    }
+    this.arena = compacted;
+  }
+
+  /**
+   * Obtains the segment holding a record.
+   * @param record the record number.
+   * @return the segment.
+  */
+  private ByteBuffer segment(int record) {
+    return this.records.get(record >>> RECORD_SEGMENT_SHIFT);
+  }
+
+  /**
+   * Obtains the position of a record within its segment.
+   * @param record the record number.
+   * @return the byte offset.
+  */
+  private static int offset(int record) {
+    return (record & RECORD_SEGMENT_MASK) * RECORD_BYTES;
+  }
+
+  /**
+   * Length prefixed UTF-8 strings in direct segments. A reference is the
+   * segment number in the high 32 bits and the position in the low 32 bits.
+   * Strings never span segments; one longer than a segment gets its own.
+  */
+  private static final class StringArena {
+
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private long used;
+    private long garbage;
+
+    /**
+     * Adds a string to the arena.
+     * @param s the string.
+     * @return the reference to it.
+    */
+    long add(String s) {
+      return this.add(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copies a string from another arena.
+     * @param from the arena holding the string.
+     * @param ref the reference to it in that arena.
+     * @return the reference to the copy.
+    */
+    long copy(StringArena from, long ref) {
+      return this.add(from.bytes(ref));
+    }
+
+    /**
+     * Reads a string.
+     * @param ref the reference to the string.
+     * @return the string.
+    */
+    String get(long ref) {
+      return new String(this.bytes(ref), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Marks a string as garbage.
+     * @param ref the reference to the string.
+    */
+    void release(long ref) {
+      this.garbage += 4 + this.segments.get((int) (ref >>> 32)).getInt((int) ref);
+    }
+
+    /**
+     * Determines whether most of the arena is garbage.
+     * @return true if the arena should be compacted.
+    */
+    boolean shouldCompact() {
+      return this.garbage > ARENA_SEGMENT_BYTES && this.garbage * 2 > this.used;
+    }
+
+    /**
+     * Obtains the memory held by the arena.
+     * @return the size of its segments in bytes.
+    */
+    long capacity() {
+      long capacity = 0;
+      for (ByteBuffer segment : this.segments) {
+        capacity += segment.capacity();
+      }
+      return capacity;
+    }
+
+    /**
+     * Appends encoded bytes to the last segment, starting a new one if they don't fit.
+     * @param bytes the encoded string.
+     * @return the reference to it.
+    */
+    private long add(byte[] bytes) {
+      int needed = 4 + bytes.length;
+      ByteBuffer segment = this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+      if (segment == null || segment.remaining() < needed) {
+        segment = ByteBuffer.allocateDirect(Math.max(ARENA_SEGMENT_BYTES, needed));
+        this.segments.add(segment);
+      }
+      long ref = ((long) (this.segments.size() - 1) << 32) | segment.position();
+      segment.putInt(bytes.length).put(bytes);
+      this.used += needed;
+      return ref;
+    }
+
+    /**
+     * Reads the encoded bytes of a string.
+     * @param ref the reference to the string.
+     * @return the encoded string.
+    */
+    private byte[] bytes(long ref) {
+      ByteBuffer segment = this.segments.get((int) (ref >>> 32));
+      int position = (int) ref;
+      byte[] bytes = new byte[segment.getInt(position)];
+      segment.get(position + 4, bytes);
+      return bytes;
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package com.harrybaines.scc311.auctioningsystem.server;
 
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
+
 import java.security.*;
 import java.io.Serializable;
 
@@ -17,6 +19,9 @@ public class ServerAuthResponse implements Serializable {
   private byte[] sigBytes;
   private AuthChallenge challenge;
   private boolean sigVerified;
+  private SessionToken sessionToken;
+  private boolean retryLater;
+  private SignatureAlgorithm algorithm;
 
   /** 
    * Constructor to initialise a new server response object during the authentication process.
@@ -25,9 +30,32 @@ public class ServerAuthResponse implements Serializable {
    * @param sigVerified whether the signature has been verified yet.
    */
   public ServerAuthResponse(byte[] sigBytes, AuthChallenge challenge, boolean sigVerified) {
+    this(sigBytes, challenge, sigVerified, null);
+  }
+
+  /**
+   * Constructor to initialise a new server response object carrying a session token.
+   * @param sigBytes the serialised signature as an array of bytes.
+   * @param challenge the authentication challenge object used.
+   * @param sigVerified whether the signature has been verified yet.
+   * @param sessionToken the session token issued to the verified user, or null.
+   */
+  public ServerAuthResponse(byte[] sigBytes, AuthChallenge challenge, boolean sigVerified, SessionToken sessionToken) {
     this.sigBytes = sigBytes;
     this.challenge = challenge;
     this.sigVerified = sigVerified;
+    this.sessionToken = sessionToken;
+  }
+
+  /**
+   * Constructor to initialise a new server response carrying a challenge signed by the server.
+   * @param sigBytes the serialised signature as an array of bytes.
+   * @param challenge the authentication challenge object signed.
+   * @param algorithm the signature algorithm the server signed with.
+   */
+  public ServerAuthResponse(byte[] sigBytes, AuthChallenge challenge, SignatureAlgorithm algorithm) {
+    this(sigBytes, challenge, false, null);
+    this.algorithm = algorithm;
   }
 
   /**
@@ -53,4 +81,40 @@ public class ServerAuthResponse implements Serializable {
   public AuthChallenge getChallenge() {
     return this.challenge;
   }
+
+  /**
+   * Accessor to obtain the session token issued once a user's signature is verified.
+   * @return the session token, or null if none was issued.
+  */
+  public SessionToken getSessionToken() {
+    return this.sessionToken;
+  }
+
+  /**
+   * Accessor to obtain the algorithm the server signed the challenge with.
+   * @return the signature algorithm, or null if this response doesn't carry a server signature.
+  */
+  public SignatureAlgorithm getAlgorithm() {
+    return this.algorithm;
+  }
+
+  /**
+   * Accessor to check if the server was too busy to verify the signature, in which case the
+   * same signature should be sent again after a short delay.
+   * @return true if the client should retry later, false otherwise.
+  */
+  public boolean isRetryLater() {
+    return this.retryLater;
+  }
+
+  /**
+   * Creates a response telling the client the server is too busy to verify its signature now.
+   * @param authSig the authentication signature that wasn't verified.
+   * @return a server auth response object.
+  */
+  public static ServerAuthResponse retryLater(AuthSig authSig) {
+    ServerAuthResponse response = new ServerAuthResponse(authSig.getSigBytes(), authSig.getChallenge(), false);
+    response.retryLater = true;
+    return response;
+  }
 }
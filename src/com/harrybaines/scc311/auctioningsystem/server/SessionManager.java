@@ -0,0 +1,124 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Code: Session Manager   SessionManager.java
+ * Date: 19/10/26
+ *
+ * Issues and validates session tokens with HMAC-SHA256. The MAC key is
+ * derived from the server's private key material, so every front-end
+ * sharing that key accepts tokens issued by any other front-end.
+ * Validation is a single local HMAC - no file I/O and no cluster calls.
+*/
+public class SessionManager {
+
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+
+  private final SecretKeySpec key;
+  private final ThreadLocal<Mac> macs;
+
+  /**
+   * Constructor to initialise a session manager keyed from the server's private key file.
+   * If the key file can't be read a random key is used, and tokens are only valid on this server.
+  */
+  public SessionManager() {
+    this(deriveKey());
+  }
+
+  /**
+   * Constructor to initialise a session manager with an explicit MAC key.
+   * @param keyBytes the MAC key.
+  */
+  public SessionManager(byte[] keyBytes) {
+    this.key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+    this.macs = ThreadLocal.withInitial(() -> {
+      try {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(this.key);
+        return mac;
+      } catch (Exception e) {
+        throw new IllegalStateException("Couldn't initialise " + MAC_ALGORITHM, e);
+      }
+    });
+  }
+
+  /**
+   * Issues a new session token for an authenticated user.
+   * @param email the email of the authenticated user.
+   * @param userId the numeric id of the authenticated user.
+   * @return a token valid for Constants.SESSION_TTL milliseconds.
+  */
+  public SessionToken issue(String email, int userId) {
+    long expiresAt = System.currentTimeMillis() + Constants.SESSION_TTL;
+    return new SessionToken(email, userId, expiresAt, this.mac(email, userId, expiresAt));
+  }
+
+  /**
+   * Validates a session token.
+   * @param token the token to validate.
+   * @return true if the token was issued by a server with this key and hasn't expired.
+  */
+  public boolean isValid(SessionToken token) {
+    if (token == null || token.getEmail() == null || token.getMac() == null) {
+      return false;
+    }
+    if (token.getExpiresAt() < System.currentTimeMillis()) {
+      return false;
+    }
+    return MessageDigest.isEqual(this.mac(token.getEmail(), token.getUserId(), token.getExpiresAt()), token.getMac());
+  }
+
+  /**
+   * Validates a session token and checks it belongs to the given user.
+   * @param token the token to validate.
+   * @param userId the id of the user the request is made on behalf of.
+   * @return true if the token is valid and was issued to that user.
+  */
+  public boolean isValidFor(SessionToken token, int userId) {
+    return this.isValid(token) && token.getUserId() == userId;
+  }
+
+  /**
+   * Computes the MAC over a token's fields.
+   * @param email the user's email.
+   * @param userId the user's id.
+   * @param expiresAt the expiry time.
+   * @return the MAC bytes.
+  */
+  private byte[] mac(String email, int userId, long expiresAt) {
+    Mac mac = this.macs.get();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      mac.update((byte) (expiresAt >>> shift));
+    }
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      mac.update((byte) (userId >>> shift));
+    }
+    return mac.doFinal(email.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Derives the MAC key from the server's private key file.
+   * @return the derived key bytes.
+  */
+  private static byte[] deriveKey() {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update("auction-session-token".getBytes(StandardCharsets.UTF_8));
+      return digest.digest(Files.readAllBytes(Paths.get(Constants.SERVER_DIR + Constants.SERVER_PRIVATE_KEY_STR)));
+    } catch (Exception e) {
+      System.out.println("[SERVER] Couldn't derive session key from the server key - using a random key");
+      byte[] random = new byte[32];
+      new SecureRandom().nextBytes(random);
+      return random;
+    }
+  }
+}
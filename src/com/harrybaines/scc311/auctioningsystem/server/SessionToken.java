@@ -0,0 +1,65 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+/**
+ * Code: Session Token   SessionToken.java
+ * Date: 19/10/26
+ *
+ * A session token issued by the server once a user has completed the
+ * challenge-response protocol. The token binds the user's email and
+ * numeric user id to an expiry time with a MAC computed by the server, so later requests can be
+ * tied to the authenticated user and validated locally without any crypto
+ * broadcast to the cluster.
+*/
+public class SessionToken implements java.io.Serializable {
+
+  private String email;
+  private int userId;
+  private long expiresAt;
+  private byte[] mac;
+
+  /**
+   * Constructor to initialise a new session token.
+   * @param email the email of the authenticated user.
+   * @param userId the numeric id of the authenticated user.
+   * @param expiresAt the time the token expires (milliseconds since the epoch).
+   * @param mac the MAC over the email, user id and expiry time.
+  */
+  public SessionToken(String email, int userId, long expiresAt, byte[] mac) {
+    this.email = email;
+    this.userId = userId;
+    this.expiresAt = expiresAt;
+    this.mac = mac;
+  }
+
+  /**
+   * Accessor to obtain the email of the authenticated user.
+   * @return the user's email.
+  */
+  public String getEmail() {
+    return this.email;
+  }
+
+  /**
+   * Accessor to obtain the numeric id of the authenticated user, which auctions and bids refer to it by.
+   * @return the user's id.
+  */
+  public int getUserId() {
+    return this.userId;
+  }
+
+  /**
+   * Accessor to obtain the expiry time of this token.
+   * @return the expiry time in milliseconds since the epoch.
+  */
+  public long getExpiresAt() {
+    return this.expiresAt;
+  }
+
+  /**
+   * Accessor to obtain the MAC of this token.
+   * @return the MAC as an array of bytes.
+  */
+  public byte[] getMac() {
+    return this.mac;
+  }
+}
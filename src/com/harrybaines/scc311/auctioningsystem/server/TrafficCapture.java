@@ -0,0 +1,380 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Code: Traffic Capture   TrafficCapture.java
+ * Date: 19/10/26
+ *
+ * Records every incoming IAuctionServer call to a binary, append-only capture
+ * file so real traffic can later be replayed against a local cluster.
+ *
+ * Requests are encoded on the calling RMI thread into a small byte array and
+ * handed to a background writer thread through a bounded queue, so the
+ * request path never blocks on disk. If the queue is full the record is
+ * dropped and counted rather than slowing the server down.
+ *
+ * Every record is timestamped with the call's arrival, once its session has
+ * been validated and before admission control, so calls the front-end was
+ * too busy for are captured too. Authentication is recorded as the call
+ * alone: signatures and keys are never written, so a capture can't be used
+ * to log in, and a replay authenticates users of its own.
+ *
+ * File format: a sequence of sessions, each starting with a SESSION record.
+ * Every record is [int length][long nanos since session start][byte op][args].
+ * Enable by starting the front-end with -Dauction.capture=path/to/file.
+*/
+public final class TrafficCapture {
+
+  // Record operation codes
+  public static final byte SESSION = 0;
+  public static final byte ATTEMPT_AUTH = 1;
+  public static final byte SIGN_CHALLENGE = 2;
+  public static final byte VERIFY_SIGNATURE = 3;
+  public static final byte CREATE_AUCTION = 4;
+  public static final byte CLOSE_AUCTION = 5;
+  public static final byte BID = 6;
+  public static final byte GET_ACTIVE_AUCTIONS = 7;
+  public static final byte GET_ACTIVE_AUCTIONS_IF_MODIFIED = 8;
+
+  private static final int QUEUE_CAPACITY = 65536;
+
+  private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+  private final AtomicLong dropped = new AtomicLong();
+  private final long sessionStart = System.nanoTime();
+  private final DataOutputStream out;
+
+  /**
+   * Constructor to open a capture file for appending and start the writer thread.
+   * @param filepath the path to the capture file.
+   * @throws IOException if the file can't be opened.
+  */
+  public TrafficCapture(String filepath) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filepath, true), 1 << 16));
+    Record session = this.begin(SESSION);
+    session.data.writeLong(System.currentTimeMillis());
+    this.enqueue(session);
+
+    Thread writer = new Thread(this::writeLoop, "traffic-capture");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Creates a capture from the auction.capture system property.
+   * @return a new capture, or null if capturing is disabled or the file can't be opened.
+  */
+  public static TrafficCapture fromSystemProperty() {
+    String filepath = System.getProperty("auction.capture");
+    if (filepath == null) {
+      return null;
+    }
+    try {
+      System.out.println("[SERVER] Capturing traffic to " + filepath);
+      return new TrafficCapture(filepath);
+    } catch (IOException e) {
+      System.out.println("[SERVER] Couldn't open traffic capture file: " + e.getMessage());
+    }
+    return null;
+  }
+
+  // ================================================== //
+  //                 RECORDING METHODS                  //
+  // ================================================== //
+
+  /**
+   * Records an attemptAuth call.
+  */
+  public void recordAttemptAuth() {
+    this.enqueue(this.begin(ATTEMPT_AUTH));
+  }
+
+  /**
+   * Records a signChallenge call.
+   * @param challenge the challenge to sign.
+  */
+  public void recordSignChallenge(AuthChallenge challenge) {
+    Record record = this.begin(SIGN_CHALLENGE);
+    try {
+      record.data.writeLong(challenge.getValue());
+    } catch (IOException e) {
+      return;
+    }
+    this.enqueue(record);
+  }
+
+  /**
+   * Records a verifySignature call, without the signature, key or user.
+  */
+  public void recordVerifySignature() {
+    this.enqueue(this.begin(VERIFY_SIGNATURE));
+  }
+
+  /**
+   * Records a createAuction call once it has been answered, timestamped with its arrival.
+   * The assigned auction id is recorded so later calls on that auction can be mapped during replay.
+   * @param arrivalNanos the System.nanoTime at which the call arrived.
+   * @param sessionToken the session token of the seller.
+   * @param auctionItem the auction item that was offered for sale.
+   * @param auctionId the id assigned by the cluster, or 0 if the call failed or was turned away.
+  */
+  public void recordCreateAuction(long arrivalNanos, SessionToken sessionToken, AuctionItem auctionItem, long auctionId) {
+    Record record = new Record(CREATE_AUCTION, arrivalNanos - this.sessionStart);
+    try {
+      record.data.writeLong(auctionId);
+      record.data.writeDouble(auctionItem.getStartPrice());
+      record.data.writeDouble(auctionItem.getReservePrice());
+      record.data.writeUTF(auctionItem.getDesc());
+      writeUser(record.data, sessionToken);
+    } catch (IOException e) {
+      return;
+    }
+    this.enqueue(record);
+  }
+
+  /**
+   * Records a closeAuction call.
+   * @param sessionToken the session token of the user closing the auction.
+   * @param auctionId the ID of the auction to close.
+  */
+  public void recordCloseAuction(SessionToken sessionToken, long auctionId) {
+    Record record = this.begin(CLOSE_AUCTION);
+    try {
+      record.data.writeLong(auctionId);
+      writeUser(record.data, sessionToken);
+    } catch (IOException e) {
+      return;
+    }
+    this.enqueue(record);
+  }
+
+  /**
+   * Records a bid call.
+   * @param sessionToken the session token of the bidder.
+   * @param bid the bid placed.
+  */
+  public void recordBid(SessionToken sessionToken, Bid bid) {
+    Record record = this.begin(BID);
+    try {
+      record.data.writeLong(bid.getAuctionId());
+      writeUser(record.data, sessionToken);
+      record.data.writeDouble(bid.getBidValue());
+    } catch (IOException e) {
+      return;
+    }
+    this.enqueue(record);
+  }
+
+  /**
+   * Records a getActiveAuctions call.
+  */
+  public void recordGetActiveAuctions() {
+    this.enqueue(this.begin(GET_ACTIVE_AUCTIONS));
+  }
+
+  /**
+   * Records a getActiveAuctionsIfModified call.
+   * @param version the version of the active auctions held by the caller.
+  */
+  public void recordGetActiveAuctionsIfModified(long version) {
+    Record record = this.begin(GET_ACTIVE_AUCTIONS_IF_MODIFIED);
+    try {
+      record.data.writeLong(version);
+    } catch (IOException e) {
+      return;
+    }
+    this.enqueue(record);
+  }
+
+  /**
+   * Accessor to obtain the number of records dropped because the writer fell behind.
+   * @return the number of dropped records.
+  */
+  public long getDropped() {
+    return this.dropped.get();
+  }
+
+  /**
+   * Starts a new record timestamped now.
+   * @param op the operation code of the record.
+   * @return the new record.
+  */
+  private Record begin(byte op) {
+    return new Record(op, System.nanoTime() - this.sessionStart);
+  }
+
+  /**
+   * Hands a completed record to the writer thread, dropping it if the queue is full.
+   * @param record the record to write.
+  */
+  private void enqueue(Record record) {
+    if (!this.queue.offer(record.toByteArray())) {
+      this.dropped.incrementAndGet();
+    }
+  }
+
+  /**
+   * Writes queued records to the capture file, flushing whenever the queue runs dry.
+  */
+  private void writeLoop() {
+    try {
+      while (true) {
+        byte[] record = this.queue.poll(1, TimeUnit.SECONDS);
+        if (record == null) {
+          continue;
+        }
+        do {
+          this.out.write(record);
+          record = this.queue.poll();
+        } while (record != null);
+        this.out.flush();
+      }
+    } catch (Exception e) {
+      System.out.println("[SERVER] Traffic capture stopped: " + e.getMessage());
+    }
+  }
+
+  /**
+   * A record under construction.
+  */
+  private static final class Record {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    private final DataOutputStream data = new DataOutputStream(this.bytes);
+
+    private Record(byte op, long nanos) {
+      try {
+        this.data.writeInt(0);
+        this.data.writeLong(nanos);
+        this.data.writeByte(op);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private byte[] toByteArray() {
+      byte[] record = this.bytes.toByteArray();
+      int length = record.length - Integer.BYTES;
+      record[0] = (byte) (length >>> 24);
+      record[1] = (byte) (length >>> 16);
+      record[2] = (byte) (length >>> 8);
+      record[3] = (byte) length;
+      return record;
+    }
+  }
+
+  // ================================================== //
+  //                  READING CAPTURES                  //
+  // ================================================== //
+
+  /**
+   * A decoded capture record. Only the fields relevant to the operation are set.
+  */
+  public static final class Entry {
+    public byte op;
+    public long nanos;
+    public long sessionMillis;
+    public long challenge;
+    public long version;
+    public long auctionId;
+    public double startPrice;
+    public double reservePrice;
+    public double amount;
+    public String desc;
+    public int userId;
+    public String userEmail;
+  }
+
+  /**
+   * Reads records sequentially from a capture file.
+  */
+  public static final class Reader implements Closeable {
+
+    private final DataInputStream in;
+
+    /**
+     * Constructor to open a capture file for reading.
+     * @param filepath the path to the capture file.
+     * @throws IOException if the file can't be opened.
+    */
+    public Reader(String filepath) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(filepath), 1 << 16));
+    }
+
+    /**
+     * Reads the next record.
+     * @return the decoded record, or null at the end of the file.
+     * @throws IOException if the file is corrupt or can't be read.
+    */
+    public Entry next() throws IOException {
+      int length;
+      try {
+        length = this.in.readInt();
+      } catch (EOFException e) {
+        return null;
+      }
+      byte[] record = new byte[length];
+      try {
+        this.in.readFully(record);
+      } catch (EOFException e) {
+        return null; // Torn final record
+      }
+      DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+      Entry entry = new Entry();
+      entry.nanos = data.readLong();
+      entry.op = data.readByte();
+      switch (entry.op) {
+        case SESSION:
+          entry.sessionMillis = data.readLong();
+          break;
+        case SIGN_CHALLENGE:
+          entry.challenge = data.readLong();
+          break;
+        case GET_ACTIVE_AUCTIONS_IF_MODIFIED:
+          entry.version = data.readLong();
+          break;
+        case CREATE_AUCTION:
+          entry.auctionId = data.readLong();
+          entry.startPrice = data.readDouble();
+          entry.reservePrice = data.readDouble();
+          entry.desc = data.readUTF();
+          readUser(data, entry);
+          break;
+        case CLOSE_AUCTION:
+          entry.auctionId = data.readLong();
+          readUser(data, entry);
+          break;
+        case BID:
+          entry.auctionId = data.readLong();
+          readUser(data, entry);
+          entry.amount = data.readDouble();
+          break;
+        default:
+          break;
+      }
+      return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.in.close();
+    }
+  }
+
+  // ================================================== //
+  //                 ENCODING HELPERS                   //
+  // ================================================== //
+
+  private static void writeUser(DataOutputStream out, SessionToken sessionToken) throws IOException {
+    out.writeInt(sessionToken.getUserId());
+    out.writeUTF(sessionToken.getEmail());
+  }
+
+  private static void readUser(DataInputStream in, Entry entry) throws IOException {
+    entry.userId = in.readInt();
+    entry.userEmail = in.readUTF();
+  }
+}
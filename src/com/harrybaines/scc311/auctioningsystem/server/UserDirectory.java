@@ -0,0 +1,117 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.client.User;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Code: User Directory   UserDirectory.java
+ * Date: 19/10/26
+ *
+ * The profiles of authenticated users by numeric user id. Auctions and bids
+ * hold only the ids of their seller and bidder, so a user's name and email
+ * are stored once here and looked up only when a client asks to show them.
+ * Cluster members keep the replicated directory; each front-end keeps one
+ * as a cache of the profiles it has registered or looked up.
+*/
+public class UserDirectory {
+
+  private final ConcurrentLongMap<User> users = new ConcurrentLongMap<User>();
+
+  /**
+   * Adds or replaces a user's profile. A profile without a name doesn't replace one with a name.
+   * @param user the user, with the id assigned at authentication.
+   * @return true if the profile wasn't already held unchanged.
+  */
+  public boolean register(User user) {
+    if (user == null || user.getId() <= 0) {
+      return false;
+    }
+    User existing = this.users.get(user.getId());
+    if (existing != null && existing.getEmail().equals(user.getEmail())
+        && (user.getName() == null || Objects.equals(existing.getName(), user.getName()))) {
+      return false;
+    }
+    this.users.put(user.getId(), user);
+    return true;
+  }
+
+  /**
+   * Removes a profile added by {@link #register}, unless it has since been replaced.
+   * @param user the user, as registered.
+  */
+  public void unregister(User user) {
+    if (user != null) {
+      this.users.remove(user.getId(), user);
+    }
+  }
+
+  /**
+   * Obtains a user's profile.
+   * @param userId the id of the user.
+   * @return the user, or null if the profile isn't held.
+  */
+  public User get(int userId) {
+    return userId > 0 ? this.users.get(userId) : null;
+  }
+
+  /**
+   * Obtains the profiles of several users.
+   * @param userIds the ids of the users.
+   * @return the users, in the same order, with null for any profile that isn't held.
+  */
+  public User[] getAll(int[] userIds) {
+    User[] found = new User[userIds.length];
+    for (int i = 0; i < userIds.length; i++) {
+      found[i] = this.get(userIds[i]);
+    }
+    return found;
+  }
+
+  /**
+   * Obtains the number of profiles held.
+   * @return the number of users.
+  */
+  public int size() {
+    return this.users.size();
+  }
+
+  /**
+   * Writes every profile to a stream, for state transfer.
+   * @param out the stream to write to.
+   * @throws IOException if the profiles can't be written.
+  */
+  public void writeTo(ObjectOutputStream out) throws IOException {
+    List<User> all = new ArrayList<User>(this.users.size());
+    this.users.forEachValue(all::add);
+    out.writeInt(all.size());
+    for (User user : all) {
+      out.writeInt(user.getId());
+      out.writeUTF(user.getEmail());
+      out.writeBoolean(user.getName() != null);
+      if (user.getName() != null) {
+        out.writeUTF(user.getName());
+      }
+    }
+  }
+
+  /**
+   * Adds the profiles written by {@link #writeTo} to this directory.
+   * @param in the stream to read from.
+   * @throws IOException if the profiles can't be read.
+  */
+  public void readFrom(ObjectInputStream in) throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      int userId = in.readInt();
+      String email = in.readUTF();
+      String name = in.readBoolean() ? in.readUTF() : null;
+      this.register(new User(userId, name, email));
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.IndexedRecordFile;
+import com.harrybaines.scc311.auctioningsystem.utils.SignatureAlgorithm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Code: User Key Registry   UserKeyRegistry.java
+ * Date: 19/10/26
+ *
+ * The server's registry of user public keys, kept in an IndexedRecordFile
+ * of (email, encoded key) records; re-registering an email appends a new
+ * record which supersedes the old one. A lookup is a hash probe plus one
+ * positional read of the open file, and recently used keys are kept decoded
+ * in an LRU cache. Every lookup first indexes any records another process
+ * has appended, dropping the cached keys they replace, so a key replaced or
+ * revoked by another process is never checked against a stale copy.
+ *
+ * Each email is also given a compact numeric user id: its position in the
+ * order emails were first registered in the file, which is the same in
+ * every process sharing the file. Auctions and bids refer to users by these
+ * ids rather than by copies of their profiles.
+ *
+ * Registries are shared per file, so every component in a JVM sees the same
+ * registrations.
+ *
+ * File format: an IndexedRecordFile whose records' values are X.509 encoded keys.
+ *
+ * Usage: UserKeyRegistry <registry file> <users directory>
+ * imports every <users directory>/<email>/public.key into the registry.
+*/
+public class UserKeyRegistry implements Closeable {
+
+  private static final int MAGIC = 0x55534b52;
+  private static final int VERSION = 2;
+  private static final ConcurrentHashMap<Path, UserKeyRegistry> OPEN = new ConcurrentHashMap<Path, UserKeyRegistry>();
+
+  private final Path path;
+  private final Map<String, PublicKey> decoded;  /* Guarded by itself */
+  private long generation;  /* Count of index updates that replaced keys, guarded by decoded */
+  private final IndexedRecordFile file;
+
+  /**
+   * Constructor to open (or create) a registry file and index its records.
+   * @param path the path to the registry file.
+   * @param cacheSize the number of decoded keys to keep.
+   * @throws IOException if the file can't be opened or isn't a registry.
+  */
+  private UserKeyRegistry(Path path, int cacheSize) throws IOException {
+    this.path = path;
+    this.decoded = new LinkedHashMap<String, PublicKey>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PublicKey> eldest) {
+        return this.size() > cacheSize;
+      }
+    };
+    this.file = new IndexedRecordFile(path, MAGIC, VERSION, this::replaced);
+  }
+
+  /**
+   * Opens the registry stored in a file, sharing any instance already open in this JVM.
+   * @param filepath the path to the registry file.
+   * @return the registry.
+   * @throws IOException if the file can't be opened or isn't a registry.
+  */
+  public static UserKeyRegistry open(String filepath) throws IOException {
+    return IndexedRecordFile.openShared(OPEN, filepath, (path) -> new UserKeyRegistry(path, Integer.getInteger("auction.users.cacheSize", 10000)));
+  }
+
+  /**
+   * Opens the server's registry, at -Dauction.users if set, otherwise Constants.USER_REGISTRY.
+   * A new default registry is populated from the key files under Constants.USERS_DIR_SERVER.
+   * @return the registry, or null if it can't be opened.
+  */
+  public static UserKeyRegistry fromSystemProperty() {
+    String filepath = System.getProperty("auction.users");
+    try {
+      UserKeyRegistry registry = open(filepath != null ? filepath : Constants.USER_REGISTRY);
+      if (filepath == null && registry.size() == 0) {
+        System.out.println("[SERVER] Imported " + registry.importDirectory(Constants.USERS_DIR_SERVER) + " users into the key registry");
+      }
+      return registry;
+    } catch (IOException e) {
+      System.out.println("[SERVER] Couldn't open user key registry: " + e.getMessage());
+    }
+    return null;
+  }
+
+  // ================================================== //
+  //                      LOOKUPS                       //
+  // ================================================== //
+
+  /**
+   * Obtains a user's registered public key.
+   * @param email the email of the user.
+   * @return the public key, or null if the user isn't registered.
+  */
+  public PublicKey getPublicKey(String email) {
+    if (email == null) {
+      return null;
+    }
+    try {
+      // Another process may have replaced the key, so index its records before trusting the cache
+      this.file.refresh();
+      long generation;
+      synchronized (this.decoded) {
+        PublicKey key = this.decoded.get(email);
+        if (key != null) {
+          return key;
+        }
+        generation = this.generation;
+      }
+      byte[] encoded = this.file.get(email);
+      if (encoded == null) {
+        return null;
+      }
+      PublicKey key = SignatureAlgorithm.decodePublicKey(encoded);
+      synchronized (this.decoded) {
+        if (this.generation == generation) {  // Not if the key may have been replaced since it was read
+          this.decoded.put(email, key);
+        }
+      }
+      return key;
+    } catch (Exception e) {
+      System.out.println("[SERVER] Couldn't read registered key for " + email + ": " + e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Checks a public key presented by a client is the key registered for that user.
+   * @param email the email of the user.
+   * @param key the presented public key.
+   * @return true if the user is registered with that key, false otherwise.
+  */
+  public boolean isRegistered(String email, PublicKey key) {
+    PublicKey registered = this.getPublicKey(email);
+    return registered != null && key != null && Arrays.equals(registered.getEncoded(), key.getEncoded());
+  }
+
+  /**
+   * Obtains the numeric id of a registered user.
+   * @param email the email of the user.
+   * @return the user's id (from 1), or 0 if the user isn't registered.
+  */
+  public int getUserId(String email) {
+    if (email == null) {
+      return 0;
+    }
+    try {
+      return this.file.getId(email);
+    } catch (IOException e) {
+      System.out.println("[SERVER] Couldn't read registered user " + email + ": " + e.getMessage());
+    }
+    return 0;
+  }
+
+  /**
+   * Obtains the number of registered users.
+   * @return the number of registered users.
+  */
+  public int size() {
+    return this.file.size();
+  }
+
+  // ================================================== //
+  //                   REGISTRATION                     //
+  // ================================================== //
+
+  /**
+   * Registers (or replaces) a user's public key.
+   * @param email the email of the user.
+   * @param encodedKey the X.509 encoded public key.
+   * @throws IOException if the registry file can't be written.
+  */
+  public void register(String email, byte[] encodedKey) throws IOException {
+    Map<String, byte[]> single = new LinkedHashMap<String, byte[]>();
+    single.put(email, encodedKey);
+    this.registerAll(single);
+  }
+
+  /**
+   * Registers (or replaces) many users' public keys with a single write and sync.
+   * @param keys the X.509 encoded public keys, by email.
+   * @throws IOException if the registry file can't be written.
+  */
+  public void registerAll(Map<String, byte[]> keys) throws IOException {
+    this.file.appendAll(keys.entrySet(), Map.Entry::getKey, Map.Entry::getValue);
+  }
+
+  /**
+   * Imports every <email>/public.key found under a directory.
+   * @param usersDir the directory of per-user key directories.
+   * @return the number of users imported.
+   * @throws IOException if the directory or registry can't be accessed.
+  */
+  public int importDirectory(String usersDir) throws IOException {
+    Map<String, byte[]> keys = new LinkedHashMap<String, byte[]>();
+    Path dir = Paths.get(usersDir);
+    if (!Files.isDirectory(dir)) {
+      return 0;
+    }
+    try (DirectoryStream<Path> userDirs = Files.newDirectoryStream(dir)) {
+      for (Path userDir : userDirs) {
+        Path keyFile = userDir.resolve("public.key");
+        if (Files.isRegularFile(keyFile)) {
+          keys.put(userDir.getFileName().toString(), Files.readAllBytes(keyFile));
+        }
+      }
+    }
+    this.registerAll(keys);
+    return keys.size();
+  }
+
+  /**
+   * Drops the decoded keys of users whose keys have been replaced, once lookups see the new keys,
+   * and stops keys read before then from being cached.
+   * @param emails the emails of the users.
+  */
+  private void replaced(List<String> emails) {
+    synchronized (this.decoded) {
+      this.generation++;
+      for (String email : emails) {
+        this.decoded.remove(email);
+      }
+    }
+  }
+
+  /**
+   * Closes the registry file.
+   * @throws IOException if the file can't be closed.
+  */
+  @Override
+  public void close() throws IOException {
+    OPEN.remove(this.path, this);
+    this.file.close();
+  }
+
+  /**
+   * Main method to bulk import a directory of user key files into a registry.
+   * @param args the registry file and the users directory.
+   * @throws IOException if the import fails.
+  */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: UserKeyRegistry <registry file> <users directory>");
+      return;
+    }
+    try (UserKeyRegistry registry = open(args[0])) {
+      int imported = registry.importDirectory(args[1]);
+      System.out.println("Imported " + imported + " users - " + registry.size() + " registered");
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package com.harrybaines.scc311.auctioningsystem.server;
+
+import com.harrybaines.scc311.auctioningsystem.utils.Constants;
+import com.harrybaines.scc311.auctioningsystem.utils.SecurityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Code: Verification Pipeline   VerificationPipeline.java
+ * Date: 19/10/26
+ *
+ * Verifies login signatures on a dedicated pool of threads, one per core by
+ * default, instead of on whichever RMI thread received the request. Callers
+ * queue their signature and wait for, or are called back with, the result;
+ * each worker takes a batch of queued signatures at a time, so a login storm
+ * is handled with one wakeup per batch rather than per signature. The queue is bounded: when it
+ * is full the caller is told to retry later straight away, so an auth burst
+ * is shed instead of piling up threads and starving bidding. Workers run
+ * just below normal priority for the same reason.
+ *
+ * Queue depth, verification counts and queue wait/verification times are
+ * logged every auction.verify.statsSeconds (default 10) while there is activity.
+*/
+public class VerificationPipeline {
+
+  private final BlockingQueue<Pending> queue;
+  private final int batchSize;
+  private final LongAdder verified = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder verifyNanos = new LongAdder();
+  private final AtomicLong maxDepth = new AtomicLong();
+
+  /**
+   * Constructor to initialise a pipeline configured by system properties:
+   * auction.verify.threads (default available processors), auction.verify.queue
+   * (default 1024) and auction.verify.batch (default 32).
+  */
+  public VerificationPipeline() {
+    this(Integer.getInteger("auction.verify.threads", Runtime.getRuntime().availableProcessors()),
+        Integer.getInteger("auction.verify.queue", 1024),
+        Integer.getInteger("auction.verify.batch", 32));
+    long statsSeconds = Long.getLong("auction.verify.statsSeconds", 10);
+    if (statsSeconds > 0) {
+      this.startStatsLogging(statsSeconds);
+    }
+  }
+
+  /**
+   * Constructor to initialise a pipeline and start its workers.
+   * @param threads the number of verification threads.
+   * @param capacity the maximum number of queued signatures.
+   * @param batchSize the maximum number of signatures a worker takes at once.
+  */
+  public VerificationPipeline(int threads, int capacity, int batchSize) {
+    this.queue = new ArrayBlockingQueue<Pending>(capacity);
+    this.batchSize = batchSize;
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(this::work, "signature-verifier-" + i);
+      worker.setDaemon(true);
+      worker.setPriority(Thread.NORM_PRIORITY - 1);
+      worker.start();
+    }
+  }
+
+  /**
+   * Verifies a signature on the pipeline, waiting up to Constants.TIMEOUT for the result.
+   * @param authSig the authentication signature to verify.
+   * @return a server auth response object, telling the client to retry later if the pipeline is saturated.
+  */
+  public ServerAuthResponse verify(AuthSig authSig) {
+    return this.verifyAsync(authSig).join();
+  }
+
+  /**
+   * Queues a signature to be verified on the pipeline, without waiting for the result.
+   * @param authSig the authentication signature to verify.
+   * @return a future completed with a server auth response object on a verification thread, telling the
+   *         client to retry later if the pipeline is saturated or doesn't verify it within Constants.TIMEOUT.
+  */
+  public CompletableFuture<ServerAuthResponse> verifyAsync(AuthSig authSig) {
+    Pending pending = new Pending(authSig);
+    if (!this.queue.offer(pending)) {
+      this.rejected.increment();
+      return CompletableFuture.completedFuture(ServerAuthResponse.retryLater(authSig));
+    }
+    this.maxDepth.accumulateAndGet(this.queue.size(), Math::max);
+    // Once timed out, the signature is skipped by the worker if it hasn't started on it yet
+    return pending.result.orTimeout(Constants.TIMEOUT, TimeUnit.MILLISECONDS).handle((verifies, e) -> {
+      if (e == null) {
+        return (new ServerAuthResponse(authSig.getSigBytes(), authSig.getChallenge(), verifies));
+      }
+      if (e instanceof TimeoutException) {
+        this.timedOut.increment();
+      } else {
+        System.out.println("[SERVER] [VERIFY] Couldn't verify signature: " + e);
+      }
+      return ServerAuthResponse.retryLater(authSig);
+    });
+  }
+
+  /**
+   * Obtains the number of signatures waiting to be verified.
+   * @return the queue depth.
+  */
+  public int getQueueDepth() {
+    return this.queue.size();
+  }
+
+  /**
+   * Obtains the number of signatures verified so far.
+   * @return the number of signatures verified (whether or not they were valid).
+  */
+  public long getVerifiedCount() {
+    return this.verified.sum();
+  }
+
+  /**
+   * Obtains the number of signatures turned away because the queue was full.
+   * @return the number of rejected signatures.
+  */
+  public long getRejectedCount() {
+    return this.rejected.sum();
+  }
+
+  /**
+   * Obtains the deepest the queue has been.
+   * @return the maximum queue depth.
+  */
+  public long getMaxQueueDepth() {
+    return this.maxDepth.get();
+  }
+
+  /**
+   * Runs a worker: takes batches of queued signatures and verifies them.
+  */
+  private void work() {
+    List<Pending> batch = new ArrayList<Pending>(this.batchSize);
+    try {
+      while (true) {
+        batch.add(this.queue.take());
+        this.queue.drainTo(batch, this.batchSize - 1);
+        for (Pending pending : batch) {
+          if (pending.result.isDone()) {
+            continue;
+          }
+          long start = System.nanoTime();
+          this.waitNanos.add(start - pending.enqueuedNanos);
+          try {
+            pending.result.complete(SecurityManager.verifySignature(pending.authSig));
+          } catch (RuntimeException e) {
+            pending.result.completeExceptionally(e);
+          }
+          this.verifyNanos.add(System.nanoTime() - start);
+          this.verified.increment();
+        }
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Logs the pipeline's activity at a fixed interval, skipping idle intervals.
+   * @param seconds the interval between log lines.
+  */
+  private void startStatsLogging(long seconds) {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+      Thread thread = new Thread(r, "signature-verifier-stats");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final long[] last = new long[5];
+    scheduler.scheduleAtFixedRate(() -> {
+      long[] now = {this.verified.sum(), this.rejected.sum(), this.timedOut.sum(), this.waitNanos.sum(), this.verifyNanos.sum()};
+      long count = now[0] - last[0];
+      if (count > 0 || now[1] != last[1] || now[2] != last[2]) {
+        System.out.println(String.format("[SERVER] [VERIFY] verified=%d rejected=%d timedOut=%d depth=%d maxDepth=%d avgWait=%.1fus avgVerify=%.1fus",
+            count, now[1] - last[1], now[2] - last[2], this.queue.size(), this.maxDepth.getAndSet(this.queue.size()),
+            count > 0 ? (now[3] - last[3]) / 1000.0 / count : 0.0, count > 0 ? (now[4] - last[4]) / 1000.0 / count : 0.0));
+      }
+      System.arraycopy(now, 0, last, 0, now.length);
+    }, seconds, seconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * A queued signature and the future its caller is waiting on.
+  */
+  private static final class Pending {
+    private final AuthSig authSig;
+    private final long enqueuedNanos = System.nanoTime();
+    private final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+
+    private Pending(AuthSig authSig) {
+      this.authSig = authSig;
+    }
+  }
+}
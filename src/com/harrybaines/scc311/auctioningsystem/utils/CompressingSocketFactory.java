@@ -0,0 +1,427 @@
+package com.harrybaines.scc311.auctioningsystem.utils;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Code: Compressing Socket Factory   CompressingSocketFactory.java
+ * Date: 19/10/26
+ *
+ * RMI socket factories whose sockets compress large messages. Everything
+ * written is sent in blocks of up to 64 KB, one per flush (RMI flushes once
+ * per call or result), each preceded by its raw and stored lengths. A block
+ * of at least the threshold is compressed with Deflater at BEST_SPEED and
+ * sent compressed if that made it smaller; anything shorter, such as a bid
+ * and its response, is sent as it is, so small calls only pay for the
+ * 8 byte block header.
+ *
+ * A remote object exported with this factory hands it to clients inside its
+ * stub, so the server alone decides whether to compress and from what size,
+ * and every client speaks the same framing without being configured. The
+ * clients' sockets give up waiting for a response after the front-end's
+ * read timeout, as with a TimeoutSocketFactory.
+ *
+ * Configurable via system properties:
+ *   auction.rmiCompression          - true to export the front-end with these sockets (default false)
+ *   auction.rmiCompressionThreshold - the smallest block to compress, in bytes (default 8192)
+*/
+public final class CompressingSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+
+  private static final long serialVersionUID = 1L;
+  private static final int BLOCK_BYTES = 64 * 1024;
+  private static final int HEADER_BYTES = 8;
+
+  private final int threshold;
+  private final int timeoutMillis;  /* Read timeout of client sockets, 0 for none */
+  private final transient AtomicLong rawBytes = new AtomicLong();   /* Bytes written through this factory's sockets */
+  private final transient AtomicLong wireBytes = new AtomicLong();  /* Bytes those sockets sent, headers included */
+
+  /**
+   * Constructor to initialise a new factory.
+   * @param threshold the smallest block to compress, in bytes (Integer.MAX_VALUE never compresses).
+  */
+  public CompressingSocketFactory(int threshold) {
+    this(threshold, 0);
+  }
+
+  /**
+   * Constructor to initialise a new factory whose client sockets have a read timeout.
+   * @param threshold the smallest block to compress, in bytes (Integer.MAX_VALUE never compresses).
+   * @param timeoutMillis the read timeout of each client socket, in milliseconds (0 for none).
+  */
+  public CompressingSocketFactory(int threshold, int timeoutMillis) {
+    this.threshold = threshold;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Creates a factory configured by the auction.rmiCompression* system properties.
+   * @return the factory, or null if -Dauction.rmiCompression isn't true, for RMI's default sockets.
+  */
+  public static CompressingSocketFactory fromSystemProperty() {
+    if (!Boolean.getBoolean("auction.rmiCompression")) {
+      return null;
+    }
+    return new CompressingSocketFactory(Integer.getInteger("auction.rmiCompressionThreshold", 8192), TimeoutSocketFactory.clientReadTimeout());
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    Socket socket = new CompressingSocket(host, port, this);
+    socket.setSoTimeout(this.timeoutMillis);
+    return socket;
+  }
+
+  @Override
+  public ServerSocket createServerSocket(int port) throws IOException {
+    return new ServerSocket(port) {
+      @Override
+      public Socket accept() throws IOException {
+        Socket socket = new CompressingSocket(CompressingSocketFactory.this);
+        this.implAccept(socket);
+        return socket;
+      }
+    };
+  }
+
+  /**
+   * Accessor to obtain the number of bytes written to sockets created by this factory, before compression.
+   * @return the raw bytes.
+  */
+  public long getRawBytes() {
+    return this.rawBytes.get();
+  }
+
+  /**
+   * Accessor to obtain the number of bytes sent by sockets created by this factory.
+   * @return the bytes sent, including block headers.
+  */
+  public long getWireBytes() {
+    return this.wireBytes.get();
+  }
+
+  /**
+   * Replaces a deserialised factory with a new one, so its counters are initialised.
+   * @return the new factory.
+  */
+  private Object readResolve() {
+    return new CompressingSocketFactory(this.threshold, this.timeoutMillis);
+  }
+
+  // RMI reuses connections only to endpoints with equal factories
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof CompressingSocketFactory && ((CompressingSocketFactory) other).threshold == this.threshold
+        && ((CompressingSocketFactory) other).timeoutMillis == this.timeoutMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Integer.hashCode(this.threshold) + Integer.hashCode(this.timeoutMillis);
+  }
+
+  /**
+   * A socket whose streams frame, and where worthwhile compress, everything sent.
+  */
+  private static final class CompressingSocket extends Socket {
+
+    private final CompressingSocketFactory factory;
+    private InputStream in;
+    private OutputStream out;
+
+    private CompressingSocket(CompressingSocketFactory factory) {
+      this.factory = factory;
+    }
+
+    private CompressingSocket(String host, int port, CompressingSocketFactory factory) throws IOException {
+      super(host, port);
+      this.factory = factory;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+      if (this.in == null) {
+        // Buffered so a block's header and a small block's body take one read
+        this.in = new BlockInputStream(new BufferedInputStream(super.getInputStream(), 8192));
+      }
+      return this.in;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+      if (this.out == null) {
+        this.out = new BlockOutputStream(super.getOutputStream(), this.factory);
+      }
+      return this.out;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      try {
+        if (this.out != null) {
+          this.out.close();
+        }
+      } finally {
+        super.close();
+      }
+    }
+  }
+
+  /**
+   * Buffers what is written and sends it as a block on each flush or once 64 KB are buffered.
+  */
+  private static final class BlockOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final CompressingSocketFactory factory;
+    private final byte[] block = new byte[HEADER_BYTES + BLOCK_BYTES];
+    private int count = HEADER_BYTES;
+    private byte[] compressed;  /* Allocated on the first block large enough to compress */
+    private Deflater deflater;
+    private boolean closed;
+
+    private BlockOutputStream(OutputStream out, CompressingSocketFactory factory) {
+      this.out = out;
+      this.factory = factory;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (this.count == this.block.length) {
+        this.sendBlock();
+      }
+      this.block[this.count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (this.count == this.block.length) {
+          this.sendBlock();
+        }
+        int n = Math.min(len, this.block.length - this.count);
+        System.arraycopy(b, off, this.block, this.count, n);
+        this.count += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (this.count > HEADER_BYTES) {
+        this.sendBlock();
+      }
+      this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      try {
+        this.flush();
+      } finally {
+        if (this.deflater != null) {
+          this.deflater.end();
+        }
+        this.out.close();
+      }
+    }
+
+    /**
+     * Sends the buffered bytes as one block, compressed if at least the threshold and compression helps.
+     * @throws IOException if the block can't be sent.
+    */
+    private void sendBlock() throws IOException {
+      int rawLength = this.count - HEADER_BYTES;
+      this.factory.rawBytes.addAndGet(rawLength);
+      this.count = HEADER_BYTES;
+      if (rawLength >= this.factory.threshold) {
+        if (this.deflater == null) {
+          this.deflater = new Deflater(Deflater.BEST_SPEED);
+          this.compressed = new byte[HEADER_BYTES + BLOCK_BYTES];
+        }
+        this.deflater.reset();
+        this.deflater.setInput(this.block, HEADER_BYTES, rawLength);
+        this.deflater.finish();
+        // Output that doesn't fit in fewer bytes than the input isn't worth sending
+        int storedLength = this.deflater.deflate(this.compressed, HEADER_BYTES, rawLength - 1);
+        if (this.deflater.finished()) {
+          this.send(this.compressed, rawLength, storedLength);
+          return;
+        }
+      }
+      this.send(this.block, rawLength, rawLength);
+    }
+
+    /**
+     * Writes a block's header into the space reserved before it and sends both.
+     * @param buffer the buffer holding the block after HEADER_BYTES.
+     * @param rawLength the length of the block before compression.
+     * @param storedLength the length sent, less than rawLength if compressed.
+     * @throws IOException if the block can't be sent.
+    */
+    private void send(byte[] buffer, int rawLength, int storedLength) throws IOException {
+      putInt(buffer, 0, rawLength);
+      putInt(buffer, 4, storedLength);
+      this.out.write(buffer, 0, HEADER_BYTES + storedLength);
+      this.factory.wireBytes.addAndGet(HEADER_BYTES + storedLength);
+    }
+  }
+
+  /**
+   * Reads the blocks sent by a BlockOutputStream, decompressing those that were compressed.
+  */
+  private static final class BlockInputStream extends InputStream {
+
+    private final InputStream in;
+    private final byte[] header = new byte[HEADER_BYTES];
+    private final byte[] block = new byte[BLOCK_BYTES];
+    private int position;
+    private int limit;
+    private byte[] compressed;  /* Allocated on the first compressed block */
+    private Inflater inflater;
+
+    private BlockInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (this.position == this.limit && !this.nextBlock()) {
+        return -1;
+      }
+      return this.block[this.position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (this.position == this.limit && !this.nextBlock()) {
+        return -1;
+      }
+      int n = Math.min(len, this.limit - this.position);
+      System.arraycopy(this.block, this.position, b, off, n);
+      this.position += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return this.limit - this.position;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.inflater != null) {
+        this.inflater.end();
+      }
+      this.in.close();
+    }
+
+    /**
+     * Reads the next block.
+     * @return true if a block was read, false at the end of the stream.
+     * @throws IOException if the block can't be read or is malformed.
+    */
+    private boolean nextBlock() throws IOException {
+      if (!this.readFully(this.header, 0, HEADER_BYTES, true)) {
+        return false;
+      }
+      int rawLength = getInt(this.header, 0);
+      int storedLength = getInt(this.header, 4);
+      if (rawLength <= 0 || rawLength > BLOCK_BYTES || storedLength <= 0 || storedLength > rawLength) {
+        throw new IOException("Malformed block of " + storedLength + "/" + rawLength + " bytes");
+      }
+      if (storedLength == rawLength) {
+        this.readFully(this.block, 0, rawLength, false);
+      } else {
+        if (this.inflater == null) {
+          this.inflater = new Inflater();
+          this.compressed = new byte[BLOCK_BYTES];
+        }
+        this.readFully(this.compressed, 0, storedLength, false);
+        this.inflater.reset();
+        this.inflater.setInput(this.compressed, 0, storedLength);
+        try {
+          int inflated = 0;
+          while (inflated < rawLength && !this.inflater.finished() && !this.inflater.needsInput()) {
+            inflated += this.inflater.inflate(this.block, inflated, rawLength - inflated);
+          }
+          if (inflated != rawLength || !this.inflater.finished()) {
+            throw new IOException("Compressed block didn't expand to " + rawLength + " bytes");
+          }
+        } catch (DataFormatException e) {
+          throw new IOException("Corrupt compressed block", e);
+        }
+      }
+      this.position = 0;
+      this.limit = rawLength;
+      return true;
+    }
+
+    /**
+     * Reads exactly the given number of bytes.
+     * @param b the buffer to read into.
+     * @param off the offset to read to.
+     * @param len the number of bytes.
+     * @param eofAllowed true if the stream may end before the first byte.
+     * @return false if the stream ended before the first byte and that is allowed.
+     * @throws IOException if the stream ends part way, or fails.
+    */
+    private boolean readFully(byte[] b, int off, int len, boolean eofAllowed) throws IOException {
+      int read = 0;
+      while (read < len) {
+        int n = this.in.read(b, off + read, len - read);
+        if (n < 0) {
+          if (read == 0 && eofAllowed) {
+            return false;
+          }
+          throw new EOFException("Stream ended part way through a block");
+        }
+        read += n;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Writes a big-endian int into a buffer.
+   * @param b the buffer.
+   * @param off the offset to write at.
+   * @param value the value.
+  */
+  private static void putInt(byte[] b, int off, int value) {
+    b[off] = (byte) (value >>> 24);
+    b[off + 1] = (byte) (value >>> 16);
+    b[off + 2] = (byte) (value >>> 8);
+    b[off + 3] = (byte) value;
+  }
+
+  /**
+   * Reads a big-endian int from a buffer.
+   * @param b the buffer.
+   * @param off the offset to read from.
+   * @return the value.
+  */
+  private static int getInt(byte[] b, int off) {
+    return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16) | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+  }
+}
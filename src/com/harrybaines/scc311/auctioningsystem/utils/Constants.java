@@ -18,11 +18,20 @@ public final class Constants {
   public static final int REGISTRY_PORT = 1099;
   public static final String CLUSTER_NAME = "RAND_CLUSTER";
   public static final int TIMEOUT = 5000;
+  public static final long SESSION_TTL = 30 * 60 * 1000L;
+  public static final long CHALLENGE_TTL = 60 * 1000L;
+  public static final int AUTH_RETRY_ATTEMPTS = 5;
+  public static final int AUTH_RETRY_DELAY = 50;
+  public static final int REQUEST_RETRY_ATTEMPTS = 3;
+  public static final int REQUEST_RETRY_DELAY = 100;
 
   public static final String USERS_DIR_CLIENT = "src/com/harrybaines/scc311/auctioningsystem/client/users/";
   public static final String USERS_DIR_SERVER = "src/com/harrybaines/scc311/auctioningsystem/server/users/";
   public static final String SERVER_DIR = "src/com/harrybaines/scc311/auctioningsystem/server/";
+  public static final String CLUSTER_CONFIG = SERVER_DIR + "cluster.xml";
+  public static final String USER_REGISTRY = SERVER_DIR + "users.db";
   public static final String CLIENT_DIR = "src/com/harrybaines/scc311/auctioningsystem/client/";
+  public static final String PROFILE_STORE = CLIENT_DIR + "profiles.db";
   public static final String SERVER_PUBLIC_KEY_STR = "serverPublic.key";
   public static final String SERVER_PRIVATE_KEY_STR = "serverPrivate.key";
   public static final String CLIENT_PUBLIC_KEY_PATH = Constants.CLIENT_DIR + "users/%s/public.key";
@@ -38,13 +47,14 @@ public final class Constants {
   // Output constants
   public static final String CLIENT_MENU = "\nMenu:\n----------\n1: Browse Auctions  2: Create an Auction  3: Bid on Auction  4: Close an Auction  5: Quit\n----------\n> ";
   public static final String SERVER_CONNECTED_STR = "\nConnected to %s " + CHECKMARK + "\n\n";
-  public static final String SERVER_RUNNING_STR = "Server running on port " + REGISTRY_PORT + " with name " + SERVICE + " " + CHECKMARK;
+  public static final String SERVER_RUNNING_STR = "Server running on port " + REGISTRY_PORT + " with name %s " + CHECKMARK + "\n";
   public static final String LINE = "  " + String.join("", Collections.nCopies(115, "-"));
   public static final String AUCTION_MENU_HEAD = "\n" + LINE + String.format("\n | %-36s | %-15s | %-15s | %-15s | %-20s |\n%s\n", "Auction ID", "Description", "Start Price", "Highest Bid", "Seller", LINE);
   public static final String AUCTION_SUMMARY = "  <%s>";
   public static final String INVALID_CODE = "\n  Error - not a valid status code";
   public static final String AUTH_SUCCESS = "\nAuthentication successful " + CHECKMARK;
   public static final String AUTH_FAILED = "\nAuthentication failed " + CROSS + "\n";
+  public static final String AUTH_RETRY_LATER = "Server busy - retrying authentication...";
 
   // Auction result code constants
   public static final String CANT_CLOSE_OWN = "\n  Can't close auction " + CROSS + " (you don't own this auction)";
@@ -58,5 +68,15 @@ public final class Constants {
   public static final String BID_SUCCESSFUL = "\n  Bid Successful (id: %s) " + CHECKMARK;
   public static final String AUCTION_CREATED = "\n  Auction Created Successfully (id: %s) " + CHECKMARK + "\n";
   public static final String AUCTION_CLOSED = "\n  Auction Closed Successfully (id: %s) " + CHECKMARK + "\n";
+  public static final String INVALID_SESSION = "\n  Rejected " + CROSS + " (your session has expired - please try again)";
+  public static final String REQUEST_FAILED = "\n  Request failed " + CROSS + " (no response from the server - please try again)";
+  public static final String SERVER_BUSY = "\n  Rejected " + CROSS + " (the server is busy - please try again)";
+  public static final String FRONT_ENDS_UNAVAILABLE = "\n  Request failed " + CROSS + " (no auction server could be reached - please try again)\n  %s";
+
+  // Notification constants
+  public static final String OUTBID_NOTIFICATION = "\n  [Notification] Outbid " + CROSS + " on auction %s (%s) - new highest bid £%.2f\n> ";
+  public static final String NEW_BID_NOTIFICATION = "\n  [Notification] New highest bid on your auction %s (%s): £%.2f " + CHECKMARK + "\n> ";
+  public static final String WON_NOTIFICATION = "\n  [Notification] You won auction %s (%s) for £%.2f " + CHECKMARK + "\n> ";
+  public static final String CLOSED_NOTIFICATION = "\n  [Notification] Auction %s (%s) has closed\n> ";
 }
 
@@ -0,0 +1,266 @@
+package com.harrybaines.scc311.auctioningsystem.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Code: Crypto Service   CryptoService.java
+ * Date: 19/10/26
+ *
+ * Signs and verifies authentication challenges without file I/O or provider
+ * lookups on the hot path. Keys are decoded once per file and cached; each
+ * key directory is watched so a replaced key file is picked up on the next
+ * use, and a key read while its file was being replaced isn't cached.
+ * Signature objects are kept per thread and algorithm and only
+ * re-initialised when the key changes, and the challenge is fed to them
+ * without allocating. Keys of any SignatureAlgorithm are accepted.
+*/
+public final class CryptoService {
+
+  private static final ConcurrentHashMap<Path, Key> KEYS = new ConcurrentHashMap<Path, Key>();
+  private static final ConcurrentHashMap<Path, Boolean> WATCHED_DIRS = new ConcurrentHashMap<Path, Boolean>();
+  private static final ConcurrentHashMap<Path, Long> CHANGES = new ConcurrentHashMap<Path, Long>();  /* Changes seen to each key file */
+  private static final AtomicLong LOST_CHANGES = new AtomicLong();  /* Overflows, when the files changed weren't reported */
+  private static final ThreadLocal<CachedSignature[]> SIGNERS = ThreadLocal.withInitial(() -> new CachedSignature[SignatureAlgorithm.values().length]);
+  private static final ThreadLocal<CachedSignature[]> VERIFIERS = ThreadLocal.withInitial(() -> new CachedSignature[SignatureAlgorithm.values().length]);
+  private static WatchService watcher;
+
+  private CryptoService() {
+  }
+
+  /**
+   * Signs a challenge value with a private key, using the key's algorithm.
+   * @param value the challenge value.
+   * @param privKey the private key to sign with.
+   * @return the signature bytes.
+   * @throws GeneralSecurityException if the value can't be signed.
+  */
+  public static byte[] sign(long value, PrivateKey privKey) throws GeneralSecurityException {
+    CachedSignature cached = cached(SIGNERS, SignatureAlgorithm.of(privKey));
+    try {
+      Signature sig = cached.forSigning(privKey);
+      update(sig, value);
+      return sig.sign();
+    } catch (GeneralSecurityException e) {
+      cached.key = null;
+      throw e;
+    }
+  }
+
+  /**
+   * Verifies a signature of a challenge value against a public key.
+   * @param algorithm the algorithm the signature claims to use.
+   * @param value the challenge value.
+   * @param pubKey the public key to verify with.
+   * @param sigBytes the signature bytes.
+   * @return true if the signature is valid, false otherwise (including if the key is for another algorithm).
+   * @throws GeneralSecurityException if the key or signature is malformed.
+  */
+  public static boolean verify(SignatureAlgorithm algorithm, long value, PublicKey pubKey, byte[] sigBytes) throws GeneralSecurityException {
+    if (SignatureAlgorithm.of(pubKey) != algorithm) {
+      return false;
+    }
+    CachedSignature cached = cached(VERIFIERS, algorithm);
+    try {
+      Signature sig = cached.forVerifying(pubKey);
+      update(sig, value);
+      return sig.verify(sigBytes);
+    } catch (GeneralSecurityException e) {
+      // Force re-initialisation in case the failure left the signature mid-update
+      cached.key = null;
+      throw e;
+    }
+  }
+
+  /**
+   * Obtains the private key stored in a file, decoding it only if it isn't cached or the file has changed.
+   * @param filepath the path to the private key file.
+   * @return the private key object.
+   * @throws IOException if the file can't be read.
+   * @throws GeneralSecurityException if the file doesn't contain a valid key.
+  */
+  public static PrivateKey getPrivateKey(String filepath) throws IOException, GeneralSecurityException {
+    Path path = Paths.get(filepath).toAbsolutePath().normalize();
+    Key key = KEYS.get(path);
+    if (!(key instanceof PrivateKey)) {
+      watch(path);
+      long stamp = stamp(path);
+      key = SignatureAlgorithm.decodePrivateKey(Files.readAllBytes(path));
+      cache(path, key, stamp);
+    }
+    return (PrivateKey) key;
+  }
+
+  /**
+   * Obtains the public key stored in a file, decoding it only if it isn't cached or the file has changed.
+   * @param filepath the path to the public key file.
+   * @return the public key object.
+   * @throws IOException if the file can't be read.
+   * @throws GeneralSecurityException if the file doesn't contain a valid key.
+  */
+  public static PublicKey getPublicKey(String filepath) throws IOException, GeneralSecurityException {
+    Path path = Paths.get(filepath).toAbsolutePath().normalize();
+    Key key = KEYS.get(path);
+    if (!(key instanceof PublicKey)) {
+      watch(path);
+      long stamp = stamp(path);
+      key = SignatureAlgorithm.decodePublicKey(Files.readAllBytes(path));
+      cache(path, key, stamp);
+    }
+    return (PublicKey) key;
+  }
+
+  /**
+   * Obtains a stamp that changes whenever the watcher sees a key file change.
+   * @param path the absolute path to the key file.
+   * @return the stamp.
+  */
+  private static long stamp(Path path) {
+    return LOST_CHANGES.get() + CHANGES.getOrDefault(path, 0L);
+  }
+
+  /**
+   * Caches a decoded key, unless its file changed after the stamp was taken (before the file was read).
+   * The watcher bumps the stamp before dropping the key, so checking after the put catches a change
+   * whether the watcher's drop ran before or after it.
+   * @param path the absolute path to the key file.
+   * @param key the decoded key.
+   * @param stamp the stamp taken before the file was read.
+  */
+  private static void cache(Path path, Key key, long stamp) {
+    KEYS.put(path, key);
+    if (stamp(path) != stamp) {
+      KEYS.remove(path, key);
+    }
+  }
+
+  /**
+   * Obtains the calling thread's signature object for an algorithm, creating it on first use.
+   * @param signatures the per-thread signature objects, indexed by algorithm.
+   * @param algorithm the signature algorithm.
+   * @return the thread's signature object.
+   * @throws GeneralSecurityException if the algorithm isn't available.
+  */
+  private static CachedSignature cached(ThreadLocal<CachedSignature[]> signatures, SignatureAlgorithm algorithm) throws GeneralSecurityException {
+    CachedSignature[] byAlgorithm = signatures.get();
+    CachedSignature cached = byAlgorithm[algorithm.ordinal()];
+    if (cached == null) {
+      cached = new CachedSignature(algorithm.newSignature());
+      byAlgorithm[algorithm.ordinal()] = cached;
+    }
+    return cached;
+  }
+
+  /**
+   * Feeds a challenge value to a signature big-endian, as ByteBuffer.putLong did.
+   * @param sig the signature object.
+   * @param value the challenge value.
+   * @throws SignatureException if the signature isn't initialised.
+  */
+  private static void update(Signature sig, long value) throws SignatureException {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      sig.update((byte) (value >>> shift));
+    }
+  }
+
+  /**
+   * Watches the directory of a key file so the cached key is dropped when the file changes.
+   * Registration happens before the key is read, so a change during the read isn't missed.
+   * @param path the absolute path to the key file.
+  */
+  private static void watch(Path path) {
+    Path dir = path.getParent();
+    if (dir == null || WATCHED_DIRS.putIfAbsent(dir, Boolean.TRUE) != null) {
+      return;
+    }
+    try {
+      dir.register(watcher(), StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException e) {
+      WATCHED_DIRS.remove(dir);
+      System.out.println("Couldn't watch key directory: " + dir);
+    }
+  }
+
+  /**
+   * Obtains the watch service, starting the thread that invalidates changed keys on first use.
+   * @return the watch service.
+   * @throws IOException if the watch service can't be created.
+  */
+  private static synchronized WatchService watcher() throws IOException {
+    if (watcher == null) {
+      watcher = FileSystems.getDefault().newWatchService();
+      Thread thread = new Thread(CryptoService::invalidateChangedKeys, "key-watcher");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    return watcher;
+  }
+
+  /**
+   * Drops cached keys whose files have been created, modified or deleted, until the watch service is closed.
+  */
+  private static void invalidateChangedKeys() {
+    try {
+      while (true) {
+        WatchKey watchKey = watcher.take();
+        Path dir = (Path) watchKey.watchable();
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            LOST_CHANGES.incrementAndGet();
+            KEYS.clear();
+          } else {
+            Path path = dir.resolve((Path) event.context());
+            CHANGES.merge(path, 1L, Long::sum);
+            KEYS.remove(path);
+          }
+        }
+        watchKey.reset();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Stop watching
+    }
+  }
+
+  /**
+   * A thread's signature object along with the key it was last initialised with.
+  */
+  private static final class CachedSignature {
+    private final Signature signature;
+    private Key key;
+
+    private CachedSignature(Signature signature) {
+      this.signature = signature;
+    }
+
+    /**
+     * Prepares the signature for signing, re-initialising only if the key has changed.
+     * @param privKey the private key to sign with.
+     * @return the signature object.
+     * @throws InvalidKeyException if the key is invalid.
+    */
+    private Signature forSigning(PrivateKey privKey) throws InvalidKeyException {
+      if (this.key != privKey) {
+        this.signature.initSign(privKey);
+        this.key = privKey;
+      }
+      return this.signature;
+    }
+
+    /**
+     * Prepares the signature for verifying, re-initialising only if the key has changed.
+     * @param pubKey the public key to verify with.
+     * @return the signature object.
+     * @throws InvalidKeyException if the key is invalid.
+    */
+    private Signature forVerifying(PublicKey pubKey) throws InvalidKeyException {
+      if (this.key != pubKey) {
+        this.signature.initVerify(pubKey);
+        this.key = pubKey;
+      }
+      return this.signature;
+    }
+  }
+}
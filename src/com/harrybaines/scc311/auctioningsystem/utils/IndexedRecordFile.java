@@ -0,0 +1,545 @@
+package com.harrybaines.scc311.auctioningsystem.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Code: Indexed Record File   IndexedRecordFile.java
+ * Date: 19/10/26
+ *
+ * An append-only file of (string key, value) records with an in-memory
+ * hash index from key to the offset of its latest record, the storage
+ * behind the UserKeyRegistry and ProfileStore. Appending a record for a key
+ * supersedes any earlier one. On open the file is read once, sequentially,
+ * to build the index - primitive arrays, so millions of keys cost a few
+ * bytes each - and a lookup is a hash probe plus one positional read.
+ *
+ * Each key is also given a compact numeric id: its position in the order
+ * keys first appear in the file.
+ *
+ * Every record carries a CRC32C of its body and every append is forced to
+ * disk before it is indexed. A record torn by a crash fails its length or
+ * CRC check and is cut off, along with anything after it, by the next
+ * process to open or append to the file.
+ *
+ * Several processes may share a file: records are only appended under an
+ * exclusive lock on the file, after indexing anything other processes have
+ * appended, and a lookup first indexes any records appended since the file
+ * was last read. Every process therefore indexes the same records in the
+ * same order and gives each key the same id. An index is never changed once
+ * published, so lookups take no lock; appending copies the index and
+ * publishes the copy.
+ *
+ * File format: [int magic][int version] followed by records of
+ * [int body length][int CRC32C of body][short key length][key UTF-8][short value length][value].
+*/
+public final class IndexedRecordFile implements Closeable {
+
+  private static final int HEADER_BYTES = 8;
+  private static final int RECORD_HEADER_BYTES = 8;
+  private static final int MAX_BODY_BYTES = 4 + 2 * 0xffff;
+  private static final int WRITE_BUFFER_BYTES = 1 << 20;
+  private static final int READ_BUFFER_BYTES = 256;
+  private static final ThreadLocal<ByteBuffer> READ_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_BYTES));
+
+  private final Path path;
+  private final FileChannel channel;
+  private final Consumer<List<String>> replaced;
+  private volatile Index index = new Index(1024);  /* Never changed once published */
+  private long end;  /* Offset the indexed records end at, guarded by this */
+  private volatile long seen;  /* Size of the file when last indexed */
+
+  /**
+   * Constructor to open (or create) a record file and index its records.
+   * @param path the path to the file.
+   * @param magic the magic number identifying the kind of file.
+   * @param version the version of the file format.
+   * @param replaced called, with the lock on this file held, with the keys whose records
+   *                 have been superseded each time they are, after lookups see the new records.
+   * @throws IOException if the file can't be opened or isn't of the given kind.
+  */
+  public IndexedRecordFile(Path path, int magic, int version, Consumer<List<String>> replaced) throws IOException {
+    this.path = path;
+    this.replaced = replaced;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      FileLock lock = this.channel.lock();
+      try {
+        if (this.channel.size() == 0) {
+          ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+          header.putInt(magic).putInt(version).flip();
+          this.channel.write(header, 0);
+          this.channel.force(true);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != magic || header.getInt() != version) {
+          throw new IOException("Not the expected kind of file: " + path);
+        }
+        synchronized (this) {
+          this.end = HEADER_BYTES;
+          this.scan();
+          this.trim();
+        }
+      } finally {
+        lock.release();
+      }
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a file-backed object, sharing any instance already open on the same file in this JVM.
+   * @param open the instances open, by file.
+   * @param filepath the path to the file.
+   * @param opener opens a new instance on a file.
+   * @return the instance.
+   * @throws IOException if the file can't be opened.
+  */
+  public static <T> T openShared(ConcurrentHashMap<Path, T> open, String filepath, Opener<T> opener) throws IOException {
+    Path path = Paths.get(filepath).toAbsolutePath().normalize();
+    try {
+      return open.computeIfAbsent(path, (p) -> {
+        try {
+          return opener.open(p);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // ================================================== //
+  //                      LOOKUPS                       //
+  // ================================================== //
+
+  /**
+   * Obtains the value of a key's latest record.
+   * @param key the key.
+   * @return the value, or null if the key has no record.
+   * @throws IOException if the file can't be read.
+  */
+  public byte[] get(String key) throws IOException {
+    this.refresh();
+    Record record = this.find(key);
+    return record != null ? record.value : null;
+  }
+
+  /**
+   * Obtains the numeric id of a key.
+   * @param key the key.
+   * @return the key's id (from 1), or 0 if the key has no record.
+   * @throws IOException if the file can't be read.
+  */
+  public int getId(String key) throws IOException {
+    this.refresh();
+    Record record = this.find(key);
+    return record != null ? record.id : 0;
+  }
+
+  /**
+   * Obtains the number of keys with a record.
+   * @return the number of keys.
+  */
+  public int size() {
+    return this.index.size;
+  }
+
+  /**
+   * Finds a key's latest record.
+   * @param key the key.
+   * @return the record, with the key's id, or null if the key has no record.
+   * @throws IOException if a record can't be read.
+  */
+  private Record find(String key) throws IOException {
+    Index current = this.index;
+    int hash = hash(key);
+    for (int slot = hash & current.mask; ; slot = (slot + 1) & current.mask) {
+      long offset = current.offsets[slot];
+      if (offset == 0) {
+        return null;
+      }
+      if (current.hashes[slot] == hash) {
+        Record record = this.read(offset);
+        if (record.key.equals(key)) {
+          record.id = current.ids[slot];
+          return record;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the record at an offset with a single positional read where possible.
+   * @param offset the offset of the record.
+   * @return the record.
+   * @throws IOException if the record can't be read.
+  */
+  private Record read(long offset) throws IOException {
+    ByteBuffer buffer = READ_BUFFERS.get();
+    buffer.clear();
+    readFully(buffer, offset);
+    buffer.flip();
+    int length = buffer.getInt();
+    if (RECORD_HEADER_BYTES + length > buffer.limit()) {
+      buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+      readFully(buffer, offset);
+      buffer.flip();
+      buffer.getInt();
+    }
+    buffer.getInt();
+    return Record.decode(buffer);
+  }
+
+  /**
+   * Reads into a buffer from an offset until it is full or the end of the file is reached.
+   * @param buffer the buffer to read into.
+   * @param offset the offset to read from.
+   * @throws IOException if the file can't be read.
+  */
+  private void readFully(ByteBuffer buffer, long offset) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+        break;
+      }
+    }
+  }
+
+  // ================================================== //
+  //                      WRITES                        //
+  // ================================================== //
+
+  /**
+   * Appends records for many items, streaming them through one buffer and syncing once.
+   * None of the records can be looked up until all of them have been written and synced.
+   * @param items the items.
+   * @param key obtains an item's key.
+   * @param value obtains an item's value.
+   * @return the number of records appended.
+   * @throws IOException if the file can't be written or an item is too large.
+  */
+  public synchronized <T> int appendAll(Iterable<T> items, Function<T, String> key, Function<T, byte[]> value) throws IOException {
+    FileLock lock = this.channel.lock();
+    try {
+      // Index what other processes have appended first, so ids follow the order of the file
+      this.scan();
+      this.trim();
+      ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+      CRC32C crc = new CRC32C();
+      List<String> keys = new ArrayList<String>();
+      long[] offsets = new long[16];
+      long position = this.end;
+      for (T item : items) {
+        String itemKey = key.apply(item);
+        byte[] keyBytes = itemKey.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.apply(item);
+        if (keyBytes.length > 0xffff || valueBytes.length > 0xffff) {
+          throw new IOException("Record too large: " + itemKey);
+        }
+        int length = 2 + keyBytes.length + 2 + valueBytes.length;
+        if (buffer.remaining() < RECORD_HEADER_BYTES + length) {
+          position += this.flush(buffer, position);
+        }
+        if (keys.size() == offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length << 1);
+        }
+        offsets[keys.size()] = position + buffer.position();
+        keys.add(itemKey);
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0).putShort((short) keyBytes.length).put(keyBytes).putShort((short) valueBytes.length).put(valueBytes);
+        crc.reset();
+        crc.update(buffer.array(), start + RECORD_HEADER_BYTES, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+      }
+      position += this.flush(buffer, position);
+      this.channel.force(false);
+
+      Index next = this.index.copy(this.index.offsets.length);
+      List<String> replacedKeys = new ArrayList<String>();
+      for (int i = 0; i < keys.size(); i++) {
+        next = this.put(next, keys.get(i), offsets[i], replacedKeys);
+      }
+      this.publish(next, replacedKeys, position);
+      this.seen = position;
+      return keys.size();
+    } finally {
+      lock.release();
+    }
+  }
+
+  /**
+   * Writes the contents of the write buffer at a position and empties it.
+   * @param buffer the write buffer.
+   * @param position the file offset to write at.
+   * @return the number of bytes written.
+   * @throws IOException if the file can't be written.
+  */
+  private int flush(ByteBuffer buffer, long position) throws IOException {
+    buffer.flip();
+    int written = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      this.channel.write(buffer, position + buffer.position());
+    }
+    buffer.clear();
+    return written;
+  }
+
+  // ================================================== //
+  //                      INDEX                         //
+  // ================================================== //
+
+  /**
+   * Indexes any records other processes have appended since the file was last indexed.
+   * Costs only a check of the file's size when nothing has been appended.
+   * @throws IOException if the file can't be read.
+  */
+  public void refresh() throws IOException {
+    if (this.channel.size() == this.seen) {
+      return;
+    }
+    synchronized (this) {
+      FileLock lock = this.channel.lock(0, Long.MAX_VALUE, true);
+      try {
+        this.scan();
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  /**
+   * Indexes the records from the end of those already indexed, stopping at a torn or corrupt record.
+   * Called with the lock on this file and a lock on the file on disk held.
+   * @throws IOException if the file can't be read.
+  */
+  private void scan() throws IOException {
+    long size = this.channel.size();
+    long offset = this.end;
+    ByteBuffer buffer = ByteBuffer.allocate(0);
+    CRC32C crc = new CRC32C();
+    Index next = null;
+    List<String> replacedKeys = new ArrayList<String>();
+    while (offset + RECORD_HEADER_BYTES <= size) {
+      if (buffer.remaining() < RECORD_HEADER_BYTES) {
+        buffer = this.refill(buffer, offset, RECORD_HEADER_BYTES);
+      }
+      int length = buffer.getInt(buffer.position());
+      if (length < 4 || length > MAX_BODY_BYTES || offset + RECORD_HEADER_BYTES + length > size) {
+        break;
+      }
+      if (buffer.remaining() < RECORD_HEADER_BYTES + length) {
+        buffer = this.refill(buffer, offset, RECORD_HEADER_BYTES + length);
+      }
+      int start = buffer.position();
+      crc.reset();
+      crc.update(buffer.array(), start + RECORD_HEADER_BYTES, length);
+      if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+        break;
+      }
+      buffer.position(start + RECORD_HEADER_BYTES);
+      if (next == null) {
+        next = this.index.copy(this.index.offsets.length);
+      }
+      next = this.put(next, Record.decode(buffer).key, offset, replacedKeys);
+      buffer.position(start + RECORD_HEADER_BYTES + length);
+      offset += RECORD_HEADER_BYTES + length;
+    }
+    if (next != null) {
+      this.publish(next, replacedKeys, offset);
+    }
+    this.seen = size;
+  }
+
+  /**
+   * Refills the scan buffer from a file offset, keeping nothing of what was left in it.
+   * @param buffer the scan buffer.
+   * @param offset the offset to read from.
+   * @param needed the number of bytes that must fit.
+   * @return the refilled buffer, which is new if it was too small.
+   * @throws IOException if the file can't be read.
+  */
+  private ByteBuffer refill(ByteBuffer buffer, long offset, int needed) throws IOException {
+    if (buffer.capacity() < needed) {
+      buffer = ByteBuffer.allocate(Math.max(needed, WRITE_BUFFER_BYTES));
+    }
+    buffer.clear();
+    readFully(buffer, offset);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Cuts off a torn or corrupt tail after the indexed records.
+   * Called with the lock on this file and an exclusive lock on the file on disk held.
+   * @throws IOException if the file can't be truncated.
+  */
+  private void trim() throws IOException {
+    long size = this.channel.size();
+    if (size > this.end) {
+      System.out.println("Discarding " + (size - this.end) + " bytes of torn or corrupt records from " + this.path);
+      this.channel.truncate(this.end);
+      this.channel.force(true);
+      this.seen = this.end;
+    }
+  }
+
+  /**
+   * Points the entry for a key in an unpublished index at a new record, growing the index if needed.
+   * A key seen for the first time is given the next id.
+   * @param next the unpublished index.
+   * @param key the key.
+   * @param offset the offset of the key's latest record.
+   * @param replacedKeys the keys whose earlier records have been superseded, added to.
+   * @return the index, which is a new one if it had to grow.
+   * @throws IOException if an existing record can't be read.
+  */
+  private Index put(Index next, String key, long offset, List<String> replacedKeys) throws IOException {
+    if ((next.size + 1) * 10L > next.offsets.length * 7L) {
+      next = next.copy(next.offsets.length * 2);
+    }
+    int hash = hash(key);
+    for (int slot = hash & next.mask; ; slot = (slot + 1) & next.mask) {
+      long existing = next.offsets[slot];
+      if (existing == 0) {
+        next.hashes[slot] = hash;
+        next.ids[slot] = ++next.size;
+        next.offsets[slot] = offset;
+        return next;
+      }
+      if (next.hashes[slot] == hash && this.read(existing).key.equals(key)) {
+        next.offsets[slot] = offset;
+        replacedKeys.add(key);
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Publishes an updated index to readers, then reports the keys it has superseded.
+   * Called with the lock on this file held.
+   * @param next the updated index.
+   * @param replacedKeys the keys whose earlier records have been superseded.
+   * @param end the offset the indexed records now end at.
+  */
+  private void publish(Index next, List<String> replacedKeys, long end) {
+    this.index = next;
+    this.end = end;
+    if (!replacedKeys.isEmpty() && this.replaced != null) {
+      this.replaced.accept(replacedKeys);
+    }
+  }
+
+  /**
+   * Hashes a key for the index.
+   * @param key the key.
+   * @return the spread hash.
+  */
+  private static int hash(String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Closes the file.
+   * @throws IOException if the file can't be closed.
+  */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Opens a file-backed object on a file.
+  */
+  public interface Opener<T> {
+    T open(Path path) throws IOException;
+  }
+
+  /**
+   * An open addressing table of record offsets (0 marks an empty slot, since no
+   * record starts inside the header) along with the hash and id of each slot's key.
+  */
+  private static final class Index {
+    private final int[] hashes;
+    private final long[] offsets;
+    private final int[] ids;
+    private final int mask;
+    private int size;
+
+    private Index(int capacity) {
+      this.hashes = new int[capacity];
+      this.offsets = new long[capacity];
+      this.ids = new int[capacity];
+      this.mask = capacity - 1;
+    }
+
+    /**
+     * Copies the index, rehashing it if the capacity differs.
+     * @param capacity the capacity of the copy, a power of two no smaller than this one's.
+     * @return the copy.
+    */
+    private Index copy(int capacity) {
+      Index copy = new Index(capacity);
+      for (int slot = 0; slot < this.offsets.length; slot++) {
+        if (this.offsets[slot] != 0) {
+          int s = this.hashes[slot] & copy.mask;
+          while (copy.offsets[s] != 0) {
+            s = (s + 1) & copy.mask;
+          }
+          copy.hashes[s] = this.hashes[slot];
+          copy.ids[s] = this.ids[slot];
+          copy.offsets[s] = this.offsets[slot];
+        }
+      }
+      copy.size = this.size;
+      return copy;
+    }
+  }
+
+  /**
+   * A decoded record.
+  */
+  private static final class Record {
+    private final String key;
+    private final byte[] value;
+    private int id;  /* Set once found in the index */
+
+    private Record(String key, byte[] value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    /**
+     * Decodes a record body.
+     * @param buffer the buffer positioned at the record body.
+     * @return the record.
+    */
+    private static Record decode(ByteBuffer buffer) {
+      byte[] key = new byte[buffer.getShort() & 0xffff];
+      buffer.get(key);
+      byte[] value = new byte[buffer.getShort() & 0xffff];
+      buffer.get(value);
+      return new Record(new String(key, StandardCharsets.UTF_8), value);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package com.harrybaines.scc311.auctioningsystem.utils;
+
+import com.harrybaines.scc311.auctioningsystem.client.User;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Code: Profile Store   ProfileStore.java
+ * Date: 19/10/26
+ *
+ * The client's store of user profiles (name and email, keyed by email),
+ * replacing one Java-serialised User file per user. Profiles are kept in an
+ * IndexedRecordFile of compact binary records; saving a profile again
+ * appends a record which supersedes the old one, and resolving a profile is
+ * a hash probe plus one positional read.
+ *
+ * Stores are shared per file, so every component in a JVM sees the same
+ * profiles.
+ *
+ * File format: an IndexedRecordFile whose records are keyed by email, with the UTF-8 name as the value.
+ *
+ * Usage: ProfileStore <store file> import <users directory>
+ * imports every <users directory>/<email>/<email> profile saved by older clients, and
+ *        ProfileStore <store file> generate <count> [prefix]
+ * provisions test users <prefix><n>@test.
+*/
+public final class ProfileStore implements Closeable {
+
+  private static final int MAGIC = 0x50524f46;
+  private static final int VERSION = 1;
+  private static final ConcurrentHashMap<Path, ProfileStore> OPEN = new ConcurrentHashMap<Path, ProfileStore>();
+
+  private final Path path;
+  private final IndexedRecordFile file;
+
+  /**
+   * Constructor to open (or create) a store file and index its records.
+   * @param path the path to the store file.
+   * @throws IOException if the file can't be opened or isn't a profile store.
+  */
+  private ProfileStore(Path path) throws IOException {
+    this.path = path;
+    this.file = new IndexedRecordFile(path, MAGIC, VERSION, null);
+  }
+
+  /**
+   * Opens the store in a file, sharing any instance already open in this JVM.
+   * @param filepath the path to the store file.
+   * @return the store.
+   * @throws IOException if the file can't be opened or isn't a profile store.
+  */
+  public static ProfileStore open(String filepath) throws IOException {
+    return IndexedRecordFile.openShared(OPEN, filepath, ProfileStore::new);
+  }
+
+  /**
+   * Opens the client's store, at -Dauction.profiles if set, otherwise Constants.PROFILE_STORE.
+   * A new default store is populated from the profiles saved under Constants.USERS_DIR_CLIENT.
+   * @return the store, or null if it can't be opened.
+  */
+  public static ProfileStore fromSystemProperty() {
+    String filepath = System.getProperty("auction.profiles");
+    try {
+      ProfileStore store = open(filepath != null ? filepath : Constants.PROFILE_STORE);
+      if (filepath == null && store.size() == 0) {
+        store.importDirectory(Constants.USERS_DIR_CLIENT);
+      }
+      return store;
+    } catch (IOException e) {
+      System.out.println("Couldn't open profile store: " + e.getMessage());
+    }
+    return null;
+  }
+
+  // ================================================== //
+  //                      LOOKUPS                       //
+  // ================================================== //
+
+  /**
+   * Obtains a user's profile.
+   * @param email the email of the user.
+   * @return the user (without a user id, which the server assigns), or null if there is no profile.
+  */
+  public User get(String email) {
+    if (email == null) {
+      return null;
+    }
+    try {
+      byte[] name = this.file.get(email);
+      return name != null ? new User(new String(name, StandardCharsets.UTF_8), email) : null;
+    } catch (IOException e) {
+      System.out.println("Couldn't read profile for " + email + ": " + e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Obtains the number of profiles.
+   * @return the number of profiles.
+  */
+  public int size() {
+    return this.file.size();
+  }
+
+  // ================================================== //
+  //                      WRITES                        //
+  // ================================================== //
+
+  /**
+   * Saves (or replaces) a user's profile.
+   * @param user the user.
+   * @throws IOException if the store can't be written.
+  */
+  public void put(User user) throws IOException {
+    this.putAll(Collections.singletonList(user));
+  }
+
+  /**
+   * Saves (or replaces) many users' profiles, streaming them through one buffer and syncing once.
+   * None of the profiles can be looked up until all of them have been written and synced.
+   * @param users the users.
+   * @return the number of profiles saved.
+   * @throws IOException if the store can't be written.
+  */
+  public int putAll(Iterable<User> users) throws IOException {
+    return this.file.appendAll(users, User::getEmail, (user) -> (user.getName() != null ? user.getName() : "").getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Imports every <email>/<email> profile saved as a serialised User by older clients.
+   * @param usersDir the directory of per-user directories.
+   * @return the number of profiles imported.
+   * @throws IOException if the directory or store can't be accessed.
+  */
+  public int importDirectory(String usersDir) throws IOException {
+    List<User> users = new ArrayList<User>();
+    Path dir = Paths.get(usersDir);
+    if (!Files.isDirectory(dir)) {
+      return 0;
+    }
+    try (DirectoryStream<Path> userDirs = Files.newDirectoryStream(dir)) {
+      for (Path userDir : userDirs) {
+        Path profile = userDir.resolve(userDir.getFileName());
+        if (!Files.isRegularFile(profile)) {
+          continue;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(profile)))) {
+          users.add((User) in.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+          System.out.println("Skipping " + profile + " - not a saved user");
+        }
+      }
+    }
+    return this.putAll(users);
+  }
+
+  /**
+   * Closes the store file.
+   * @throws IOException if the file can't be closed.
+  */
+  @Override
+  public void close() throws IOException {
+    OPEN.remove(this.path, this);
+    this.file.close();
+  }
+
+  /**
+   * Main method to import saved profiles into a store, or to provision test users.
+   * @param args the store file, then "import" and a users directory or "generate", a count and an optional prefix.
+   * @throws IOException if the store can't be written.
+  */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3 || !(args[1].equals("import") || args[1].equals("generate"))) {
+      System.out.println("Usage: ProfileStore <store file> import <users directory>");
+      System.out.println("       ProfileStore <store file> generate <count> [prefix]");
+      return;
+    }
+    try (ProfileStore store = open(args[0])) {
+      long start = System.nanoTime();
+      int saved;
+      if (args[1].equals("import")) {
+        saved = store.importDirectory(args[2]);
+      } else {
+        saved = store.putAll(generate(Integer.parseInt(args[2]), args.length > 3 ? args[3] : "user"));
+      }
+      System.out.format("Saved %d profiles in %d ms - %d stored%n", saved, (System.nanoTime() - start) / 1000000, store.size());
+    }
+  }
+
+  /**
+   * Creates test users lazily, so provisioning millions doesn't hold them all at once.
+   * @param count the number of users.
+   * @param prefix the prefix of the users' names and emails.
+   * @return the users <prefix><n>@test.
+  */
+  public static Iterable<User> generate(int count, String prefix) {
+    return () -> new java.util.Iterator<User>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return this.next < count;
+      }
+
+      @Override
+      public User next() {
+        int n = this.next++;
+        return new User(prefix + " " + n, prefix + n + "@test");
+      }
+    };
+  }
+}
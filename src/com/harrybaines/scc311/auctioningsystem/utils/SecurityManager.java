@@ -3,9 +3,7 @@ package com.harrybaines.scc311.auctioningsystem.utils;
 import com.harrybaines.scc311.auctioningsystem.server.*;
 import java.util.Random;
 import java.security.*;
-import java.security.spec.*;
 import java.io.*;
-import java.nio.ByteBuffer;
 
 /**
  * Code: Security Manager   SecurityManager.java
@@ -21,13 +19,14 @@ import java.nio.ByteBuffer;
 public final class SecurityManager {
 
   public static final Random RAND = new Random();  /* Random number generator */
+  private static final SecureRandom CHALLENGES = new SecureRandom();  /* Challenges must not be predictable */
 
   /**
    * Method to receive a new authentication challenge object based on a random number.
    * @return a new challenge object.
   */
   public static AuthChallenge getChallenge() {
-    return new AuthChallenge(RAND.nextLong());
+    return new AuthChallenge(CHALLENGES.nextLong());
   }
 
   /**
@@ -40,14 +39,7 @@ public final class SecurityManager {
   public static byte[] signChallenge(AuthChallenge challenge, PrivateKey privKey) {
     byte[] res = null;
     try {
-      Signature sig = Signature.getInstance("SHA1withDSA", "SUN"); 
-      sig.initSign(privKey);
-
-      // Supply the Signature object with the challenge + generate the signature (byte array)
-      ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
-      buffer.putLong(challenge.getValue());
-      sig.update(buffer.array());
-      res = sig.sign();
+      res = CryptoService.sign(challenge.getValue(), privKey);
     } catch (Exception e) {
       System.out.println("Couldn't sign challenge");
     }
@@ -62,14 +54,9 @@ public final class SecurityManager {
   */
   public static boolean verifySignature(AuthSig authSig) {
     try {
-      Signature sigVer = Signature.getInstance("SHA1withDSA", "SUN");
-      sigVer.initVerify(authSig.getPubKey());
-
       // Verify the data equals the sent challenge
-      ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
-      buffer.putLong(authSig.getChallenge().getValue());
-      sigVer.update(buffer.array());
-      return sigVer.verify(authSig.getSigBytes());
+      SignatureAlgorithm algorithm = authSig.getAlgorithm() != null ? authSig.getAlgorithm() : SignatureAlgorithm.of(authSig.getPubKey());
+      return CryptoService.verify(algorithm, authSig.getChallenge().getValue(), authSig.getPubKey(), authSig.getSigBytes());
     } catch (Exception e) {
       System.out.println("Couldn't verify signature");
     }
@@ -78,16 +65,13 @@ public final class SecurityManager {
 
   /**
    * Method to obtain the public key based on the given filepath.
+   * The key is only read from disk the first time or after the file changes.
    * @param filepath the path to the public key file as a string.
    * @return the public key object.
   */
   public static PublicKey getPublicKey(String filepath) {
-    try (FileInputStream keyfis = new FileInputStream(filepath)) {
-      byte[] encKey = new byte[keyfis.available()];  
-      keyfis.read(encKey);
-      X509EncodedKeySpec pubKeySpec = new X509EncodedKeySpec(encKey);
-      KeyFactory keyFactory = KeyFactory.getInstance("DSA", "SUN");
-      return keyFactory.generatePublic(pubKeySpec);
+    try {
+      return CryptoService.getPublicKey(filepath);
     } catch (Exception e) {
       System.out.println("Couldn't get public key: " + filepath);
     }
@@ -95,19 +79,42 @@ public final class SecurityManager {
   }
 
   /**
-   * Generates a new public/private key pair to a provided filepath.
+   * Method to obtain the private key based on the given filepath.
+   * The key is only read from disk the first time or after the file changes.
+   * @param filepath the path to the private key file as a string.
+   * @return the private key object.
+  */
+  public static PrivateKey getPrivateKey(String filepath) {
+    try {
+      return CryptoService.getPrivateKey(filepath);
+    } catch (Exception e) {
+      System.out.println("Couldn't get private key: " + filepath);
+    }
+    return null;
+  }
+
+  /**
+   * Generates a new public/private key pair to a provided filepath, using the default algorithm.
    * @param filepath the filepath to the location where the public/private keys will be stored (new folder).
    * @param publicKeyPath the path to where the public key will be stored.
    * @param privateKeyPath the path to where the private key will be stored
    * @return true if successful, false otherwise.
   */
   public static boolean generateKeyPair(String filepath, String publicKeyPath, String privateKeyPath) {
-    try {
-      KeyPairGenerator keyGen = KeyPairGenerator.getInstance("DSA", "SUN");
-      SecureRandom random = SecureRandom.getInstance("SHA1PRNG", "SUN");
-      keyGen.initialize(1024, random);
+    return generateKeyPair(filepath, publicKeyPath, privateKeyPath, SignatureAlgorithm.DEFAULT);
+  }
 
-      KeyPair pair = keyGen.generateKeyPair();
+  /**
+   * Generates a new public/private key pair for a given algorithm to a provided filepath.
+   * @param filepath the filepath to the location where the public/private keys will be stored (new folder).
+   * @param publicKeyPath the path to where the public key will be stored.
+   * @param privateKeyPath the path to where the private key will be stored
+   * @param algorithm the signature algorithm the keys are for.
+   * @return true if successful, false otherwise.
+  */
+  public static boolean generateKeyPair(String filepath, String publicKeyPath, String privateKeyPath, SignatureAlgorithm algorithm) {
+    try {
+      KeyPair pair = algorithm.generateKeyPair();
       PublicKey pubKey = pair.getPublic();
       PrivateKey privKey = pair.getPrivate();
 
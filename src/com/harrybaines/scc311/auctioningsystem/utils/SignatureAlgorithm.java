@@ -0,0 +1,157 @@
+package com.harrybaines.scc311.auctioningsystem.utils;
+
+import java.security.*;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * Code: Signature Algorithm   SignatureAlgorithm.java
+ * Date: 19/10/26
+ *
+ * The signature schemes supported by the challenge response protocol.
+ * New key pairs use Ed25519 unless -Dauction.keyAlgorithm names another
+ * algorithm: its keys are a tenth the size of 1024-bit DSA keys and it
+ * doesn't depend on SHA-1. Note the JDK 17 implementation is slower than
+ * DSA (see SignatureBenchmark). DSA keys generated before it was the
+ * default remain valid. The algorithm of a key is detected from the key
+ * itself, so existing key files need no conversion.
+*/
+public enum SignatureAlgorithm {
+
+  DSA("SHA1withDSA", "DSA", 1024, "SUN"),
+  ECDSA("SHA256withECDSA", "EC", 256, null),
+  ED25519("Ed25519", "Ed25519", 0, null);
+
+  /** The algorithm used for newly generated key pairs */
+  public static final SignatureAlgorithm DEFAULT = fromSystemProperty();
+
+  private final String signatureName;
+  private final String keyAlgorithm;
+  private final int keySize;
+  private final String provider;
+
+  /**
+   * Constructor to initialise a supported algorithm.
+   * @param signatureName the JCA name of the signature algorithm.
+   * @param keyAlgorithm the JCA name of the key algorithm.
+   * @param keySize the key size to generate, or 0 if fixed by the algorithm.
+   * @param provider the provider to use, or null for the default provider.
+  */
+  SignatureAlgorithm(String signatureName, String keyAlgorithm, int keySize, String provider) {
+    this.signatureName = signatureName;
+    this.keyAlgorithm = keyAlgorithm;
+    this.keySize = keySize;
+    this.provider = provider;
+  }
+
+  /**
+   * Obtains the algorithm named by -Dauction.keyAlgorithm, falling back to Ed25519 for an unknown name
+   * rather than failing, since every class that signs or verifies depends on this one.
+   * @return the algorithm for newly generated key pairs.
+  */
+  private static SignatureAlgorithm fromSystemProperty() {
+    String name = System.getProperty("auction.keyAlgorithm", ED25519.name());
+    for (SignatureAlgorithm algorithm : values()) {
+      if (algorithm.name().equalsIgnoreCase(name.trim())) {
+        return algorithm;
+      }
+    }
+    System.out.println("Unknown key algorithm " + name + ", expected one of " + Arrays.toString(values()) + "; using " + ED25519);
+    return ED25519;
+  }
+
+  /**
+   * Accessor to obtain the JCA name of the signature algorithm.
+   * @return the signature algorithm name.
+  */
+  public String getSignatureName() {
+    return this.signatureName;
+  }
+
+  /**
+   * Creates a new signature object for this algorithm.
+   * @return the signature object.
+   * @throws GeneralSecurityException if the algorithm isn't available.
+  */
+  public Signature newSignature() throws GeneralSecurityException {
+    return this.provider != null ? Signature.getInstance(this.signatureName, this.provider) : Signature.getInstance(this.signatureName);
+  }
+
+  /**
+   * Creates a new key factory for this algorithm.
+   * @return the key factory.
+   * @throws GeneralSecurityException if the algorithm isn't available.
+  */
+  public KeyFactory newKeyFactory() throws GeneralSecurityException {
+    return this.provider != null ? KeyFactory.getInstance(this.keyAlgorithm, this.provider) : KeyFactory.getInstance(this.keyAlgorithm);
+  }
+
+  /**
+   * Generates a new key pair for this algorithm.
+   * @return the key pair.
+   * @throws GeneralSecurityException if the algorithm isn't available.
+  */
+  public KeyPair generateKeyPair() throws GeneralSecurityException {
+    KeyPairGenerator keyGen = this.provider != null ? KeyPairGenerator.getInstance(this.keyAlgorithm, this.provider) : KeyPairGenerator.getInstance(this.keyAlgorithm);
+    if (this.keySize > 0) {
+      keyGen.initialize(this.keySize, new SecureRandom());
+    }
+    return keyGen.generateKeyPair();
+  }
+
+  /**
+   * Obtains the algorithm a key belongs to.
+   * @param key the public or private key.
+   * @return the algorithm.
+   * @throws IllegalArgumentException if the key's algorithm isn't supported.
+  */
+  public static SignatureAlgorithm of(Key key) {
+    switch (key.getAlgorithm()) {
+      case "DSA":
+        return DSA;
+      case "EC":
+        return ECDSA;
+      case "EdDSA":
+      case "Ed25519":
+        return ED25519;
+      default:
+        throw new IllegalArgumentException("Unsupported key algorithm: " + key.getAlgorithm());
+    }
+  }
+
+  /**
+   * Decodes an X.509 encoded public key of any supported algorithm.
+   * @param encoded the encoded key.
+   * @return the public key.
+   * @throws InvalidKeySpecException if the key isn't a supported public key.
+  */
+  public static PublicKey decodePublicKey(byte[] encoded) throws InvalidKeySpecException {
+    for (SignatureAlgorithm algorithm : values()) {
+      try {
+        return algorithm.newKeyFactory().generatePublic(new X509EncodedKeySpec(encoded));
+      } catch (GeneralSecurityException e) {
+        // Try the next algorithm
+      }
+    }
+    throw new InvalidKeySpecException("Not a supported public key");
+  }
+
+  /**
+   * Decodes a PKCS #8 encoded private key of any supported algorithm.
+   * @param encoded the encoded key.
+   * @return the private key.
+   * @throws InvalidKeySpecException if the key isn't a supported private key.
+  */
+  public static PrivateKey decodePrivateKey(byte[] encoded) throws InvalidKeySpecException {
+    for (SignatureAlgorithm algorithm : values()) {
+      try {
+        return algorithm.newKeyFactory().generatePrivate(new PKCS8EncodedKeySpec(encoded));
+      } catch (GeneralSecurityException e) {
+        // Try the next algorithm
+      }
+    }
+    throw new InvalidKeySpecException("Not a supported private key");
+  }
+}
@@ -0,0 +1,71 @@
+package com.harrybaines.scc311.auctioningsystem.utils;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+
+/**
+ * Code: Timeout Socket Factory   TimeoutSocketFactory.java
+ * Date: 19/10/26
+ *
+ * An RMI client socket factory whose sockets give up connecting, and
+ * waiting for a response, after a timeout. A client exports its
+ * notification callback with one, and the server receives it inside the
+ * callback's stub, so a client that has gone away or stopped answering
+ * holds a server thread for at most the timeout rather than indefinitely.
+ *
+ * The front-end likewise exports itself with one, so an RMI call from any
+ * client to a front-end that has hung gives up after
+ * -Dauction.rmiReadTimeout (set on the front-end, in milliseconds, default
+ * three times Constants.TIMEOUT, 0 for none) instead of holding the
+ * client's thread until the front-end answers: RMI calls can't be
+ * interrupted, so this is the only bound on them.
+*/
+public final class TimeoutSocketFactory implements RMIClientSocketFactory, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int timeoutMillis;
+
+  /**
+   * Constructor to initialise a new factory.
+   * @param timeoutMillis the connect and read timeout of each socket, in milliseconds.
+  */
+  public TimeoutSocketFactory(int timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Obtains the read timeout a front-end gives the sockets of its clients.
+   * @return the timeout in milliseconds, 0 for none.
+  */
+  public static int clientReadTimeout() {
+    return Integer.getInteger("auction.rmiReadTimeout", 3 * Constants.TIMEOUT);
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(host, port), this.timeoutMillis);
+      socket.setSoTimeout(this.timeoutMillis);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    return socket;
+  }
+
+  // RMI reuses connections only to endpoints with equal factories
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof TimeoutSocketFactory && ((TimeoutSocketFactory) other).timeoutMillis == this.timeoutMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return Integer.hashCode(this.timeoutMillis);
+  }
+}